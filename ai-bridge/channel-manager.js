@@ -23,7 +23,7 @@
  */
 
 // 共用工具
-import { readStdinData } from './utils/stdin-utils.js';
+import { readStdinData, closeStdinFrameChannel } from './utils/stdin-utils.js';
 
 // Claude 服务
 import {
@@ -140,6 +140,9 @@ async function handleCodexCommand(command, args, stdinData) {
       await handleCodexCommand(command, args, stdinData);
     }
 
+    // 带内帧通道下 stdin 一直打开，命令结束后主动关闭以便进程退出
+    closeStdinFrameChannel();
+
   } catch (error) {
     console.error('[COMMAND_ERROR]', error.message);
     console.log(JSON.stringify({
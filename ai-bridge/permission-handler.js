@@ -5,8 +5,10 @@
  * 为 Claude SDK 提供权限请求的交互式处理
  */
 
-import { writeFileSync, readFileSync, existsSync, unlinkSync, readdirSync } from 'fs';
+import { writeFileSync, readFileSync, existsSync, unlinkSync, readdirSync, renameSync, watch } from 'fs';
 import { join, basename } from 'path';
+import { createConnection } from 'net';
+import { isStdinFrameChannelOpen, onStdinFrame } from './utils/stdin-utils.js';
 import { tmpdir } from 'os';
 
 // ========== 调试日志辅助函数 ==========
@@ -34,6 +36,206 @@ try {
   debugLog('INIT_ERROR', `Failed to create permission dir: ${e.message}`);
 }
 
+/**
+ * 回报给 Java 端的恢复时间（用于统计权限等待耗时）
+ */
+function resumedFrame(requestData, timedOut) {
+  return { requestId: requestData.requestId, resumedAt: Date.now(), timedOut };
+}
+
+/**
+ * 带内通道：在 stdout 输出 [PERMISSION_REQUEST] 帧，从 stdin 读取对应的 permission_decision 帧
+ * Java 端由所属窗口直接处理，未启用时返回 null（调用方改用套接字或文件通道）
+ * @returns {Promise<boolean|null>}
+ */
+function requestInBand(requestData, deadline) {
+  if (!isStdinFrameChannelOpen()) {
+    return Promise.resolve(null);
+  }
+  return new Promise((resolve) => {
+    const finish = (result) => {
+      clearTimeout(timer);
+      unsubscribe();
+      resolve(result);
+    };
+    const unsubscribe = onStdinFrame((frame) => {
+      if (frame && frame.type === 'permission_decision' && frame.requestId === requestData.requestId) {
+        console.log(`[PERMISSION_RESUMED] ${JSON.stringify(resumedFrame(requestData, false))}`);
+        finish(frame.allow === true);
+      }
+    });
+    const timer = setTimeout(() => {
+      debugLog('INBAND_TIMEOUT', `Timeout waiting for in-band decision`, { requestId: requestData.requestId });
+      console.log(`[PERMISSION_RESUMED] ${JSON.stringify(resumedFrame(requestData, true))}`);
+      finish(false);
+    }, Math.max(0, deadline - Date.now()));
+
+    console.log(`[PERMISSION_REQUEST] ${JSON.stringify(requestData)}`);
+  });
+}
+
+// 套接字通道（由 Java 端 EnvironmentConfigurator 注入）：优先使用，未配置或连接失败时退回文件通道
+const PERMISSION_SOCKET = process.env.CLAUDE_PERMISSION_SOCKET || '';
+const PERMISSION_PORT = Number.parseInt(process.env.CLAUDE_PERMISSION_PORT || '', 10);
+const PERMISSION_TOKEN = process.env.CLAUDE_PERMISSION_TOKEN || '';
+const PERMISSION_ROUTE = process.env.CLAUDE_PERMISSION_ROUTE || '';
+
+debugLog('INIT', `Permission socket: ${PERMISSION_SOCKET || (PERMISSION_PORT > 0 ? `127.0.0.1:${PERMISSION_PORT}` : 'NOT SET')}`);
+
+/**
+ * 通过套接字发送请求并等待决定
+ * 连接建立前失败返回 null（调用方改用文件通道）；连接建立后断开或超时视为拒绝
+ * @returns {Promise<boolean|null>}
+ */
+function requestViaSocket(requestData, deadline) {
+  if (!PERMISSION_TOKEN || (!PERMISSION_SOCKET && !(PERMISSION_PORT > 0))) {
+    return Promise.resolve(null);
+  }
+  return new Promise((resolve) => {
+    let connected = false;
+    let settled = false;
+    let buffer = '';
+    const socket = PERMISSION_SOCKET
+      ? createConnection({ path: PERMISSION_SOCKET })
+      : createConnection({ host: '127.0.0.1', port: PERMISSION_PORT });
+
+    const finish = (result, reason, ack) => {
+      if (settled) return;
+      settled = true;
+      clearTimeout(timer);
+      if (ack) {
+        // 回报恢复时间后关闭连接
+        socket.end(JSON.stringify(ack) + '\n');
+      } else {
+        socket.destroy();
+      }
+      if (reason) {
+        debugLog('SOCKET_END', reason, { requestId: requestData.requestId, result });
+      }
+      resolve(result);
+    };
+    const timer = setTimeout(() => finish(false, 'Timeout waiting for decision'), Math.max(0, deadline - Date.now()));
+
+    socket.setEncoding('utf8');
+    socket.on('connect', () => {
+      connected = true;
+      socket.write(JSON.stringify({ ...requestData, token: PERMISSION_TOKEN }) + '\n');
+      debugLog('SOCKET_SENT', `Request sent over socket`, { requestId: requestData.requestId });
+    });
+    socket.on('data', (chunk) => {
+      buffer += chunk;
+      const newline = buffer.indexOf('\n');
+      if (newline < 0) return;
+      try {
+        const response = JSON.parse(buffer.slice(0, newline));
+        finish(response.allow === true, null, resumedFrame(requestData, false));
+      } catch (e) {
+        finish(false, `Invalid decision frame: ${e.message}`);
+      }
+    });
+    socket.on('error', (e) => {
+      finish(connected ? false : null, `Socket error: ${e.message}`);
+    });
+    socket.on('close', () => {
+      finish(connected ? false : null, 'Socket closed before decision');
+    });
+  });
+}
+
+// 目录监听可用时的兜底轮询间隔（防止丢事件）；监听不可用时退化为 100ms 轮询
+const FALLBACK_POLL_INTERVAL = 1000;
+const POLL_INTERVAL_NO_WATCH = 100;
+
+// 等待中的响应：文件名 -> 唤醒函数
+const responseWaiters = new Map();
+let dirWatcher = null;
+let dirWatchFailed = false;
+
+/**
+ * 懒加载目录监听，所有请求共用一个 watcher，响应文件一出现就唤醒对应的等待者
+ */
+function ensureDirWatcher() {
+  if (dirWatcher || dirWatchFailed) {
+    return dirWatcher !== null;
+  }
+  try {
+    dirWatcher = watch(PERMISSION_DIR, { persistent: false }, (eventType, filename) => {
+      if (!filename) {
+        // 部分平台不提供文件名，唤醒全部等待者自行检查
+        responseWaiters.forEach(wake => wake());
+        return;
+      }
+      const wake = responseWaiters.get(filename.toString());
+      if (wake) {
+        wake();
+      }
+    });
+    dirWatcher.on('error', (e) => {
+      debugLog('WATCH_ERROR', `Directory watcher failed, falling back to polling: ${e.message}`);
+      dirWatcher?.close();
+      dirWatcher = null;
+      dirWatchFailed = true;
+    });
+    debugLog('WATCH', `Watching permission dir for responses`);
+  } catch (e) {
+    debugLog('WATCH_ERROR', `Cannot watch permission dir, falling back to polling: ${e.message}`);
+    dirWatchFailed = true;
+  }
+  return dirWatcher !== null;
+}
+
+/**
+ * 等待响应文件出现：目录通知立即唤醒，定时检查兜底
+ * @returns {Promise<boolean>} 超时前是否出现
+ */
+function waitForResponseFile(responseFile, deadline) {
+  const name = basename(responseFile);
+  return new Promise((resolve) => {
+    let timer = null;
+    let pollCount = 0;
+
+    const finish = (found) => {
+      clearTimeout(timer);
+      responseWaiters.delete(name);
+      resolve(found);
+    };
+
+    const check = () => {
+      if (existsSync(responseFile)) {
+        finish(true);
+        return true;
+      }
+      return false;
+    };
+
+    const schedule = () => {
+      const remaining = deadline - Date.now();
+      if (remaining <= 0) {
+        finish(existsSync(responseFile));
+        return;
+      }
+      const interval = dirWatcher ? FALLBACK_POLL_INTERVAL : POLL_INTERVAL_NO_WATCH;
+      timer = setTimeout(() => {
+        pollCount++;
+        // 约每 5 秒输出一次等待状态
+        if (pollCount % Math.max(1, Math.round(5000 / interval)) === 0) {
+          debugLog('WAITING', `Still waiting for response`, { remaining: `${deadline - Date.now()}ms`, pollCount });
+        }
+        if (!check()) {
+          schedule();
+        }
+      }, Math.min(interval, remaining));
+    };
+
+    ensureDirWatcher();
+    responseWaiters.set(name, () => { check(); });
+    // 注册后立即检查一次，避免响应在注册前已经写入
+    if (!check()) {
+      schedule();
+    }
+  });
+}
+
 const TEMP_PATH_PREFIXES = ['/tmp', '/var/tmp', '/private/tmp'];
 
 function getProjectRoot() {
@@ -96,7 +298,20 @@ function rewriteToolInputPaths(toolName, input) {
 }
 
 /**
- * 通过文件系统与 Java 进程通信请求权限
+ * 文件通道：读到响应（或超时）后写入恢复时间，Java 端扫描到后计入统计并删除
+ */
+function writeResumedFile(requestData, timedOut) {
+  try {
+    const tempFile = join(PERMISSION_DIR, `.resumed-${requestData.requestId}.json.tmp`);
+    writeFileSync(tempFile, JSON.stringify(resumedFrame(requestData, timedOut)));
+    renameSync(tempFile, join(PERMISSION_DIR, `resumed-${requestData.requestId}.json`));
+  } catch (e) {
+    debugLog('RESUMED_WRITE_ERROR', `Failed to write resumed file: ${e.message}`);
+  }
+}
+
+/**
+ * 向 Java 进程请求权限（优先带内通道，其次套接字通道，最后退回文件通道）
  * @param {string} toolName - 工具名称
  * @param {Object} input - 工具参数
  * @returns {Promise<boolean>} - 是否允许
@@ -106,14 +321,6 @@ export async function requestPermissionFromJava(toolName, input) {
   debugLog('REQUEST_START', `Tool: ${toolName}`, { input });
 
   try {
-    // 列出当前目录中的文件（调试用）
-    try {
-      const existingFiles = readdirSync(PERMISSION_DIR);
-      debugLog('DIR_CONTENTS', `Files in permission dir (before request)`, { files: existingFiles });
-    } catch (e) {
-      debugLog('DIR_ERROR', `Cannot read permission dir: ${e.message}`);
-    }
-
     // 对于某些明显的危险操作，直接拒绝
     const dangerousPatterns = [
       '/etc/',
@@ -139,86 +346,89 @@ export async function requestPermissionFromJava(toolName, input) {
     const requestId = `${Date.now()}-${Math.random().toString(36).substring(7)}`;
     debugLog('REQUEST_ID', `Generated request ID: ${requestId}`);
 
-    // 创建请求文件
-    const requestFile = join(PERMISSION_DIR, `request-${requestId}.json`);
-    const responseFile = join(PERMISSION_DIR, `response-${requestId}.json`);
+    // 等待决定最多60秒——需要略长于 IDE 前端的超时时间，避免 Node 先于前端超时
+    const timeout = 60000;
 
     const requestData = {
       requestId,
       toolName,
       inputs: input,
-      timestamp: new Date().toISOString()
+      timestamp: new Date().toISOString(),
+      sentAt: Date.now(),
+      // Java 端按项目根目录查找规则和记住的决定
+      cwd: getProjectRoot(),
+      // 所属项目的路由键，套接字和文件通道共用一个 IDE 级监听，据此把弹窗送回发起请求的窗口
+      route: PERMISSION_ROUTE || undefined
     };
 
+    const inBandResult = await requestInBand(requestData, requestStartTime + timeout);
+    if (inBandResult !== null) {
+      debugLog('RESPONSE_PARSED', `Decision received in-band`, { allow: inBandResult, elapsed: `${Date.now() - requestStartTime}ms` });
+      return inBandResult;
+    }
+
+    const socketResult = await requestViaSocket(requestData, requestStartTime + timeout);
+    if (socketResult !== null) {
+      debugLog('RESPONSE_PARSED', `Decision received over socket`, { allow: socketResult, elapsed: `${Date.now() - requestStartTime}ms` });
+      return socketResult;
+    }
+    debugLog('SOCKET_UNAVAILABLE', `Falling back to file channel`);
+
+    // 列出当前目录中的文件（调试用）
+    try {
+      const existingFiles = readdirSync(PERMISSION_DIR);
+      debugLog('DIR_CONTENTS', `Files in permission dir (before request)`, { files: existingFiles });
+    } catch (e) {
+      debugLog('DIR_ERROR', `Cannot read permission dir: ${e.message}`);
+    }
+
+    // 创建请求文件
+    const requestFile = join(PERMISSION_DIR, `request-${requestId}.json`);
+    const responseFile = join(PERMISSION_DIR, `response-${requestId}.json`);
+
     debugLog('FILE_WRITE', `Writing request file`, { requestFile, responseFile });
 
     try {
-      writeFileSync(requestFile, JSON.stringify(requestData, null, 2));
+      // 先写临时文件再重命名，Java 端收到通知时读到的一定是完整请求，无需等待写入稳定
+      const tempFile = join(PERMISSION_DIR, `.request-${requestId}.json.tmp`);
+      writeFileSync(tempFile, JSON.stringify(requestData, null, 2));
+      renameSync(tempFile, requestFile);
       debugLog('FILE_WRITE_OK', `Request file written successfully`);
-
-      // 验证文件是否确实创建
-      if (existsSync(requestFile)) {
-        debugLog('FILE_VERIFY', `Request file exists after write`);
-      } else {
-        debugLog('FILE_VERIFY_ERROR', `Request file does NOT exist after write!`);
-      }
     } catch (writeError) {
       debugLog('FILE_WRITE_ERROR', `Failed to write request file: ${writeError.message}`);
       return false;
     }
 
-    // 等待响应文件（最多60秒）——需要略长于 IDE 前端的超时时间，避免 Node 先于前端超时
-    const timeout = 60000;
-    let pollCount = 0;
-    const pollInterval = 100;
-
     debugLog('WAIT_START', `Starting to wait for response (timeout: ${timeout}ms)`);
 
-    while (Date.now() - requestStartTime < timeout) {
-      await new Promise(resolve => setTimeout(resolve, pollInterval));
-      pollCount++;
-
-      // 每5秒输出一次等待状态
-      if (pollCount % 50 === 0) {
-        const elapsed = Date.now() - requestStartTime;
-        debugLog('WAITING', `Still waiting for response`, { elapsed: `${elapsed}ms`, pollCount });
-
-        // 检查请求文件是否还存在（Java 应该会删除它）
-        const reqFileExists = existsSync(requestFile);
-        const respFileExists = existsSync(responseFile);
-        debugLog('FILE_STATUS', `File status check`, {
-          requestFileExists: reqFileExists,
-          responseFileExists: respFileExists
-        });
-      }
+    if (await waitForResponseFile(responseFile, requestStartTime + timeout)) {
+      debugLog('RESPONSE_FOUND', `Response file found!`);
+      try {
+        const responseContent = readFileSync(responseFile, 'utf-8');
+        debugLog('RESPONSE_CONTENT', `Raw response content: ${responseContent}`);
 
-      if (existsSync(responseFile)) {
-        debugLog('RESPONSE_FOUND', `Response file found!`);
+        const responseData = JSON.parse(responseContent);
+        const result = responseData.allow;
+        writeResumedFile(requestData, false);
+        debugLog('RESPONSE_PARSED', `Parsed response`, { allow: result, elapsed: `${Date.now() - requestStartTime}ms` });
+
+        // 清理响应文件
         try {
-          const responseContent = readFileSync(responseFile, 'utf-8');
-          debugLog('RESPONSE_CONTENT', `Raw response content: ${responseContent}`);
-
-          const responseData = JSON.parse(responseContent);
-          const result = responseData.allow;
-          debugLog('RESPONSE_PARSED', `Parsed response`, { allow: result, elapsed: `${Date.now() - requestStartTime}ms` });
-
-          // 清理响应文件
-          try {
-            unlinkSync(responseFile);
-            debugLog('FILE_CLEANUP', `Response file deleted`);
-          } catch (cleanupError) {
-            debugLog('FILE_CLEANUP_ERROR', `Failed to delete response file: ${cleanupError.message}`);
-          }
-
-          return result;
-        } catch (e) {
-          debugLog('RESPONSE_ERROR', `Error reading/parsing response: ${e.message}`);
-          return false;
+          unlinkSync(responseFile);
+          debugLog('FILE_CLEANUP', `Response file deleted`);
+        } catch (cleanupError) {
+          debugLog('FILE_CLEANUP_ERROR', `Failed to delete response file: ${cleanupError.message}`);
         }
+
+        return result;
+      } catch (e) {
+        debugLog('RESPONSE_ERROR', `Error reading/parsing response: ${e.message}`);
+        return false;
       }
     }
 
     // 超时，默认拒绝
+    writeResumedFile(requestData, true);
     const elapsed = Date.now() - requestStartTime;
     debugLog('TIMEOUT', `Timeout waiting for response`, { elapsed: `${elapsed}ms`, timeout: `${timeout}ms` });
 
@@ -3,6 +3,117 @@
  * 支持 Claude 和 Codex 两种 SDK
  */
 
+// 带内帧通道：Java 写完第一行参数 JSON 后保持 stdin 打开，后续每行是一个帧（如权限决定）
+const frameListeners = new Set();
+let frameChannelOpen = false;
+
+/**
+ * 带内帧通道是否可用
+ */
+export function isStdinFrameChannelOpen() {
+  return frameChannelOpen;
+}
+
+/**
+ * 订阅 stdin 帧，返回取消订阅函数
+ * @param {(frame: Object) => void} listener
+ */
+export function onStdinFrame(listener) {
+  frameListeners.add(listener);
+  return () => frameListeners.delete(listener);
+}
+
+/**
+ * 命令执行完毕后关闭帧通道，否则打开的 stdin 会让进程无法退出
+ */
+export function closeStdinFrameChannel() {
+  if (!frameChannelOpen) {
+    return;
+  }
+  frameChannelOpen = false;
+  frameListeners.clear();
+  process.stdin.destroy();
+}
+
+function dispatchFrame(line) {
+  if (!line.trim()) {
+    return;
+  }
+  let frame;
+  try {
+    frame = JSON.parse(line);
+  } catch (e) {
+    console.error('[STDIN_FRAME_ERROR]', e.message);
+    return;
+  }
+  frameListeners.forEach((listener) => listener(frame));
+}
+
+/**
+ * 行模式读取：第一行是参数 JSON，之后的行作为帧分发
+ */
+function readStdinLines(resolve) {
+  let buffer = '';
+  let paramsReceived = false;
+  const stdin = process.stdin;
+
+  stdin.setEncoding('utf8');
+
+  const timeout = setTimeout(() => {
+    if (!paramsReceived) {
+      paramsReceived = true;
+      resolve(null);
+    }
+  }, 5000);
+
+  stdin.on('data', (chunk) => {
+    buffer += chunk;
+    let newline;
+    while ((newline = buffer.indexOf('\n')) >= 0) {
+      const line = buffer.slice(0, newline);
+      buffer = buffer.slice(newline + 1);
+      if (paramsReceived) {
+        dispatchFrame(line);
+        continue;
+      }
+      paramsReceived = true;
+      clearTimeout(timeout);
+      try {
+        const parsed = line.trim() ? JSON.parse(line.trim()) : null;
+        frameChannelOpen = parsed !== null;
+        resolve(parsed);
+      } catch (e) {
+        console.error('[STDIN_PARSE_ERROR]', e.message);
+        resolve(null);
+      }
+    }
+  });
+
+  stdin.on('end', () => {
+    clearTimeout(timeout);
+    frameChannelOpen = false;
+    if (!paramsReceived) {
+      paramsReceived = true;
+      try {
+        resolve(buffer.trim() ? JSON.parse(buffer.trim()) : null);
+      } catch (e) {
+        console.error('[STDIN_PARSE_ERROR]', e.message);
+        resolve(null);
+      }
+    }
+  });
+
+  stdin.on('error', (err) => {
+    clearTimeout(timeout);
+    frameChannelOpen = false;
+    console.error('[STDIN_ERROR]', err.message);
+    if (!paramsReceived) {
+      paramsReceived = true;
+      resolve(null);
+    }
+  });
+}
+
 /**
  * 从 stdin 读取 JSON 数据
  * @param {string} provider - 'claude' 或 'codex'
@@ -15,6 +126,11 @@ export async function readStdinData(provider = 'claude') {
     return null;
   }
 
+  // 带内权限模式：stdin 保持打开，按行读取
+  if (provider === 'claude' && process.env.CLAUDE_PERMISSION_INBAND === 'true') {
+    return new Promise((resolve) => readStdinLines(resolve));
+  }
+
   return new Promise((resolve) => {
     let data = '';
     const stdin = process.stdin;
@@ -1,16 +1,32 @@
 package com.github.claudecodegui;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import com.github.claudecodegui.history.FileFingerprint;
+import com.github.claudecodegui.history.HistorySearchService;
+import com.github.claudecodegui.history.HistoryStorage;
+import com.github.claudecodegui.history.JsonlChunkParser;
+import com.github.claudecodegui.history.SearchIndexSegment;
+import com.github.claudecodegui.history.SessionArchive;
+import com.github.claudecodegui.history.SessionCache;
+import com.github.claudecodegui.history.SessionDirectoryWatcher;
+import com.github.claudecodegui.history.SessionIndex;
+import com.github.claudecodegui.history.SessionLineScanner;
+import com.github.claudecodegui.history.SessionUsage;
+import com.github.claudecodegui.history.UsageRollupStore;
 import com.github.claudecodegui.util.PathUtils;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Claude本地历史记录读取器
@@ -24,6 +40,11 @@ public class ClaudeHistoryReader {
     private static final Path PROJECTS_DIR = CLAUDE_DIR.resolve("projects");
 
     private final Gson gson = new Gson();
+    private final JsonlChunkParser jsonlParser = new JsonlChunkParser();
+
+    public ClaudeHistoryReader() {
+        HistoryStorage.deleteObsoleteIndexFiles();
+    }
 
     /**
      * 历史记录条目
@@ -204,106 +225,332 @@ public class ClaudeHistoryReader {
             return sessions;
         }
 
-        // 读取项目目录下所有 .jsonl 文件
-        Map<String, List<ConversationMessage>> sessionMessagesMap = new HashMap<>();
+        // 通过持久化索引获取每个会话的摘要，只有新增或变化的文件才重新扫描
+        SessionIndex index = SessionIndex.forProjectDir(projectDir);
+        Set<String> fileNames = new HashSet<>();
+        int rescanned = 0;
+        int appended = 0;
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(projectDir)) {
+            files = stream.filter(path -> path.toString().endsWith(".jsonl")).collect(Collectors.toList());
+        }
 
-        Files.list(projectDir)
-            .filter(path -> path.toString().endsWith(".jsonl"))
-            .filter(path -> {
-                try {
-                    return Files.size(path) > 0;
-                } catch (IOException e) {
-                    return false;
+        for (Path path : files) {
+            String fileName = path.getFileName().toString();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attrs.size() == 0) {
+                    continue;
                 }
-            })
-            .forEach(path -> {
-                try (BufferedReader reader = Files.newBufferedReader(path)) {
-                    // 从文件名提取 sessionId
-                    String fileName = path.getFileName().toString();
-                    String sessionId = fileName.substring(0, fileName.lastIndexOf(".jsonl"));
-
-                    List<ConversationMessage> messages = new ArrayList<>();
-                    String line;
-
-                    while ((line = reader.readLine()) != null) {
-                        if (line.trim().isEmpty()) continue;
-
-                        try {
-                            ConversationMessage msg = gson.fromJson(line, ConversationMessage.class);
-                            if (msg != null) {
-                                messages.add(msg);
-                            }
-                        } catch (Exception e) {
-                            // 跳过解析失败的行
-                        }
-                    }
+                fileNames.add(fileName);
 
-                    if (!messages.isEmpty()) {
-                        sessionMessagesMap.put(sessionId, messages);
-                    }
+                FileFingerprint.Change change = refreshIndexEntry(index, path, attrs);
+                if (change == FileFingerprint.Change.APPENDED) {
+                    appended++;
+                } else if (change == FileFingerprint.Change.REWRITTEN) {
+                    rescanned++;
+                }
 
-                } catch (Exception e) {
-                    System.err.println("读取对话文件失败: " + path + " - " + e.getMessage());
+                SessionIndex.Entry entry = index.get(fileName);
+                if (entry.isValid()) {
+                    sessions.add(toSessionInfo(fileName, entry));
                 }
-            });
+            } catch (Exception e) {
+                System.err.println("读取对话文件失败: " + path + " - " + e.getMessage());
+            }
+        }
 
-        // 为每个会话生成 SessionInfo
-        for (Map.Entry<String, List<ConversationMessage>> entry : sessionMessagesMap.entrySet()) {
-            String sessionId = entry.getKey();
-            List<ConversationMessage> messages = entry.getValue();
+        // 已归档的会话直接使用索引中保留的摘要
+        SessionArchive archive = SessionArchive.forProjectDir(projectDir);
+        int archived = 0;
+        for (String fileName : archive.fileNames()) {
+            if (fileNames.contains(fileName)) {
+                continue;
+            }
+            try {
+                SessionIndex.Entry entry = index.get(fileName);
+                if (entry == null) {
+                    entry = scanArchivedSession(archive, fileName);
+                    index.put(fileName, entry);
+                }
+                fileNames.add(fileName);
+                archived++;
+                if (entry.isValid()) {
+                    sessions.add(toSessionInfo(fileName, entry));
+                }
+            } catch (Exception e) {
+                System.err.println("读取归档会话失败: " + fileName + " - " + e.getMessage());
+            }
+        }
 
-            if (messages.isEmpty()) continue;
+        index.retainOnly(fileNames);
+        index.save();
+        System.out.println("[ClaudeHistoryReader] Indexed " + fileNames.size() + " session files, rescanned " + rescanned
+            + ", tail-parsed " + appended + ", archived " + archived);
 
-            // 生成摘要：找到第一条非 meta 的用户消息
-            String summary = generateSummary(messages);
+        // 按最后更新时间倒序排序（时间相同按会话 ID，归档前后顺序一致）
+        sessions.sort(Comparator.comparingLong((SessionInfo session) -> session.lastTimestamp).reversed()
+            .thenComparing(session -> session.sessionId));
 
-            // 获取最后一条消息的时间戳
-            long lastTimestamp = 0;
-            for (ConversationMessage msg : messages) {
-                if (msg.timestamp != null) {
-                    try {
-                        long ts = parseTimestamp(msg.timestamp);
-                        if (ts > lastTimestamp) {
-                            lastTimestamp = ts;
-                        }
-                    } catch (Exception e) {
-                        // 忽略无效的时间戳
+        return sessions;
+    }
+
+    /**
+     * 会话列表的增量更新
+     */
+    public static class SessionUpdate {
+        // 为 true 时 upserted 是完整列表，需要整体替换
+        public boolean full;
+        public List<SessionInfo> upserted = new ArrayList<>();
+        public List<String> removed = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return !full && upserted.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    /**
+     * 获取项目会话目录（不保证存在）
+     */
+    public Path getProjectSessionsDir(String projectPath) {
+        return PROJECTS_DIR.resolve(PathUtils.sanitizePath(projectPath));
+    }
+
+    /**
+     * 只刷新发生变化的会话文件，返回需要推送给前端的行
+     *
+     * @param fileNames 变化的会话文件名；包含 SessionDirectoryWatcher.ALL_FILES 时重新读取完整列表
+     */
+    public SessionUpdate readSessionUpdates(String projectPath, Set<String> fileNames) throws IOException {
+        SessionUpdate update = new SessionUpdate();
+        if (fileNames.contains(SessionDirectoryWatcher.ALL_FILES)) {
+            update.full = true;
+            update.upserted = readProjectSessions(projectPath);
+            return update;
+        }
+
+        Path projectDir = getProjectSessionsDir(projectPath);
+        SessionIndex index = SessionIndex.forProjectDir(projectDir);
+        SessionArchive archive = SessionArchive.forProjectDir(projectDir);
+        for (String fileName : fileNames) {
+            Path path = projectDir.resolve(fileName);
+            String sessionId = fileName.substring(0, fileName.lastIndexOf(".jsonl"));
+            try {
+                BasicFileAttributes attrs = Files.isRegularFile(path)
+                    ? Files.readAttributes(path, BasicFileAttributes.class)
+                    : null;
+                if ((attrs == null || attrs.size() == 0) && archive.contains(fileName) && index.get(fileName) != null) {
+                    // 文件被归档（或还原后再次归档），摘要保留在索引中
+                    SessionIndex.Entry entry = index.get(fileName);
+                    if (entry.isValid()) {
+                        update.upserted.add(toSessionInfo(fileName, entry));
                     }
+                    continue;
+                }
+                if (attrs == null || attrs.size() == 0) {
+                    index.remove(fileName);
+                    update.removed.add(sessionId);
+                    continue;
                 }
+
+                refreshIndexEntry(index, path, attrs);
+                SessionIndex.Entry entry = index.get(fileName);
+                if (entry.isValid()) {
+                    update.upserted.add(toSessionInfo(fileName, entry));
+                } else {
+                    update.removed.add(sessionId);
+                }
+            } catch (Exception e) {
+                System.err.println("读取对话文件失败: " + path + " - " + e.getMessage());
             }
+        }
+        index.save();
+        return update;
+    }
 
-            // 过滤无效会话
-            if (!isValidSession(sessionId, summary, messages.size())) {
-                continue;
+    /**
+     * 按文件指纹刷新单个会话的索引项
+     *
+     * @return 文件相对于索引的变化类型
+     */
+    private FileFingerprint.Change refreshIndexEntry(SessionIndex index, Path path, BasicFileAttributes attrs) throws IOException {
+        String fileName = path.getFileName().toString();
+        long size = attrs.size();
+        long lastModified = attrs.lastModifiedTime().toMillis();
+
+        SessionIndex.Entry entry = index.get(fileName);
+        FileFingerprint.Change change = entry == null || entry.fingerprint == null
+            ? FileFingerprint.Change.REWRITTEN
+            : entry.fingerprint.classify(path, size, lastModified);
+        if (change == FileFingerprint.Change.APPENDED) {
+            // 会话仍在进行中：只解析新追加的行
+            index.put(fileName, extendSessionEntry(entry, path, size, lastModified));
+        } else if (change == FileFingerprint.Change.REWRITTEN) {
+            index.put(fileName, scanSessionFile(path, size, lastModified));
+        }
+        return change;
+    }
+
+    private static SessionInfo toSessionInfo(String fileName, SessionIndex.Entry entry) {
+        SessionInfo session = new SessionInfo();
+        session.sessionId = fileName.substring(0, fileName.lastIndexOf(".jsonl"));
+        session.title = entry.title;
+        session.messageCount = entry.messageCount;
+        session.lastTimestamp = entry.lastTimestamp;
+        session.firstTimestamp = entry.firstTimestamp;
+        return session;
+    }
+
+    /**
+     * 读取会话的全部原始消息（供会话加载直接使用，无需启动 Node.js 进程）
+     *
+     * @return 按文件顺序排列的不可修改消息列表（与 SessionCache 共享，消息对象只读）；会话文件不存在时返回 null
+     */
+    public List<JsonObject> readSessionMessages(String projectPath, String sessionId) throws IOException {
+        if (projectPath == null || projectPath.isEmpty() || sessionId == null || sessionId.isEmpty()) {
+            return null;
+        }
+
+        Path projectDir = PROJECTS_DIR.resolve(PathUtils.sanitizePath(projectPath));
+        Path sessionFile = projectDir.resolve(sessionId + ".jsonl");
+        if (!Files.isRegularFile(sessionFile)) {
+            // 已归档的会话按原修改时间还原到会话目录，之后可以正常继续对话
+            SessionArchive archive = SessionArchive.forProjectDir(projectDir);
+            if (!archive.contains(sessionFile.getFileName().toString())) {
+                return null;
             }
+            archive.restore(projectDir, sessionFile.getFileName().toString());
+        }
+
+        // 经由应用级 LRU 缓存读取，切换回刚离开的会话时无需重新解析
+        return SessionCache.getInstance().getMessages(sessionFile);
+    }
+
+    /**
+     * 索引中缺少归档会话的摘要时（如索引文件被删除），解压到临时目录重新扫描
+     * 生成的条目不带指纹，会话被还原后会重新扫描一次
+     */
+    private SessionIndex.Entry scanArchivedSession(SessionArchive archive, String fileName) throws IOException {
+        Path tempDir = Files.createTempDirectory("claude-archive");
+        Path tempFile = tempDir.resolve(fileName);
+        try {
+            try (InputStream in = archive.open(fileName)) {
+                Files.copy(in, tempFile);
+            }
+            JsonlChunkParser.Result<SessionLineScanner.Line> parsed = jsonlParser.parse(tempFile, SessionLineScanner::scan);
+            SessionIndex.Entry entry = new SessionIndex.Entry();
+            accumulateSessionEntry(entry, tempFile, parsed.items);
+            return entry;
+        } finally {
+            Files.deleteIfExists(tempFile);
+            Files.deleteIfExists(tempDir);
+        }
+    }
+
+    /**
+     * 归档项目中超过 olderThanDays 天未修改的会话
+     * 归档前先刷新这些会话的索引摘要和用量，之后列表和统计都不再扫描它们
+     *
+     * @return 归档结果；项目会话目录不存在时返回 null
+     */
+    public SessionArchive.Result archiveColdSessions(String projectPath, int olderThanDays) throws Exception {
+        if (projectPath == null || projectPath.isEmpty() || olderThanDays <= 0) {
+            return null;
+        }
+        Path projectDir = getProjectSessionsDir(projectPath);
+        if (!Files.isDirectory(projectDir)) {
+            return null;
+        }
 
-            SessionInfo session = new SessionInfo();
-            session.sessionId = sessionId;
-            session.title = summary;
-            session.messageCount = messages.size();
-            session.lastTimestamp = lastTimestamp;
-            session.firstTimestamp = lastTimestamp; // 简化处理
+        long start = System.nanoTime();
+        readProjectSessions(projectPath);
+        refreshUsageRollups(Collections.singletonList(projectDir));
 
-            sessions.add(session);
+        long cutoff = System.currentTimeMillis() - olderThanDays * 24L * 3600 * 1000;
+        SessionArchive.Result result = SessionArchive.forProjectDir(projectDir).archive(projectDir, cutoff);
+        if (result.archived > 0) {
+            System.out.println("[ClaudeHistoryReader] Archived " + result.archived + " sessions older than " + olderThanDays
+                + " days: " + result.originalBytes + " -> " + result.compressedBytes + " bytes, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
         }
+        return result;
+    }
 
-        // 按最后更新时间倒序排序
-        sessions.sort((a, b) -> Long.compare(b.lastTimestamp, a.lastTimestamp));
+    /**
+     * 完整扫描会话文件，生成索引条目
+     */
+    private SessionIndex.Entry scanSessionFile(Path path, long size, long lastModified) throws IOException {
+        JsonlChunkParser.Result<SessionLineScanner.Line> parsed = jsonlParser.parse(path, SessionLineScanner::scan);
 
-        return sessions;
+        SessionIndex.Entry entry = new SessionIndex.Entry();
+        accumulateSessionEntry(entry, path, parsed.items);
+        entry.fingerprint = FileFingerprint.capture(path, size, lastModified, parsed.endOffset);
+        return entry;
+    }
+
+    /**
+     * 从上次的偏移继续解析追加的行，并合并到已有的索引条目
+     * 合并结果与完整重新扫描一致：标题取第一条有效用户消息，时间戳取最小/最大值
+     */
+    private SessionIndex.Entry extendSessionEntry(SessionIndex.Entry previous, Path path, long size, long lastModified) throws IOException {
+        JsonlChunkParser.Result<SessionLineScanner.Line> parsed =
+            jsonlParser.parse(path, previous.fingerprint.offset, SessionLineScanner::scan);
+
+        SessionIndex.Entry entry = new SessionIndex.Entry();
+        entry.title = previous.title;
+        entry.messageCount = previous.messageCount;
+        entry.firstTimestamp = previous.firstTimestamp;
+        entry.lastTimestamp = previous.lastTimestamp;
+        accumulateSessionEntry(entry, path, parsed.items);
+        entry.fingerprint = FileFingerprint.capture(path, size, lastModified, parsed.endOffset);
+        return entry;
+    }
+
+    /**
+     * 将一批消息累加到索引条目，并重新计算标记位
+     */
+    private void accumulateSessionEntry(SessionIndex.Entry entry, Path path, List<SessionLineScanner.Line> messages) {
+        entry.messageCount += messages.size();
+
+        // 生成摘要：找到第一条非 meta 的用户消息
+        if (entry.title == null) {
+            entry.title = generateSummary(messages);
+        }
+
+        // 获取第一条和最后一条消息的时间戳
+        for (SessionLineScanner.Line msg : messages) {
+            if (msg.timestamp != null) {
+                long ts = parseTimestamp(msg.timestamp);
+                if (ts > 0 && (entry.firstTimestamp == 0 || ts < entry.firstTimestamp)) {
+                    entry.firstTimestamp = ts;
+                }
+                if (ts > entry.lastTimestamp) {
+                    entry.lastTimestamp = ts;
+                }
+            }
+        }
+
+        String fileName = path.getFileName().toString();
+        String sessionId = fileName.substring(0, fileName.lastIndexOf(".jsonl"));
+        entry.flags = 0;
+        if (sessionId.startsWith("agent-")) {
+            entry.flags |= SessionIndex.FLAG_AGENT;
+        }
+        // 过滤无效会话
+        if (isValidSession(sessionId, entry.title, entry.messageCount)) {
+            entry.flags |= SessionIndex.FLAG_VALID;
+        }
     }
 
     /**
      * 生成会话摘要
      */
-    private String generateSummary(List<ConversationMessage> messages) {
-        for (ConversationMessage msg : messages) {
-            if ("user".equals(msg.type) &&
-                (msg.isMeta == null || !msg.isMeta) &&
-                msg.message != null &&
-                msg.message.content != null) {
-
-                String text = extractTextFromContent(msg.message.content);
+    private String generateSummary(List<SessionLineScanner.Line> messages) {
+        for (SessionLineScanner.Line msg : messages) {
+            // 扫描器只为用户消息保留 content 中的文本
+            if ("user".equals(msg.type) && !msg.meta) {
+                String text = msg.text;
                 if (text != null && !text.isEmpty()) {
                     // 去除换行符并截断
                     text = text.replace("\n", " ").trim();
@@ -348,86 +595,6 @@ public class ClaudeHistoryReader {
         return true;
     }
 
-    /**
-     * 从 content 提取文本
-     */
-    private String extractTextFromContent(Object content) {
-        // 处理 String 类型
-        if (content instanceof String) {
-            return (String) content;
-        }
-        // 处理 List 类型（这是实际的格式）
-        else if (content instanceof List) {
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> contentList = (List<Map<String, Object>>) content;
-            StringBuilder sb = new StringBuilder();
-
-            // 遍历所有内容项
-            for (Map<String, Object> item : contentList) {
-                String type = (String) item.get("type");
-
-                // 处理文本类型
-                if ("text".equals(type)) {
-                    Object text = item.get("text");
-                    if (text instanceof String) {
-                        if (sb.length() > 0) {
-                            sb.append(" ");
-                        }
-                        sb.append((String) text);
-                    }
-                }
-                // 处理工具使用类型
-                else if ("tool_use".equals(type)) {
-                    Object name = item.get("name");
-                    if (name instanceof String && sb.length() == 0) {
-                        // 如果还没有文本内容，显示工具使用信息
-                        sb.append("[使用工具: ").append(name).append("]");
-                    }
-                }
-                // 可以根据需要添加其他类型的处理
-            }
-
-            String result = sb.toString().trim();
-            return result.isEmpty() ? null : result;
-        }
-        // 处理 com.google.gson.JsonArray 类型（从 Gson 解析）
-        else if (content instanceof com.google.gson.JsonArray) {
-            com.google.gson.JsonArray contentArray = (com.google.gson.JsonArray) content;
-            StringBuilder sb = new StringBuilder();
-
-            for (int i = 0; i < contentArray.size(); i++) {
-                com.google.gson.JsonElement element = contentArray.get(i);
-                if (element.isJsonObject()) {
-                    com.google.gson.JsonObject item = element.getAsJsonObject();
-
-                    // 获取类型
-                    String type = item.has("type") && !item.get("type").isJsonNull()
-                        ? item.get("type").getAsString()
-                        : null;
-
-                    // 处理文本类型
-                    if ("text".equals(type) && item.has("text") && !item.get("text").isJsonNull()) {
-                        if (sb.length() > 0) {
-                            sb.append(" ");
-                        }
-                        sb.append(item.get("text").getAsString());
-                    }
-                    // 处理工具使用类型
-                    else if ("tool_use".equals(type) && item.has("name") && !item.get("name").isJsonNull()) {
-                        if (sb.length() == 0) {
-                            sb.append("[使用工具: ").append(item.get("name").getAsString()).append("]");
-                        }
-                    }
-                }
-            }
-
-            String result = sb.toString().trim();
-            return result.isEmpty() ? null : result;
-        }
-
-        return null;
-    }
-
     /**
      * 解析时间戳（支持 ISO 8601 格式）
      */
@@ -500,21 +667,7 @@ public class ClaudeHistoryReader {
             return history;
         }
 
-        try (BufferedReader reader = Files.newBufferedReader(HISTORY_FILE)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    try {
-                        HistoryEntry entry = gson.fromJson(line, HistoryEntry.class);
-                        if (entry != null) {
-                            history.add(entry);
-                        }
-                    } catch (Exception e) {
-                        System.err.println("解析行失败: " + e.getMessage());
-                    }
-                }
-            }
-        }
+        history.addAll(jsonlParser.parse(HISTORY_FILE, line -> gson.fromJson(line, HistoryEntry.class)).items);
 
         // 按时间戳排序（最新的在前）
         history.sort((a, b) -> Long.compare(b.timestamp, a.timestamp));
@@ -701,41 +854,6 @@ public class ClaudeHistoryReader {
 
     // ==================== 统计功能相关代码 ====================
 
-    private static final Map<String, Map<String, Double>> MODEL_PRICING = new HashMap<>();
-    static {
-        Map<String, Double> opus = new HashMap<>();
-        opus.put("input", 15.0);
-        opus.put("output", 75.0);
-        opus.put("cacheWrite", 18.75);
-        opus.put("cacheRead", 1.50);
-        MODEL_PRICING.put("claude-opus-4", opus);
-
-        Map<String, Double> sonnet = new HashMap<>();
-        sonnet.put("input", 3.0);
-        sonnet.put("output", 15.0);
-        sonnet.put("cacheWrite", 3.75);
-        sonnet.put("cacheRead", 0.30);
-        MODEL_PRICING.put("claude-sonnet-4", sonnet);
-
-        Map<String, Double> haiku = new HashMap<>();
-        haiku.put("input", 0.8);
-        haiku.put("output", 4.0);
-        haiku.put("cacheWrite", 1.0);
-        haiku.put("cacheRead", 0.08);
-        MODEL_PRICING.put("claude-haiku-4", haiku);
-    }
-
-    private Map<String, Double> getModelPricing(String model) {
-        String modelLower = model.toLowerCase();
-        if (modelLower.contains("opus-4") || modelLower.contains("claude-opus-4")) {
-            return MODEL_PRICING.get("claude-opus-4");
-        } else if (modelLower.contains("haiku-4") || modelLower.contains("claude-haiku-4")) {
-            return MODEL_PRICING.get("claude-haiku-4");
-        }
-        // 默认使用 Sonnet 4
-        return MODEL_PRICING.get("claude-sonnet-4");
-    }
-
     /**
      * 获取项目目录名称 (移植自 VSCode 插件 getProjectFolderName)
      * 使用 PathUtils.sanitizePath() 实现跨平台兼容
@@ -750,6 +868,17 @@ public class ClaudeHistoryReader {
      * 获取当前项目的使用统计
      */
     public ProjectStatistics getProjectStatistics(String projectPath) {
+        return getProjectStatistics(projectPath, null, null);
+    }
+
+    /**
+     * 获取指定日期范围内的使用统计
+     *
+     * @param projectPath 项目路径，"all" 表示所有项目
+     * @param from 起始日期（含），null 表示不限
+     * @param to 结束日期（含），null 表示不限
+     */
+    public ProjectStatistics getProjectStatistics(String projectPath, LocalDate from, LocalDate to) {
         ProjectStatistics stats = new ProjectStatistics();
         stats.projectPath = projectPath;
         stats.projectName = projectPath.equals("all") ? "所有项目" : Paths.get(projectPath).getFileName().toString();
@@ -761,20 +890,14 @@ public class ClaudeHistoryReader {
         stats.lastUpdated = System.currentTimeMillis();
 
         try {
-            List<SessionSummary> allSessions = new ArrayList<>();
+            List<Path> projectDirs = new ArrayList<>();
 
             if ("all".equals(projectPath)) {
                 // 读取所有项目
                 if (Files.exists(PROJECTS_DIR)) {
-                    Files.list(PROJECTS_DIR)
-                        .filter(Files::isDirectory)
-                        .forEach(dir -> {
-                            try {
-                                allSessions.addAll(readSessionsFromDir(dir));
-                            } catch (Exception e) {
-                                System.err.println("Error reading dir " + dir + ": " + e.getMessage());
-                            }
-                        });
+                    try (Stream<Path> stream = Files.list(PROJECTS_DIR)) {
+                        stream.filter(Files::isDirectory).forEach(projectDirs::add);
+                    }
                 }
             } else {
                 // 读取特定项目
@@ -787,19 +910,39 @@ public class ClaudeHistoryReader {
                 Path dir2 = PROJECTS_DIR.resolve(folderName2);
                 
                 if (Files.exists(dir1)) {
-                    allSessions.addAll(readSessionsFromDir(dir1));
+                    projectDirs.add(dir1);
                 } else if (Files.exists(dir2)) {
-                    allSessions.addAll(readSessionsFromDir(dir2));
+                    projectDirs.add(dir2);
                 } else {
                     // 尝试在 history.jsonl 中查找项目对应的真实路径
                     // 暂时略过，假设路径正确
                 }
             }
 
-            stats.totalSessions = allSessions.size();
+            long start = System.nanoTime();
+            int refreshed = refreshUsageRollups(projectDirs);
+
+            // 只遍历日期范围内的预聚合桶，与会话数量无关
+            String fromDay = from != null ? from.toString() : null;
+            String toDay = to != null ? to.toString() : null;
+            LocalDate today = LocalDate.now();
+            StatisticsAccumulator accumulator = new StatisticsAccumulator(today);
+            String weeksStart = accumulator.lastWeekStart;
+            String todayKey = today.toString();
+
+            for (Path dir : projectDirs) {
+                UsageRollupStore store = UsageRollupStore.forProjectDir(dir);
+                store.visit(fromDay, toDay, accumulator::addBucket);
+                store.visit(weeksStart, todayKey, accumulator::addWeekBucket);
+                for (Map.Entry<String, SessionUsage> entry : store.recentSessions(fromDay, toDay, StatisticsAccumulator.MAX_RECENT_SESSIONS)) {
+                    accumulator.offerRecent(toSessionSummary(entry.getKey(), entry.getValue()));
+                }
+            }
 
             // 聚合数据
-            processSessions(allSessions, stats);
+            accumulator.finish(stats);
+            System.out.println("[ClaudeHistoryReader] Statistics for " + projectPath + ": " + projectDirs.size()
+                + " project(s), refreshed " + refreshed + " session files, " + (System.nanoTime() - start) / 1_000_000 + " ms");
 
             return stats;
 
@@ -809,212 +952,232 @@ public class ClaudeHistoryReader {
         }
     }
 
-    private List<SessionSummary> readSessionsFromDir(Path projectDir) {
-        List<SessionSummary> sessions = new ArrayList<>();
-        Set<String> processedHashes = new HashSet<>();
-
-        try {
-            Files.list(projectDir)
-                .filter(p -> p.toString().endsWith(".jsonl"))
-                .forEach(p -> {
-                    SessionSummary session = parseSessionFile(p, processedHashes);
-                    if (session != null) {
-                        sessions.add(session);
-                    }
+    /**
+     * 检查项目目录下的所有会话文件，将新增或变化的文件增量解析后写入预聚合存储
+     * 文件检查和解析在共享的历史解析线程池上并行执行
+     *
+     * @return 重新解析的文件数
+     */
+    private int refreshUsageRollups(List<Path> projectDirs) throws Exception {
+        List<Path> files = new ArrayList<>();
+        Map<Path, Set<String>> namesByDir = new HashMap<>();
+        for (Path dir : projectDirs) {
+            Set<String> names = new HashSet<>();
+            try (Stream<Path> stream = Files.list(dir)) {
+                stream.filter(p -> p.toString().endsWith(".jsonl")).forEach(p -> {
+                    files.add(p);
+                    names.add(p.getFileName().toString());
                 });
-        } catch (IOException e) {
-            e.printStackTrace();
+            } catch (Exception e) {
+                System.err.println("Error reading dir " + dir + ": " + e.getMessage());
+                continue;
+            }
+            // 已归档会话的用量保留在存储中
+            names.addAll(SessionArchive.forProjectDir(dir).fileNames());
+            namesByDir.put(dir, names);
         }
-        return sessions;
-    }
 
-    private SessionSummary parseSessionFile(Path filePath, Set<String> processedHashes) {
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            UsageData usage = new UsageData();
-            double totalCost = 0;
-            String model = "unknown";
-            long firstTimestamp = 0;
-            String summary = null;
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue;
-                
-                try {
-                    ConversationMessage msg = gson.fromJson(line, ConversationMessage.class);
-                    
-                    // 记录时间戳
-                    if (firstTimestamp == 0 && msg.timestamp != null) {
-                        firstTimestamp = parseTimestamp(msg.timestamp);
-                    }
-
-                    // 查找 summary
-                    if ("summary".equals(msg.type) && msg.message != null && msg.message.content instanceof String) { // summary usually in separate field in raw json, but here mapping might be tricky. 
-                        // Wait, ConversationMessage structure defined earlier:
-                        // public String type;
-                        // public Message message;
-                        // In VSCode: data.summary is at top level. 
-                        // My ConversationMessage doesn't have 'summary' field at top level.
-                        // I need to check the raw JSON structure or use a generic map for flexible parsing.
-                        // Let's use a flexible parser for this line to capture 'summary' field.
-                        Map<String, Object> rawMap = gson.fromJson(line, Map.class);
-                        if (rawMap.containsKey("summary")) {
-                            Object s = rawMap.get("summary");
-                            if (s instanceof String) summary = (String) s;
-                        }
-                    }
+        int refreshed = JsonlChunkParser.getSharedPool().submit(() ->
+            files.parallelStream().mapToInt(file -> refreshSessionUsage(file) ? 1 : 0).sum()
+        ).get();
 
-                    // 查找 usage
-                    if ("assistant".equals(msg.type) && msg.message != null && msg.message.usage != null) {
-                        ConversationMessage.Usage u = msg.message.usage;
-                        
-                        // 简单去重 (TODO: 完善去重逻辑，这里假设每行都是唯一的或者是流式的最后一行)
-                        // VSCode logic: message.id + requestId. My ConversationMessage missing id/requestId.
-                        // Assuming simpler accumulation for now or just taking valid chunks.
-                        // Actually, jsonl often contains stream chunks or final message.
-                        // If we sum up everything, we might double count if structure is complex.
-                        // But usually 'usage' is only present in the final message of a turn or specific events.
-                        
-                        if (u.input_tokens > 0 || u.output_tokens > 0 || u.cache_creation_input_tokens > 0 || u.cache_read_input_tokens > 0) {
-                             usage.inputTokens += u.input_tokens;
-                             usage.outputTokens += u.output_tokens;
-                             usage.cacheWriteTokens += u.cache_creation_input_tokens;
-                             usage.cacheReadTokens += u.cache_read_input_tokens;
-                             
-                             if (msg.message.role != null && model.equals("unknown")) {
-                                 // message.model is needed. My Message class doesn't have model.
-                                 // It's usually at top level or inside message?
-                                 // VSCode: message.model
-                                 Map<String, Object> rawMap = gson.fromJson(line, Map.class);
-                                 if (rawMap.containsKey("message")) {
-                                     Map m = (Map) rawMap.get("message");
-                                     if (m.containsKey("model")) {
-                                         model = (String) m.get("model");
-                                     }
-                                 }
-                             }
-                             
-                             // Calculate cost
-                             Map<String, Double> pricing = getModelPricing(model);
-                             double cost = (u.input_tokens * pricing.get("input") +
-                                          u.output_tokens * pricing.get("output") +
-                                          u.cache_creation_input_tokens * pricing.get("cacheWrite") +
-                                          u.cache_read_input_tokens * pricing.get("cacheRead")) / 1_000_000.0;
-                             totalCost += cost;
-                        }
-                    }
-                } catch (Exception e) {
-                    // ignore
-                }
-            }
+        for (Map.Entry<Path, Set<String>> entry : namesByDir.entrySet()) {
+            UsageRollupStore store = UsageRollupStore.forProjectDir(entry.getKey());
+            store.retainOnly(entry.getValue());
+            store.save();
+        }
+        return refreshed;
+    }
 
-            usage.totalTokens = usage.inputTokens + usage.outputTokens + usage.cacheWriteTokens + usage.cacheReadTokens;
-            
-            if (usage.totalTokens == 0) return null;
+    // 最近修改过的会话才保留去重集合，以便继续增量解析
+    private static final long DEDUP_STATE_RETAIN_MILLIS = 24L * 3600 * 1000;
 
-            SessionSummary session = new SessionSummary();
-            session.sessionId = filePath.getFileName().toString().replace(".jsonl", "");
-            session.timestamp = firstTimestamp > 0 ? firstTimestamp : System.currentTimeMillis();
-            session.model = model;
-            session.usage = usage;
-            session.cost = totalCost;
-            session.summary = summary;
-            
-            return session;
+    /**
+     * 刷新单个会话文件的用量：追加时只解析新增的行，重写时完整解析
+     *
+     * @return 是否重新解析了该文件
+     */
+    private boolean refreshSessionUsage(Path filePath) {
+        try {
+            Path key = filePath.toAbsolutePath().normalize();
+            String fileName = key.getFileName().toString();
+            UsageRollupStore store = UsageRollupStore.forProjectDir(key.getParent());
+
+            BasicFileAttributes attrs = Files.readAttributes(key, BasicFileAttributes.class);
+            long size = attrs.size();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+
+            SessionUsage previous = store.get(fileName);
+            FileFingerprint.Change change = previous == null
+                ? FileFingerprint.Change.REWRITTEN
+                : previous.fingerprint.classify(key, size, lastModified);
+            if (change == FileFingerprint.Change.UNCHANGED) {
+                return false;
+            }
+            if (change == FileFingerprint.Change.APPENDED && !previous.canExtend()) {
+                // 从磁盘加载的状态没有去重集合，完整重新解析一次
+                change = FileFingerprint.Change.REWRITTEN;
+            }
 
+            // 追加：在旧状态的副本上继续累加；重写：从头开始
+            SessionUsage next = change == FileFingerprint.Change.APPENDED ? previous.copy() : new SessionUsage();
+            long fromOffset = change == FileFingerprint.Change.APPENDED ? previous.fingerprint.offset : 0;
+            JsonlChunkParser.Result<SessionLineScanner.Line> parsed = jsonlParser.parse(key, fromOffset, SessionLineScanner::scan);
+            next.accumulate(parsed.items);
+            next.fingerprint = FileFingerprint.capture(key, size, lastModified, parsed.endOffset);
+            if (System.currentTimeMillis() - lastModified > DEDUP_STATE_RETAIN_MILLIS) {
+                // 长时间未修改的会话很少再追加，释放去重集合以控制内存
+                next.releaseDedupState();
+            }
+            store.update(fileName, next);
+            return true;
         } catch (IOException e) {
-            return null;
+            System.err.println("[ClaudeHistoryReader] Failed to read usage from " + filePath + ": " + e.getMessage());
+            return false;
         }
     }
 
-    private void processSessions(List<SessionSummary> sessions, ProjectStatistics stats) {
-        Map<String, DailyUsage> dailyMap = new HashMap<>();
-        Map<String, ModelUsage> modelMap = new HashMap<>();
+    private static SessionSummary toSessionSummary(String fileName, SessionUsage state) {
+        UsageData usage = new UsageData();
+        usage.inputTokens = (int) state.inputTokens;
+        usage.outputTokens = (int) state.outputTokens;
+        usage.cacheWriteTokens = (int) state.cacheWriteTokens;
+        usage.cacheReadTokens = (int) state.cacheReadTokens;
+        usage.totalTokens = usage.inputTokens + usage.outputTokens + usage.cacheWriteTokens + usage.cacheReadTokens;
+
+        SessionSummary session = new SessionSummary();
+        session.sessionId = fileName.replace(".jsonl", "");
+        session.timestamp = state.timestamp;
+        session.model = state.model;
+        session.usage = usage;
+        session.cost = state.cost;
+        session.summary = state.summary;
+        return session;
+    }
+
+    /**
+     * 从预聚合桶组装 ProjectStatistics
+     * 工作量只与日期数 × 模型数以及返回的最近会话数有关
+     */
+    private static class StatisticsAccumulator {
+        // 最近会话列表最多返回的条数
+        static final int MAX_RECENT_SESSIONS = 200;
+        // 按时间倒序，时间相同时按 sessionId 排序，保证多个项目合并时结果稳定
+        private static final Comparator<SessionSummary> RECENT_FIRST =
+            Comparator.comparingLong((SessionSummary s) -> s.timestamp).reversed()
+                .thenComparing(s -> s.sessionId);
+
+        // 周对比的日期范围（按自然日）：本周为最近 7 天（含今天），上周为再往前 7 天
+        final String currentWeekStart;
+        final String lastWeekStart;
+
+        final UsageData totalUsage = new UsageData();
+        int sessionCount = 0;
+        double estimatedCost = 0;
+        final Map<String, DailyUsage> dailyMap = new HashMap<>();
+        final Map<String, ModelUsage> modelMap = new HashMap<>();
+        final WeeklyComparison.WeekData currentWeek = new WeeklyComparison.WeekData();
+        final WeeklyComparison.WeekData lastWeek = new WeeklyComparison.WeekData();
+        // 堆顶为当前保留的最旧会话
+        final PriorityQueue<SessionSummary> recent = new PriorityQueue<>(RECENT_FIRST.reversed());
+
+        StatisticsAccumulator(LocalDate today) {
+            this.currentWeekStart = today.minusDays(6).toString();
+            this.lastWeekStart = today.minusDays(13).toString();
+        }
 
-        // 时间范围
-        long now = System.currentTimeMillis();
-        long oneWeekAgo = now - 7L * 24 * 3600 * 1000;
-        long twoWeeksAgo = now - 14L * 24 * 3600 * 1000;
-        
-        WeeklyComparison.WeekData currentWeek = new WeeklyComparison.WeekData();
-        WeeklyComparison.WeekData lastWeek = new WeeklyComparison.WeekData();
+        void addBucket(String day, String model, UsageRollupStore.Bucket bucket) {
+            int totalTokens = (int) bucket.totalTokens();
 
-        for (SessionSummary session : sessions) {
             // 1. 总计
-            stats.totalUsage.inputTokens += session.usage.inputTokens;
-            stats.totalUsage.outputTokens += session.usage.outputTokens;
-            stats.totalUsage.cacheWriteTokens += session.usage.cacheWriteTokens;
-            stats.totalUsage.cacheReadTokens += session.usage.cacheReadTokens;
-            stats.totalUsage.totalTokens += session.usage.totalTokens;
-            stats.estimatedCost += session.cost;
+            sessionCount += bucket.sessions;
+            totalUsage.inputTokens += (int) bucket.inputTokens;
+            totalUsage.outputTokens += (int) bucket.outputTokens;
+            totalUsage.cacheWriteTokens += (int) bucket.cacheWriteTokens;
+            totalUsage.cacheReadTokens += (int) bucket.cacheReadTokens;
+            totalUsage.totalTokens += totalTokens;
+            estimatedCost += bucket.cost;
 
             // 2. 日统计
-            String dateStr = String.format("%tF", new Date(session.timestamp));
-            DailyUsage daily = dailyMap.computeIfAbsent(dateStr, k -> {
+            DailyUsage daily = dailyMap.computeIfAbsent(day, k -> {
                 DailyUsage d = new DailyUsage();
                 d.date = k;
                 d.usage = new UsageData();
                 d.modelsUsed = new ArrayList<>();
                 return d;
             });
-            daily.sessions++;
-            daily.cost += session.cost;
-            daily.usage.inputTokens += session.usage.inputTokens;
-            daily.usage.outputTokens += session.usage.outputTokens;
-            // ... others
-            if (!daily.modelsUsed.contains(session.model)) {
-                daily.modelsUsed.add(session.model);
+            daily.sessions += bucket.sessions;
+            daily.cost += bucket.cost;
+            daily.usage.inputTokens += (int) bucket.inputTokens;
+            daily.usage.outputTokens += (int) bucket.outputTokens;
+            daily.usage.cacheWriteTokens += (int) bucket.cacheWriteTokens;
+            daily.usage.cacheReadTokens += (int) bucket.cacheReadTokens;
+            daily.usage.totalTokens += totalTokens;
+            if (!daily.modelsUsed.contains(model)) {
+                daily.modelsUsed.add(model);
             }
 
             // 3. 模型统计
-            ModelUsage modelStat = modelMap.computeIfAbsent(session.model, k -> {
+            ModelUsage modelStat = modelMap.computeIfAbsent(model, k -> {
                 ModelUsage m = new ModelUsage();
                 m.model = k;
                 return m;
             });
-            modelStat.sessionCount++;
-            modelStat.totalCost += session.cost;
-            modelStat.totalTokens += session.usage.totalTokens;
-            modelStat.inputTokens += session.usage.inputTokens;
-            modelStat.outputTokens += session.usage.outputTokens;
-            modelStat.cacheCreationTokens += session.usage.cacheWriteTokens;
-            modelStat.cacheReadTokens += session.usage.cacheReadTokens;
-
-            // 4. 周对比
-            if (session.timestamp > oneWeekAgo) {
-                currentWeek.sessions++;
-                currentWeek.cost += session.cost;
-                currentWeek.tokens += session.usage.totalTokens;
-            } else if (session.timestamp > twoWeeksAgo) {
-                lastWeek.sessions++;
-                lastWeek.cost += session.cost;
-                lastWeek.tokens += session.usage.totalTokens;
-            }
+            modelStat.sessionCount += bucket.sessions;
+            modelStat.totalCost += bucket.cost;
+            modelStat.totalTokens += totalTokens;
+            modelStat.inputTokens += (int) bucket.inputTokens;
+            modelStat.outputTokens += (int) bucket.outputTokens;
+            modelStat.cacheCreationTokens += (int) bucket.cacheWriteTokens;
+            modelStat.cacheReadTokens += (int) bucket.cacheReadTokens;
         }
 
-        // Finalize Lists
-        stats.dailyUsage = new ArrayList<>(dailyMap.values());
-        stats.dailyUsage.sort(Comparator.comparing(d -> d.date));
-
-        stats.byModel = new ArrayList<>(modelMap.values());
-        stats.byModel.sort((a, b) -> Double.compare(b.totalCost, a.totalCost));
+        /**
+         * 4. 周对比（不受查询日期范围影响，始终相对今天）
+         */
+        void addWeekBucket(String day, String model, UsageRollupStore.Bucket bucket) {
+            WeeklyComparison.WeekData week = day.compareTo(currentWeekStart) >= 0 ? currentWeek : lastWeek;
+            week.sessions += bucket.sessions;
+            week.cost += bucket.cost;
+            week.tokens += (int) bucket.totalTokens();
+        }
 
-        stats.sessions = sessions;
-        stats.sessions.sort((a, b) -> Long.compare(b.timestamp, a.timestamp));
-        if (stats.sessions.size() > 200) {
-            stats.sessions = stats.sessions.subList(0, 200);
+        void offerRecent(SessionSummary session) {
+            recent.offer(session);
+            if (recent.size() > MAX_RECENT_SESSIONS) {
+                recent.poll();
+            }
         }
 
-        // Calculate Trends
-        stats.weeklyComparison.currentWeek = currentWeek;
-        stats.weeklyComparison.lastWeek = lastWeek;
-        stats.weeklyComparison.trends = new WeeklyComparison.Trends();
-        stats.weeklyComparison.trends.sessions = calculateTrend(currentWeek.sessions, lastWeek.sessions);
-        stats.weeklyComparison.trends.cost = calculateTrend(currentWeek.cost, lastWeek.cost);
-        stats.weeklyComparison.trends.tokens = calculateTrend(currentWeek.tokens, lastWeek.tokens);
+        void finish(ProjectStatistics stats) {
+            stats.totalSessions = sessionCount;
+            stats.totalUsage = totalUsage;
+            stats.estimatedCost = estimatedCost;
+
+            // Finalize Lists
+            for (DailyUsage daily : dailyMap.values()) {
+                Collections.sort(daily.modelsUsed);
+            }
+            stats.dailyUsage = new ArrayList<>(dailyMap.values());
+            stats.dailyUsage.sort(Comparator.comparing(d -> d.date));
+
+            stats.byModel = new ArrayList<>(modelMap.values());
+            stats.byModel.sort((a, b) -> Double.compare(b.totalCost, a.totalCost));
+
+            stats.sessions = new ArrayList<>(recent);
+            stats.sessions.sort(RECENT_FIRST);
+
+            // Calculate Trends
+            stats.weeklyComparison.currentWeek = currentWeek;
+            stats.weeklyComparison.lastWeek = lastWeek;
+            stats.weeklyComparison.trends = new WeeklyComparison.Trends();
+            stats.weeklyComparison.trends.sessions = calculateTrend(currentWeek.sessions, lastWeek.sessions);
+            stats.weeklyComparison.trends.cost = calculateTrend(currentWeek.cost, lastWeek.cost);
+            stats.weeklyComparison.trends.tokens = calculateTrend(currentWeek.tokens, lastWeek.tokens);
+        }
     }
 
-    private double calculateTrend(double current, double last) {
+    private static double calculateTrend(double current, double last) {
         if (last == 0) return 0;
         return ((current - last) / last) * 100;
     }
@@ -1036,9 +1199,16 @@ public class ClaudeHistoryReader {
                     return gson.toJson(ApiResponse.success(stats));
 
                 case "/search":
+                    // 通过全文索引搜索 history.jsonl 和所有会话记录
                     String query = params.get("q");
-                    List<HistoryEntry> historyForSearch = readHistory();
-                    List<HistoryEntry> searchResults = searchHistory(historyForSearch, query);
+                    HistorySearchService searchService = HistorySearchService.getInstance();
+                    List<HistorySearchService.Result> searchResults = new ArrayList<>();
+                    for (SearchIndexSegment.Hit hit : searchService.search(query, 100)) {
+                        HistorySearchService.Result result = searchService.toResult(hit, query, params.get("path"));
+                        if (result != null) {
+                            searchResults.add(result);
+                        }
+                    }
                     Map<String, Object> searchResponse = new HashMap<>();
                     searchResponse.put("query", query);
                     searchResponse.put("count", searchResults.size());
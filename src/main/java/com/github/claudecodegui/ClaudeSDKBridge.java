@@ -9,6 +9,7 @@ import com.github.claudecodegui.bridge.EnvironmentConfigurator;
 import com.github.claudecodegui.bridge.NodeDetector;
 import com.github.claudecodegui.bridge.ProcessManager;
 import com.github.claudecodegui.model.NodeDetectionResult;
+import com.github.claudecodegui.permission.PermissionMetrics;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -20,6 +21,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Claude Agent SDK 桥接类
@@ -45,6 +47,21 @@ public class ClaudeSDKBridge {
         void onComplete(SDKResult result);
     }
 
+    /**
+     * 带内权限请求处理器（由所属窗口设置）
+     * 设置后 Node 端在 stdout 输出 [PERMISSION_REQUEST] 帧，决定通过 reply 写回 stdin
+     */
+    public interface PermissionRequestHandler {
+        /**
+         * @param channelId 发起请求的会话通道
+         * @param request   {requestId, toolName, inputs}
+         * @param reply     得出决定后调用一次
+         */
+        void onPermissionRequest(String channelId, JsonObject request, Consumer<Boolean> reply);
+    }
+
+    private volatile PermissionRequestHandler permissionRequestHandler;
+
     /**
      * SDK 响应结果
      */
@@ -61,6 +78,20 @@ public class ClaudeSDKBridge {
         }
     }
 
+    /**
+     * 设置带内权限请求处理器，为 null 时 Node 端使用套接字或文件通道
+     */
+    public void setPermissionRequestHandler(PermissionRequestHandler handler) {
+        this.permissionRequestHandler = handler;
+    }
+
+    /**
+     * 设置权限路由键，套接字和文件通道的请求据此回到所属项目的窗口
+     */
+    public void setPermissionRoute(String route) {
+        envConfigurator.setPermissionRoute(route);
+    }
+
     // ============================================================================
     // Node.js 检测相关方法（委托给 NodeDetector）
     // ============================================================================
@@ -540,22 +571,36 @@ public class ClaudeSDKBridge {
                 envConfigurator.configureTempDir(env, processTempDir);
                 // 始终使用 stdin 传递参数
                 env.put("CLAUDE_USE_STDIN", "true");
+                // 带内权限：参数占 stdin 第一行，之后 stdin 保持打开用于回写权限决定
+                final PermissionRequestHandler inBandHandler = permissionRequestHandler;
+                if (inBandHandler != null) {
+                    env.put("CLAUDE_PERMISSION_INBAND", "true");
+                }
 
                 pb.redirectErrorStream(true);
                 envConfigurator.updateProcessEnvironment(pb, node);
 
                 Process process = null;
+                java.io.OutputStream stdin = null;
                 try {
                     process = pb.start();
                     processManager.registerProcess(channelId, process);
 
                     // 通过 stdin 写入所有参数（包括消息和附件）
-                    try (java.io.OutputStream stdin = process.getOutputStream()) {
-                        stdin.write(stdinJson.getBytes(StandardCharsets.UTF_8));
-                        stdin.flush();
+                    stdin = process.getOutputStream();
+                    try {
+                        if (inBandHandler != null) {
+                            stdin.write((stdinJson + "\n").getBytes(StandardCharsets.UTF_8));
+                            stdin.flush();
+                        } else {
+                            stdin.write(stdinJson.getBytes(StandardCharsets.UTF_8));
+                            stdin.flush();
+                            stdin.close();
+                        }
                     } catch (Exception e) {
                         System.err.println("[ClaudeSDKBridge] Failed to write stdin: " + e.getMessage());
                     }
+                    final java.io.OutputStream decisionOut = stdin;
 
                     try {
                         try (BufferedReader reader = new BufferedReader(
@@ -614,6 +659,11 @@ public class ClaudeSDKBridge {
                                 } else if (line.startsWith("[SESSION_ID]")) {
                                     String capturedSessionId = line.substring("[SESSION_ID]".length()).trim();
                                     callback.onMessage("session_id", capturedSessionId);
+                                } else if (line.startsWith("[PERMISSION_REQUEST]") && inBandHandler != null) {
+                                    handleInBandPermissionRequest(inBandHandler, channelId,
+                                        line.substring("[PERMISSION_REQUEST]".length()).trim(), decisionOut);
+                                } else if (line.startsWith("[PERMISSION_RESUMED]")) {
+                                    recordPermissionResumed(line.substring("[PERMISSION_RESUMED]".length()).trim());
                                 } else if (line.startsWith("[MESSAGE_START]")) {
                                     callback.onMessage("message_start", "");
                                 } else if (line.startsWith("[MESSAGE_END]")) {
@@ -671,6 +721,14 @@ public class ClaudeSDKBridge {
                         processManager.unregisterProcess(channelId, process);
                     }
                 } finally {
+                    if (stdin != null) {
+                        synchronized (stdin) {
+                            try {
+                                stdin.close();
+                            } catch (Exception ignored) {
+                            }
+                        }
+                    }
                     processManager.waitForProcessTermination(process);
                     processManager.cleanupClaudeTempFiles(processTempDir, existingTempMarkers);
                 }
@@ -684,6 +742,55 @@ public class ClaudeSDKBridge {
         });
     }
 
+    /**
+     * 处理 Node 端通过 stdout 发来的权限请求帧，决定以 permission_decision 帧写回 stdin
+     * 解析失败或处理器异常时直接拒绝，避免 Node 端一直等待
+     */
+    private void handleInBandPermissionRequest(PermissionRequestHandler handler, String channelId,
+                                               String frameJson, java.io.OutputStream stdin) {
+        String requestId = null;
+        try {
+            JsonObject request = gson.fromJson(frameJson, JsonObject.class);
+            requestId = request.get("requestId").getAsString();
+            final String id = requestId;
+            handler.onPermissionRequest(channelId, request, allow -> writePermissionDecision(stdin, id, allow));
+        } catch (Exception e) {
+            System.err.println("[ClaudeSDKBridge] Failed to handle in-band permission request: " + e.getMessage());
+            if (requestId != null) {
+                writePermissionDecision(stdin, requestId, false);
+            }
+        }
+    }
+
+    /**
+     * Node 端收到带内决定后回报的恢复时间（仅用于统计）
+     */
+    private void recordPermissionResumed(String frameJson) {
+        try {
+            PermissionMetrics.getInstance().resumed(gson.fromJson(frameJson, JsonObject.class));
+        } catch (Exception e) {
+            System.err.println("[ClaudeSDKBridge] Invalid permission resumed frame: " + e.getMessage());
+        }
+    }
+
+    private void writePermissionDecision(java.io.OutputStream stdin, String requestId, boolean allow) {
+        JsonObject frame = new JsonObject();
+        frame.addProperty("type", "permission_decision");
+        frame.addProperty("requestId", requestId);
+        frame.addProperty("allow", allow);
+        byte[] bytes = (gson.toJson(frame) + "\n").getBytes(StandardCharsets.UTF_8);
+        // 决定可能来自多个线程（EDT、前端回调），串行写入避免帧交错
+        synchronized (stdin) {
+            try {
+                stdin.write(bytes);
+                stdin.flush();
+            } catch (java.io.IOException e) {
+                // 进程已退出
+                System.err.println("[ClaudeSDKBridge] Failed to write permission decision for " + requestId + ": " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * 获取会话历史消息
      */
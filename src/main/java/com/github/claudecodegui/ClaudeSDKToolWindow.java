@@ -33,6 +33,7 @@ import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.permission.PermissionService;
 import com.github.claudecodegui.ui.ErrorPanelBuilder;
 import com.github.claudecodegui.util.HtmlLoader;
+import com.github.claudecodegui.util.JsChunkedTransfer;
 import com.github.claudecodegui.util.JsUtils;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
@@ -119,6 +120,9 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         private MessageDispatcher messageDispatcher;
         private PermissionHandler permissionHandler;
         private HistoryHandler historyHandler;
+        private FileHandler fileHandler;
+        private PermissionService permissionService;
+        private PermissionService.PermissionDialogShower permissionDialogShower;
 
         public ClaudeChatWindow(Project project) {
             this.project = project;
@@ -174,10 +178,19 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
         }
 
         private void setupPermissionService() {
-            PermissionService permissionService = PermissionService.getInstance(project);
+            permissionService = PermissionService.getInstance(project);
+            permissionDialogShower = (toolName, inputs) ->
+                permissionHandler.showFrontendPermissionDialog(toolName, inputs);
+            permissionService.setDialogShower(permissionDialogShower);
             permissionService.start();
-            permissionService.setDialogShower((toolName, inputs) ->
-                permissionHandler.showFrontendPermissionDialog(toolName, inputs));
+            // 套接字和文件通道的请求按路由键回到本项目
+            claudeSDKBridge.setPermissionRoute(permissionService.getRoutingKey());
+            // 本窗口发起的请求走 bridge 带内通道，弹窗固定显示在本窗口
+            claudeSDKBridge.setPermissionRequestHandler((channelId, request, reply) -> {
+                System.out.println("[ClaudeChatWindow] In-band permission request for project " + project.getName()
+                    + ", channel " + channelId);
+                permissionService.handleInBandRequest(request, permissionHandler::showFrontendPermissionDialog, reply);
+            });
             System.out.println("[ClaudeChatWindow] Started permission service with frontend dialog");
         }
 
@@ -202,7 +215,8 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             messageDispatcher.registerHandler(new ProviderHandler(handlerContext));
             messageDispatcher.registerHandler(new McpServerHandler(handlerContext));
             messageDispatcher.registerHandler(new SkillHandler(handlerContext, mainPanel));
-            messageDispatcher.registerHandler(new FileHandler(handlerContext));
+            this.fileHandler = new FileHandler(handlerContext);
+            messageDispatcher.registerHandler(fileHandler);
             messageDispatcher.registerHandler(new SettingsHandler(handlerContext));
             messageDispatcher.registerHandler(new SessionHandler(handlerContext));
 
@@ -591,7 +605,8 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 public void onMessageUpdate(List<ClaudeSession.Message> messages) {
                     SwingUtilities.invokeLater(() -> {
                         String messagesJson = convertMessagesToJson(messages);
-                        callJavaScript("updateMessages", JsUtils.escapeJs(messagesJson));
+                        // 加载长会话时消息 JSON 可能很大，分块推送，前端重组后再解析
+                        JsChunkedTransfer.send(ClaudeChatWindow.this::executeJavaScript, "window.updateMessages", messagesJson);
                     });
                     pushUsageUpdateFromMessages(messages);
                 }
@@ -779,6 +794,17 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
             }
         }
 
+        private void executeJavaScript(String js) {
+            if (disposed || browser == null) {
+                return;
+            }
+            try {
+                browser.getCefBrowser().executeJavaScript(js, browser.getCefBrowser().getURL(), 0);
+            } catch (Exception e) {
+                System.err.println("[ClaudeSDKToolWindow] 执行 JS 失败: " + e.getMessage());
+            }
+        }
+
         private void addSelectionInfo(String selectionInfo) {
             if (selectionInfo != null && !selectionInfo.isEmpty()) {
                 callJavaScript("addSelectionInfo", JsUtils.escapeJs(selectionInfo));
@@ -863,6 +889,15 @@ public class ClaudeSDKToolWindow implements ToolWindowFactory, DumbAware {
                 System.err.println("[ClaudeSDKToolWindow] 清理浏览器失败: " + e.getMessage());
             }
 
+            if (historyHandler != null) {
+                historyHandler.dispose();
+            }
+            if (fileHandler != null) {
+                fileHandler.dispose();
+            }
+            if (permissionService != null) {
+                permissionService.detach(permissionDialogShower);
+            }
             messageDispatcher.clear();
 
             System.out.println("[ClaudeSDKToolWindow] 窗口资源已完全清理，项目: " + project.getName());
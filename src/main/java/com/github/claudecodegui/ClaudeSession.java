@@ -621,7 +621,12 @@ public class ClaudeSession {
                 if ("codex".equals(provider)) {
                     serverMessages = codexSDKBridge.getSessionMessages(sessionId, cwd);
                 } else {
-                    serverMessages = claudeSDKBridge.getSessionMessages(sessionId, cwd);
+                    // 优先在 Java 侧直接并行解析本地会话文件，找不到时再回退到 Node.js
+                    // 返回的消息对象与会话缓存共享，作为 Message.raw 只读使用（合并流式消息时会先 deepCopy）
+                    serverMessages = new ClaudeHistoryReader().readSessionMessages(cwd, sessionId);
+                    if (serverMessages == null) {
+                        serverMessages = claudeSDKBridge.getSessionMessages(sessionId, cwd);
+                    }
                 }
                 System.out.println("[ClaudeSession] Received " + serverMessages.size() + " messages from server");
 
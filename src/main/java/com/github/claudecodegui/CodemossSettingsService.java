@@ -1313,4 +1313,44 @@ public class CodemossSettingsService {
 
         System.out.println("[CodemossSettings] Synced " + plugins.size() + " enabled skills to Claude settings");
     }
+
+    // ==================== 历史归档 ====================
+
+    // 默认归档超过 90 天未修改的会话
+    public static final int DEFAULT_ARCHIVE_DAYS = 90;
+
+    /**
+     * 获取冷会话归档配置（默认关闭）
+     * 格式: { "enabled": false, "olderThanDays": 90 }
+     */
+    public JsonObject getHistoryArchiveConfig() throws IOException {
+        JsonObject config = readConfig();
+        JsonObject archive = new JsonObject();
+        archive.addProperty("enabled", false);
+        archive.addProperty("olderThanDays", DEFAULT_ARCHIVE_DAYS);
+        if (config.has("historyArchive") && config.get("historyArchive").isJsonObject()) {
+            JsonObject saved = config.getAsJsonObject("historyArchive");
+            if (saved.has("enabled")) {
+                archive.addProperty("enabled", saved.get("enabled").getAsBoolean());
+            }
+            if (saved.has("olderThanDays")) {
+                archive.addProperty("olderThanDays", Math.max(1, saved.get("olderThanDays").getAsInt()));
+            }
+        }
+        return archive;
+    }
+
+    /**
+     * 保存冷会话归档配置
+     */
+    public void setHistoryArchiveConfig(boolean enabled, int olderThanDays) throws IOException {
+        JsonObject config = readConfig();
+        JsonObject archive = new JsonObject();
+        archive.addProperty("enabled", enabled);
+        archive.addProperty("olderThanDays", Math.max(1, olderThanDays));
+        config.add("historyArchive", archive);
+        writeConfig(config);
+        System.out.println("[CodemossSettings] History archive " + (enabled ? "enabled" : "disabled")
+            + ", olderThanDays=" + olderThanDays);
+    }
 }
@@ -1,5 +1,6 @@
 package com.github.claudecodegui.bridge;
 
+import com.github.claudecodegui.permission.PermissionService;
 import com.github.claudecodegui.util.PlatformUtils;
 
 import java.io.File;
@@ -16,8 +17,20 @@ import java.util.Map;
 public class EnvironmentConfigurator {
 
     private static final String CLAUDE_PERMISSION_ENV = "CLAUDE_PERMISSION_DIR";
+    private static final String CLAUDE_PERMISSION_SOCKET_ENV = "CLAUDE_PERMISSION_SOCKET";
+    private static final String CLAUDE_PERMISSION_PORT_ENV = "CLAUDE_PERMISSION_PORT";
+    private static final String CLAUDE_PERMISSION_TOKEN_ENV = "CLAUDE_PERMISSION_TOKEN";
+    private static final String CLAUDE_PERMISSION_ROUTE_ENV = "CLAUDE_PERMISSION_ROUTE";
 
     private volatile String cachedPermissionDir = null;
+    private volatile String permissionRoute = null;
+
+    /**
+     * 设置权限路由键（所属项目的 PermissionService），Node 端随每个权限请求带回
+     */
+    public void setPermissionRoute(String route) {
+        this.permissionRoute = route;
+    }
 
     /**
      * 更新进程的环境变量，确保 PATH 包含 Node.js 所在目录
@@ -107,6 +120,25 @@ public class EnvironmentConfigurator {
         if (permissionDir != null) {
             env.putIfAbsent(CLAUDE_PERMISSION_ENV, permissionDir);
         }
+
+        // 套接字通道（未启动时移除继承来的旧值，Node 端退回文件通道）
+        env.remove(CLAUDE_PERMISSION_SOCKET_ENV);
+        env.remove(CLAUDE_PERMISSION_PORT_ENV);
+        env.remove(CLAUDE_PERMISSION_TOKEN_ENV);
+        env.remove(CLAUDE_PERMISSION_ROUTE_ENV);
+        String route = this.permissionRoute;
+        if (route != null) {
+            env.put(CLAUDE_PERMISSION_ROUTE_ENV, route);
+        }
+        PermissionService.ChannelInfo channel = PermissionService.getChannelInfo();
+        if (channel != null) {
+            if (channel.getSocketPath() != null) {
+                env.put(CLAUDE_PERMISSION_SOCKET_ENV, channel.getSocketPath());
+            } else {
+                env.put(CLAUDE_PERMISSION_PORT_ENV, String.valueOf(channel.getPort()));
+            }
+            env.put(CLAUDE_PERMISSION_TOKEN_ENV, channel.getToken());
+        }
     }
 
     /**
@@ -0,0 +1,208 @@
+package com.github.claudecodegui.file;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * 目录列表缓存（@ 路径浏览用，每个窗口一份）
+ *
+ * 第一次访问目录时读取磁盘并缓存结果，之后直接返回缓存；由调用方在 VFS 事件中调用 invalidate 失效。
+ * 同一目录正在读取时（如高亮时的预取），后来的请求等待这次读取，不会重复访问磁盘。
+ * VFS 看不到的外部修改靠过期时间兜底：过期后仍先返回旧结果，同时在后台重新读取
+ *
+ * @param <V> 列表内容（由 loader 生成，缓存后共享，调用方不能修改）
+ */
+public final class DirectoryListingCache<V> {
+
+    private final int maxEntries;
+    private final long maxAgeMs;
+    private final Executor executor;
+
+    // 目录路径（'/' 分隔，无结尾斜杠）-> 列表，按访问顺序，超出上限时淘汰最久未用的
+    private final LinkedHashMap<String, Listing<V>> listings;
+
+    private static final class Listing<V> {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final long loadedAt;
+        boolean refreshing;
+
+        Listing(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * @param maxEntries 最多缓存的目录数
+     * @param maxAgeMs   超过该时间的列表在下次访问时后台刷新
+     * @param executor   执行后台刷新
+     */
+    public DirectoryListingCache(int maxEntries, long maxAgeMs, Executor executor) {
+        this.maxEntries = maxEntries;
+        this.maxAgeMs = maxAgeMs;
+        this.executor = executor;
+        this.listings = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Listing<V>> eldest) {
+                return size() > DirectoryListingCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 获取目录列表，没有缓存时在当前线程调用 loader 读取
+     *
+     * @param directory 目录路径
+     * @param loader    读取目录；返回 null（目录不存在等）时不缓存
+     */
+    public V get(String directory, Function<String, V> loader) {
+        String key = normalize(directory);
+        if (key == null) {
+            return loader.apply(directory);
+        }
+        Listing<V> listing;
+        boolean owner = false;
+        boolean refresh = false;
+        synchronized (listings) {
+            listing = listings.get(key);
+            if (listing == null) {
+                listing = new Listing<>(System.currentTimeMillis());
+                listings.put(key, listing);
+                owner = true;
+            } else if (!listing.refreshing && listing.future.isDone()
+                && System.currentTimeMillis() - listing.loadedAt > maxAgeMs) {
+                listing.refreshing = true;
+                refresh = true;
+            }
+        }
+        if (owner) {
+            return load(key, listing, directory, loader);
+        }
+        if (refresh) {
+            executor.execute(() -> reload(key, directory, loader));
+        }
+        try {
+            return listing.future.join();
+        } catch (CompletionException e) {
+            // 等待的读取失败了（已从缓存中移除），自己再读一次
+            return loader.apply(directory);
+        }
+    }
+
+    /**
+     * 后台读取目录并放入缓存（已缓存或正在读取时什么也不做）
+     */
+    public void prefetch(String directory, Function<String, V> loader) {
+        String key = normalize(directory);
+        if (key == null) {
+            return;
+        }
+        Listing<V> listing;
+        synchronized (listings) {
+            if (listings.containsKey(key)) {
+                return;
+            }
+            listing = new Listing<>(System.currentTimeMillis());
+            listings.put(key, listing);
+        }
+        Listing<V> owned = listing;
+        executor.execute(() -> {
+            try {
+                load(key, owned, directory, loader);
+            } catch (RuntimeException e) {
+                System.err.println("[DirectoryListingCache] Failed to prefetch " + directory + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private V load(String key, Listing<V> listing, String directory, Function<String, V> loader) {
+        V value;
+        try {
+            value = loader.apply(directory);
+        } catch (RuntimeException e) {
+            remove(key, listing);
+            listing.future.completeExceptionally(e);
+            throw e;
+        }
+        if (value == null) {
+            remove(key, listing);
+        }
+        listing.future.complete(value);
+        return value;
+    }
+
+    private void reload(String key, String directory, Function<String, V> loader) {
+        Listing<V> fresh = new Listing<>(System.currentTimeMillis());
+        V value;
+        try {
+            value = loader.apply(directory);
+        } catch (RuntimeException e) {
+            System.err.println("[DirectoryListingCache] Failed to refresh " + directory + ": " + e.getMessage());
+            value = null;
+        }
+        synchronized (listings) {
+            Listing<V> current = listings.get(key);
+            if (current == null || !current.refreshing) {
+                // 刷新期间已被失效，下次访问会重新读取
+                return;
+            }
+            if (value == null) {
+                listings.remove(key);
+                return;
+            }
+            fresh.future.complete(value);
+            listings.put(key, fresh);
+        }
+    }
+
+    private void remove(String key, Listing<V> listing) {
+        synchronized (listings) {
+            listings.remove(key, listing);
+        }
+    }
+
+    /**
+     * 路径发生变化（创建、删除、移动、重命名）：失效其所在目录的列表，路径本身是目录时连同其下所有目录
+     */
+    public void invalidate(String path) {
+        String key = normalize(path);
+        if (key == null) {
+            return;
+        }
+        int slash = key.lastIndexOf('/');
+        String parent = slash > 0 ? key.substring(0, slash) : (slash == 0 ? "/" : null);
+        String childPrefix = key.endsWith("/") ? key : key + "/";
+        synchronized (listings) {
+            if (parent != null) {
+                listings.remove(parent);
+            }
+            listings.keySet().removeIf(directory -> directory.equals(key) || directory.startsWith(childPrefix));
+        }
+    }
+
+    public void clear() {
+        synchronized (listings) {
+            listings.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (listings) {
+            return listings.size();
+        }
+    }
+
+    private static String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        String normalized = path.replace('\\', '/');
+        while (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.claudecodegui.file;
+
+/**
+ * 文件搜索结果（路径相对于搜索根目录）
+ */
+public final class FileMatch {
+
+    private final String name;
+    private final String path;
+    private final boolean directory;
+
+    public FileMatch(String name, String path, boolean directory) {
+        this.name = name;
+        this.path = path;
+        this.directory = directory;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+}
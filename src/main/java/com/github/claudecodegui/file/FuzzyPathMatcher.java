@@ -0,0 +1,264 @@
+package com.github.claudecodegui.file;
+
+import java.util.Arrays;
+
+/**
+ * 文件路径模糊匹配评分
+ *
+ * 查询按 '/' 分段：最后一段模糊匹配文件名，前面各段按顺序模糊匹配目录名。
+ * 每段用动态规划找最优对齐：连续命中、段首、分隔符之后、驼峰大写处命中加分，跳过字符扣分；
+ * 文件名匹配不上时再对整个相对路径做贪心匹配，得分低于文件名匹配。
+ * 调用方给出当前第 K 名的得分时，先用得分上界剪枝，不可能进入前 K 名的项不做 DP
+ *
+ * 非线程安全（复用 DP 缓冲区），每个搜索线程使用自己的实例
+ */
+final class FuzzyPathMatcher {
+
+    static final int NO_MATCH = Integer.MIN_VALUE;
+
+    // 逐字符得分
+    private static final int MATCH = 16;
+    private static final int CONSECUTIVE = 12;
+    private static final int SEGMENT_START = 12;
+    private static final int BOUNDARY = 10;
+    private static final int CAMEL = 9;
+    private static final int GAP_START = 3;
+    private static final int GAP = 1;
+    private static final int LEADING_GAP_MAX = 8;
+    // 单个字符可能的最高得分，用于估算上界
+    private static final int MAX_PER_CHAR = MATCH + SEGMENT_START + CONSECUTIVE;
+
+    // 整体得分
+    private static final int EXACT_NAME = 200;
+    private static final int NAME_PREFIX = 60;
+    private static final int PATH_ONLY_PENALTY = 80;
+    private static final int DEPTH_PENALTY = 2;
+    private static final int LENGTH_PENALTY_MAX = 30;
+
+    // 超过该长度的文本不做 DP，直接视为不匹配（正常路径远小于该值）
+    private static final int MAX_TEXT_LENGTH = 512;
+    private static final int NEG = Integer.MIN_VALUE / 2;
+
+    private final char[] nameQuery;
+    private final String nameQueryText;
+    private final char[][] directoryQueries;
+    // 预筛选用：查询中除 '/' 外的全部字符（小写、按顺序）
+    private final char[] allChars;
+
+    private final int[] previous = new int[MAX_TEXT_LENGTH];
+    private final int[] current = new int[MAX_TEXT_LENGTH];
+
+    /**
+     * @param query 原始查询（不区分大小写）
+     */
+    FuzzyPathMatcher(String query) {
+        String lower = query.toLowerCase();
+        int lastSlash = lower.lastIndexOf('/');
+        this.nameQueryText = lower.substring(lastSlash + 1);
+        this.nameQuery = nameQueryText.toCharArray();
+        this.directoryQueries = lastSlash > 0
+            ? Arrays.stream(lower.substring(0, lastSlash).split("/"))
+                .filter(segment -> !segment.isEmpty())
+                .map(String::toCharArray)
+                .toArray(char[][]::new)
+            : new char[0][];
+        this.allChars = lower.replace("/", "").toCharArray();
+    }
+
+    char[] getAllChars() {
+        return allChars;
+    }
+
+    /**
+     * 得分上界（只看长度和深度，不比较字符），用于在预筛选和 DP 之前剪枝
+     *
+     * @param depth 相对于搜索根目录的深度
+     */
+    int upperBound(String path, int from, int nameStart, int depth) {
+        int nameLength = path.length() - Math.max(nameStart, from);
+        int queryLength = nameQuery.length;
+        int nameBonus = nameLength == queryLength ? EXACT_NAME : NAME_PREFIX;
+        int lengthPenalty = Math.min(Math.max(nameLength - queryLength, 0), LENGTH_PENALTY_MAX);
+        return MAX_PER_CHAR * allChars.length + nameBonus - lengthPenalty - DEPTH_PENALTY * depth;
+    }
+
+    /**
+     * 计算 path 中 from 之后部分（相对于搜索根目录的路径）的得分
+     *
+     * @param lower     小写文本，lower[textStart + i] 对应 path[i]
+     * @param nameStart 文件名在 path 中的起始位置
+     * @param depth     相对于搜索根目录的深度
+     * @param minScore  低于该分数的结果没有意义（调用方当前第 K 名的得分），可据此提前放弃
+     * @return 得分，不匹配或不可能达到 minScore 时为 NO_MATCH
+     */
+    int score(String path, String lower, int textStart, int from, int nameStart, int depth, int minScore) {
+        int end = path.length();
+        if (end - from > MAX_TEXT_LENGTH) {
+            return NO_MATCH;
+        }
+        nameStart = Math.max(nameStart, from);
+        int depthPenalty = DEPTH_PENALTY * depth;
+        int nameLength = end - nameStart;
+        int queryLength = nameQuery.length;
+
+        int directoryScore = 0;
+        if (directoryQueries.length > 0) {
+            directoryScore = scoreDirectories(path, lower, textStart, from, nameStart);
+            if (directoryScore == NO_MATCH) {
+                return NO_MATCH;
+            }
+        }
+        if (queryLength == 0) {
+            return directoryScore - depthPenalty;
+        }
+
+        boolean prefix = lower.startsWith(nameQueryText, textStart + nameStart);
+        int nameBonus = prefix ? (nameLength == queryLength ? EXACT_NAME : NAME_PREFIX) : 0;
+        int lengthPenalty = Math.min(Math.max(nameLength - queryLength, 0), LENGTH_PENALTY_MAX);
+        int nameBound = directoryScore + MAX_PER_CHAR * queryLength + nameBonus - lengthPenalty - depthPenalty;
+        if (nameBound >= minScore) {
+            int nameScore = align(nameQuery, path, lower, textStart, nameStart, end);
+            if (nameScore != NO_MATCH) {
+                return directoryScore + nameScore + nameBonus - lengthPenalty - depthPenalty;
+            }
+        }
+        if (directoryQueries.length > 0) {
+            // 有目录段时文件名必须匹配
+            return NO_MATCH;
+        }
+        if (MAX_PER_CHAR * queryLength - PATH_ONLY_PENALTY - depthPenalty < minScore) {
+            return NO_MATCH;
+        }
+        int pathScore = alignGreedy(nameQuery, path, lower, textStart, from, end);
+        if (pathScore == NO_MATCH) {
+            return NO_MATCH;
+        }
+        return pathScore - PATH_ONLY_PENALTY - depthPenalty;
+    }
+
+    /**
+     * 整个路径上的匹配只作为兜底，路径较长，用线性的贪心匹配代替 DP
+     */
+    private int alignGreedy(char[] query, String path, String lower, int textStart, int start, int end) {
+        int score = 0;
+        int position = start;
+        int lastMatch = -1;
+        for (char queryChar : query) {
+            while (position < end && lower.charAt(textStart + position) != queryChar) {
+                position++;
+            }
+            if (position >= end) {
+                return NO_MATCH;
+            }
+            score += MATCH + bonus(path, position);
+            if (lastMatch >= 0) {
+                score += position == lastMatch + 1 ? CONSECUTIVE : -GAP_START - GAP * (position - lastMatch - 1);
+            }
+            lastMatch = position++;
+        }
+        return score;
+    }
+
+    /**
+     * 目录段按顺序匹配：每段查询依次找到下一个能模糊匹配它的目录名
+     */
+    private int scoreDirectories(String path, String lower, int textStart, int from, int nameStart) {
+        int score = 0;
+        int segmentStart = from;
+        for (char[] query : directoryQueries) {
+            int segmentScore = NO_MATCH;
+            while (segmentStart < nameStart && segmentScore == NO_MATCH) {
+                int segmentEnd = path.indexOf('/', segmentStart);
+                if (segmentEnd < 0 || segmentEnd > nameStart) {
+                    segmentEnd = nameStart;
+                }
+                segmentScore = align(query, path, lower, textStart, segmentStart, segmentEnd);
+                segmentStart = segmentEnd + 1;
+            }
+            if (segmentScore == NO_MATCH) {
+                return NO_MATCH;
+            }
+            score += segmentScore;
+        }
+        return score;
+    }
+
+    /**
+     * query 在 path[start, end) 上的最优对齐得分
+     * prev[j] / cur[j]：查询第 i 个字符命中位置 start + j 时的最高得分
+     */
+    private int align(char[] query, String path, String lower, int textStart, int start, int end) {
+        int length = end - start;
+        int queryLength = query.length;
+        if (queryLength > length) {
+            return NO_MATCH;
+        }
+        int offset = textStart + start;
+        int[] prev = previous;
+        int[] cur = current;
+        for (int i = 0; i < queryLength; i++) {
+            char queryChar = query[i];
+            // 跳过至少一个字符时的最优前驱：max(prev[k] + GAP * k)，k <= j - 2
+            int bestGapped = NEG;
+            boolean any = false;
+            // 第 i 个字符之前至少要容纳前 i 个字符，之后至少要容纳剩下的字符
+            int last = length - (queryLength - i);
+            for (int j = 0; j <= last; j++) {
+                if (i > 0 && j >= 2 && prev[j - 2] > NEG) {
+                    bestGapped = Math.max(bestGapped, prev[j - 2] + GAP * (j - 2));
+                }
+                int score = NEG;
+                if (j >= i && lower.charAt(offset + j) == queryChar) {
+                    int gain = MATCH + bonus(path, start + j);
+                    if (i == 0) {
+                        score = gain - Math.min(j, LEADING_GAP_MAX);
+                    } else {
+                        if (prev[j - 1] > NEG) {
+                            score = prev[j - 1] + gain + CONSECUTIVE;
+                        }
+                        if (bestGapped > NEG) {
+                            score = Math.max(score, bestGapped - GAP * (j - 1) - GAP_START + gain);
+                        }
+                    }
+                }
+                cur[j] = score;
+                any |= score > NEG;
+            }
+            if (!any) {
+                return NO_MATCH;
+            }
+            int[] swap = prev;
+            prev = cur;
+            cur = swap;
+        }
+        int best = NEG;
+        for (int j = queryLength - 1; j < length; j++) {
+            best = Math.max(best, prev[j]);
+        }
+        return best > NEG ? best : NO_MATCH;
+    }
+
+    /**
+     * 位置 index 处命中的额外得分：段首、分隔符之后、驼峰大写、字母后的数字
+     */
+    private static int bonus(String path, int index) {
+        if (index == 0) {
+            return SEGMENT_START;
+        }
+        char c = path.charAt(index);
+        char prev = path.charAt(index - 1);
+        if (prev == '/') {
+            return SEGMENT_START;
+        }
+        if (prev == '_' || prev == '-' || prev == '.' || prev == ' ') {
+            return BOUNDARY;
+        }
+        if (Character.isUpperCase(c) && Character.isLowerCase(prev)) {
+            return CAMEL;
+        }
+        if (Character.isDigit(c) && !Character.isDigit(prev)) {
+            return CAMEL / 2;
+        }
+        return 0;
+    }
+}
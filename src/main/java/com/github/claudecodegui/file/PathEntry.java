@@ -0,0 +1,40 @@
+package com.github.claudecodegui.file;
+
+/**
+ * 路径索引中的一项（文件或目录）
+ *
+ * 项目根目录下的路径保存为相对路径（'/' 分隔），根目录以外的内容根保存为绝对路径
+ */
+public final class PathEntry {
+
+    final String path;
+    final int nameStart;
+    // 路径中 '/' 的个数
+    final int depth;
+    final boolean directory;
+
+    public PathEntry(String path, boolean directory) {
+        this.path = path;
+        this.nameStart = path.lastIndexOf('/') + 1;
+        int slashes = 0;
+        for (int i = 0; i < nameStart; i++) {
+            if (path.charAt(i) == '/') {
+                slashes++;
+            }
+        }
+        this.depth = slashes;
+        this.directory = directory;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getName() {
+        return path.substring(nameStart);
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+}
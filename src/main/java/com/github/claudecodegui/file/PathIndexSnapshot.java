@@ -0,0 +1,332 @@
+package com.github.claudecodegui.file;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 路径索引的只读快照
+ * 搜索只读数组、不加锁；索引更新时整体替换快照，进行中的搜索继续使用旧快照
+ *
+ * 索引按固定大小分片，每个分片把所有路径的小写形式以 '\n' 分隔拼成一个字符串：
+ * 先用 indexOf 跳到含有查询首字符的项，确认查询字符按顺序出现后才做模糊评分。
+ * 每个分片只保留得分最高的 limit 项（有界堆），索引较大时各分片并行评分后合并。
+ * 搜索结果带有通过预筛选的候选项，继续输入时新查询只在这些候选项中搜索
+ */
+public final class PathIndexSnapshot {
+
+    public static final PathIndexSnapshot EMPTY = new PathIndexSnapshot(new PathEntry[0]);
+
+    private static final int SHARD_SIZE = 16_384;
+    // 超过该项数时分片并行评分
+    private static final int PARALLEL_THRESHOLD = 2 * SHARD_SIZE;
+    // 最近打开的文件的最高加分（按打开先后线性递减）
+    private static final int RECENT_BOOST = 80;
+    private static final char SEPARATOR = '\n';
+    // 每处理这么多项检查一次是否已取消（2 的幂减 1）
+    private static final int CANCEL_CHECK_MASK = 1023;
+
+    // 结果排序：得分高的在前，同分时路径短的在前，再按路径字母序
+    private static final Comparator<Scored> BEST_FIRST = Comparator
+        .comparingInt((Scored s) -> -s.score)
+        .thenComparingInt(s -> s.entry.path.length())
+        .thenComparing(s -> s.entry.path);
+    private static final Comparator<Scored> WORST_FIRST = BEST_FIRST.reversed();
+
+    private final Shard[] shards;
+    private final int size;
+
+    /**
+     * 一次搜索的结果：排好序的匹配项，以及各分片中通过预筛选的候选项
+     */
+    public static final class Result {
+        private final PathIndexSnapshot snapshot;
+        private final String prefix;
+        private final String query;
+        private final List<FileMatch> matches;
+        // 每个分片的候选项下标，查询为空时为 null
+        private final int[][] candidates;
+
+        Result(PathIndexSnapshot snapshot, String prefix, String query, List<FileMatch> matches, int[][] candidates) {
+            this.snapshot = snapshot;
+            this.prefix = prefix;
+            this.query = query;
+            this.matches = matches;
+            this.candidates = candidates;
+        }
+
+        public List<FileMatch> getMatches() {
+            return matches;
+        }
+
+        /**
+         * 新查询能否在本次的候选项中继续搜索：同一快照、同一根目录，且新查询以本次查询开头
+         */
+        boolean canRefine(PathIndexSnapshot snapshot, String prefix, String query) {
+            return candidates != null && this.snapshot == snapshot && this.prefix.equals(prefix)
+                && query.startsWith(this.query);
+        }
+
+        int candidateCount() {
+            int count = 0;
+            for (int[] shardCandidates : candidates) {
+                count += shardCandidates.length;
+            }
+            return count;
+        }
+    }
+
+    private static final class ShardResult {
+        final PriorityQueue<Scored> top;
+        final int[] candidates;
+
+        ShardResult(PriorityQueue<Scored> top, int[] candidates) {
+            this.top = top;
+            this.candidates = candidates;
+        }
+    }
+
+    private static final class Scored {
+        final PathEntry entry;
+        final int score;
+
+        Scored(PathEntry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    private static final class Shard {
+        final PathEntry[] entries;
+        // 第 i 项在 text 中的起始位置，最后一个元素为 text 长度
+        final int[] starts;
+        final String text;
+
+        Shard(PathEntry[] entries) {
+            this.entries = entries;
+            this.starts = new int[entries.length + 1];
+            StringBuilder builder = new StringBuilder(entries.length * 48);
+            for (int i = 0; i < entries.length; i++) {
+                starts[i] = builder.length();
+                String path = entries[i].path;
+                // 逐字符转小写，保证与原路径等长、偏移一致
+                for (int j = 0; j < path.length(); j++) {
+                    builder.append(Character.toLowerCase(path.charAt(j)));
+                }
+                builder.append(SEPARATOR);
+            }
+            starts[entries.length] = builder.length();
+            this.text = builder.toString();
+        }
+
+        /**
+         * 本分片中得分最高的 limit 项（堆顶为其中最差的一项）
+         *
+         * @param within    只在这些项（分片内下标，升序）中搜索，为 null 时搜索整个分片
+         * @param cancelled 定期检查，返回 true 时放弃搜索
+         * @return 搜索结果，已取消时返回 null
+         */
+        ShardResult search(String prefix, String query, int limit, Map<String, Integer> recentRanks,
+                           int[] within, BooleanSupplier cancelled) {
+            PriorityQueue<Scored> top = new PriorityQueue<>(limit + 1, WORST_FIRST);
+            FuzzyPathMatcher matcher = new FuzzyPathMatcher(query);
+            char[] chars = matcher.getAllChars();
+            int prefixLength = prefix.length();
+            int prefixDepth = (int) prefix.chars().filter(c -> c == '/').count();
+            int recentCount = recentRanks.size();
+            // 通过预筛选的项，查询继续变长时只需在其中搜索
+            int[] candidates = new int[within != null ? within.length : 64];
+            int candidateCount = 0;
+
+            int from = 0;
+            int next = 0;
+            int visited = 0;
+            while (true) {
+                if ((++visited & CANCEL_CHECK_MASK) == 0 && cancelled.getAsBoolean()) {
+                    return null;
+                }
+                int index;
+                int hit;
+                if (within != null) {
+                    if (next >= within.length) {
+                        break;
+                    }
+                    index = within[next++];
+                    hit = starts[index];
+                } else if (chars.length > 0) {
+                    // 跳到下一个含有查询首字符的项
+                    hit = text.indexOf(chars[0], from);
+                    if (hit < 0) {
+                        break;
+                    }
+                    index = entryAt(hit, next);
+                    next = index + 1;
+                } else {
+                    if (next >= entries.length) {
+                        break;
+                    }
+                    index = next++;
+                    hit = starts[index];
+                }
+                int start = starts[index];
+                from = starts[index + 1];
+
+                PathEntry entry = entries[index];
+                if (prefixLength > 0 && !entry.path.startsWith(prefix)) {
+                    continue;
+                }
+                if (!containsInOrder(chars, Math.max(hit, start + prefixLength), from - 1)) {
+                    continue;
+                }
+                if (candidateCount == candidates.length) {
+                    candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                }
+                candidates[candidateCount++] = index;
+
+                int boost = 0;
+                if (recentCount > 0) {
+                    Integer rank = recentRanks.get(entry.path);
+                    if (rank != null) {
+                        boost = RECENT_BOOST * (recentCount - rank) / recentCount;
+                    }
+                }
+                // 堆满后，得分上界达不到当前第 limit 名的项不做 DP
+                int depth = entry.depth - prefixDepth;
+                int minScore = FuzzyPathMatcher.NO_MATCH;
+                if (top.size() >= limit) {
+                    minScore = top.peek().score - boost;
+                    if (matcher.upperBound(entry.path, prefixLength, entry.nameStart, depth) < minScore) {
+                        continue;
+                    }
+                }
+                int score = matcher.score(entry.path, text, start, prefixLength, entry.nameStart, depth, minScore);
+                if (score == FuzzyPathMatcher.NO_MATCH) {
+                    continue;
+                }
+                score += boost;
+                if (top.size() < limit) {
+                    top.add(new Scored(entry, score));
+                    continue;
+                }
+                // 堆满时只有比堆顶（当前第 limit 名）更好的项才替换进去
+                Scored worst = top.peek();
+                if (score < worst.score) {
+                    continue;
+                }
+                Scored candidate = new Scored(entry, score);
+                if (BEST_FIRST.compare(candidate, worst) < 0) {
+                    top.poll();
+                    top.add(candidate);
+                }
+            }
+            return new ShardResult(top, Arrays.copyOf(candidates, candidateCount));
+        }
+
+        /**
+         * text[from, end) 中是否按顺序出现 chars 的全部字符
+         */
+        private boolean containsInOrder(char[] chars, int from, int end) {
+            int position = from;
+            for (char c : chars) {
+                while (position < end && text.charAt(position) != c) {
+                    position++;
+                }
+                if (position >= end) {
+                    return false;
+                }
+                position++;
+            }
+            return true;
+        }
+
+        /**
+         * text 中位置 offset 所属的项（offset 随搜索递增，先从上一次的位置顺序向后找，离得远时再二分）
+         */
+        private int entryAt(int offset, int fromIndex) {
+            for (int i = fromIndex; i < fromIndex + 8 && i < entries.length; i++) {
+                if (starts[i + 1] > offset) {
+                    return i;
+                }
+            }
+            int index = Arrays.binarySearch(starts, fromIndex, starts.length, offset);
+            return index >= 0 ? index : -index - 2;
+        }
+    }
+
+    public PathIndexSnapshot(PathEntry[] entries) {
+        this.size = entries.length;
+        int shardCount = (entries.length + SHARD_SIZE - 1) / SHARD_SIZE;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            int from = i * SHARD_SIZE;
+            shards[i] = new Shard(Arrays.copyOfRange(entries, from, Math.min(from + SHARD_SIZE, entries.length)));
+        }
+    }
+
+    public static PathIndexSnapshot of(Collection<PathEntry> entries) {
+        return new PathIndexSnapshot(entries.toArray(new PathEntry[0]));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 在 prefix 目录下模糊搜索，返回得分最高的 limit 项（按得分从高到低）
+     *
+     * @param prefix      搜索根目录对应的键前缀（空串或以 '/' 结尾）
+     * @param query       查询，可以包含 '/' 按目录段匹配
+     * @param recentRanks 最近打开的文件（索引键 -> 名次，0 为最近），命中时加分
+     * @param previous    上一次搜索的结果；新查询是它的延长时只在其候选项中搜索，可以为 null
+     * @param cancelled   搜索过程中定期检查，返回 true 时放弃搜索
+     * @return 搜索结果，已取消时返回 null
+     */
+    public Result search(String prefix, String query, int limit, Map<String, Integer> recentRanks,
+                         Result previous, BooleanSupplier cancelled) {
+        String lowerQuery = query.toLowerCase();
+        if (lowerQuery.isEmpty() || lowerQuery.indexOf(SEPARATOR) >= 0 || limit <= 0) {
+            return new Result(this, prefix, lowerQuery, new ArrayList<>(), null);
+        }
+        // 查询只在末尾追加了字符时，新查询的候选项一定是旧候选项的子集（查询字符按顺序出现）
+        int[][] within = previous != null && previous.canRefine(this, prefix, lowerQuery) ? previous.candidates : null;
+
+        IntStream shardIndexes = IntStream.range(0, shards.length);
+        if (size > PARALLEL_THRESHOLD && (within == null || previous.candidateCount() > PARALLEL_THRESHOLD)) {
+            shardIndexes = shardIndexes.parallel();
+        }
+        List<ShardResult> partial = shardIndexes
+            .mapToObj(i -> shards[i].search(prefix, lowerQuery, limit, recentRanks,
+                within != null ? within[i] : null, cancelled))
+            .collect(Collectors.toList());
+        if (partial.contains(null)) {
+            return null;
+        }
+
+        // 合并各分片的前 limit 项
+        List<Scored> merged = new ArrayList<>();
+        int[][] candidates = new int[shards.length][];
+        for (int i = 0; i < partial.size(); i++) {
+            merged.addAll(partial.get(i).top);
+            candidates[i] = partial.get(i).candidates;
+        }
+        merged.sort(BEST_FIRST);
+
+        int prefixLength = prefix.length();
+        List<FileMatch> matches = new ArrayList<>(Math.min(limit, merged.size()));
+        for (Scored scored : merged) {
+            if (matches.size() >= limit) {
+                break;
+            }
+            PathEntry entry = scored.entry;
+            matches.add(new FileMatch(entry.getName(), entry.path.substring(prefixLength), entry.directory));
+        }
+        return new Result(this, prefix, lowerQuery, matches, candidates);
+    }
+}
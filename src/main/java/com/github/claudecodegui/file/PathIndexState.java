@@ -0,0 +1,149 @@
+package com.github.claudecodegui.file;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 路径索引的内容和构建状态（不依赖 IntelliJ API；ProjectPathIndex 只在其更新线程上调用）
+ *
+ * 每次重建分配一个代次，只有最新代次的构建结果会被装入；构建期间收到的文件变化先排队，装入新内容后重放。
+ * 构建失败时结束构建状态，有旧内容时把排队的变化应用到旧内容上，否则丢弃（下次构建会重新收集全部内容）
+ *
+ * @param <C> 文件变化，由 applier 应用到索引项上
+ */
+final class PathIndexState<C> {
+
+    /**
+     * 把一批文件变化应用到索引项上
+     */
+    interface ChangeApplier<C> {
+        /**
+         * @return 索引项是否有变化
+         */
+        boolean apply(Map<String, PathEntry> entries, List<C> changes);
+    }
+
+    private final ChangeApplier<C> applier;
+    private final Map<String, PathEntry> entries = new HashMap<>();
+    // 重建期间收到的文件变化，新内容装入后重放
+    private final List<C> pendingChanges = new ArrayList<>();
+    private boolean building = false;
+    private int generation = 0;
+    private int failedBuilds = 0;
+    // 尚未装入过内容时为 null
+    private PathIndexSnapshot snapshot;
+
+    PathIndexState(ChangeApplier<C> applier) {
+        this.applier = applier;
+    }
+
+    /**
+     * 开始一次重建（之前未完成的构建随之作废）
+     *
+     * @return 本次构建的代次
+     */
+    int startBuild() {
+        building = true;
+        pendingChanges.clear();
+        return ++generation;
+    }
+
+    /**
+     * 装入构建结果并重放构建期间的变化
+     *
+     * @return 是否已装入；已有更新的重建在进行时返回 false（结果作废）
+     */
+    boolean install(int buildGeneration, Collection<PathEntry> collected) {
+        if (buildGeneration != generation) {
+            return false;
+        }
+        entries.clear();
+        for (PathEntry entry : collected) {
+            entries.put(entry.path, entry);
+        }
+        building = false;
+        failedBuilds = 0;
+        applier.apply(entries, drainPending());
+        snapshot = PathIndexSnapshot.of(entries.values());
+        return true;
+    }
+
+    /**
+     * 构建失败（或被取消）：结束构建状态，有旧内容时把期间的变化应用到旧内容上
+     *
+     * @return 连续失败的次数；已有更新的重建在进行时返回 0（不需要处理）
+     */
+    int buildFailed(int buildGeneration) {
+        if (buildGeneration != generation) {
+            return 0;
+        }
+        building = false;
+        List<C> replay = drainPending();
+        if (snapshot != null && applier.apply(entries, replay)) {
+            snapshot = PathIndexSnapshot.of(entries.values());
+        }
+        return ++failedBuilds;
+    }
+
+    /**
+     * 文件变化：构建期间排队，还没有可用内容时忽略
+     */
+    void onChanges(List<C> changes) {
+        if (building) {
+            pendingChanges.addAll(changes);
+            return;
+        }
+        if (snapshot == null) {
+            // 还没有可用的索引（构建失败等待重试），下次构建会重新收集全部内容
+            return;
+        }
+        if (applier.apply(entries, changes)) {
+            snapshot = PathIndexSnapshot.of(entries.values());
+        }
+    }
+
+    boolean isBuilding() {
+        return building;
+    }
+
+    /**
+     * 当前快照，尚未装入过内容时为 null
+     */
+    PathIndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private List<C> drainPending() {
+        List<C> drained = new ArrayList<>(pendingChanges);
+        pendingChanges.clear();
+        return drained;
+    }
+
+    /**
+     * 删除一项，是目录时连同其下所有项（VFS 删除或移动目录时只发出目录本身的事件）
+     *
+     * @return 索引项是否有变化
+     */
+    static boolean removeSubtree(Map<String, PathEntry> entries, String key) {
+        if (key == null) {
+            return false;
+        }
+        PathEntry removed = entries.remove(key);
+        if (removed == null) {
+            // 不在索引中（排除目录或项目外），其下也不会有索引项
+            return false;
+        }
+        if (removed.directory) {
+            String childPrefix = key + "/";
+            entries.keySet().removeIf(path -> path.startsWith(childPrefix));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,387 @@
+package com.github.claudecodegui.file;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 项目文件路径索引（@ 引用文件的搜索数据源）
+ *
+ * 首次使用时通过 ProjectFileIndex 遍历项目内容（自动跳过排除目录和忽略的文件类型），
+ * 之后由 VFS 事件增量更新，项目结构或排除设置变化时重建；构建失败时稍后重试，没有可用索引期间搜索退回到遍历磁盘。
+ * 搜索只扫描内存中的快照，不访问磁盘；最近在编辑器中打开过的文件排名靠前
+ */
+public class ProjectPathIndex implements Disposable {
+
+    private static final String LOG_TAG = "[ProjectPathIndex]";
+
+    private static final Map<Project, ProjectPathIndex> instances = new ConcurrentHashMap<>();
+    // 参与排名加分的最近打开文件数
+    private static final int MAX_RECENT_FILES = 50;
+    // 构建失败后的重试次数和间隔（第 n 次重试等待 n 倍间隔），仍然失败时搜索退回到遍历磁盘
+    private static final int MAX_BUILD_RETRIES = 3;
+    private static final long BUILD_RETRY_DELAY_MS = 10_000;
+
+    private final Project project;
+    // 项目根目录（'/' 分隔，无结尾斜杠），其下的路径按相对路径保存
+    private final String basePath;
+    // 所有索引修改都在这个单线程执行器上顺序进行
+    private final ExecutorService updateExecutor =
+        AppExecutorUtil.createBoundedApplicationPoolExecutor("ClaudePathIndex", 1);
+
+    // 索引内容和构建状态，只在 updateExecutor 上访问
+    private final PathIndexState<Change> state = new PathIndexState<>(this::applyChanges);
+
+    private volatile boolean disposed = false;
+
+    // state 当前快照的发布副本，供搜索线程读取；尚未建好时为 null
+    private volatile PathIndexSnapshot snapshot;
+
+    // 最近打开的文件（索引键，按访问顺序，最近的在最后）
+    private final LinkedHashMap<String, Boolean> recentFiles = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_RECENT_FILES;
+        }
+    };
+
+    /**
+     * 一次文件变化：先删除旧路径（及其子项），再加入新文件（目录则加入其下全部内容）
+     */
+    private static final class Change {
+        final String removedPath;
+        final VirtualFile addedFile;
+
+        Change(String removedPath, VirtualFile addedFile) {
+            this.removedPath = removedPath;
+            this.addedFile = addedFile;
+        }
+    }
+
+    private ProjectPathIndex(Project project) {
+        this.project = project;
+        this.basePath = normalize(project.getBasePath());
+    }
+
+    /**
+     * 获取项目的路径索引，首次调用时开始在后台构建
+     */
+    public static ProjectPathIndex getInstance(Project project) {
+        return instances.computeIfAbsent(project, p -> {
+            ProjectPathIndex index = new ProjectPathIndex(p);
+            Disposer.register(p, index);
+            index.start();
+            return index;
+        });
+    }
+
+    private void start() {
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                onFileEvents(events);
+            }
+        });
+        // 模块、内容根或排除目录变化后内容范围可能整体改变，直接重建
+        connection.subscribe(ModuleRootListener.TOPIC, new ModuleRootListener() {
+            @Override
+            public void rootsChanged(@NotNull ModuleRootEvent event) {
+                rebuild();
+            }
+        });
+        connection.subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerListener() {
+            @Override
+            public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
+                recordRecent(file);
+            }
+
+            @Override
+            public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+                recordRecent(event.getNewFile());
+            }
+        });
+        for (VirtualFile file : FileEditorManager.getInstance(project).getOpenFiles()) {
+            recordRecent(file);
+        }
+        rebuild();
+    }
+
+    private void recordRecent(VirtualFile file) {
+        if (file == null) {
+            return;
+        }
+        String key = toKey(file.getPath());
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        synchronized (recentFiles) {
+            recentFiles.put(key, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 最近打开的文件：索引键 -> 名次（0 为最近）
+     */
+    private Map<String, Integer> recentRanks() {
+        synchronized (recentFiles) {
+            Map<String, Integer> ranks = new HashMap<>(recentFiles.size() * 2);
+            int rank = recentFiles.size();
+            for (String key : recentFiles.keySet()) {
+                ranks.put(key, --rank);
+            }
+            return ranks;
+        }
+    }
+
+    /**
+     * 索引是否已经可用
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * 在 root 目录下模糊搜索
+     *
+     * @param query     查询，可以包含 '/' 按目录段匹配
+     * @param previous  同一窗口上一次的搜索结果，新查询是它的延长时在其基础上细化，可以为 null
+     * @param cancelled 搜索过程中定期检查，返回 true 时放弃搜索
+     * @return 搜索结果（匹配项按得分排好序，路径相对于 root）；索引尚未建好、root 不在项目目录下或已取消时返回 null
+     */
+    public PathIndexSnapshot.Result search(String root, String query, int limit,
+                                           PathIndexSnapshot.Result previous, BooleanSupplier cancelled) {
+        PathIndexSnapshot current = snapshot;
+        String prefix = toPrefix(root);
+        if (current == null || prefix == null) {
+            return null;
+        }
+        return current.search(prefix, query, limit, recentRanks(), previous, cancelled);
+    }
+
+    /**
+     * 搜索根目录对应的键前缀：项目根目录为空串，子目录为 "相对路径/"，不在项目根目录下返回 null
+     */
+    private String toPrefix(String root) {
+        String normalized = normalize(root);
+        if (basePath == null || normalized == null) {
+            return null;
+        }
+        if (normalized.equals(basePath)) {
+            return "";
+        }
+        if (normalized.startsWith(basePath + "/")) {
+            return normalized.substring(basePath.length() + 1) + "/";
+        }
+        return null;
+    }
+
+    private void rebuild() {
+        runOnUpdateExecutor(() -> {
+            int buildGeneration = state.startBuild();
+            long startTime = System.currentTimeMillis();
+            // 非阻塞读操作：遇到写操作时自动取消并重试，不会卡住 UI；连续的重建请求只保留最后一次
+            ReadAction.nonBlocking(this::collectContent)
+                .coalesceBy(this)
+                .expireWith(this)
+                .submit(AppExecutorUtil.getAppExecutorService())
+                .onSuccess(collected -> runOnUpdateExecutor(() -> install(buildGeneration, collected, startTime)))
+                .onError(error -> runOnUpdateExecutor(() -> buildFailed(buildGeneration, error)));
+        });
+    }
+
+    /**
+     * 构建失败（或被取消）：结束构建状态，有旧索引时把期间的变化应用到旧索引上，然后安排重试
+     */
+    private void buildFailed(int buildGeneration, Throwable error) {
+        if (disposed) {
+            return;
+        }
+        int failedBuilds = state.buildFailed(buildGeneration);
+        if (failedBuilds == 0) {
+            // 更新的重建已经接手
+            return;
+        }
+        snapshot = state.getSnapshot();
+        if (failedBuilds > MAX_BUILD_RETRIES) {
+            System.err.println(LOG_TAG + " Failed to index " + project.getName() + ", giving up after "
+                + failedBuilds + " attempts: " + error);
+            return;
+        }
+        long delay = BUILD_RETRY_DELAY_MS * failedBuilds;
+        System.err.println(LOG_TAG + " Failed to index " + project.getName() + ", retrying in " + delay + "ms: " + error);
+        AppExecutorUtil.getAppExecutorScheduledExecutorService().schedule(() -> {
+            if (!disposed) {
+                rebuild();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void runOnUpdateExecutor(Runnable task) {
+        try {
+            updateExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // 已释放
+        }
+    }
+
+    private List<PathEntry> collectContent() {
+        List<PathEntry> collected = new ArrayList<>();
+        ProjectFileIndex.getInstance(project).iterateContent(file -> {
+            PathEntry entry = toEntry(file);
+            if (entry != null) {
+                collected.add(entry);
+            }
+            return true;
+        });
+        return collected;
+    }
+
+    private void install(int buildGeneration, List<PathEntry> collected, long startTime) {
+        if (!state.install(buildGeneration, collected)) {
+            // 已经有更新的重建在进行
+            return;
+        }
+        snapshot = state.getSnapshot();
+        System.out.println(LOG_TAG + " Indexed " + state.size() + " paths for " + project.getName()
+            + " in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * VFS 事件回调（在写操作中执行，这里只记录变化，实际更新交给后台线程）
+     */
+    private void onFileEvents(List<? extends VFileEvent> events) {
+        List<Change> changes = new ArrayList<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFileCreateEvent) {
+                changes.add(new Change(null, event.getFile()));
+            } else if (event instanceof VFileCopyEvent) {
+                changes.add(new Change(null, ((VFileCopyEvent) event).findCreatedFile()));
+            } else if (event instanceof VFileDeleteEvent) {
+                changes.add(new Change(event.getPath(), null));
+            } else if (event instanceof VFileMoveEvent) {
+                changes.add(new Change(((VFileMoveEvent) event).getOldPath(), event.getFile()));
+            } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+                changes.add(new Change(((VFilePropertyChangeEvent) event).getOldPath(), event.getFile()));
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        runOnUpdateExecutor(() -> {
+            state.onChanges(changes);
+            snapshot = state.getSnapshot();
+        });
+    }
+
+    /**
+     * @return 索引是否有变化
+     */
+    private boolean applyChanges(Map<String, PathEntry> entries, List<Change> changes) {
+        boolean changed = false;
+        for (Change change : changes) {
+            if (change.removedPath != null) {
+                changed |= PathIndexState.removeSubtree(entries, toKey(normalize(change.removedPath)));
+            }
+            if (change.addedFile != null) {
+                changed |= ReadAction.compute(() -> addSubtree(entries, change.addedFile));
+            }
+        }
+        return changed;
+    }
+
+    private boolean addSubtree(Map<String, PathEntry> entries, VirtualFile file) {
+        if (project.isDisposed() || file == null || !file.isValid()) {
+            return false;
+        }
+        ProjectFileIndex fileIndex = ProjectFileIndex.getInstance(project);
+        // 排除目录、忽略的文件类型和项目外的文件都不在内容范围内
+        if (!fileIndex.isInContent(file)) {
+            return false;
+        }
+        boolean[] changed = {false};
+        fileIndex.iterateContentUnderDirectory(file, child -> {
+            PathEntry entry = toEntry(child);
+            if (entry != null && entries.put(entry.path, entry) == null) {
+                changed[0] = true;
+            }
+            return true;
+        });
+        return changed[0];
+    }
+
+    private PathEntry toEntry(VirtualFile file) {
+        String key = toKey(file.getPath());
+        if (key == null || key.isEmpty()) {
+            return null;
+        }
+        return new PathEntry(key, file.isDirectory());
+    }
+
+    /**
+     * 索引键：项目根目录下为相对路径，其余为绝对路径，项目根目录本身为空串
+     */
+    private String toKey(String path) {
+        if (path == null) {
+            return null;
+        }
+        if (basePath != null) {
+            if (path.equals(basePath)) {
+                return "";
+            }
+            if (path.startsWith(basePath + "/")) {
+                return path.substring(basePath.length() + 1);
+            }
+        }
+        return path;
+    }
+
+    private static String normalize(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        String normalized = path.replace('\\', '/');
+        while (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        instances.remove(project, this);
+        updateExecutor.shutdownNow();
+        snapshot = null;
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.claudecodegui.handler;
 
+import com.github.claudecodegui.file.DirectoryListingCache;
+import com.github.claudecodegui.file.FileMatch;
+import com.github.claudecodegui.file.PathIndexSnapshot;
+import com.github.claudecodegui.file.ProjectPathIndex;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.application.ApplicationManager;
@@ -8,14 +12,27 @@ import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
 import com.intellij.ide.BrowserUtil;
 import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 /**
  * 文件和命令相关消息处理器
@@ -24,13 +41,46 @@ public class FileHandler extends BaseMessageHandler {
 
     private static final String[] SUPPORTED_TYPES = {
         "list_files",
+        "prefetch_files",
         "get_commands",
         "open_file",
         "open_browser"
     };
 
+    // 搜索结果上限
+    private static final int MAX_SEARCH_RESULTS = 200;
+
+    // 目录浏览（只输入了路径、没有搜索词）最多列出的子项数
+    private static final int MAX_DIRECTORY_CHILDREN = 100;
+    // 缓存的目录数上限
+    private static final int MAX_CACHED_DIRECTORIES = 256;
+    // VFS 看不到的外部修改：超过该时间的目录列表在下次访问时后台刷新
+    private static final long DIRECTORY_LISTING_MAX_AGE_MS = 60_000;
+
+    // 文件列表请求编号：新请求到来后，旧请求在下一个检查点放弃，结果也不再推送
+    private final AtomicInteger listGeneration = new AtomicInteger();
+    // 本窗口上一次完成的索引搜索，继续输入时在其候选项中细化
+    private volatile PathIndexSnapshot.Result lastSearch;
+
+    // 本窗口的目录列表缓存（已排好序的文件对象，内容对应 listingBasePath）
+    private final DirectoryListingCache<List<JsonObject>> directoryCache = new DirectoryListingCache<>(
+        MAX_CACHED_DIRECTORIES, DIRECTORY_LISTING_MAX_AGE_MS, AppExecutorUtil.getAppExecutorService());
+    private volatile String listingBasePath;
+    private final MessageBusConnection connection;
+
     public FileHandler(HandlerContext context) {
         super(context);
+        // 提前在后台建立项目文件索引，第一次输入 @ 时即可使用
+        ProjectPathIndex.getInstance(context.getProject());
+
+        // 文件创建、删除、移动、重命名时失效相关目录的列表
+        this.connection = context.getProject().getMessageBus().connect();
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                invalidateListings(events);
+            }
+        });
     }
 
     @Override
@@ -44,6 +94,9 @@ public class FileHandler extends BaseMessageHandler {
             case "list_files":
                 handleListFiles(content);
                 return true;
+            case "prefetch_files":
+                handlePrefetchFiles(content);
+                return true;
             case "get_commands":
                 handleGetCommands(content);
                 return true;
@@ -62,10 +115,17 @@ public class FileHandler extends BaseMessageHandler {
      * 处理文件列表请求
      */
     private void handleListFiles(String content) {
+        int generation = listGeneration.incrementAndGet();
+        BooleanSupplier stale = () -> generation != listGeneration.get() || context.isDisposed();
         CompletableFuture.runAsync(() -> {
+            if (stale.getAsBoolean()) {
+                return;
+            }
             try {
                 String query = "";
                 String currentPath = "";
+                // 前端请求编号，随结果原样返回，前端据此丢弃过期结果
+                String requestId = null;
 
                 if (content != null && !content.isEmpty()) {
                     try {
@@ -77,40 +137,66 @@ public class FileHandler extends BaseMessageHandler {
                         if (json.has("currentPath")) {
                             currentPath = json.get("currentPath").getAsString();
                         }
+                        if (json.has("requestId")) {
+                            requestId = json.get("requestId").getAsString();
+                        }
                     } catch (Exception e) {
                         query = content;
                     }
                 }
 
-                // 优先使用当前会话的工作目录
-                String basePath = context.getSession() != null &&
-                                  context.getSession().getCwd() != null &&
-                                  !context.getSession().getCwd().isEmpty()
-                    ? context.getSession().getCwd()
-                    : (context.getProject().getBasePath() != null ?
-                       context.getProject().getBasePath() : System.getProperty("user.home"));
+                String basePath = getBasePath();
 
                 List<JsonObject> files = new ArrayList<>();
+                // 结果已经排好序：索引搜索按匹配程度，目录列表在放入缓存前排序
+                boolean ranked = false;
 
                 if (query != null && !query.isEmpty()) {
-                    File baseDir = new File(basePath);
-                    collectFiles(baseDir, basePath, files, query.toLowerCase(), 0, 15, 200);
+                    // 已输入的目录部分（如 "src/main/"）一并交给模糊匹配，按目录段过滤
+                    PathIndexSnapshot.Result search = ProjectPathIndex.getInstance(context.getProject())
+                        .search(basePath, currentPath + query, MAX_SEARCH_RESULTS, lastSearch, stale);
+                    if (stale.getAsBoolean()) {
+                        return;
+                    }
+                    if (search != null) {
+                        lastSearch = search;
+                        for (FileMatch match : search.getMatches()) {
+                            files.add(createFileObject(match.getName(), match.getPath(), match.isDirectory()));
+                        }
+                        ranked = true;
+                    } else {
+                        // 索引尚未建好，或工作目录不在项目目录下
+                        File baseDir = new File(basePath);
+                        collectFiles(baseDir, basePath, files, query.toLowerCase(), 0, 15, MAX_SEARCH_RESULTS, stale);
+                    }
                 } else {
-                    File targetDir = new File(basePath, currentPath);
-                    if (targetDir.exists() && targetDir.isDirectory()) {
-                        listDirectChildren(targetDir, basePath, files, 100);
+                    List<JsonObject> children = getDirectoryListing(basePath, currentPath);
+                    if (children != null) {
+                        files.addAll(children);
+                        ranked = true;
                     }
                 }
 
                 // 排序
-                sortFiles(files);
+                if (!ranked) {
+                    sortFiles(files);
+                }
 
+                if (stale.getAsBoolean()) {
+                    return;
+                }
                 Gson gson = new Gson();
                 JsonObject result = new JsonObject();
                 result.add("files", gson.toJsonTree(files));
+                if (requestId != null) {
+                    result.addProperty("requestId", requestId);
+                }
                 String resultJson = gson.toJson(result);
 
                 SwingUtilities.invokeLater(() -> {
+                    if (stale.getAsBoolean()) {
+                        return;
+                    }
                     callJavaScript("window.onFileListResult", escapeJs(resultJson));
                 });
             } catch (Exception e) {
@@ -120,6 +206,95 @@ public class FileHandler extends BaseMessageHandler {
         });
     }
 
+    /**
+     * 预取目录列表（前端高亮某个目录时发送），进入该目录时直接使用缓存
+     */
+    private void handlePrefetchFiles(String content) {
+        try {
+            JsonObject json = new Gson().fromJson(content, JsonObject.class);
+            if (json == null || !json.has("currentPath")) {
+                return;
+            }
+            String currentPath = json.get("currentPath").getAsString();
+            String basePath = getBasePath();
+            syncListingBasePath(basePath);
+            directoryCache.prefetch(new File(basePath, currentPath).getAbsolutePath(),
+                directory -> listDirectory(new File(directory), basePath));
+        } catch (Exception e) {
+            System.err.println("[FileHandler] Failed to prefetch files: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 当前的文件列表根目录：优先使用当前会话的工作目录
+     */
+    private String getBasePath() {
+        return context.getSession() != null &&
+               context.getSession().getCwd() != null &&
+               !context.getSession().getCwd().isEmpty()
+            ? context.getSession().getCwd()
+            : (context.getProject().getBasePath() != null ?
+               context.getProject().getBasePath() : System.getProperty("user.home"));
+    }
+
+    /**
+     * 缓存中的相对路径基于 listingBasePath，工作目录变化后清空
+     */
+    private synchronized void syncListingBasePath(String basePath) {
+        if (!basePath.equals(listingBasePath)) {
+            directoryCache.clear();
+            listingBasePath = basePath;
+        }
+    }
+
+    /**
+     * basePath 下 currentPath 目录的子项（已排序），目录不存在时返回 null
+     */
+    private List<JsonObject> getDirectoryListing(String basePath, String currentPath) {
+        syncListingBasePath(basePath);
+        return directoryCache.get(new File(basePath, currentPath).getAbsolutePath(),
+            directory -> listDirectory(new File(directory), basePath));
+    }
+
+    /**
+     * 读取磁盘上的目录列表（缓存未命中时调用）
+     */
+    private List<JsonObject> listDirectory(File dir, String basePath) {
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        List<JsonObject> children = new ArrayList<>();
+        listDirectChildren(dir, basePath, children, MAX_DIRECTORY_CHILDREN);
+        sortFiles(children);
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * VFS 事件回调：失效发生变化的路径所在目录（及被删除、移走的目录本身）的列表
+     */
+    private void invalidateListings(List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            if (event instanceof VFileCreateEvent || event instanceof VFileCopyEvent
+                || event instanceof VFileDeleteEvent) {
+                directoryCache.invalidate(event.getPath());
+            } else if (event instanceof VFileMoveEvent) {
+                directoryCache.invalidate(((VFileMoveEvent) event).getOldPath());
+                directoryCache.invalidate(((VFileMoveEvent) event).getNewPath());
+            } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+                directoryCache.invalidate(((VFilePropertyChangeEvent) event).getOldPath());
+                directoryCache.invalidate(((VFilePropertyChangeEvent) event).getNewPath());
+            }
+        }
+    }
+
+    /**
+     * 停止监听文件变化，清空目录列表缓存
+     */
+    public void dispose() {
+        connection.disconnect();
+        directoryCache.clear();
+    }
+
     /**
      * 处理获取命令列表请求
      */
@@ -263,8 +438,9 @@ public class FileHandler extends BaseMessageHandler {
      * 递归收集文件
      */
     private void collectFiles(File dir, String basePath, List<JsonObject> files,
-                              String query, int depth, int maxDepth, int maxFiles) {
+                              String query, int depth, int maxDepth, int maxFiles, BooleanSupplier stale) {
         if (depth > maxDepth || files.size() >= maxFiles) return;
+        if (stale.getAsBoolean()) return;
         if (!dir.isDirectory()) return;
 
         File[] children = dir.listFiles();
@@ -288,7 +464,7 @@ public class FileHandler extends BaseMessageHandler {
 
                 if (!matchesName && !matchesPath && !matchesExtension) {
                     if (child.isDirectory()) {
-                        collectFiles(child, basePath, files, query, depth + 1, maxDepth, maxFiles);
+                        collectFiles(child, basePath, files, query, depth + 1, maxDepth, maxFiles, stale);
                     }
                     continue;
                 }
@@ -298,7 +474,7 @@ public class FileHandler extends BaseMessageHandler {
             files.add(fileObj);
 
             if (child.isDirectory()) {
-                collectFiles(child, basePath, files, query, depth + 1, maxDepth, maxFiles);
+                collectFiles(child, basePath, files, query, depth + 1, maxDepth, maxFiles, stale);
             }
         }
     }
@@ -350,12 +526,19 @@ public class FileHandler extends BaseMessageHandler {
      * 创建文件对象
      */
     private JsonObject createFileObject(File file, String name, String relativePath) {
+        return createFileObject(name, relativePath, file.isDirectory());
+    }
+
+    /**
+     * 创建文件对象（不访问磁盘）
+     */
+    private JsonObject createFileObject(String name, String relativePath, boolean directory) {
         JsonObject fileObj = new JsonObject();
         fileObj.addProperty("name", name);
         fileObj.addProperty("path", relativePath);
-        fileObj.addProperty("type", file.isDirectory() ? "directory" : "file");
+        fileObj.addProperty("type", directory ? "directory" : "file");
 
-        if (file.isFile()) {
+        if (!directory) {
             int dotIndex = name.lastIndexOf('.');
             if (dotIndex > 0) {
                 fileObj.addProperty("extension", name.substring(dotIndex + 1));
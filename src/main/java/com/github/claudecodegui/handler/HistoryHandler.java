@@ -1,10 +1,26 @@
 package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.history.HistorySearchService;
+import com.github.claudecodegui.history.SearchIndexSegment;
+import com.github.claudecodegui.history.SessionArchive;
+import com.github.claudecodegui.history.SessionDirectoryWatcher;
+import com.github.claudecodegui.util.JsChunkedTransfer;
 import com.github.claudecodegui.util.JsUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 
 import javax.swing.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 历史数据处理器
@@ -15,9 +31,18 @@ public class HistoryHandler extends BaseMessageHandler {
     private static final String[] SUPPORTED_TYPES = {
         "load_history_data",
         "load_session",
-        "delete_session"  // 新增:删除会话
+        "delete_session",  // 新增:删除会话
+        "search_history"
     };
 
+    // 搜索最多返回的结果数，以及每批推送给前端的结果数
+    private static final int SEARCH_LIMIT = 50;
+    private static final int SEARCH_BATCH_SIZE = 10;
+    // 同一项目两次冷会话归档之间的最短间隔
+    private static final long ARCHIVE_INTERVAL_MILLIS = 24L * 3600 * 1000;
+    // 各项目上次归档的时间（多个工具窗口共享）
+    private static final Map<String, Long> lastArchiveRun = new ConcurrentHashMap<>();
+
     // 会话加载回调接口
     public interface SessionLoadCallback {
         void onLoadSession(String sessionId, String projectPath);
@@ -25,6 +50,12 @@ public class HistoryHandler extends BaseMessageHandler {
 
     private SessionLoadCallback sessionLoadCallback;
 
+    private final Gson gson = new Gson();
+    // 监听当前项目的会话目录，CLI 写入后只推送变化的会话行
+    private SessionDirectoryWatcher sessionWatcher;
+    // 每次搜索递增，旧的搜索发现编号变化后停止推送
+    private final AtomicInteger searchGeneration = new AtomicInteger();
+
     public HistoryHandler(HandlerContext context) {
         super(context);
     }
@@ -53,6 +84,9 @@ public class HistoryHandler extends BaseMessageHandler {
                 System.out.println("[HistoryHandler] 处理: delete_session, sessionId=" + content);
                 handleDeleteSession(content);
                 return true;
+            case "search_history":
+                handleSearchHistory(content);
+                return true;
             default:
                 return false;
         }
@@ -70,25 +104,11 @@ public class HistoryHandler extends BaseMessageHandler {
                 ClaudeHistoryReader historyReader = new ClaudeHistoryReader();
                 String historyJson = historyReader.getProjectDataAsJson(projectPath);
 
-                String escapedJson = escapeJs(historyJson);
-
-                SwingUtilities.invokeLater(() -> {
-                    String jsCode = "console.log('[Backend->Frontend] Starting to inject history data');" +
-                        "if (window.setHistoryData) { " +
-                        "  try { " +
-                        "    var jsonStr = '" + escapedJson + "'; " +
-                        "    var data = JSON.parse(jsonStr); " +
-                        "    window.setHistoryData(data); " +
-                        "  } catch(e) { " +
-                        "    console.error('[Backend->Frontend] Failed to parse/set history data:', e); " +
-                        "    window.setHistoryData({ success: false, error: '解析历史数据失败: ' + e.message }); " +
-                        "  } " +
-                        "} else { " +
-                        "  console.error('[Backend->Frontend] setHistoryData not available!'); " +
-                        "}";
+                // 大项目的历史数据可达数 MB，分块推送，前端重组后调用 setHistoryData
+                JsChunkedTransfer.send(context::executeJavaScriptOnEDT, "window.setHistoryData", historyJson);
 
-                    context.executeJavaScriptOnEDT(jsCode);
-                });
+                startSessionWatcher(historyReader, projectPath);
+                archiveColdSessionsIfEnabled(historyReader, projectPath);
 
             } catch (Exception e) {
                 System.err.println("[HistoryHandler] ❌ 加载历史数据失败: " + e.getMessage());
@@ -105,6 +125,149 @@ public class HistoryHandler extends BaseMessageHandler {
         });
     }
 
+    /**
+     * 开启了冷会话归档时，在历史数据推送之后归档超过期限的会话（每个项目每天最多一次）
+     * 归档产生的文件删除由会话目录监听处理，列表中的摘要保持不变
+     */
+    private void archiveColdSessionsIfEnabled(ClaudeHistoryReader historyReader, String projectPath) {
+        try {
+            JsonObject config = context.getSettingsService().getHistoryArchiveConfig();
+            if (!config.get("enabled").getAsBoolean() || projectPath == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Long lastRun = lastArchiveRun.get(projectPath);
+            if (lastRun != null && now - lastRun < ARCHIVE_INTERVAL_MILLIS) {
+                return;
+            }
+            lastArchiveRun.put(projectPath, now);
+            historyReader.archiveColdSessions(projectPath, config.get("olderThanDays").getAsInt());
+        } catch (Exception e) {
+            System.err.println("[HistoryHandler] 归档冷会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 首次加载历史数据后开始监听会话目录（目录不存在时跳过，下次加载再尝试）
+     */
+    private synchronized void startSessionWatcher(ClaudeHistoryReader historyReader, String projectPath) {
+        if (context.isDisposed() || projectPath == null || (sessionWatcher != null && sessionWatcher.isRunning())) {
+            return;
+        }
+        Path sessionsDir = historyReader.getProjectSessionsDir(projectPath);
+        if (!Files.isDirectory(sessionsDir)) {
+            return;
+        }
+
+        SessionDirectoryWatcher watcher = new SessionDirectoryWatcher(sessionsDir,
+            fileNames -> pushSessionUpdates(historyReader, projectPath, fileNames));
+        try {
+            watcher.start();
+            sessionWatcher = watcher;
+        } catch (Exception e) {
+            System.err.println("[HistoryHandler] 监听会话目录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 增量刷新变化的会话并推送到前端
+     */
+    private void pushSessionUpdates(ClaudeHistoryReader historyReader, String projectPath, Set<String> fileNames) {
+        if (context.isDisposed()) {
+            return;
+        }
+        HistorySearchService.getInstance().markStale();
+        try {
+            ClaudeHistoryReader.SessionUpdate update = historyReader.readSessionUpdates(projectPath, fileNames);
+            if (update.isEmpty()) {
+                return;
+            }
+            System.out.println("[HistoryHandler] 推送会话增量: upserted=" + update.upserted.size()
+                + ", removed=" + update.removed.size() + (update.full ? " (full)" : ""));
+
+            // 增量可能很大（首次全量），与 setHistoryData 一样分块传输，由前端解析
+            JsChunkedTransfer.send(context::executeJavaScriptOnEDT, "window.applyHistoryUpdate", gson.toJson(update));
+        } catch (Exception e) {
+            System.err.println("[HistoryHandler] 增量刷新会话失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 全文搜索历史记录
+     * 先在索引上完成打分排序，再按得分顺序分批生成摘要并推送，前端可以先展示最相关的结果
+     */
+    private void handleSearchHistory(String content) {
+        int generation = searchGeneration.incrementAndGet();
+        CompletableFuture.runAsync(() -> {
+            String query = "";
+            try {
+                JsonObject json = gson.fromJson(content, JsonObject.class);
+                if (json != null && json.has("query") && !json.get("query").isJsonNull()) {
+                    query = json.get("query").getAsString();
+                }
+            } catch (Exception e) {
+                query = content != null ? content : "";
+            }
+
+            long start = System.nanoTime();
+            try {
+                String projectPath = context.getProject().getBasePath();
+                HistorySearchService service = HistorySearchService.getInstance();
+                List<SearchIndexSegment.Hit> hits = service.search(query, SEARCH_LIMIT);
+
+                List<HistorySearchService.Result> batch = new ArrayList<>();
+                boolean first = true;
+                for (SearchIndexSegment.Hit hit : hits) {
+                    if (generation != searchGeneration.get() || context.isDisposed()) {
+                        return;
+                    }
+                    HistorySearchService.Result result = service.toResult(hit, query, projectPath);
+                    if (result != null) {
+                        batch.add(result);
+                    }
+                    if (batch.size() == SEARCH_BATCH_SIZE) {
+                        pushSearchResults(query, batch, first, false, start, null);
+                        batch = new ArrayList<>();
+                        first = false;
+                    }
+                }
+                pushSearchResults(query, batch, first, true, start, null);
+                System.out.println("[HistoryHandler] 搜索 \"" + query + "\": " + hits.size() + " 条结果, "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+            } catch (Exception e) {
+                System.err.println("[HistoryHandler] 搜索历史失败: " + e.getMessage());
+                pushSearchResults(query, new ArrayList<>(), true, true, start, e.getMessage() != null ? e.getMessage() : "未知错误");
+            }
+        });
+    }
+
+    /**
+     * 推送一批搜索结果；append 为 false 时前端替换已有结果
+     */
+    private void pushSearchResults(String query, List<HistorySearchService.Result> results, boolean first,
+                                   boolean done, long startNanos, String error) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("query", query);
+        payload.put("results", results);
+        payload.put("append", !first);
+        payload.put("done", done);
+        payload.put("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000);
+        if (error != null) {
+            payload.put("error", error);
+        }
+        JsChunkedTransfer.send(context::executeJavaScriptOnEDT, "window.onHistorySearchResults", gson.toJson(payload));
+    }
+
+    /**
+     * 停止监听会话目录
+     */
+    public synchronized void dispose() {
+        if (sessionWatcher != null) {
+            sessionWatcher.stop();
+            sessionWatcher = null;
+        }
+    }
+
     /**
      * 加载历史会话
      */
@@ -151,6 +314,7 @@ public class HistoryHandler extends BaseMessageHandler {
                 java.nio.file.Path mainSessionFile = projectDir.resolve(sessionId + ".jsonl");
                 boolean mainDeleted = false;
 
+                com.github.claudecodegui.history.SessionCache.getInstance().invalidate(mainSessionFile);
                 if (java.nio.file.Files.exists(mainSessionFile)) {
                     java.nio.file.Files.delete(mainSessionFile);
                     System.out.println("[HistoryHandler] ✅ 已删除主会话文件: " + mainSessionFile.getFileName());
@@ -176,6 +340,7 @@ public class HistoryHandler extends BaseMessageHandler {
 
                     for (java.nio.file.Path agentFile : agentFiles) {
                         try {
+                            com.github.claudecodegui.history.SessionCache.getInstance().invalidate(agentFile);
                             java.nio.file.Files.delete(agentFile);
                             System.out.println("[HistoryHandler] ✅ 已删除关联 agent 文件: " + agentFile.getFileName());
                             agentFilesDeleted++;
@@ -185,6 +350,15 @@ public class HistoryHandler extends BaseMessageHandler {
                     }
                 }
 
+                // 同时删除归档中的会话（主会话和 agent 文件）
+                SessionArchive archive = SessionArchive.forProjectDir(projectDir);
+                int archivedDeleted = archive.removeIf(filename -> filename.equals(sessionId + ".jsonl")
+                    || (filename.startsWith("agent-") && filename.endsWith(".jsonl")));
+                archive.save();
+                if (archivedDeleted > 0) {
+                    System.out.println("[HistoryHandler] ✅ 已删除归档中的 " + archivedDeleted + " 个会话");
+                }
+
                 System.out.println("[HistoryHandler] ========== 删除会话完成 ==========");
                 System.out.println("[HistoryHandler] 主会话文件: " + (mainDeleted ? "已删除" : "未找到"));
                 System.out.println("[HistoryHandler] Agent 文件: 删除了 " + agentFilesDeleted + " 个");
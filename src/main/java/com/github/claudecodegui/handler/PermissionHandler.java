@@ -1,12 +1,27 @@
 package com.github.claudecodegui.handler;
 
+import com.github.claudecodegui.permission.PermissionMetrics;
 import com.github.claudecodegui.permission.PermissionRequest;
 import com.github.claudecodegui.permission.PermissionService;
+import com.github.claudecodegui.util.JsChunkedTransfer;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
 
 import javax.swing.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -20,12 +35,26 @@ import java.util.concurrent.TimeUnit;
 public class PermissionHandler extends BaseMessageHandler {
 
     private static final String[] SUPPORTED_TYPES = {
-        "permission_decision"
+        "permission_decision",
+        "permission_batch_decision",
+        "get_permission_metrics",
+        "reset_permission_metrics",
+        "export_permission_metrics"
     };
 
+    // 在该时间窗口内到达的请求合并为一个批量弹窗（并行工具调用几乎同时发起请求）
+    private static final long BATCH_WINDOW_MS = 120;
+    // 前端弹窗超时，需略短于 Node 端的 60 秒
+    private static final long DIALOG_TIMEOUT_SECONDS = 35;
+
     // 权限请求映射
     private final Map<String, CompletableFuture<Integer>> pendingPermissionRequests = new ConcurrentHashMap<>();
 
+    // 等待合并显示的请求（guarded by batchLock）
+    private final Object batchLock = new Object();
+    private final List<JsonObject> batchBuffer = new ArrayList<>();
+    private boolean batchFlushScheduled = false;
+
     // 权限拒绝回调
     public interface PermissionDeniedCallback {
         void onPermissionDenied();
@@ -54,60 +83,166 @@ public class PermissionHandler extends BaseMessageHandler {
             handlePermissionDecision(content);
             return true;
         }
-        return false;
+        if ("permission_batch_decision".equals(type)) {
+            System.out.println("[PERM_DEBUG][BRIDGE_RECV] Received permission_batch_decision from JS");
+            handleBatchDecision(content);
+            return true;
+        }
+        switch (type) {
+            case "get_permission_metrics":
+                sendPermissionMetrics();
+                return true;
+            case "reset_permission_metrics":
+                PermissionMetrics.getInstance().reset();
+                sendPermissionMetrics();
+                return true;
+            case "export_permission_metrics":
+                exportPermissionMetrics();
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 推送权限统计到诊断面板
+     */
+    private void sendPermissionMetrics() {
+        String json = new Gson().toJson(PermissionMetrics.getInstance().toJson());
+        JsChunkedTransfer.send(context::executeJavaScriptOnEDT, "window.updatePermissionMetrics", json);
+    }
+
+    /**
+     * 导出权限统计为 JSON 文件（~/.codemoss/permission/diagnostics/）并在编辑器中打开，便于附到问题反馈中
+     */
+    private void exportPermissionMetrics() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                String json = new GsonBuilder().setPrettyPrinting().create()
+                    .toJson(PermissionMetrics.getInstance().toJson());
+                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+                Path file = Paths.get(System.getProperty("user.home"), ".codemoss", "permission", "diagnostics",
+                    "permission-metrics-" + timestamp + ".json");
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, json);
+                String path = file.toString();
+                ApplicationManager.getApplication().invokeLater(() -> {
+                    VirtualFile virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByPath(path);
+                    if (virtualFile != null) {
+                        FileEditorManager.getInstance(context.getProject()).openFile(virtualFile, true);
+                    }
+                    callJavaScript("window.showSwitchSuccess", escapeJs("已导出权限统计: " + path));
+                });
+            } catch (Exception e) {
+                System.err.println("[PermissionHandler] Failed to export permission metrics: " + e.getMessage());
+                SwingUtilities.invokeLater(() ->
+                    callJavaScript("window.showError", escapeJs("导出权限统计失败: " + e.getMessage())));
+            }
+        });
     }
 
     /**
      * 显示前端权限对话框
+     * 短时间内的多个请求合并为一个批量弹窗，每个请求仍有自己的 future
      */
     public CompletableFuture<Integer> showFrontendPermissionDialog(String toolName, JsonObject inputs) {
         String channelId = UUID.randomUUID().toString();
         CompletableFuture<Integer> future = new CompletableFuture<>();
 
-        System.out.println("[PERM_DEBUG][FRONTEND_DIALOG] Starting showFrontendPermissionDialog");
+        System.out.println("[PERM_DEBUG][FRONTEND_DIALOG] Queue permission request");
         System.out.println("[PERM_DEBUG][FRONTEND_DIALOG] channelId=" + channelId + ", toolName=" + toolName);
 
         pendingPermissionRequests.put(channelId, future);
 
+        JsonObject requestData = new JsonObject();
+        requestData.addProperty("channelId", channelId);
+        requestData.addProperty("toolName", toolName);
+        requestData.add("inputs", inputs);
+
+        synchronized (batchLock) {
+            batchBuffer.add(requestData);
+            if (!batchFlushScheduled) {
+                batchFlushScheduled = true;
+                CompletableFuture.delayedExecutor(BATCH_WINDOW_MS, TimeUnit.MILLISECONDS).execute(this::flushBatch);
+            }
+        }
+
+        // 超时处理：拒绝并收起前端对应的条目
+        CompletableFuture.delayedExecutor(DIALOG_TIMEOUT_SECONDS, TimeUnit.SECONDS).execute(() -> {
+            if (pendingPermissionRequests.remove(channelId, future)) {
+                future.complete(PermissionService.PermissionResponse.TIMEOUT.getValue());
+                dismissFrontendRequest(channelId);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * 把窗口内积累的请求一次性推给前端：单个请求沿用原弹窗，多个请求显示批量弹窗
+     */
+    private void flushBatch() {
+        List<JsonObject> batch;
+        synchronized (batchLock) {
+            batch = new ArrayList<>(batchBuffer);
+            batchBuffer.clear();
+            batchFlushScheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        System.out.println("[PERM_DEBUG][FRONTEND_DIALOG] Showing " + batch.size() + " permission request(s)");
+
         try {
             Gson gson = new Gson();
-            JsonObject requestData = new JsonObject();
-            requestData.addProperty("channelId", channelId);
-            requestData.addProperty("toolName", toolName);
-            requestData.add("inputs", inputs);
-
-            String requestJson = gson.toJson(requestData);
-            String escapedJson = escapeJs(requestJson);
+            String functionName;
+            String json;
+            if (batch.size() == 1) {
+                functionName = "showPermissionDialog";
+                json = gson.toJson(batch.get(0));
+            } else {
+                functionName = "showPermissionBatch";
+                JsonObject payload = new JsonObject();
+                JsonArray requests = new JsonArray();
+                batch.forEach(requests::add);
+                payload.add("requests", requests);
+                json = gson.toJson(payload);
+            }
+            String escapedJson = escapeJs(json);
 
             SwingUtilities.invokeLater(() -> {
                 String jsCode = "(function retryShowDialog(retries) { " +
-                    "  if (window.showPermissionDialog) { " +
-                    "    window.showPermissionDialog('" + escapedJson + "'); " +
+                    "  if (window." + functionName + ") { " +
+                    "    window." + functionName + "('" + escapedJson + "'); " +
                     "  } else if (retries > 0) { " +
                     "    setTimeout(function() { retryShowDialog(retries - 1); }, 200); " +
                     "  } else { " +
-                    "    console.error('[PERM_DEBUG][JS] FAILED: showPermissionDialog not available!'); " +
+                    "    console.error('[PERM_DEBUG][JS] FAILED: " + functionName + " not available!'); " +
                     "  } " +
                     "})(30);";
 
                 context.executeJavaScriptOnEDT(jsCode);
             });
-
-            // 超时处理
-            CompletableFuture.delayedExecutor(35, TimeUnit.SECONDS).execute(() -> {
-                if (!future.isDone()) {
-                    pendingPermissionRequests.remove(channelId);
-                    future.complete(PermissionService.PermissionResponse.DENY.getValue());
-                }
-            });
-
         } catch (Exception e) {
             System.err.println("[PERM_DEBUG][FRONTEND_DIALOG] ERROR: " + e.getMessage());
-            pendingPermissionRequests.remove(channelId);
-            future.complete(PermissionService.PermissionResponse.DENY.getValue());
+            for (JsonObject request : batch) {
+                CompletableFuture<Integer> future = pendingPermissionRequests.remove(request.get("channelId").getAsString());
+                if (future != null) {
+                    future.complete(PermissionService.PermissionResponse.DENY.getValue());
+                }
+            }
         }
+    }
 
-        return future;
+    /**
+     * 通知前端移除已超时的请求
+     */
+    private void dismissFrontendRequest(String channelId) {
+        JsonArray ids = new JsonArray();
+        ids.add(channelId);
+        String escapedJson = escapeJs(new Gson().toJson(ids));
+        SwingUtilities.invokeLater(() -> context.executeJavaScriptOnEDT(
+            "if (window.dismissPermissionRequests) { window.dismissPermissionRequests('" + escapedJson + "'); }"));
     }
 
     /**
@@ -183,48 +318,77 @@ public class PermissionHandler extends BaseMessageHandler {
         try {
             Gson gson = new Gson();
             JsonObject decision = gson.fromJson(jsonContent, JsonObject.class);
-
-            String channelId = decision.get("channelId").getAsString();
-            boolean allow = decision.get("allow").getAsBoolean();
-            boolean remember = decision.get("remember").getAsBoolean();
-            String rejectMessage = "";
-            if (decision.has("rejectMessage") && !decision.get("rejectMessage").isJsonNull()) {
-                rejectMessage = decision.get("rejectMessage").getAsString();
+            if (!applyDecision(decision)) {
+                notifyPermissionDenied();
             }
+        } catch (Exception e) {
+            System.err.println("[PERM_DEBUG][HANDLE_DECISION] ERROR: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-            CompletableFuture<Integer> pendingFuture = pendingPermissionRequests.remove(channelId);
-
-            if (pendingFuture != null) {
-                int responseValue;
-                if (allow) {
-                    responseValue = remember ?
-                        PermissionService.PermissionResponse.ALLOW_ALWAYS.getValue() :
-                        PermissionService.PermissionResponse.ALLOW.getValue();
-                } else {
-                    responseValue = PermissionService.PermissionResponse.DENY.getValue();
-                }
-                pendingFuture.complete(responseValue);
-
-                if (!allow) {
-                    notifyPermissionDenied();
-                }
-            } else {
-                // 处理来自 Session 的权限请求
-                if (remember) {
-                    context.getSession().handlePermissionDecisionAlways(channelId, allow);
-                } else {
-                    context.getSession().handlePermissionDecision(channelId, allow, false, rejectMessage);
-                }
-                if (!allow) {
-                    notifyPermissionDenied();
+    /**
+     * 处理批量决策：{decisions: [{channelId, allow, remember, rejectMessage?}]}
+     * 逐个完成对应的 future，所有等待中的 Node 调用同时放行
+     */
+    private void handleBatchDecision(String jsonContent) {
+        try {
+            Gson gson = new Gson();
+            JsonObject payload = gson.fromJson(jsonContent, JsonObject.class);
+            JsonArray decisions = payload.getAsJsonArray("decisions");
+            boolean anyDenied = false;
+            for (int i = 0; i < decisions.size(); i++) {
+                if (!applyDecision(decisions.get(i).getAsJsonObject())) {
+                    anyDenied = true;
                 }
             }
+            System.out.println("[PERM_DEBUG][HANDLE_DECISION] Applied " + decisions.size() + " batched decision(s)");
+            if (anyDenied) {
+                notifyPermissionDenied();
+            }
         } catch (Exception e) {
             System.err.println("[PERM_DEBUG][HANDLE_DECISION] ERROR: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    /**
+     * 应用单个决策
+     *
+     * @return 是否允许
+     */
+    private boolean applyDecision(JsonObject decision) {
+        String channelId = decision.get("channelId").getAsString();
+        boolean allow = decision.get("allow").getAsBoolean();
+        boolean remember = decision.has("remember") && decision.get("remember").getAsBoolean();
+        String rejectMessage = "";
+        if (decision.has("rejectMessage") && !decision.get("rejectMessage").isJsonNull()) {
+            rejectMessage = decision.get("rejectMessage").getAsString();
+        }
+
+        CompletableFuture<Integer> pendingFuture = pendingPermissionRequests.remove(channelId);
+
+        if (pendingFuture != null) {
+            int responseValue;
+            if (allow) {
+                responseValue = remember ?
+                    PermissionService.PermissionResponse.ALLOW_ALWAYS.getValue() :
+                    PermissionService.PermissionResponse.ALLOW.getValue();
+            } else {
+                responseValue = PermissionService.PermissionResponse.DENY.getValue();
+            }
+            pendingFuture.complete(responseValue);
+        } else {
+            // 处理来自 Session 的权限请求
+            if (remember) {
+                context.getSession().handlePermissionDecisionAlways(channelId, allow);
+            } else {
+                context.getSession().handlePermissionDecision(channelId, allow, false, rejectMessage);
+            }
+        }
+        return allow;
+    }
+
     /**
      * 通知权限被拒绝
      */
@@ -1,11 +1,14 @@
 package com.github.claudecodegui.handler;
 
 import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.CodemossSettingsService;
+import com.github.claudecodegui.util.JsChunkedTransfer;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.ide.util.PropertiesComponent;
 
 import javax.swing.*;
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -23,7 +26,9 @@ public class SettingsHandler extends BaseMessageHandler {
         "set_provider",
         "get_node_path",
         "set_node_path",
-        "get_usage_statistics"
+        "get_usage_statistics",
+        "get_history_archive",
+        "set_history_archive"
     };
 
     private static final Map<String, Integer> MODEL_CONTEXT_LIMITS = new HashMap<>();
@@ -63,6 +68,12 @@ public class SettingsHandler extends BaseMessageHandler {
             case "get_usage_statistics":
                 handleGetUsageStatistics(content);
                 return true;
+            case "get_history_archive":
+                handleGetHistoryArchive();
+                return true;
+            case "set_history_archive":
+                handleSetHistoryArchive(content);
+                return true;
             default:
                 return false;
         }
@@ -239,6 +250,56 @@ public class SettingsHandler extends BaseMessageHandler {
         System.out.println("[SettingsHandler] ========== handleSetNodePath END ==========");
     }
 
+    /**
+     * 获取冷会话归档配置
+     */
+    private void handleGetHistoryArchive() {
+        try {
+            String json = new Gson().toJson(context.getSettingsService().getHistoryArchiveConfig());
+            SwingUtilities.invokeLater(() -> {
+                callJavaScript("window.updateHistoryArchive", escapeJs(json));
+            });
+        } catch (Exception e) {
+            System.err.println("[SettingsHandler] Failed to get history archive config: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 保存冷会话归档配置（下次加载历史时生效）
+     */
+    private void handleSetHistoryArchive(String content) {
+        try {
+            JsonObject json = new Gson().fromJson(content, JsonObject.class);
+            boolean enabled = json != null && json.has("enabled") && json.get("enabled").getAsBoolean();
+            int days = json != null && json.has("olderThanDays")
+                ? json.get("olderThanDays").getAsInt()
+                : CodemossSettingsService.DEFAULT_ARCHIVE_DAYS;
+            context.getSettingsService().setHistoryArchiveConfig(enabled, days);
+            handleGetHistoryArchive();
+        } catch (Exception e) {
+            System.err.println("[SettingsHandler] Failed to set history archive config: " + e.getMessage());
+            e.printStackTrace();
+            SwingUtilities.invokeLater(() -> {
+                callJavaScript("window.showError", escapeJs("保存历史归档设置失败: " + e.getMessage()));
+            });
+        }
+    }
+
+    /**
+     * 读取可选的日期参数，格式错误时忽略
+     */
+    private static LocalDate parseDate(JsonObject json, String key) {
+        if (!json.has(key) || json.get(key).isJsonNull()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(json.get(key).getAsString());
+        } catch (Exception e) {
+            System.err.println("[SettingsHandler] Invalid date for " + key + ": " + json.get(key));
+            return null;
+        }
+    }
+
     /**
      * 获取使用统计数据
      */
@@ -246,6 +307,9 @@ public class SettingsHandler extends BaseMessageHandler {
         CompletableFuture.runAsync(() -> {
             try {
                 String projectPath = "all";
+                // 可选的日期范围（yyyy-MM-dd，含首尾）
+                LocalDate from = null;
+                LocalDate to = null;
 
                 if (content != null && !content.isEmpty() && !content.equals("{}")) {
                     try {
@@ -259,6 +323,8 @@ public class SettingsHandler extends BaseMessageHandler {
                                 projectPath = "all";
                             }
                         }
+                        from = parseDate(json, "from");
+                        to = parseDate(json, "to");
                     } catch (Exception e) {
                         if ("current".equals(content)) {
                             projectPath = context.getProject().getBasePath();
@@ -269,7 +335,7 @@ public class SettingsHandler extends BaseMessageHandler {
                 }
 
                 ClaudeHistoryReader reader = new ClaudeHistoryReader();
-                ClaudeHistoryReader.ProjectStatistics stats = reader.getProjectStatistics(projectPath);
+                ClaudeHistoryReader.ProjectStatistics stats = reader.getProjectStatistics(projectPath, from, to);
 
                 Gson gson = new Gson();
                 String json = gson.toJson(stats);
@@ -292,9 +358,8 @@ public class SettingsHandler extends BaseMessageHandler {
 
                 final String statsJsonFinal = json;
 
-                SwingUtilities.invokeLater(() -> {
-                    callJavaScript("window.updateUsageStatistics", escapeJs(statsJsonFinal));
-                });
+                // 全局统计包含全部会话明细，可能很大，分块推送
+                JsChunkedTransfer.send(context::executeJavaScriptOnEDT, "window.updateUsageStatistics", statsJsonFinal);
             } catch (Exception e) {
                 System.err.println("[SettingsHandler] Failed to get usage statistics: " + e.getMessage());
                 e.printStackTrace();
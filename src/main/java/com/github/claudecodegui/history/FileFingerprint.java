@@ -0,0 +1,93 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 追加写入文件的指纹
+ * 记录上次读取时的文件大小、修改时间、已消费偏移以及文件头部数据块的哈希，
+ * 用于判断文件是未变化、仅追加，还是被截断/重写
+ */
+public class FileFingerprint {
+
+    // 参与哈希的文件头部字节数
+    public static final int HEAD_BLOCK_SIZE = 4096;
+
+    public enum Change {
+        // 大小和修改时间都未变化
+        UNCHANGED,
+        // 只在末尾追加了内容，可以从 offset 继续解析
+        APPENDED,
+        // 文件变小或头部内容变化，需要完整重新解析
+        REWRITTEN
+    }
+
+    @SerializedName("s") public long size;
+    @SerializedName("m") public long lastModified;
+    @SerializedName("o") public long offset;
+    @SerializedName("hl") public int headLength;
+    @SerializedName("h") public long headHash;
+
+    /**
+     * 完整或增量解析之后，记录新的指纹
+     *
+     * @param file 文件路径
+     * @param size 解析前获取的文件大小
+     * @param lastModified 解析前获取的修改时间
+     * @param offset 解析器返回的已消费偏移
+     */
+    public static FileFingerprint capture(Path file, long size, long lastModified, long offset) throws IOException {
+        FileFingerprint fingerprint = new FileFingerprint();
+        fingerprint.size = size;
+        fingerprint.lastModified = lastModified;
+        fingerprint.offset = offset;
+        fingerprint.headLength = (int) Math.min(HEAD_BLOCK_SIZE, offset);
+        fingerprint.headHash = hashHead(file, fingerprint.headLength);
+        return fingerprint;
+    }
+
+    /**
+     * 判断文件相对于该指纹的变化类型
+     */
+    public Change classify(Path file, long currentSize, long currentLastModified) {
+        if (currentSize == size && currentLastModified == lastModified) {
+            return Change.UNCHANGED;
+        }
+        if (currentSize < offset) {
+            return Change.REWRITTEN;
+        }
+        try {
+            if (hashHead(file, headLength) != headHash) {
+                return Change.REWRITTEN;
+            }
+        } catch (IOException e) {
+            return Change.REWRITTEN;
+        }
+        return Change.APPENDED;
+    }
+
+    /**
+     * 计算文件前 length 个字节的 CRC32
+     */
+    static long hashHead(Path file, int length) throws IOException {
+        CRC32 crc = new CRC32();
+        if (length <= 0) {
+            return crc.getValue();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // 读满头部数据块
+            }
+            buffer.flip();
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.util.PathUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 历史全文搜索服务
+ * 覆盖 ~/.claude/history.jsonl 和 ~/.claude/projects 下所有项目的会话记录，
+ * 每个来源对应一个 SearchIndexSegment，查询时在所有分段上打分后合并取前 N 条，
+ * 命中只携带文件和行偏移，摘要和高亮在返回给前端之前按需生成
+ */
+public class HistorySearchService {
+
+    private static final String LOG_TAG = "[HistorySearch]";
+    private static final HistorySearchService INSTANCE = new HistorySearchService();
+
+    // 两次目录同步之间的最短间隔（连续输入时不重复检查所有会话文件）
+    private static final long REFRESH_INTERVAL_MILLIS = 5000;
+    // 摘要：命中位置之前保留的字符数和摘要总长度
+    private static final int SNIPPET_CONTEXT = 60;
+    private static final int SNIPPET_LENGTH = 220;
+    // 回读原始行的最大字节数
+    private static final int MAX_LINE_BYTES = 8 * 1024 * 1024;
+
+    private final JsonlChunkParser parser = new JsonlChunkParser();
+    private final Path claudeDir;
+    private final Path projectsDir;
+    private volatile List<SearchIndexSegment> segments;
+    private volatile long lastRefresh = 0;
+
+    /**
+     * 返回给前端的搜索结果
+     */
+    public static class Result {
+        // "user" / "assistant" / "history"
+        public String kind;
+        public String sessionId;
+        // 项目路径（可能为 null）
+        public String project;
+        // 是否属于当前项目（只有当前项目的会话可以直接打开）
+        public boolean currentProject;
+        public long timestamp;
+        public double score;
+        public String snippet;
+        // 摘要中需要高亮的区间 [start, end)
+        public List<int[]> highlights = new ArrayList<>();
+    }
+
+    private HistorySearchService() {
+        this.claudeDir = Paths.get(System.getProperty("user.home"), ".claude");
+        this.projectsDir = claudeDir.resolve("projects");
+    }
+
+    public static HistorySearchService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 标记索引需要在下一次查询前同步（会话目录监听到变化时调用）
+     */
+    public void markStale() {
+        lastRefresh = 0;
+    }
+
+    /**
+     * 按得分从高到低返回前 limit 条命中
+     */
+    public List<SearchIndexSegment.Hit> search(String query, int limit) throws Exception {
+        List<String> terms = SearchTokenizer.queryTerms(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<SearchIndexSegment> current = refreshIfStale();
+
+        long now = System.currentTimeMillis();
+        PriorityQueue<SearchIndexSegment.Hit> top = new PriorityQueue<>(Comparator.comparingDouble(h -> h.score));
+        for (SearchIndexSegment segment : current) {
+            segment.search(terms, now, hit -> {
+                top.offer(hit);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            });
+        }
+
+        List<SearchIndexSegment.Hit> hits = new ArrayList<>(top);
+        hits.sort(Comparator.comparingDouble((SearchIndexSegment.Hit h) -> h.score).reversed()
+            .thenComparing(Comparator.comparingLong((SearchIndexSegment.Hit h) -> h.timestamp).reversed()));
+        return hits;
+    }
+
+    /**
+     * 回读命中的原始行，生成带高亮的摘要
+     *
+     * @param currentProjectPath 当前项目路径，用于判断结果是否可以直接打开
+     * @return 文件已变化导致该行无法解析时返回 null
+     */
+    public Result toResult(SearchIndexSegment.Hit hit, String query, String currentProjectPath) {
+        SearchTextExtractor.Document doc;
+        try {
+            String line = readLine(hit.file, hit.offset);
+            doc = hit.kind == SearchTextExtractor.KIND_HISTORY
+                ? SearchTextExtractor.historyLine(line)
+                : SearchTextExtractor.transcriptLine(line);
+        } catch (Exception e) {
+            return null;
+        }
+        if (doc == null) {
+            return null;
+        }
+
+        Result result = new Result();
+        result.kind = hit.kind == SearchTextExtractor.KIND_USER ? "user"
+            : hit.kind == SearchTextExtractor.KIND_ASSISTANT ? "assistant" : "history";
+        result.timestamp = hit.timestamp;
+        result.score = hit.score;
+        result.project = doc.project;
+
+        String currentDirName = currentProjectPath != null ? PathUtils.sanitizePath(currentProjectPath) : null;
+        if (hit.kind == SearchTextExtractor.KIND_HISTORY) {
+            result.sessionId = doc.sessionId;
+            result.currentProject = currentDirName != null && doc.project != null
+                && currentDirName.equals(PathUtils.sanitizePath(doc.project));
+        } else {
+            String fileName = hit.file.getFileName().toString();
+            result.sessionId = fileName.substring(0, fileName.length() - ".jsonl".length());
+            result.currentProject = currentDirName != null && currentDirName.equals(hit.file.getParent().getFileName().toString());
+        }
+
+        buildSnippet(result, doc.text, SearchTokenizer.queryTerms(query));
+        return result;
+    }
+
+    /**
+     * 同步所有分段（新增项目目录会自动加入），在共享的历史解析线程池上并行执行
+     */
+    private synchronized List<SearchIndexSegment> refreshIfStale() throws Exception {
+        long now = System.currentTimeMillis();
+        if (segments != null && now - lastRefresh < REFRESH_INTERVAL_MILLIS) {
+            return segments;
+        }
+
+        List<SearchIndexSegment> all = new ArrayList<>();
+        all.add(SearchIndexSegment.forHistoryFile(claudeDir));
+        if (Files.isDirectory(projectsDir)) {
+            try (Stream<Path> stream = Files.list(projectsDir)) {
+                for (Path dir : stream.filter(Files::isDirectory).collect(Collectors.toList())) {
+                    all.add(SearchIndexSegment.forProjectDir(dir));
+                }
+            }
+        }
+
+        long start = System.nanoTime();
+        int changed = JsonlChunkParser.getSharedPool().submit(() ->
+            all.parallelStream().mapToInt(this::refreshSegment).sum()
+        ).get();
+        if (changed > 0) {
+            int docs = all.stream().mapToInt(SearchIndexSegment::getDocumentCount).sum();
+            System.out.println(LOG_TAG + " Indexed " + changed + " changed files across " + all.size() + " sources, "
+                + docs + " documents, " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+
+        segments = all;
+        lastRefresh = System.currentTimeMillis();
+        return all;
+    }
+
+    private int refreshSegment(SearchIndexSegment segment) {
+        try {
+            int changed = segment.refresh(parser);
+            segment.save();
+            return changed;
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to refresh " + segment.getDirectory() + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 以第一个命中位置为中心截取摘要，并计算摘要中所有查询词出现的位置
+     */
+    static void buildSnippet(Result result, String text, List<String> terms) {
+        String flat = text.replaceAll("\\s+", " ").trim();
+        String lower = flat.toLowerCase(Locale.ROOT);
+        if (lower.length() != flat.length()) {
+            // 个别字符小写后长度变化，退化为区分大小写匹配，保证偏移一致
+            lower = flat;
+        }
+
+        int first = -1;
+        for (String term : terms) {
+            int index = lower.indexOf(term);
+            if (index >= 0 && (first < 0 || index < first)) {
+                first = index;
+            }
+        }
+
+        int start = Math.max(0, first - SNIPPET_CONTEXT);
+        int end = Math.min(flat.length(), start + SNIPPET_LENGTH);
+        if (start > 0 && Character.isLowSurrogate(flat.charAt(start))) {
+            start++;
+        }
+        if (end < flat.length() && Character.isLowSurrogate(flat.charAt(end))) {
+            end--;
+        }
+
+        String prefix = start > 0 ? "…" : "";
+        result.snippet = prefix + flat.substring(start, end) + (end < flat.length() ? "…" : "");
+
+        List<int[]> ranges = new ArrayList<>();
+        for (String term : terms) {
+            int index = lower.indexOf(term, start);
+            while (index >= 0 && index + term.length() <= end) {
+                ranges.add(new int[]{index - start + prefix.length(), index - start + prefix.length() + term.length()});
+                index = lower.indexOf(term, index + term.length());
+            }
+        }
+
+        // 合并重叠区间
+        ranges.sort(Comparator.comparingInt(r -> r[0]));
+        for (int[] range : ranges) {
+            int[] last = result.highlights.isEmpty() ? null : result.highlights.get(result.highlights.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                result.highlights.add(range);
+            }
+        }
+    }
+
+    /**
+     * 从行首偏移读取一整行
+     */
+    private static String readLine(Path file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = offset;
+            while (line.size() < MAX_LINE_BYTES) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer.get(i) == '\n') {
+                        line.write(buffer.array(), 0, i);
+                        return line.toString(StandardCharsets.UTF_8);
+                    }
+                }
+                line.write(buffer.array(), 0, read);
+                position += read;
+            }
+            return line.toString(StandardCharsets.UTF_8);
+        }
+    }
+}
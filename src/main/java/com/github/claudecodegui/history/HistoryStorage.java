@@ -0,0 +1,84 @@
+package com.github.claudecodegui.history;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 历史索引存储工具
+ * 所有历史相关的索引文件都保存在 ~/.codemoss/history-index 下，冷会话归档保存在 ~/.codemoss/history-archive 下
+ */
+public final class HistoryStorage {
+
+    private static final String CONFIG_DIR_NAME = ".codemoss";
+    private static final String INDEX_DIR_NAME = "history-index";
+    private static final String ARCHIVE_DIR_NAME = "history-archive";
+    // 超过该长度的项目目录名使用 前缀 + 哈希，避免超出文件系统文件名长度限制
+    private static final int MAX_NAME_LENGTH = 100;
+    // 旧版本写下、现已不再使用的索引文件（history.jsonl 行偏移索引）
+    private static final String OBSOLETE_INDEX_GLOB = "*.history.lines.bin";
+
+    private static final AtomicBoolean obsoleteFilesDeleted = new AtomicBoolean(false);
+
+    private HistoryStorage() {
+    }
+
+    /**
+     * 获取索引根目录 (~/.codemoss/history-index)
+     */
+    public static Path getIndexRoot() {
+        String homeDir = System.getProperty("user.home");
+        return Paths.get(homeDir, CONFIG_DIR_NAME, INDEX_DIR_NAME);
+    }
+
+    /**
+     * 获取某个 ~/.claude/projects 子目录对应的索引文件
+     *
+     * @param projectDir 项目历史目录
+     * @param suffix 文件后缀（如 ".sessions.json"）
+     */
+    public static Path indexFileFor(Path projectDir, String suffix) {
+        return getIndexRoot().resolve(safeName(projectDir) + suffix);
+    }
+
+    /**
+     * 获取某个 ~/.claude/projects 子目录对应的归档目录 (~/.codemoss/history-archive/{项目目录名})
+     */
+    public static Path archiveDirFor(Path projectDir) {
+        String homeDir = System.getProperty("user.home");
+        return Paths.get(homeDir, CONFIG_DIR_NAME, ARCHIVE_DIR_NAME).resolve(safeName(projectDir));
+    }
+
+    /**
+     * 删除旧版本遗留的、不再读取的索引文件（每个进程只执行一次）
+     */
+    public static void deleteObsoleteIndexFiles() {
+        if (!obsoleteFilesDeleted.compareAndSet(false, true)) {
+            return;
+        }
+        Path indexRoot = getIndexRoot();
+        if (!Files.isDirectory(indexRoot)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(indexRoot, OBSOLETE_INDEX_GLOB)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+                System.out.println("[HistoryStorage] Deleted obsolete index file " + file);
+            }
+        } catch (IOException e) {
+            System.err.println("[HistoryStorage] Failed to delete obsolete index files: " + e.getMessage());
+        }
+    }
+
+    private static String safeName(Path projectDir) {
+        String name = projectDir.getFileName() != null ? projectDir.getFileName().toString() : "root";
+        if (name.length() > MAX_NAME_LENGTH) {
+            String hash = Integer.toHexString(name.hashCode());
+            name = name.substring(name.length() - (MAX_NAME_LENGTH - hash.length() - 1)) + "_" + hash;
+        }
+        return name;
+    }
+}
@@ -0,0 +1,290 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.util.PlatformUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * JSONL 分块并行解析器
+ * 将文件内存映射后按换行边界切分为若干块，在 ForkJoinPool 上并行解析，再按原始顺序合并结果
+ *
+ * 约定：
+ * - 空行和解析失败的行会被跳过（与原先逐行读取的行为一致）
+ * - 末尾没有换行符的残缺行只有在能被成功解析时才计入已消费字节，
+ *   这样正在被追加写入的文件可以在下一次从 endOffset 继续读取
+ */
+public class JsonlChunkParser {
+
+    // 小于该大小的数据直接在调用线程中顺序解析，避免线程调度开销
+    private static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024;
+    // 单个块的目标大小
+    private static final long TARGET_CHUNK_SIZE = 8L * 1024 * 1024;
+    // 大于该大小的文件才使用内存映射（Windows 下映射会锁定文件直到 GC，删除会话时会失败）
+    private static final long MMAP_THRESHOLD = 16L * 1024 * 1024;
+    // 查找换行边界时每次读取的窗口大小
+    private static final int BOUNDARY_SCAN_WINDOW = 64 * 1024;
+
+    private static final ForkJoinPool SHARED_POOL = new ForkJoinPool(
+        Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    private final ForkJoinPool pool;
+
+    /**
+     * 单行解析函数
+     * 返回 null 或抛出异常的行会被跳过
+     */
+    @FunctionalInterface
+    public interface LineParser<T> {
+        T parse(String line) throws Exception;
+    }
+
+    /**
+     * 带行起始偏移的单行解析函数（需要回读原始行时使用，例如搜索结果的摘要）
+     */
+    @FunctionalInterface
+    public interface OffsetLineParser<T> {
+        T parse(String line, long offset) throws Exception;
+    }
+
+    /**
+     * 解析结果
+     */
+    public static class Result<T> {
+        public final List<T> items;
+        // 已完整消费到的字节偏移（下一次增量读取的起点）
+        public final long endOffset;
+
+        Result(List<T> items, long endOffset) {
+            this.items = items;
+            this.endOffset = endOffset;
+        }
+    }
+
+    public JsonlChunkParser() {
+        this(SHARED_POOL);
+    }
+
+    public JsonlChunkParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 获取历史解析共用的线程池（避免占用 IDE 的 commonPool）
+     */
+    public static ForkJoinPool getSharedPool() {
+        return SHARED_POOL;
+    }
+
+    /**
+     * 解析整个文件
+     */
+    public <T> Result<T> parse(Path file, LineParser<T> parser) throws IOException {
+        return parse(file, 0, parser);
+    }
+
+    /**
+     * 从指定字节偏移开始解析文件
+     *
+     * @param file 文件路径
+     * @param fromOffset 起始偏移（必须位于行首）
+     * @param parser 单行解析函数
+     * @return 按文件顺序排列的解析结果以及已消费的偏移
+     */
+    public <T> Result<T> parse(Path file, long fromOffset, LineParser<T> parser) throws IOException {
+        return parseWithOffsets(file, fromOffset, (line, offset) -> parser.parse(line));
+    }
+
+    /**
+     * 从指定字节偏移开始解析文件，解析函数同时获得每行的起始字节偏移
+     */
+    public <T> Result<T> parseWithOffsets(Path file, long fromOffset, OffsetLineParser<T> parser) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (fromOffset >= size) {
+                return new Result<>(new ArrayList<>(), Math.min(fromOffset, size));
+            }
+
+            List<long[]> chunks = splitChunks(channel, fromOffset, size);
+            if (chunks.size() == 1) {
+                ChunkResult<T> single = parseChunk(channel, chunks.get(0), size, parser);
+                return new Result<>(single.items, single.endOffset);
+            }
+
+            List<ForkJoinTask<ChunkResult<T>>> tasks = new ArrayList<>(chunks.size());
+            for (long[] chunk : chunks) {
+                tasks.add(pool.submit(() -> parseChunk(channel, chunk, size, parser)));
+            }
+
+            // 按顺序合并，保证结果顺序与文件一致
+            List<T> items = new ArrayList<>();
+            long endOffset = fromOffset;
+            for (ForkJoinTask<ChunkResult<T>> task : tasks) {
+                ChunkResult<T> chunkResult = task.join();
+                items.addAll(chunkResult.items);
+                endOffset = chunkResult.endOffset;
+            }
+            return new Result<>(items, endOffset);
+        } catch (RuntimeException e) {
+            // ForkJoinTask.join 会把 IOException 包装为 RuntimeException
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 按换行边界切分块，返回 [start, end) 区间列表
+     */
+    private List<long[]> splitChunks(FileChannel channel, long from, long size) throws IOException {
+        long length = size - from;
+        if (length <= PARALLEL_THRESHOLD) {
+            return Collections.singletonList(new long[]{from, size});
+        }
+
+        int chunkCount = (int) Math.max(2, length / TARGET_CHUNK_SIZE + 1);
+        long approxChunkSize = length / chunkCount;
+
+        List<long[]> chunks = new ArrayList<>(chunkCount);
+        long start = from;
+        while (start < size) {
+            long target = start + approxChunkSize;
+            long end = target >= size ? size : findNextLineStart(channel, target, size);
+            chunks.add(new long[]{start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * 从 position 开始查找下一个换行符，返回其后一个字节的位置；找不到则返回文件末尾
+     */
+    private long findNextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(BOUNDARY_SCAN_WINDOW);
+        long pos = position;
+        while (pos < size) {
+            window.clear();
+            int read = channel.read(window, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * 解析单个块
+     */
+    private <T> ChunkResult<T> parseChunk(FileChannel channel, long[] range, long fileSize, OffsetLineParser<T> parser) throws IOException {
+        long start = range[0];
+        long end = range[1];
+        int length = (int) (end - start);
+
+        ByteBuffer buffer;
+        if (fileSize >= MMAP_THRESHOLD && !PlatformUtils.isWindows()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } else {
+            buffer = ByteBuffer.allocate(length);
+            int total = 0;
+            while (total < length) {
+                int read = channel.read(buffer, start + total);
+                if (read < 0) {
+                    break;
+                }
+                total += read;
+            }
+            length = total;
+        }
+
+        List<T> items = new ArrayList<>();
+        byte[] lineBytes = new byte[8192];
+        int lineStart = 0;
+        long consumed = start;
+
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            lineBytes = decodeAndParse(buffer, start, lineStart, i, lineBytes, parser, items, false);
+            lineStart = i + 1;
+            consumed = start + lineStart;
+        }
+
+        // 处理末尾没有换行符的残缺行（仅当它是整个文件的最后一行时才可能出现）
+        if (lineStart < length && decodeAndParseTail(buffer, start, lineStart, length, lineBytes, parser, items)) {
+            consumed = start + length;
+        }
+
+        return new ChunkResult<>(items, consumed);
+    }
+
+    private <T> byte[] decodeAndParse(ByteBuffer buffer, long base, int from, int to, byte[] lineBytes,
+                                      OffsetLineParser<T> parser, List<T> items, boolean strict) {
+        int len = to - from;
+        if (len > 0 && buffer.get(to - 1) == '\r') {
+            len--;
+        }
+        if (len <= 0) {
+            return lineBytes;
+        }
+        if (lineBytes.length < len) {
+            lineBytes = new byte[Math.max(len, lineBytes.length * 2)];
+        }
+        buffer.get(from, lineBytes, 0, len);
+        String line = new String(lineBytes, 0, len, StandardCharsets.UTF_8);
+        if (line.trim().isEmpty()) {
+            return lineBytes;
+        }
+        try {
+            T item = parser.parse(line, base + from);
+            if (item != null) {
+                items.add(item);
+            }
+        } catch (Exception e) {
+            if (strict) {
+                throw new IllegalStateException(e);
+            }
+            // 跳过解析失败的行
+        }
+        return lineBytes;
+    }
+
+    /**
+     * 解析末尾残缺行，解析失败说明该行可能仍在写入中，返回 false 表示不消费
+     */
+    private <T> boolean decodeAndParseTail(ByteBuffer buffer, long base, int from, int to, byte[] lineBytes,
+                                           OffsetLineParser<T> parser, List<T> items) {
+        try {
+            decodeAndParse(buffer, base, from, to, lineBytes, parser, items, true);
+            return true;
+        } catch (IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private static class ChunkResult<T> {
+        final List<T> items;
+        final long endOffset;
+
+        ChunkResult(List<T> items, long endOffset) {
+            this.items = items;
+            this.endOffset = endOffset;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.claudecodegui.history;
+
+/**
+ * 模型价格表（美元 / 百万 token）
+ * 按模型系列预先展开为 double 数组，计算费用时不需要查 Map 和拆箱
+ */
+public final class ModelPricing {
+
+    // 模型系列
+    public static final int SONNET = 0;
+    public static final int OPUS = 1;
+    public static final int HAIKU = 2;
+
+    private static final int INPUT = 0;
+    private static final int OUTPUT = 1;
+    private static final int CACHE_WRITE = 2;
+    private static final int CACHE_READ = 3;
+    private static final int STRIDE = 4;
+
+    // 依次为 input, output, cacheWrite, cacheRead
+    private static final double[] PRICES = {
+        3.0, 15.0, 3.75, 0.30,      // claude-sonnet-4（默认）
+        15.0, 75.0, 18.75, 1.50,    // claude-opus-4
+        0.8, 4.0, 1.0, 0.08,        // claude-haiku-4
+    };
+
+    private ModelPricing() {
+    }
+
+    /**
+     * 根据模型 ID 判断计价系列，未知模型按 Sonnet 4 计价
+     */
+    public static int familyOf(String model) {
+        if (model == null) {
+            return SONNET;
+        }
+        String modelLower = model.toLowerCase();
+        if (modelLower.contains("opus-4")) {
+            return OPUS;
+        } else if (modelLower.contains("haiku-4")) {
+            return HAIKU;
+        }
+        return SONNET;
+    }
+
+    /**
+     * 计算一条用量记录的费用（美元）
+     */
+    public static double cost(int family, UsageRecord usage) {
+        int base = family * STRIDE;
+        return (usage.inputTokens * PRICES[base + INPUT] +
+                usage.outputTokens * PRICES[base + OUTPUT] +
+                usage.cacheWriteTokens * PRICES[base + CACHE_WRITE] +
+                usage.cacheReadTokens * PRICES[base + CACHE_READ]) / 1_000_000.0;
+    }
+}
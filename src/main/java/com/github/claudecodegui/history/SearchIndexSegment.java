@@ -0,0 +1,606 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.util.AtomicFileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 全文搜索倒排索引（一个来源目录对应一个分段）
+ * - 文档粒度为一行记录（一条用户输入、一条助手回复或一条 history.jsonl 记录），只保存文件名和行偏移，
+ *   摘要在命中后回读原始行生成
+ * - 倒排表：词 -> [文档号, 词频, 文档号, 词频, ...]，文档按追加顺序编号，倒排表天然有序
+ * - 词表三元组：三元组 -> 包含它的词，查询词可以匹配词表中包含它的更长的词（子串匹配），在加载后按需构建
+ *
+ * 文件按指纹增量更新：追加只索引新行；重写或删除时将旧文档标记删除，删除比例过高时压缩
+ *
+ * 存储文件: ~/.codemoss/history-index/{项目目录名}.search.bin 和 .claude.history.search.bin
+ */
+public class SearchIndexSegment {
+
+    private static final String LOG_TAG = "[SearchIndex]";
+    private static final String FILE_SUFFIX = ".search.bin";
+    private static final String HISTORY_FILE_SUFFIX = ".history.search.bin";
+    private static final int MAGIC = 0x43435349;
+    private static final int FORMAT_VERSION = 1;
+    private static final String HISTORY_FILE_NAME = "history.jsonl";
+
+    // BM25 参数
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    // 子串匹配（非整词）的得分权重
+    private static final double PREFIX_WEIGHT = 0.8;
+    private static final double SUBSTRING_WEIGHT = 0.5;
+    // 单个查询词最多展开的词表项
+    private static final int MAX_EXPANSIONS = 64;
+    // 最多参与 AND 的查询词数
+    public static final int MAX_QUERY_TERMS = 16;
+    // 已删除文档超过该数量且占比超过 1/3 时压缩
+    private static final int COMPACT_MIN_DELETED = 1024;
+
+    private static final Map<Path, SearchIndexSegment> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * 索引来源
+     */
+    public enum Source {
+        // ~/.claude/projects 下的某个项目目录（所有 .jsonl 会话记录）
+        TRANSCRIPTS,
+        // ~/.claude/history.jsonl（用户输入历史）
+        HISTORY
+    }
+
+    /**
+     * 命中回调（在持有分段锁时调用）
+     */
+    public interface HitCollector {
+        void offer(Hit hit);
+    }
+
+    /**
+     * 一次命中：定位原始行所需的信息在命中时复制出来，之后分段压缩也不影响
+     */
+    public static class Hit {
+        public final Path file;
+        public final long offset;
+        public final byte kind;
+        public final long timestamp;
+        public final double score;
+
+        Hit(Path file, long offset, byte kind, long timestamp, double score) {
+            this.file = file;
+            this.offset = offset;
+            this.kind = kind;
+            this.timestamp = timestamp;
+            this.score = score;
+        }
+    }
+
+    private static class FileState {
+        int id;
+        FileFingerprint fingerprint;
+    }
+
+    private final Path directory;
+    private final Source source;
+    private final Path indexFile;
+
+    private final Map<String, FileState> files = new HashMap<>();
+    private String[] fileNames = new String[16];
+    private int nextFileId = 0;
+
+    // 文档表（按文档号索引的并行数组），docFile 为 -1 表示已删除
+    private int docCount = 0;
+    private int[] docFile = new int[1024];
+    private long[] docOffset = new long[1024];
+    private long[] docTime = new long[1024];
+    private int[] docLength = new int[1024];
+    private byte[] docKind = new byte[1024];
+    private int deletedDocs = 0;
+    private long totalLength = 0;
+
+    private final Map<String, IntList> postings = new HashMap<>();
+    private Map<String, List<String>> gramIndex;
+    private boolean dirty = false;
+
+    private SearchIndexSegment(Path directory, Source source, Path indexFile) {
+        this.directory = directory;
+        this.source = source;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * 获取某个项目历史目录的分段（首次访问时从磁盘加载）
+     */
+    public static SearchIndexSegment forProjectDir(Path projectDir) {
+        return forDirectory(projectDir, Source.TRANSCRIPTS);
+    }
+
+    /**
+     * 获取 ~/.claude/history.jsonl 的分段
+     */
+    public static SearchIndexSegment forHistoryFile(Path claudeDir) {
+        return forDirectory(claudeDir, Source.HISTORY);
+    }
+
+    private static SearchIndexSegment forDirectory(Path directory, Source source) {
+        Path indexFile = HistoryStorage.indexFileFor(directory, source == Source.HISTORY ? HISTORY_FILE_SUFFIX : FILE_SUFFIX);
+        return loaded.computeIfAbsent(indexFile, file -> load(directory, source, file));
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
+    public synchronized int getDocumentCount() {
+        return docCount - deletedDocs;
+    }
+
+    // ==================== 增量更新 ====================
+
+    /**
+     * 按文件指纹同步来源目录：新增文件完整索引，追加的文件只索引新行，重写或删除的文件先移除旧文档
+     *
+     * @return 发生变化的文件数
+     */
+    public synchronized int refresh(JsonlChunkParser parser) throws IOException {
+        List<Path> sourceFiles = listSourceFiles();
+        Set<String> present = new HashSet<>();
+        int changed = 0;
+
+        for (Path path : sourceFiles) {
+            String fileName = path.getFileName().toString();
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                if (attrs.size() == 0) {
+                    continue;
+                }
+                present.add(fileName);
+
+                long size = attrs.size();
+                long lastModified = attrs.lastModifiedTime().toMillis();
+                FileState state = files.get(fileName);
+                FileFingerprint.Change change = state == null
+                    ? FileFingerprint.Change.REWRITTEN
+                    : state.fingerprint.classify(path, size, lastModified);
+                if (change == FileFingerprint.Change.UNCHANGED) {
+                    continue;
+                }
+
+                if (state == null) {
+                    state = new FileState();
+                    state.id = allocateFileId(fileName);
+                } else if (change == FileFingerprint.Change.REWRITTEN) {
+                    deleteFileDocs(state.id);
+                }
+
+                long from = change == FileFingerprint.Change.APPENDED ? state.fingerprint.offset : 0;
+                JsonlChunkParser.Result<SearchTextExtractor.Document> parsed = parser.parseWithOffsets(path, from, this::extract);
+                for (SearchTextExtractor.Document doc : parsed.items) {
+                    addDocument(state.id, doc);
+                }
+                state.fingerprint = FileFingerprint.capture(path, size, lastModified, parsed.endOffset);
+                files.put(fileName, state);
+                dirty = true;
+                changed++;
+            } catch (IOException e) {
+                System.err.println(LOG_TAG + " Failed to index " + path + ": " + e.getMessage());
+            }
+        }
+
+        // 移除已删除的文件
+        Iterator<Map.Entry<String, FileState>> it = files.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, FileState> entry = it.next();
+            if (!present.contains(entry.getKey())) {
+                deleteFileDocs(entry.getValue().id);
+                fileNames[entry.getValue().id] = null;
+                it.remove();
+                dirty = true;
+                changed++;
+            }
+        }
+
+        if (deletedDocs >= COMPACT_MIN_DELETED && deletedDocs * 3 > docCount) {
+            compact();
+        }
+        return changed;
+    }
+
+    private List<Path> listSourceFiles() throws IOException {
+        if (source == Source.HISTORY) {
+            Path historyFile = directory.resolve(HISTORY_FILE_NAME);
+            return Files.isRegularFile(historyFile) ? List.of(historyFile) : List.of();
+        }
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(path -> path.toString().endsWith(".jsonl")).collect(Collectors.toList());
+        }
+    }
+
+    private SearchTextExtractor.Document extract(String line, long offset) throws IOException {
+        SearchTextExtractor.Document doc = source == Source.HISTORY
+            ? SearchTextExtractor.historyLine(line)
+            : SearchTextExtractor.transcriptLine(line);
+        if (doc != null) {
+            doc.offset = offset;
+        }
+        return doc;
+    }
+
+    private int allocateFileId(String fileName) {
+        if (nextFileId == fileNames.length) {
+            fileNames = Arrays.copyOf(fileNames, fileNames.length * 2);
+        }
+        fileNames[nextFileId] = fileName;
+        return nextFileId++;
+    }
+
+    private void addDocument(int fileId, SearchTextExtractor.Document doc) {
+        Map<String, int[]> frequencies = new HashMap<>();
+        int[] length = {0};
+        SearchTokenizer.tokenize(doc.text, token -> {
+            frequencies.computeIfAbsent(token, k -> new int[1])[0]++;
+            length[0]++;
+        });
+        if (length[0] == 0) {
+            return;
+        }
+
+        if (docCount == docFile.length) {
+            int capacity = docFile.length * 2;
+            docFile = Arrays.copyOf(docFile, capacity);
+            docOffset = Arrays.copyOf(docOffset, capacity);
+            docTime = Arrays.copyOf(docTime, capacity);
+            docLength = Arrays.copyOf(docLength, capacity);
+            docKind = Arrays.copyOf(docKind, capacity);
+        }
+        int docId = docCount++;
+        docFile[docId] = fileId;
+        docOffset[docId] = doc.offset;
+        docTime[docId] = doc.timestamp;
+        docLength[docId] = length[0];
+        docKind[docId] = doc.kind;
+        totalLength += length[0];
+
+        for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+            IntList list = postings.get(entry.getKey());
+            if (list == null) {
+                list = new IntList(2);
+                postings.put(entry.getKey(), list);
+                // 新词使词表三元组失效
+                gramIndex = null;
+            }
+            list.add(docId);
+            list.add(entry.getValue()[0]);
+        }
+    }
+
+    private void deleteFileDocs(int fileId) {
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docFile[doc] == fileId) {
+                docFile[doc] = -1;
+                totalLength -= docLength[doc];
+                deletedDocs++;
+            }
+        }
+    }
+
+    /**
+     * 去掉已删除的文档并重新编号
+     */
+    private void compact() {
+        int[] remap = new int[docCount];
+        int live = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (docFile[doc] < 0) {
+                remap[doc] = -1;
+                continue;
+            }
+            remap[doc] = live;
+            docFile[live] = docFile[doc];
+            docOffset[live] = docOffset[doc];
+            docTime[live] = docTime[doc];
+            docLength[live] = docLength[doc];
+            docKind[live] = docKind[doc];
+            live++;
+        }
+
+        Iterator<Map.Entry<String, IntList>> it = postings.entrySet().iterator();
+        while (it.hasNext()) {
+            IntList list = it.next().getValue();
+            int out = 0;
+            for (int i = 0; i < list.size; i += 2) {
+                int mapped = remap[list.values[i]];
+                if (mapped >= 0) {
+                    list.values[out++] = mapped;
+                    list.values[out++] = list.values[i + 1];
+                }
+            }
+            list.size = out;
+            if (out == 0) {
+                it.remove();
+                gramIndex = null;
+            }
+        }
+
+        System.out.println(LOG_TAG + " Compacted " + directory.getFileName() + ": " + docCount + " -> " + live + " docs");
+        docCount = live;
+        deletedDocs = 0;
+        dirty = true;
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 执行查询：所有查询词都必须命中（每个词可以通过整词、前缀或子串命中），按 BM25 打分
+     *
+     * @param terms 查询词（见 SearchTokenizer.queryTerms）
+     * @param now 当前时间，用于新近度加权
+     */
+    public synchronized void search(List<String> terms, long now, HitCollector collector) {
+        int live = docCount - deletedDocs;
+        if (live == 0 || terms.isEmpty()) {
+            return;
+        }
+        int termCount = Math.min(terms.size(), MAX_QUERY_TERMS);
+        double avgLength = Math.max(1.0, (double) totalLength / live);
+        float[] scores = new float[docCount];
+        int[] masks = new int[docCount];
+
+        for (int t = 0; t < termCount; t++) {
+            Map<String, Double> expansions = expand(terms.get(t));
+            if (expansions.isEmpty()) {
+                return;
+            }
+            int bit = 1 << t;
+            for (Map.Entry<String, Double> expansion : expansions.entrySet()) {
+                IntList list = postings.get(expansion.getKey());
+                int df = list.size / 2;
+                double idf = Math.log(1 + (live - df + 0.5) / (df + 0.5));
+                double weight = expansion.getValue() * idf;
+                for (int i = 0; i < list.size; i += 2) {
+                    int doc = list.values[i];
+                    if (docFile[doc] < 0) {
+                        continue;
+                    }
+                    int tf = list.values[i + 1];
+                    double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * docLength[doc] / avgLength));
+                    scores[doc] += (float) (weight * norm);
+                    masks[doc] |= bit;
+                }
+            }
+        }
+
+        int all = (1 << termCount) - 1;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (masks[doc] != all) {
+                continue;
+            }
+            // 用户输入更可能是要找的内容；越新的记录略微加权（半衰约 30 天）
+            double kindBoost = docKind[doc] == SearchTextExtractor.KIND_ASSISTANT ? 1.0 : 1.2;
+            double ageDays = Math.max(0, now - docTime[doc]) / 86_400_000.0;
+            double recencyBoost = 1 + 0.2 * Math.exp(-ageDays / 30);
+            double score = scores[doc] * kindBoost * recencyBoost;
+            collector.offer(new Hit(directory.resolve(fileNames[docFile[doc]]), docOffset[doc], docKind[doc], docTime[doc], score));
+        }
+    }
+
+    /**
+     * 将查询词展开为词表中的词及其权重
+     */
+    private Map<String, Double> expand(String term) {
+        Map<String, Double> expansions = new HashMap<>();
+        if (postings.containsKey(term)) {
+            expansions.put(term, 1.0);
+        }
+        if (SearchTokenizer.isCjkToken(term) || term.length() < SearchTokenizer.GRAM_LENGTH) {
+            return expansions;
+        }
+
+        // 取三元组中最短的候选列表逐个验证
+        List<String> shortest = null;
+        Map<String, List<String>> grams = gramIndex();
+        for (String gram : SearchTokenizer.grams(term)) {
+            List<String> tokens = grams.get(gram);
+            if (tokens == null) {
+                return expansions;
+            }
+            if (shortest == null || tokens.size() < shortest.size()) {
+                shortest = tokens;
+            }
+        }
+        for (String token : shortest) {
+            if (expansions.size() >= MAX_EXPANSIONS) {
+                break;
+            }
+            if (!token.equals(term) && token.contains(term)) {
+                expansions.put(token, token.startsWith(term) ? PREFIX_WEIGHT : SUBSTRING_WEIGHT);
+            }
+        }
+        return expansions;
+    }
+
+    private Map<String, List<String>> gramIndex() {
+        if (gramIndex == null) {
+            Map<String, List<String>> index = new HashMap<>();
+            for (String token : postings.keySet()) {
+                if (SearchTokenizer.isCjkToken(token)) {
+                    continue;
+                }
+                for (String gram : new HashSet<>(SearchTokenizer.grams(token))) {
+                    index.computeIfAbsent(gram, k -> new ArrayList<>()).add(token);
+                }
+            }
+            gramIndex = index;
+        }
+        return gramIndex;
+    }
+
+    // ==================== 持久化 ====================
+
+    private static SearchIndexSegment load(Path directory, Source source, Path indexFile) {
+        SearchIndexSegment segment = new SearchIndexSegment(directory, source, indexFile);
+        if (!Files.exists(indexFile)) {
+            return segment;
+        }
+        try (InputStream input = Files.newInputStream(indexFile);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return segment;
+            }
+            segment.readFrom(in);
+            return segment;
+        } catch (Exception e) {
+            // 索引损坏时丢弃，重新构建即可
+            System.err.println(LOG_TAG + " Failed to load index " + indexFile + ": " + e.getMessage());
+            return new SearchIndexSegment(directory, source, indexFile);
+        }
+    }
+
+    private void readFrom(DataInputStream in) throws IOException {
+        nextFileId = in.readInt();
+        fileNames = new String[Math.max(16, nextFileId)];
+        int fileCount = in.readInt();
+        for (int i = 0; i < fileCount; i++) {
+            String name = in.readUTF();
+            FileState state = new FileState();
+            state.id = in.readInt();
+            state.fingerprint = new FileFingerprint();
+            state.fingerprint.size = in.readLong();
+            state.fingerprint.lastModified = in.readLong();
+            state.fingerprint.offset = in.readLong();
+            state.fingerprint.headLength = in.readInt();
+            state.fingerprint.headHash = in.readLong();
+            files.put(name, state);
+            fileNames[state.id] = name;
+        }
+
+        docCount = in.readInt();
+        int capacity = Math.max(1024, docCount);
+        docFile = new int[capacity];
+        docOffset = new long[capacity];
+        docTime = new long[capacity];
+        docLength = new int[capacity];
+        docKind = new byte[capacity];
+        for (int doc = 0; doc < docCount; doc++) {
+            docFile[doc] = in.readInt();
+            docOffset[doc] = in.readLong();
+            docTime[doc] = in.readLong();
+            docLength[doc] = in.readInt();
+            docKind[doc] = in.readByte();
+            if (docFile[doc] < 0) {
+                deletedDocs++;
+            } else {
+                totalLength += docLength[doc];
+            }
+        }
+
+        int tokenCount = in.readInt();
+        for (int i = 0; i < tokenCount; i++) {
+            String token = in.readUTF();
+            int size = in.readInt();
+            IntList list = new IntList(size);
+            for (int j = 0; j < size; j++) {
+                list.add(in.readInt());
+            }
+            postings.put(token, list);
+        }
+    }
+
+    /**
+     * 有变化时写回磁盘
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            out.writeInt(nextFileId);
+            out.writeInt(files.size());
+            for (Map.Entry<String, FileState> entry : files.entrySet()) {
+                FileFingerprint fp = entry.getValue().fingerprint;
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().id);
+                out.writeLong(fp.size);
+                out.writeLong(fp.lastModified);
+                out.writeLong(fp.offset);
+                out.writeInt(fp.headLength);
+                out.writeLong(fp.headHash);
+            }
+
+            out.writeInt(docCount);
+            for (int doc = 0; doc < docCount; doc++) {
+                out.writeInt(docFile[doc]);
+                out.writeLong(docOffset[doc]);
+                out.writeLong(docTime[doc]);
+                out.writeInt(docLength[doc]);
+                out.writeByte(docKind[doc]);
+            }
+
+            out.writeInt(postings.size());
+            for (Map.Entry<String, IntList> entry : postings.entrySet()) {
+                IntList list = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(list.size);
+                for (int i = 0; i < list.size; i++) {
+                    out.writeInt(list.values[i]);
+                }
+            }
+            out.flush();
+
+            AtomicFileUtils.write(indexFile, bytes.toByteArray());
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to save index " + indexFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 可增长的 int 数组（倒排表）
+     */
+    private static final class IntList {
+        int[] values;
+        int size;
+
+        IntList(int capacity) {
+            values = new int[Math.max(2, capacity)];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
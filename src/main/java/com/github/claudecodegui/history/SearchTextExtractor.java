@@ -0,0 +1,248 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+
+/**
+ * 搜索文本提取器
+ * 从会话记录行中提取用户输入、助手回复文本和工具名，从 history.jsonl 行中提取 display；
+ * 工具结果、思考内容等不参与搜索，直接跳过
+ */
+public final class SearchTextExtractor {
+
+    public static final byte KIND_USER = 0;
+    public static final byte KIND_ASSISTANT = 1;
+    public static final byte KIND_HISTORY = 2;
+
+    // 单行最多参与索引的字符数
+    public static final int MAX_TEXT_LENGTH = 16 * 1024;
+
+    private SearchTextExtractor() {
+    }
+
+    /**
+     * 一条可搜索的文档
+     */
+    public static class Document {
+        public byte kind;
+        public String text;
+        public long timestamp;
+        public String sessionId;
+        // 项目路径（会话记录中的 cwd，history.jsonl 中的 project）
+        public String project;
+        // 行起始字节偏移（由索引在解析时填入，用于回读原始行生成摘要）
+        public long offset;
+    }
+
+    /**
+     * 提取会话记录行
+     *
+     * @return 没有可搜索文本的行返回 null
+     */
+    public static Document transcriptLine(String json) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            return null;
+        }
+
+        Document doc = new Document();
+        String type = null;
+        String timestamp = null;
+        boolean meta = false;
+        StringBuilder text = new StringBuilder();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    type = nextString(reader);
+                    break;
+                case "timestamp":
+                    timestamp = nextString(reader);
+                    break;
+                case "isMeta":
+                    meta = nextBoolean(reader);
+                    break;
+                case "sessionId":
+                    doc.sessionId = nextString(reader);
+                    break;
+                case "cwd":
+                    doc.project = nextString(reader);
+                    break;
+                case "message":
+                    readMessage(reader, text);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (meta || text.length() == 0) {
+            return null;
+        }
+        if ("user".equals(type)) {
+            doc.kind = KIND_USER;
+        } else if ("assistant".equals(type)) {
+            doc.kind = KIND_ASSISTANT;
+        } else {
+            return null;
+        }
+        doc.text = text.toString();
+        doc.timestamp = parseTimestamp(timestamp);
+        return doc;
+    }
+
+    /**
+     * 提取 history.jsonl 行
+     */
+    public static Document historyLine(String json) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            return null;
+        }
+
+        Document doc = new Document();
+        doc.kind = KIND_HISTORY;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "display":
+                    doc.text = truncate(nextString(reader));
+                    break;
+                case "timestamp":
+                    doc.timestamp = nextLong(reader);
+                    break;
+                case "project":
+                    doc.project = nextString(reader);
+                    break;
+                case "sessionId":
+                    doc.sessionId = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return doc.text == null || doc.text.isBlank() ? null : doc;
+    }
+
+    private static void readMessage(JsonReader reader, StringBuilder text) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!"content".equals(reader.nextName())) {
+                reader.skipValue();
+                continue;
+            }
+            JsonToken token = reader.peek();
+            if (token == JsonToken.STRING) {
+                append(text, reader.nextString());
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                readContentArray(reader, text);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * 收集 text 块的文本和 tool_use 块的工具名
+     */
+    private static void readContentArray(JsonReader reader, StringBuilder text) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            String type = null;
+            String value = null;
+            String name = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "type":
+                        type = nextString(reader);
+                        break;
+                    case "text":
+                        value = nextString(reader);
+                        break;
+                    case "name":
+                        name = nextString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if ("text".equals(type) && value != null) {
+                append(text, value);
+            } else if ("tool_use".equals(type) && name != null) {
+                append(text, name);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static void append(StringBuilder text, String value) {
+        if (value == null || value.isBlank() || text.length() >= MAX_TEXT_LENGTH) {
+            return;
+        }
+        if (text.length() > 0) {
+            text.append('\n');
+        }
+        text.append(value, 0, Math.min(value.length(), MAX_TEXT_LENGTH - text.length()));
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > MAX_TEXT_LENGTH ? value.substring(0, MAX_TEXT_LENGTH) : value;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    private static long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return reader.nextLong();
+        }
+        reader.skipValue();
+        return 0;
+    }
+
+    private static long parseTimestamp(String timestamp) {
+        if (timestamp == null) {
+            return 0;
+        }
+        try {
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
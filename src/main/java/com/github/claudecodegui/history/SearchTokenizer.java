@@ -0,0 +1,118 @@
+package com.github.claudecodegui.history;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 全文搜索分词器
+ * - 字母数字连续片段转小写后作为一个词（超过 MAX_TOKEN_LENGTH 的片段多为哈希或 base64，直接丢弃）
+ * - 中日韩文字没有空格分隔，连续片段按重叠二元组切分（单字片段保留单字）
+ *
+ * 词表本身再按三元组建立索引（见 SearchIndexSegment），用于查询词的子串匹配
+ */
+public final class SearchTokenizer {
+
+    public static final int MAX_TOKEN_LENGTH = 48;
+    // 三元组长度
+    public static final int GRAM_LENGTH = 3;
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 分词回调
+     */
+    @FunctionalInterface
+    public interface TokenSink {
+        void accept(String token);
+    }
+
+    /**
+     * 对文本分词，按出现顺序回调（同一个词可能出现多次）
+     */
+    public static void tokenize(CharSequence text, TokenSink sink) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int cp = Character.codePointAt(text, i);
+            if (isCjk(cp)) {
+                int end = i;
+                while (end < length && isCjk(Character.codePointAt(text, end))) {
+                    end += Character.charCount(Character.codePointAt(text, end));
+                }
+                emitCjk(text, i, end, sink);
+                i = end;
+            } else if (Character.isLetterOrDigit(cp)) {
+                int end = i;
+                while (end < length) {
+                    int c = Character.codePointAt(text, end);
+                    if (!Character.isLetterOrDigit(c) || isCjk(c)) {
+                        break;
+                    }
+                    end += Character.charCount(c);
+                }
+                if (end - i <= MAX_TOKEN_LENGTH) {
+                    sink.accept(text.subSequence(i, end).toString().toLowerCase(Locale.ROOT));
+                }
+                i = end;
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+    }
+
+    /**
+     * 查询词（去重，保持输入顺序）
+     */
+    public static List<String> queryTerms(String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (query != null) {
+            tokenize(query, terms::add);
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * 中日韩词只做精确匹配（二元组本身已经覆盖了子串）
+     */
+    public static boolean isCjkToken(String token) {
+        return !token.isEmpty() && isCjk(token.codePointAt(0));
+    }
+
+    /**
+     * 词的三元组（按 char 切分，用于词表子串检索）
+     */
+    public static List<String> grams(String token) {
+        List<String> grams = new ArrayList<>(Math.max(0, token.length() - GRAM_LENGTH + 1));
+        for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+            grams.add(token.substring(i, i + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    private static void emitCjk(CharSequence text, int start, int end, TokenSink sink) {
+        int first = start;
+        int second = first + Character.charCount(Character.codePointAt(text, first));
+        if (second >= end) {
+            sink.accept(text.subSequence(first, end).toString());
+            return;
+        }
+        while (second < end) {
+            int third = second + Character.charCount(Character.codePointAt(text, second));
+            sink.accept(text.subSequence(first, third).toString());
+            first = second;
+            second = third;
+        }
+    }
+
+    static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+            || script == Character.UnicodeScript.HIRAGANA
+            || script == Character.UnicodeScript.KATAKANA
+            || script == Character.UnicodeScript.HANGUL;
+    }
+}
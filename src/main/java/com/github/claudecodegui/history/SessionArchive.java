@@ -0,0 +1,445 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.util.AtomicFileUtils;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 冷会话归档
+ * 把长时间未修改的会话文件按修改月份压缩进 {yyyy-MM}.jsonl.gz，每个会话是其中一个独立的 gzip 成员
+ * （整个文件仍是合法的多成员 gzip），条目索引记录每个会话所在的月份、偏移和压缩长度，读取单个会话时只解压对应成员
+ *
+ * 归档后的会话摘要保留在 SessionIndex、用量保留在 UsageRollupStore，列表和统计不再需要扫描这些文件；
+ * 打开归档会话时按原修改时间还原到会话目录，归档条目保留，之后未再修改的会话下次归档时直接删除还原出的文件
+ *
+ * 条目不可变，修改时整体替换；重写月份文件时替换文件和条目持有写锁，读取会话时持有读锁，
+ * 保证读取期间拿到的偏移与月份文件一致
+ *
+ * 归档目录: ~/.codemoss/history-archive/{项目目录名}/
+ */
+public class SessionArchive {
+
+    private static final String LOG_TAG = "[SessionArchive]";
+    static final String INDEX_FILE_NAME = "index.json";
+    private static final String ARCHIVE_SUFFIX = ".jsonl.gz";
+    private static final int INDEX_VERSION = 1;
+    // 月份文件中已失效的字节超过有效字节且超过该值时重写
+    private static final long COMPACT_MIN_DEAD_BYTES = 1024 * 1024;
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private static final Gson gson = new Gson();
+    private static final Map<Path, SessionArchive> loaded = new ConcurrentHashMap<>();
+
+    private final Path archiveDir;
+    // 修改都在 synchronized 方法内进行；open 不获取对象锁，直接读取
+    private final Map<String, Entry> entries;
+    // 读取月份文件（读锁）与重写月份文件（写锁）互斥
+    private final ReadWriteLock monthFileLock = new ReentrantReadWriteLock();
+    private boolean dirty = false;
+
+    /**
+     * 单个归档会话的条目（不可变）
+     */
+    public static final class Entry {
+        // 所在月份文件 {month}.jsonl.gz
+        @SerializedName("m") public final String month;
+        // gzip 成员在月份文件中的偏移和长度
+        @SerializedName("o") public final long offset;
+        @SerializedName("z") public final long compressedLength;
+        // 原始文件大小和修改时间（还原时恢复修改时间，索引指纹因此保持不变）
+        @SerializedName("s") public final long size;
+        @SerializedName("t") public final long lastModified;
+
+        Entry(String month, long offset, long compressedLength, long size, long lastModified) {
+            this.month = month;
+            this.offset = offset;
+            this.compressedLength = compressedLength;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        Entry withOffset(long newOffset) {
+            return new Entry(month, newOffset, compressedLength, size, lastModified);
+        }
+    }
+
+    /**
+     * 一次归档的结果
+     */
+    public static class Result {
+        public int archived;
+        public long originalBytes;
+        public long compressedBytes;
+    }
+
+    private static class Snapshot {
+        int version;
+        Map<String, Entry> files;
+    }
+
+    private SessionArchive(Path archiveDir, Map<String, Entry> entries) {
+        this.archiveDir = archiveDir;
+        this.entries = entries;
+    }
+
+    /**
+     * 获取项目历史目录对应的归档（首次访问时从磁盘加载）
+     */
+    public static SessionArchive forProjectDir(Path projectDir) {
+        Path archiveDir = HistoryStorage.archiveDirFor(projectDir);
+        return loaded.computeIfAbsent(archiveDir, SessionArchive::load);
+    }
+
+    private static SessionArchive load(Path archiveDir) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        Path indexFile = archiveDir.resolve(INDEX_FILE_NAME);
+        if (Files.exists(indexFile)) {
+            try (Reader reader = Files.newBufferedReader(indexFile)) {
+                Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+                if (snapshot != null && snapshot.version == INDEX_VERSION && snapshot.files != null) {
+                    entries.putAll(snapshot.files);
+                }
+            } catch (Exception e) {
+                // 与可以重建的索引不同，归档索引丢失意味着会话无法读取，保留文件以便人工恢复
+                System.err.println(LOG_TAG + " Failed to load archive index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        return new SessionArchive(archiveDir, entries);
+    }
+
+    public synchronized boolean contains(String fileName) {
+        return entries.containsKey(fileName);
+    }
+
+    public synchronized Entry get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    /**
+     * 所有已归档的会话文件名
+     */
+    public synchronized Set<String> fileNames() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    /**
+     * 移除条目（会话被删除时调用），对应的压缩数据在下次重写月份文件时回收
+     *
+     * @return 移除的条目数
+     */
+    public synchronized int removeIf(Predicate<String> fileNameFilter) {
+        int before = entries.size();
+        entries.keySet().removeIf(fileNameFilter);
+        if (entries.size() != before) {
+            dirty = true;
+        }
+        return before - entries.size();
+    }
+
+    /**
+     * 解压单个归档会话
+     */
+    public InputStream open(String fileName) throws IOException {
+        byte[] compressed;
+        // 不在持有读锁时获取对象锁：归档时先持有对象锁再获取写锁
+        monthFileLock.readLock().lock();
+        try {
+            Entry entry = entries.get(fileName);
+            if (entry == null) {
+                throw new IOException("Session not archived: " + fileName);
+            }
+            compressed = new byte[Math.toIntExact(entry.compressedLength)];
+            try (FileChannel channel = FileChannel.open(monthFile(entry.month), StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.wrap(compressed);
+                long position = entry.offset;
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer, position);
+                    if (read < 0) {
+                        throw new IOException("Archive truncated: " + monthFile(entry.month));
+                    }
+                    position += read;
+                }
+            }
+        } finally {
+            monthFileLock.readLock().unlock();
+        }
+        return new GZIPInputStream(new ByteArrayInputStream(compressed), 64 * 1024);
+    }
+
+    /**
+     * 把归档会话还原到会话目录（已存在同名文件时不覆盖）
+     *
+     * @return 是否写出了文件
+     */
+    public boolean restore(Path projectDir, String fileName) throws IOException {
+        Entry entry = get(fileName);
+        Path target = projectDir.resolve(fileName);
+        if (entry == null || Files.exists(target)) {
+            return false;
+        }
+        Path temp = projectDir.resolve(fileName + ".restore.tmp");
+        try (InputStream in = open(fileName)) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.setLastModifiedTime(temp, FileTime.fromMillis(entry.lastModified));
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println(LOG_TAG + " Restored " + fileName + " from " + entry.month + ARCHIVE_SUFFIX);
+        return true;
+    }
+
+    /**
+     * 归档会话目录中修改时间早于 cutoffMillis 的会话
+     * 调用方需要先刷新这些文件的会话索引和用量存储，归档后它们不会再被扫描
+     *
+     * 写入顺序为 追加压缩数据 → 写条目索引 → 删除原文件，写索引前失败时回滚已追加的数据，原文件仍在，下次重新归档即可
+     */
+    public synchronized Result archive(Path projectDir, long cutoffMillis) throws IOException {
+        Result result = new Result();
+        if (!Files.isDirectory(projectDir)) {
+            return result;
+        }
+
+        Map<String, List<Path>> byMonth = new HashMap<>();
+        List<Path> alreadyArchived = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(projectDir)) {
+            files = stream.filter(path -> path.toString().endsWith(".jsonl")).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            if (attrs.size() == 0 || lastModified >= cutoffMillis) {
+                continue;
+            }
+            Entry existing = entries.get(file.getFileName().toString());
+            if (existing != null && existing.size == attrs.size() && existing.lastModified == lastModified) {
+                // 打开后未再修改的还原文件，归档中已有相同内容
+                alreadyArchived.add(file);
+                continue;
+            }
+            String month = MONTH_FORMAT.format(Instant.ofEpochMilli(lastModified).atZone(ZoneId.systemDefault()));
+            byMonth.computeIfAbsent(month, k -> new ArrayList<>()).add(file);
+        }
+        if (byMonth.isEmpty() && alreadyArchived.isEmpty()) {
+            return result;
+        }
+
+        Files.createDirectories(archiveDir);
+        List<Path> archivedFiles = new ArrayList<>(alreadyArchived);
+        // 索引写入失败时用于回滚：被覆盖的条目（null 表示原来没有）和各月份文件追加前的大小
+        Map<String, Entry> replaced = new HashMap<>();
+        Map<String, Long> monthSizes = new HashMap<>();
+        boolean wasDirty = dirty;
+        boolean committed = false;
+        try {
+            for (Map.Entry<String, List<Path>> month : byMonth.entrySet()) {
+                try (FileChannel channel = FileChannel.open(monthFile(month.getKey()),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    monthSizes.put(month.getKey(), channel.size());
+                    for (Path file : month.getValue()) {
+                        Entry entry = appendMember(channel, file, month.getKey());
+                        if (entry == null) {
+                            continue;
+                        }
+                        String fileName = file.getFileName().toString();
+                        replaced.put(fileName, entries.put(fileName, entry));
+                        archivedFiles.add(file);
+                        result.archived++;
+                        result.originalBytes += entry.size;
+                        result.compressedBytes += entry.compressedLength;
+                    }
+                    channel.force(true);
+                }
+            }
+            dirty = true;
+            save();
+            committed = !dirty;
+        } finally {
+            if (!committed) {
+                rollback(replaced, monthSizes, wasDirty);
+            }
+        }
+        if (!committed) {
+            // 索引没有写成功时不能删除原文件，内存条目和月份文件已恢复为归档前的状态
+            return new Result();
+        }
+
+        for (Path file : archivedFiles) {
+            try {
+                SessionCache.getInstance().invalidate(file);
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println(LOG_TAG + " Failed to delete archived file " + file + ": " + e.getMessage());
+            }
+        }
+        compactMonths(byMonth.keySet());
+        return result;
+    }
+
+    /**
+     * 撤销一次未写入索引的归档：恢复内存条目，截掉月份文件中新追加的成员
+     * 磁盘上的索引仍是归档前的版本，不会指向被截掉的数据
+     */
+    private void rollback(Map<String, Entry> replaced, Map<String, Long> monthSizes, boolean wasDirty) {
+        monthFileLock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Entry> item : replaced.entrySet()) {
+                if (item.getValue() == null) {
+                    entries.remove(item.getKey());
+                } else {
+                    entries.put(item.getKey(), item.getValue());
+                }
+            }
+            for (Map.Entry<String, Long> month : monthSizes.entrySet()) {
+                try (FileChannel channel = FileChannel.open(monthFile(month.getKey()), StandardOpenOption.WRITE)) {
+                    channel.truncate(month.getValue());
+                } catch (IOException e) {
+                    // 截断失败只浪费空间，这些数据不被任何条目引用，下次重写月份文件时回收
+                    System.err.println(LOG_TAG + " Failed to truncate " + monthFile(month.getKey()) + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            monthFileLock.writeLock().unlock();
+        }
+        dirty = wasDirty;
+    }
+
+    /**
+     * 把单个文件压缩为一个 gzip 成员追加到月份文件末尾
+     *
+     * @return 文件在压缩期间被修改时返回 null（跳过，下次再归档）
+     */
+    private Entry appendMember(FileChannel channel, Path file, String month) throws IOException {
+        BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+        long offset = channel.size();
+        channel.position(offset);
+        // 关闭 gzip 流以释放 Deflater，但不关闭底层通道
+        OutputStream out = new FilterOutputStream(Channels.newOutputStream(channel)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024)) {
+            Files.copy(file, gzip);
+        }
+
+        BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+        if (after.size() != before.size() || !after.lastModifiedTime().equals(before.lastModifiedTime())) {
+            channel.truncate(offset);
+            return null;
+        }
+
+        return new Entry(month, offset, channel.size() - offset,
+            before.size(), before.lastModifiedTime().toMillis());
+    }
+
+    /**
+     * 失效数据过多的月份文件只复制仍然有效的成员（无需重新压缩）
+     */
+    private void compactMonths(Set<String> months) {
+        for (String month : months) {
+            Path file = monthFile(month);
+            List<Map.Entry<String, Entry>> live = entries.entrySet().stream()
+                .filter(e -> month.equals(e.getValue().month))
+                .sorted((a, b) -> Long.compare(a.getValue().offset, b.getValue().offset))
+                .collect(Collectors.toList());
+            try {
+                long liveBytes = live.stream().mapToLong(e -> e.getValue().compressedLength).sum();
+                long deadBytes = Files.size(file) - liveBytes;
+                if (deadBytes < COMPACT_MIN_DEAD_BYTES || deadBytes <= liveBytes) {
+                    continue;
+                }
+
+                Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+                Map<String, Entry> moved = new HashMap<>();
+                try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ);
+                     FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    for (Map.Entry<String, Entry> member : live) {
+                        Entry entry = member.getValue();
+                        moved.put(member.getKey(), entry.withOffset(target.position()));
+                        long copied = 0;
+                        while (copied < entry.compressedLength) {
+                            copied += source.transferTo(entry.offset + copied, entry.compressedLength - copied, target);
+                        }
+                    }
+                    target.force(true);
+                }
+                // 等待正在进行的读取结束，替换文件和条目期间不允许新的读取
+                monthFileLock.writeLock().lock();
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    entries.putAll(moved);
+                } finally {
+                    monthFileLock.writeLock().unlock();
+                }
+                dirty = true;
+                save();
+                System.out.println(LOG_TAG + " Compacted " + file.getFileName() + ", reclaimed " + deadBytes + " bytes");
+            } catch (IOException e) {
+                System.err.println(LOG_TAG + " Failed to compact " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 有变化时写回磁盘
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.version = INDEX_VERSION;
+        snapshot.files = entries;
+        try {
+            AtomicFileUtils.write(archiveDir.resolve(INDEX_FILE_NAME), gson.toJson(snapshot));
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to save archive index " + archiveDir + ": " + e.getMessage());
+        }
+    }
+
+    private Path monthFile(String month) {
+        return archiveDir.resolve(month + ARCHIVE_SUFFIX);
+    }
+}
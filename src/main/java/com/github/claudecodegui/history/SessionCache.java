@@ -0,0 +1,204 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已解析会话缓存（应用级单例）
+ * 按文件路径缓存会话消息列表，使用 LRU 淘汰，容量按估算字节数而不是条目数限制
+ *
+ * 缓存条目通过 FileFingerprint 校验：
+ * - 大小和修改时间都未变化：直接命中
+ * - 只有追加（会话文件通常只会追加）：从缓存的字节偏移继续解析新增的行
+ * - 文件变小或头部数据块变化：视为被重写，重新完整解析
+ *
+ * 返回的列表和其中的 JsonObject 由所有调用方共享，调用方只能读取，需要修改时先 deepCopy()
+ */
+public class SessionCache {
+
+    private static final String LOG_TAG = "[SessionCache]";
+
+    // 解析后的 JsonObject 相对原始 UTF-8 字节的大致内存放大倍数
+    private static final int OBJECT_OVERHEAD_FACTOR = 3;
+    // 每解析这么多次（未命中或增量解析）输出一次统计，其余时候通过 getStats() 按需获取
+    private static final long STATS_LOG_INTERVAL = 100;
+    private static final long DEFAULT_MAX_BYTES = Math.min(256L * 1024 * 1024, Runtime.getRuntime().maxMemory() / 16);
+
+    private static final SessionCache INSTANCE = new SessionCache(DEFAULT_MAX_BYTES);
+
+    private final long maxBytes;
+    private final JsonlChunkParser parser = new JsonlChunkParser();
+    // accessOrder = true，迭代顺序即为最近最少使用顺序
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong extensions = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private static class Entry {
+        final List<JsonObject> messages;
+        final FileFingerprint fingerprint;
+        final long estimatedBytes;
+
+        Entry(List<JsonObject> messages, FileFingerprint fingerprint) {
+            this.messages = messages;
+            this.fingerprint = fingerprint;
+            this.estimatedBytes = fingerprint.offset * OBJECT_OVERHEAD_FACTOR;
+        }
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public static class Stats {
+        public long hits;
+        public long misses;
+        public long extensions;
+        public long evictions;
+        public int entryCount;
+        public long estimatedBytes;
+        public long maxBytes;
+
+        public double getHitRate() {
+            long total = hits + misses + extensions;
+            return total == 0 ? 0 : (double) (hits + extensions) / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hits=%d, extensions=%d, misses=%d, evictions=%d, entries=%d, bytes=%d/%d, hitRate=%.1f%%",
+                hits, extensions, misses, evictions, entryCount, estimatedBytes, maxBytes, getHitRate() * 100);
+        }
+    }
+
+    SessionCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static SessionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 读取会话文件的全部消息，优先使用缓存
+     *
+     * @return 不可修改的消息列表；其中的 JsonObject 同样是缓存本身，不能修改
+     */
+    public List<JsonObject> getMessages(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long size = Files.size(key);
+        long lastModified = Files.getLastModifiedTime(key).toMillis();
+
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+        }
+
+        FileFingerprint.Change change = cached == null
+            ? FileFingerprint.Change.REWRITTEN
+            : cached.fingerprint.classify(key, size, lastModified);
+
+        if (change == FileFingerprint.Change.UNCHANGED) {
+            hits.incrementAndGet();
+            return cached.messages;
+        }
+
+        Entry updated;
+        long parses;
+        if (change == FileFingerprint.Change.APPENDED) {
+            // 文件只追加：从上次的偏移继续解析
+            JsonlChunkParser.Result<JsonObject> tail = parser.parse(key, cached.fingerprint.offset, SessionCache::parseLine);
+            List<JsonObject> merged = new ArrayList<>(cached.messages.size() + tail.items.size());
+            merged.addAll(cached.messages);
+            merged.addAll(tail.items);
+            updated = new Entry(Collections.unmodifiableList(merged), FileFingerprint.capture(key, size, lastModified, tail.endOffset));
+            parses = extensions.incrementAndGet() + misses.get();
+        } else {
+            JsonlChunkParser.Result<JsonObject> full = parser.parse(key, SessionCache::parseLine);
+            updated = new Entry(Collections.unmodifiableList(full.items), FileFingerprint.capture(key, size, lastModified, full.endOffset));
+            parses = misses.incrementAndGet() + extensions.get();
+        }
+
+        put(key, updated);
+        if (parses % STATS_LOG_INTERVAL == 0) {
+            System.out.println(LOG_TAG + " " + getStats());
+        }
+        return updated.messages;
+    }
+
+    /**
+     * 移除指定文件的缓存（例如会话被删除时）
+     */
+    public synchronized void invalidate(Path file) {
+        Entry removed = entries.remove(file.toAbsolutePath().normalize());
+        if (removed != null) {
+            totalBytes -= removed.estimatedBytes;
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * 获取命中率等统计信息
+     */
+    public synchronized Stats getStats() {
+        Stats stats = new Stats();
+        stats.hits = hits.get();
+        stats.misses = misses.get();
+        stats.extensions = extensions.get();
+        stats.evictions = evictions.get();
+        stats.entryCount = entries.size();
+        stats.estimatedBytes = totalBytes;
+        stats.maxBytes = maxBytes;
+        return stats;
+    }
+
+    private synchronized void put(Path key, Entry entry) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.estimatedBytes;
+        }
+
+        // 单个会话超过总容量时不缓存
+        if (entry.estimatedBytes > maxBytes) {
+            return;
+        }
+
+        entries.put(key, entry);
+        totalBytes += entry.estimatedBytes;
+
+        Iterator<Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<Path, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().estimatedBytes;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static JsonObject parseLine(String line) {
+        return JsonParser.parseString(line).getAsJsonObject();
+    }
+}
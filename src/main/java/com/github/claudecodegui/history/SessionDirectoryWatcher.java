@@ -0,0 +1,144 @@
+package com.github.claudecodegui.history;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话目录监听器
+ * 监听某个 ~/.claude/projects 子目录下 .jsonl 文件的新增、修改和删除，
+ * 在一段静默期（DEBOUNCE_MILLIS）内合并事件后，把变化的文件名一次性交给回调
+ *
+ * CLI 写会话时每条消息都会触发一次修改事件，去抖后通常每轮对话只回调一次
+ */
+public class SessionDirectoryWatcher {
+
+    private static final String LOG_TAG = "[SessionWatcher]";
+    // 最后一个事件之后等待的静默时间
+    private static final long DEBOUNCE_MILLIS = 300;
+    // 持续写入时最长的合并时间，避免长时间输出时界面一直不刷新
+    private static final long MAX_DELAY_MILLIS = 2000;
+
+    // 事件溢出（可能丢失了部分事件）时回调中包含该标记，表示需要全量比对
+    public static final String ALL_FILES = "*";
+
+    /**
+     * 变化回调（在监听线程上调用）
+     */
+    public interface Listener {
+        void onSessionFilesChanged(Set<String> fileNames);
+    }
+
+    private final Path directory;
+    private final Listener listener;
+    private WatchService watchService;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    public SessionDirectoryWatcher(Path directory, Listener listener) {
+        this.directory = directory;
+        this.listener = listener;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 开始监听；目录不存在时抛出 IOException
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        watchService = FileSystems.getDefault().newWatchService();
+        directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+            StandardWatchEventKinds.ENTRY_DELETE);
+        running = true;
+        thread = new Thread(this::watchLoop, "claude-session-watcher-" + directory.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println(LOG_TAG + " Watching " + directory);
+    }
+
+    /**
+     * 停止监听
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to close watch service: " + e.getMessage());
+        }
+        thread.interrupt();
+        System.out.println(LOG_TAG + " Stopped watching " + directory);
+    }
+
+    private void watchLoop() {
+        Set<String> pending = new HashSet<>();
+        long firstEventAt = 0;
+
+        while (running) {
+            try {
+                // 有待处理的事件时只等待静默期，否则一直阻塞
+                WatchKey key = pending.isEmpty()
+                    ? watchService.take()
+                    : watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // 事件丢失：交给回调做一次全量比对
+                            pending.add(ALL_FILES);
+                            continue;
+                        }
+                        String fileName = event.context().toString();
+                        if (fileName.endsWith(".jsonl")) {
+                            pending.add(fileName);
+                        }
+                    }
+                    if (!key.reset()) {
+                        System.err.println(LOG_TAG + " Directory no longer accessible: " + directory);
+                        running = false;
+                    }
+                    if (!pending.isEmpty() && firstEventAt == 0) {
+                        firstEventAt = System.currentTimeMillis();
+                    }
+                }
+
+                boolean quiet = key == null;
+                boolean overdue = firstEventAt > 0 && System.currentTimeMillis() - firstEventAt >= MAX_DELAY_MILLIS;
+                if (!pending.isEmpty() && (quiet || overdue || !running)) {
+                    Set<String> changed = pending;
+                    pending = new HashSet<>();
+                    firstEventAt = 0;
+                    try {
+                        listener.onSessionFilesChanged(changed);
+                    } catch (Exception e) {
+                        System.err.println(LOG_TAG + " Listener failed: " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.util.AtomicFileUtils;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 会话列表持久化索引
+ * 每个 ~/.claude/projects 子目录对应一个索引文件，记录每个 .jsonl 的摘要信息，
+ * 只有新增或发生变化的文件才需要重新扫描
+ *
+ * 索引文件: ~/.codemoss/history-index/{项目目录名}.sessions.json
+ */
+public class SessionIndex {
+
+    private static final String LOG_TAG = "[SessionIndex]";
+    private static final String FILE_SUFFIX = ".sessions.json";
+    // v2: 大小/修改时间/偏移改为 FileFingerprint，增加头部哈希
+    private static final int INDEX_VERSION = 2;
+
+    // 有效会话（非 Warmup、非 agent、消息数足够）
+    public static final int FLAG_VALID = 1;
+    // agent-xxx.jsonl 子代理会话
+    public static final int FLAG_AGENT = 1 << 1;
+
+    private static final Gson gson = new Gson();
+    // 已加载的索引，避免每次打开历史面板都重新读取索引文件
+    private static final Map<Path, SessionIndex> loaded = new ConcurrentHashMap<>();
+
+    private final Path indexFile;
+    private final Map<String, Entry> entries;
+    private boolean dirty = false;
+
+    /**
+     * 单个会话文件的索引条目
+     */
+    public static class Entry {
+        // 上次扫描时的文件指纹（含已消费的字节偏移）
+        @SerializedName("fp") public FileFingerprint fingerprint;
+        @SerializedName("t") public String title;
+        @SerializedName("c") public int messageCount;
+        @SerializedName("f") public long firstTimestamp;
+        @SerializedName("l") public long lastTimestamp;
+        @SerializedName("v") public int flags;
+
+        public boolean isValid() {
+            return (flags & FLAG_VALID) != 0;
+        }
+    }
+
+    private static class Snapshot {
+        int version;
+        Map<String, Entry> files;
+    }
+
+    private SessionIndex(Path indexFile, Map<String, Entry> entries) {
+        this.indexFile = indexFile;
+        this.entries = entries;
+    }
+
+    /**
+     * 获取项目历史目录对应的索引（首次访问时从磁盘加载）
+     */
+    public static SessionIndex forProjectDir(Path projectDir) {
+        Path indexFile = HistoryStorage.indexFileFor(projectDir, FILE_SUFFIX);
+        return loaded.computeIfAbsent(indexFile, SessionIndex::load);
+    }
+
+    private static SessionIndex load(Path indexFile) {
+        Map<String, Entry> entries = new HashMap<>();
+        if (Files.exists(indexFile)) {
+            try (Reader reader = Files.newBufferedReader(indexFile)) {
+                Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+                if (snapshot != null && snapshot.version == INDEX_VERSION && snapshot.files != null) {
+                    entries.putAll(snapshot.files);
+                }
+            } catch (Exception e) {
+                // 索引损坏时丢弃，重新扫描即可
+                System.err.println(LOG_TAG + " Failed to load index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        return new SessionIndex(indexFile, entries);
+    }
+
+    public synchronized Entry get(String fileName) {
+        return entries.get(fileName);
+    }
+
+    public synchronized void put(String fileName, Entry entry) {
+        entries.put(fileName, entry);
+        dirty = true;
+    }
+
+    /**
+     * 移除单个已删除的文件
+     */
+    public synchronized void remove(String fileName) {
+        if (entries.remove(fileName) != null) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 移除已不存在的文件
+     */
+    public synchronized void retainOnly(Set<String> fileNames) {
+        if (entries.keySet().retainAll(fileNames)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * 有变化时写回磁盘
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.version = INDEX_VERSION;
+        snapshot.files = entries;
+        try {
+            AtomicFileUtils.write(indexFile, gson.toJson(snapshot));
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to save index " + indexFile + ": " + e.getMessage());
+        }
+    }
+}
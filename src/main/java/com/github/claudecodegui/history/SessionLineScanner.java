@@ -0,0 +1,268 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 会话行元数据扫描器
+ * 基于 JsonReader 流式读取一行会话 JSON，只提取会话列表和使用统计需要的字段，
+ * 其余值（工具结果、思考内容等）通过 skipValue() 跳过而不构建对象树
+ *
+ * 用户消息的文本最多收集 MAX_TEXT_LENGTH 个字符，收集够之后剩余的 content 只做跳过
+ */
+public final class SessionLineScanner {
+
+    // 用户文本最多收集的字符数（会话标题只取前 45 个字符）
+    public static final int MAX_TEXT_LENGTH = 1024;
+
+    private SessionLineScanner() {
+    }
+
+    /**
+     * 一行会话记录中的元数据
+     */
+    public static class Line {
+        public String type;
+        public String timestamp;
+        public boolean meta;
+        // 顶层 summary 字段（type 为 summary 的行）
+        public String summary;
+
+        // 是否存在 message 对象
+        public boolean hasMessage;
+        public String role;
+        // message.content 是否为字符串
+        public boolean contentIsString;
+        // 从 message.content 提取的文本（仅用户消息，可能被截断），无文本时为 null
+        public String text;
+
+        // message.usage，不存在时为 null（同时带上 model、message.id 和 requestId）
+        public UsageRecord usage;
+    }
+
+    /**
+     * 扫描一行 JSON
+     *
+     * @return 行元数据；行内容为 JSON null 时返回 null
+     * @throws IOException JSON 格式错误
+     */
+    public static Line scan(String json) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+
+        Line line = new Line();
+        String requestId = null;
+        // content 可能出现在 type 之前，先收集文本，整行读完后再按 type 决定是否保留
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    line.type = nextString(reader);
+                    break;
+                case "timestamp":
+                    line.timestamp = nextString(reader);
+                    break;
+                case "isMeta":
+                    line.meta = nextBoolean(reader);
+                    break;
+                case "summary":
+                    line.summary = nextString(reader);
+                    break;
+                case "requestId":
+                    requestId = nextString(reader);
+                    break;
+                case "message":
+                    readMessage(reader, line);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (reader.peek() != JsonToken.END_DOCUMENT) {
+            throw new IOException("Trailing data after JSON object");
+        }
+
+        // 只有用户消息才需要文本（用于生成会话标题）
+        if (!"user".equals(line.type)) {
+            line.text = null;
+        }
+        if (line.usage != null) {
+            line.usage.requestId = requestId;
+        }
+        return line;
+    }
+
+    private static void readMessage(JsonReader reader, Line line) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        line.hasMessage = true;
+        String id = null;
+        String model = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextString(reader);
+                    break;
+                case "role":
+                    line.role = nextString(reader);
+                    break;
+                case "model":
+                    model = nextString(reader);
+                    break;
+                case "content":
+                    readContent(reader, line);
+                    break;
+                case "usage":
+                    line.usage = readUsage(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (line.usage != null) {
+            line.usage.messageId = id;
+            line.usage.model = model;
+        }
+    }
+
+    private static void readContent(JsonReader reader, Line line) throws IOException {
+        JsonToken token = reader.peek();
+        // 已经知道不是用户消息时（type 通常位于 message 之前），不需要收集文本
+        boolean wantText = line.type == null || "user".equals(line.type);
+        if (token == JsonToken.STRING) {
+            line.contentIsString = true;
+            if (!wantText) {
+                reader.skipValue();
+                return;
+            }
+            String text = reader.nextString();
+            line.text = text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text;
+        } else if (token == JsonToken.BEGIN_ARRAY && wantText) {
+            line.text = readContentArray(reader);
+        } else {
+            reader.skipValue();
+        }
+    }
+
+    /**
+     * 拼接数组中 text 块的文本；在没有文本时以第一个 tool_use 作为占位
+     * 与 ClaudeHistoryReader 原先的 extractTextFromContent 行为一致
+     */
+    private static String readContentArray(JsonReader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (sb.length() >= MAX_TEXT_LENGTH || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            String type = null;
+            String text = null;
+            String name = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "type":
+                        type = nextString(reader);
+                        break;
+                    case "text":
+                        text = nextString(reader);
+                        break;
+                    case "name":
+                        name = nextString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+
+            if ("text".equals(type) && text != null) {
+                if (sb.length() > 0) {
+                    sb.append(" ");
+                }
+                sb.append(text, 0, Math.max(0, Math.min(text.length(), MAX_TEXT_LENGTH - sb.length())));
+            } else if ("tool_use".equals(type) && name != null && sb.length() == 0) {
+                sb.append("[使用工具: ").append(name).append("]");
+            }
+        }
+        reader.endArray();
+
+        String result = sb.toString().trim();
+        return result.isEmpty() ? null : result;
+    }
+
+    private static UsageRecord readUsage(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return null;
+        }
+        UsageRecord usage = new UsageRecord();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "input_tokens":
+                    usage.inputTokens = nextLong(reader);
+                    break;
+                case "output_tokens":
+                    usage.outputTokens = nextLong(reader);
+                    break;
+                case "cache_creation_input_tokens":
+                    usage.cacheWriteTokens = nextLong(reader);
+                    break;
+                case "cache_read_input_tokens":
+                    usage.cacheReadTokens = nextLong(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return usage;
+    }
+
+    /**
+     * 读取字符串值，非字符串（对象、数组等）时跳过并返回 null
+     */
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    private static long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NUMBER) {
+            return reader.nextLong();
+        }
+        reader.skipValue();
+        return 0;
+    }
+}
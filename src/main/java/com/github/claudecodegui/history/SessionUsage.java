@@ -0,0 +1,137 @@
+package com.github.claudecodegui.history;
+
+import com.google.gson.annotations.SerializedName;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 单个会话文件的用量累计状态
+ * 记录已消费的偏移和截至该偏移的部分聚合结果，文件追加后只需把新增的行累加进来；
+ * 同时也是该会话在 UsageRollupStore 中的贡献值，文件变化时先减去旧值再加上新值
+ */
+public class SessionUsage {
+
+    @SerializedName("fp") public FileFingerprint fingerprint;
+    @SerializedName("i") public long inputTokens;
+    @SerializedName("o") public long outputTokens;
+    @SerializedName("w") public long cacheWriteTokens;
+    @SerializedName("r") public long cacheReadTokens;
+    @SerializedName("c") public double cost;
+    @SerializedName("m") public String model = "unknown";
+    @SerializedName("p") public int pricingFamily = ModelPricing.familyOf("unknown");
+    @SerializedName("f") public long firstTimestamp;
+    @SerializedName("s") public String summary;
+
+    // 计入汇总时使用的时间戳（无时间戳的会话取扫描时间）及对应的本地日期 yyyy-MM-dd
+    @SerializedName("t") public long timestamp;
+    @SerializedName("d") public String day;
+
+    // 已计入的 message.id + requestId 去重键，不持久化；为 null 时不能在此状态上继续追加，需要完整重新解析
+    private transient LongHashSet seenUsage;
+
+    public long totalTokens() {
+        return inputTokens + outputTokens + cacheWriteTokens + cacheReadTokens;
+    }
+
+    /**
+     * 是否计入统计（没有任何 token 用量的会话不计入）
+     */
+    public boolean isCounted() {
+        return totalTokens() > 0;
+    }
+
+    public SessionUsage copy() {
+        SessionUsage copy = new SessionUsage();
+        copy.inputTokens = inputTokens;
+        copy.outputTokens = outputTokens;
+        copy.cacheWriteTokens = cacheWriteTokens;
+        copy.cacheReadTokens = cacheReadTokens;
+        copy.cost = cost;
+        copy.model = model;
+        copy.pricingFamily = pricingFamily;
+        copy.firstTimestamp = firstTimestamp;
+        copy.summary = summary;
+        copy.timestamp = timestamp;
+        copy.day = day;
+        copy.seenUsage = seenUsage != null ? seenUsage.copy() : null;
+        return copy;
+    }
+
+    /**
+     * 是否保留了去重状态，可以从 offset 继续累加
+     * 从磁盘加载的状态没有去重集合，继续累加可能重复计入已统计过的消息
+     */
+    public boolean canExtend() {
+        return seenUsage != null;
+    }
+
+    /**
+     * 释放去重集合（之后如果文件再追加，需要完整重新解析）
+     */
+    public void releaseDedupState() {
+        seenUsage = null;
+    }
+
+    /**
+     * 按文件顺序将扫描出的行累加到状态中
+     */
+    public void accumulate(List<SessionLineScanner.Line> lines) {
+        if (seenUsage == null) {
+            seenUsage = new LongHashSet();
+        }
+        for (SessionLineScanner.Line line : lines) {
+            // 记录时间戳
+            if (firstTimestamp == 0 && line.timestamp != null) {
+                firstTimestamp = parseTimestamp(line.timestamp);
+            }
+
+            // 查找 summary（VSCode 中 data.summary 位于顶层）
+            if ("summary".equals(line.type) && line.contentIsString && line.summary != null) {
+                summary = line.summary;
+            }
+
+            // 查找 usage
+            UsageRecord u = line.usage;
+            if ("assistant".equals(line.type) && u != null) {
+                // 去重：流式输出的多个分块、恢复会话时重放的消息会重复写入同一条 usage
+                // 与 VSCode 插件一致，按 message.id + requestId 判断，缺少任一字段时不去重
+                long dedupKey = u.dedupKey();
+                if (dedupKey != 0 && !seenUsage.add(dedupKey)) {
+                    continue;
+                }
+
+                if (u.hasTokens()) {
+                    inputTokens += u.inputTokens;
+                    outputTokens += u.outputTokens;
+                    cacheWriteTokens += u.cacheWriteTokens;
+                    cacheReadTokens += u.cacheReadTokens;
+
+                    // 查找 model（VSCode: message.model）
+                    if (model.equals("unknown") && line.role != null && u.model != null) {
+                        model = u.model;
+                        pricingFamily = ModelPricing.familyOf(u.model);
+                    }
+
+                    cost += ModelPricing.cost(pricingFamily, u);
+                }
+            }
+        }
+
+        // 会话按第一条消息的日期计入日汇总
+        if (timestamp == 0 || firstTimestamp > 0) {
+            timestamp = firstTimestamp > 0 ? firstTimestamp : System.currentTimeMillis();
+            day = String.format("%tF", new Date(timestamp));
+        }
+    }
+
+    private static long parseTimestamp(String timestamp) {
+        try {
+            // ISO 8601 格式如 "2025-11-18T20:16:42.310Z"
+            return Instant.parse(timestamp).toEpochMilli();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+}
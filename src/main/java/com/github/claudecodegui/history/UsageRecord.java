@@ -0,0 +1,49 @@
+package com.github.claudecodegui.history;
+
+/**
+ * 单条助手消息的 token 用量
+ * 由 SessionLineScanner 在扫描时直接填充，所有计数均为基本类型
+ */
+public final class UsageRecord {
+    public long inputTokens;
+    public long outputTokens;
+    public long cacheReadTokens;
+    public long cacheWriteTokens;
+    // message.model
+    public String model;
+    // message.id，与 requestId 一起用于去重
+    public String messageId;
+    // 顶层 requestId
+    public String requestId;
+
+    public boolean hasTokens() {
+        return inputTokens > 0 || outputTokens > 0 || cacheReadTokens > 0 || cacheWriteTokens > 0;
+    }
+
+    public long totalTokens() {
+        return inputTokens + outputTokens + cacheReadTokens + cacheWriteTokens;
+    }
+
+    /**
+     * 去重键：message.id + requestId 的 64 位 FNV-1a 哈希（与 VSCode 插件使用相同的组合）
+     *
+     * @return 缺少任一字段时返回 0，表示不参与去重
+     */
+    public long dedupKey() {
+        if (messageId == null || requestId == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        hash = fnv1a(hash, messageId);
+        hash = (hash ^ ':') * 0x100000001b3L;
+        hash = fnv1a(hash, requestId);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long fnv1a(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.util.AtomicFileUtils;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 使用量预聚合存储
+ * 每个 ~/.claude/projects 子目录对应一个存储文件，按 (日期, 模型) 保存 token 计数、费用和会话数，
+ * 同时保存每个会话文件的累计状态（SessionUsage），会话文件变化时先减去旧贡献再加上新贡献
+ *
+ * 统计查询只遍历日期范围内的汇总桶，与会话文件数量无关
+ *
+ * 存储文件: ~/.codemoss/history-index/{项目目录名}.usage.json
+ */
+public class UsageRollupStore {
+
+    private static final String LOG_TAG = "[UsageRollupStore]";
+    private static final String FILE_SUFFIX = ".usage.json";
+    private static final int STORE_VERSION = 1;
+
+    private static final Gson gson = new Gson();
+    private static final Map<Path, UsageRollupStore> loaded = new ConcurrentHashMap<>();
+
+    // 最近会话：按时间倒序，时间相同按文件名排序
+    private static final Comparator<RecentKey> RECENT_FIRST =
+        Comparator.comparingLong((RecentKey k) -> k.timestamp).reversed().thenComparing(k -> k.fileName);
+
+    private final Path storeFile;
+    private final Map<String, SessionUsage> sessions;
+    private final TreeMap<String, Map<String, Bucket>> days;
+    private final TreeSet<RecentKey> recent = new TreeSet<>(RECENT_FIRST);
+    private boolean dirty = false;
+
+    /**
+     * 某一天某个模型的汇总
+     */
+    public static class Bucket {
+        @SerializedName("n") public int sessions;
+        @SerializedName("i") public long inputTokens;
+        @SerializedName("o") public long outputTokens;
+        @SerializedName("w") public long cacheWriteTokens;
+        @SerializedName("r") public long cacheReadTokens;
+        @SerializedName("c") public double cost;
+
+        public long totalTokens() {
+            return inputTokens + outputTokens + cacheWriteTokens + cacheReadTokens;
+        }
+
+        boolean isEmpty() {
+            return sessions == 0;
+        }
+
+        void add(SessionUsage usage, int sign) {
+            sessions += sign;
+            inputTokens += sign * usage.inputTokens;
+            outputTokens += sign * usage.outputTokens;
+            cacheWriteTokens += sign * usage.cacheWriteTokens;
+            cacheReadTokens += sign * usage.cacheReadTokens;
+            cost += sign * usage.cost;
+        }
+    }
+
+    /**
+     * 范围查询的回调
+     */
+    public interface BucketVisitor {
+        void visit(String day, String model, Bucket bucket);
+    }
+
+    private static final class RecentKey {
+        final long timestamp;
+        final String fileName;
+
+        RecentKey(long timestamp, String fileName) {
+            this.timestamp = timestamp;
+            this.fileName = fileName;
+        }
+    }
+
+    private static class Snapshot {
+        int version;
+        Map<String, SessionUsage> sessions;
+        TreeMap<String, Map<String, Bucket>> days;
+    }
+
+    private UsageRollupStore(Path storeFile, Map<String, SessionUsage> sessions, TreeMap<String, Map<String, Bucket>> days) {
+        this.storeFile = storeFile;
+        this.sessions = sessions;
+        this.days = days;
+        for (Map.Entry<String, SessionUsage> entry : sessions.entrySet()) {
+            if (entry.getValue().isCounted()) {
+                recent.add(new RecentKey(entry.getValue().timestamp, entry.getKey()));
+            }
+        }
+    }
+
+    /**
+     * 获取项目历史目录对应的存储（首次访问时从磁盘加载）
+     */
+    public static UsageRollupStore forProjectDir(Path projectDir) {
+        Path storeFile = HistoryStorage.indexFileFor(projectDir, FILE_SUFFIX);
+        return loaded.computeIfAbsent(storeFile, UsageRollupStore::load);
+    }
+
+    private static UsageRollupStore load(Path storeFile) {
+        Map<String, SessionUsage> sessions = new HashMap<>();
+        TreeMap<String, Map<String, Bucket>> days = new TreeMap<>();
+        if (Files.exists(storeFile)) {
+            try (Reader reader = Files.newBufferedReader(storeFile)) {
+                Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+                if (snapshot != null && snapshot.version == STORE_VERSION
+                        && snapshot.sessions != null && snapshot.days != null) {
+                    sessions.putAll(snapshot.sessions);
+                    days.putAll(snapshot.days);
+                }
+            } catch (Exception e) {
+                // 存储损坏时丢弃，重新扫描即可
+                System.err.println(LOG_TAG + " Failed to load store " + storeFile + ": " + e.getMessage());
+                sessions.clear();
+                days.clear();
+            }
+        }
+        return new UsageRollupStore(storeFile, sessions, days);
+    }
+
+    /**
+     * 丢弃内存中的存储实例，下次访问时重新从磁盘加载（测试中用于模拟 IDE 重启）
+     */
+    static void unload(Path projectDir) {
+        loaded.remove(HistoryStorage.indexFileFor(projectDir, FILE_SUFFIX));
+    }
+
+    public synchronized SessionUsage get(String fileName) {
+        return sessions.get(fileName);
+    }
+
+    /**
+     * 用新的累计状态替换会话的贡献
+     */
+    public synchronized void update(String fileName, SessionUsage usage) {
+        SessionUsage previous = sessions.put(fileName, usage);
+        if (previous != null) {
+            apply(fileName, previous, -1);
+        }
+        apply(fileName, usage, 1);
+        dirty = true;
+    }
+
+    /**
+     * 移除已不存在的会话文件及其贡献
+     */
+    public synchronized void retainOnly(Set<String> fileNames) {
+        Iterator<Map.Entry<String, SessionUsage>> it = sessions.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, SessionUsage> entry = it.next();
+            if (!fileNames.contains(entry.getKey())) {
+                apply(entry.getKey(), entry.getValue(), -1);
+                it.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * 遍历日期范围内的汇总桶
+     *
+     * @param fromDay 起始日期（含），yyyy-MM-dd，null 表示不限
+     * @param toDay 结束日期（含），yyyy-MM-dd，null 表示不限
+     */
+    public synchronized void visit(String fromDay, String toDay, BucketVisitor visitor) {
+        for (Map.Entry<String, Map<String, Bucket>> day : range(fromDay, toDay).entrySet()) {
+            for (Map.Entry<String, Bucket> model : day.getValue().entrySet()) {
+                visitor.visit(day.getKey(), model.getKey(), model.getValue());
+            }
+        }
+    }
+
+    /**
+     * 获取日期范围内最近的若干个会话
+     *
+     * @return 按时间倒序排列的 (文件名, 累计状态)
+     */
+    public synchronized List<Map.Entry<String, SessionUsage>> recentSessions(String fromDay, String toDay, int limit) {
+        List<Map.Entry<String, SessionUsage>> result = new ArrayList<>();
+        for (RecentKey key : recent) {
+            if (result.size() >= limit) {
+                break;
+            }
+            SessionUsage usage = sessions.get(key.fileName);
+            if ((fromDay != null && usage.day.compareTo(fromDay) < 0) || (toDay != null && usage.day.compareTo(toDay) > 0)) {
+                continue;
+            }
+            result.add(Map.entry(key.fileName, usage));
+        }
+        return result;
+    }
+
+    /**
+     * 有变化时写回磁盘
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.version = STORE_VERSION;
+        snapshot.sessions = sessions;
+        snapshot.days = days;
+        try {
+            AtomicFileUtils.write(storeFile, gson.toJson(snapshot));
+            dirty = false;
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to save store " + storeFile + ": " + e.getMessage());
+        }
+    }
+
+    private NavigableMap<String, Map<String, Bucket>> range(String fromDay, String toDay) {
+        if (fromDay != null && toDay != null) {
+            return fromDay.compareTo(toDay) > 0 ? new TreeMap<>() : days.subMap(fromDay, true, toDay, true);
+        } else if (fromDay != null) {
+            return days.tailMap(fromDay, true);
+        } else if (toDay != null) {
+            return days.headMap(toDay, true);
+        }
+        return days;
+    }
+
+    private void apply(String fileName, SessionUsage usage, int sign) {
+        if (!usage.isCounted()) {
+            return;
+        }
+        RecentKey key = new RecentKey(usage.timestamp, fileName);
+        if (sign > 0) {
+            recent.add(key);
+        } else {
+            recent.remove(key);
+        }
+
+        Map<String, Bucket> models = days.computeIfAbsent(usage.day, k -> new HashMap<>());
+        Bucket bucket = models.computeIfAbsent(usage.model, k -> new Bucket());
+        bucket.add(usage, sign);
+        if (bucket.isEmpty()) {
+            models.remove(usage.model);
+            if (models.isEmpty()) {
+                days.remove(usage.day);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 记住的权限决定
+ * 按访问顺序淘汰（LRU），超过 maxEntries 时丢弃最久未用的条目，超过 ttl 的条目在读取时失效
+ *
+ * 键由 {@link #keyFor} 生成：Bash 按规范化后的命令，文件类工具按路径，其他工具按参数的规范 JSON 摘要；
+ * 工具级别的决定使用 {@link #toolKey}
+ */
+public class PermissionDecisionCache {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * 缓存条目
+     */
+    public static class Entry {
+        public final String key;
+        public final boolean allow;
+        public final long expiresAt;
+
+        public Entry(String key, boolean allow, long expiresAt) {
+            this.key = key;
+            this.allow = allow;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public PermissionDecisionCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > PermissionDecisionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 使用 PermissionConfig.DefaultSettings 中的容量和有效期
+     */
+    public static PermissionDecisionCache withDefaults() {
+        return new PermissionDecisionCache(
+            PermissionConfig.DefaultSettings.MAX_MEMORY_ENTRIES,
+            PermissionConfig.DefaultSettings.MEMORY_TIMEOUT);
+    }
+
+    /**
+     * @return 记住的决定，没有或已过期时返回 null
+     */
+    public synchronized Boolean get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.allow;
+    }
+
+    public synchronized void put(String key, boolean allow, long now) {
+        entries.put(key, new Entry(key, allow, now + ttlMillis));
+    }
+
+    /**
+     * 恢复持久化的条目（保留原有过期时间，已过期的跳过）
+     */
+    public synchronized void restore(Entry entry, long now) {
+        if (entry != null && entry.key != null && entry.expiresAt > now) {
+            entries.put(entry.key, entry);
+        }
+    }
+
+    public synchronized void removeTool(String toolName) {
+        entries.keySet().removeIf(key -> key.startsWith(toolName + ":"));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 未过期的条目，按最久未用到最近使用排列
+     */
+    public synchronized List<Entry> snapshot(long now) {
+        List<Entry> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries.values()) {
+            if (entry.expiresAt > now) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public static String toolKey(String toolName) {
+        return toolName + ":*";
+    }
+
+    public static String keyFor(String toolName, JsonObject inputs) {
+        String command = PermissionRuleEngine.extractCommand(inputs);
+        if (command != null) {
+            return toolName + ":cmd:" + PermissionRuleEngine.normalizeCommand(command);
+        }
+        String path = PermissionRuleEngine.extractPath(inputs);
+        // 编辑类工具的内容每次不同，只按路径记忆
+        if (path != null && (inputs.size() == 1 || isFileTool(toolName))) {
+            return toolName + ":path:" + PermissionRuleEngine.normalizePath(path, null);
+        }
+        return toolName + ":sha:" + digest(canonicalJson(inputs));
+    }
+
+    private static boolean isFileTool(String toolName) {
+        switch (toolName) {
+            case "Read":
+            case "Write":
+            case "Edit":
+            case "MultiEdit":
+            case "NotebookEdit":
+            case "NotebookRead":
+            case "LS":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * 对象键排序后的 JSON，保证参数顺序不同的同一调用得到相同的键
+     */
+    private static String canonicalJson(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return "null";
+        }
+        if (element.isJsonObject()) {
+            TreeMap<String, JsonElement> sorted = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> e : element.getAsJsonObject().entrySet()) {
+                sorted.put(e.getKey(), e.getValue());
+            }
+            StringBuilder sb = new StringBuilder("{");
+            for (Map.Entry<String, JsonElement> e : sorted.entrySet()) {
+                if (sb.length() > 1) {
+                    sb.append(',');
+                }
+                sb.append(new JsonPrimitive(e.getKey())).append(':').append(canonicalJson(e.getValue()));
+            }
+            return sb.append('}').toString();
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(canonicalJson(array.get(i)));
+            }
+            return sb.append(']').toString();
+        }
+        return element.toString();
+    }
+
+    private static String digest(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(text.hashCode());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.claudecodegui.permission;
+
+import com.github.claudecodegui.util.AtomicFileUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 项目级权限决定存储
+ * 每个项目根目录一份：项目规则 + 记住的决定（有界 TTL/LRU 缓存），
+ * 判定时先走编译好的规则（内置规则 + 项目规则），再查记住的决定，都没有命中才需要询问用户
+ *
+ * 项目规则在存储文件的 rules 数组中手工配置，格式同 {@link PermissionRule}，例如
+ * {"tool":"Bash","commandPrefix":"gradle test","action":"ALLOW"}；修改后重启 IDE 生效，保存决定时原样写回
+ *
+ * 存储文件: ~/.codemoss/permission/{项目路径}.json
+ */
+public class PermissionDecisionStore {
+
+    private static final String LOG_TAG = "[PermissionDecisionStore]";
+    private static final String CONFIG_DIR_NAME = ".codemoss";
+    private static final String STORE_DIR_NAME = "permission";
+    private static final int STORE_VERSION = 1;
+    // 超过该长度的文件名使用 前缀 + 哈希
+    private static final int MAX_NAME_LENGTH = 100;
+    // 没有项目根目录时使用的存储键
+    private static final String NO_PROJECT = "";
+
+    private static final Gson gson = new Gson();
+    private static final Map<String, PermissionDecisionStore> loaded = new ConcurrentHashMap<>();
+
+    private final Path storeFile;
+    private final List<PermissionRule> rules;
+    private final PermissionDecisionCache decisions = PermissionDecisionCache.withDefaults();
+    private final PermissionRuleEngine engine;
+
+    private static class Snapshot {
+        int version;
+        List<PermissionRule> rules;
+        List<SavedDecision> decisions;
+    }
+
+    private static class SavedDecision {
+        String key;
+        boolean allow;
+        long expiresAt;
+    }
+
+    private PermissionDecisionStore(String projectRoot, Path storeFile, List<PermissionRule> rules) {
+        this.storeFile = storeFile;
+        this.rules = rules;
+        List<PermissionRule> all = new ArrayList<>(PermissionRuleEngine.DEFAULT_RULES.size() + rules.size());
+        all.addAll(PermissionRuleEngine.DEFAULT_RULES);
+        all.addAll(rules);
+        this.engine = new PermissionRuleEngine(all, projectRoot);
+    }
+
+    /**
+     * 获取项目根目录对应的存储（首次访问时从磁盘加载）
+     *
+     * @param projectRoot 项目根目录，为 null 时只使用内置规则和内存中的记忆
+     */
+    public static PermissionDecisionStore forProject(String projectRoot) {
+        String key = projectRoot != null && !projectRoot.isEmpty()
+            ? PermissionRuleEngine.normalizePath(projectRoot, null)
+            : NO_PROJECT;
+        return loaded.computeIfAbsent(key, PermissionDecisionStore::load);
+    }
+
+    private static PermissionDecisionStore load(String projectRoot) {
+        if (NO_PROJECT.equals(projectRoot)) {
+            return new PermissionDecisionStore(null, null, new ArrayList<>());
+        }
+        Path storeFile = storeFileFor(projectRoot);
+        List<PermissionRule> rules = new ArrayList<>();
+        List<SavedDecision> saved = new ArrayList<>();
+        if (Files.exists(storeFile)) {
+            try (Reader reader = Files.newBufferedReader(storeFile)) {
+                Snapshot snapshot = gson.fromJson(reader, Snapshot.class);
+                if (snapshot != null && snapshot.version == STORE_VERSION) {
+                    if (snapshot.rules != null) {
+                        rules.addAll(snapshot.rules);
+                    }
+                    if (snapshot.decisions != null) {
+                        saved.addAll(snapshot.decisions);
+                    }
+                }
+            } catch (Exception e) {
+                // 存储损坏时丢弃，最多是重新询问一次
+                System.err.println(LOG_TAG + " Failed to load store " + storeFile + ": " + e.getMessage());
+                rules.clear();
+                saved.clear();
+            }
+        }
+        PermissionDecisionStore store = new PermissionDecisionStore(projectRoot, storeFile, rules);
+        long now = System.currentTimeMillis();
+        for (SavedDecision decision : saved) {
+            if (decision.key == null || isToolKey(decision.key)) {
+                // 旧版本持久化的工具级决定（一次"总是允许"放行该工具的所有调用），不再恢复
+                continue;
+            }
+            store.decisions.restore(new PermissionDecisionCache.Entry(decision.key, decision.allow, decision.expiresAt), now);
+        }
+        return store;
+    }
+
+    /**
+     * 工具级键 {@link PermissionDecisionCache#toolKey}：工具名本身不含 ':'
+     */
+    private static boolean isToolKey(String key) {
+        return key.endsWith(":*") && key.indexOf(':') == key.length() - 2;
+    }
+
+    static Path storeFileFor(String projectRoot) {
+        String name = projectRoot.replaceAll("[^A-Za-z0-9._-]", "-");
+        if (name.length() > MAX_NAME_LENGTH) {
+            String hash = Integer.toHexString(projectRoot.hashCode());
+            name = name.substring(name.length() - (MAX_NAME_LENGTH - hash.length() - 1)) + "_" + hash;
+        }
+        String homeDir = System.getProperty("user.home");
+        return Paths.get(homeDir, CONFIG_DIR_NAME, STORE_DIR_NAME, name + ".json");
+    }
+
+    /**
+     * 判定一次工具调用：先规则，再参数级记忆
+     *
+     * @return true 允许，false 拒绝，null 需要询问用户
+     */
+    public Boolean resolve(String toolName, JsonObject inputs) {
+        Boolean byRule = engine.evaluate(toolName, inputs);
+        if (byRule != null) {
+            return byRule;
+        }
+        return decisions.get(PermissionDecisionCache.keyFor(toolName, inputs), System.currentTimeMillis());
+    }
+
+    /**
+     * 记住针对这次调用（命令 / 路径 / 参数）的决定
+     */
+    public void remember(String toolName, JsonObject inputs, boolean allow) {
+        decisions.put(PermissionDecisionCache.keyFor(toolName, inputs), allow, System.currentTimeMillis());
+        save();
+    }
+
+    private synchronized void save() {
+        if (storeFile == null) {
+            return;
+        }
+        Snapshot snapshot = new Snapshot();
+        snapshot.version = STORE_VERSION;
+        snapshot.rules = rules;
+        snapshot.decisions = new ArrayList<>();
+        for (PermissionDecisionCache.Entry entry : decisions.snapshot(System.currentTimeMillis())) {
+            SavedDecision saved = new SavedDecision();
+            saved.key = entry.key;
+            saved.allow = entry.allow;
+            saved.expiresAt = entry.expiresAt;
+            snapshot.decisions.add(saved);
+        }
+        try {
+            AtomicFileUtils.write(storeFile, gson.toJson(snapshot));
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to save store " + storeFile + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.claudecodegui.permission;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
 import java.util.*;
@@ -20,8 +21,9 @@ public class PermissionManager {
 
     private PermissionMode mode = PermissionMode.DEFAULT;
     private final Map<String, PermissionRequest> pendingRequests = new ConcurrentHashMap<>();
-    private final Map<String, Boolean> toolPermissionMemory = new ConcurrentHashMap<>(); // 记住工具权限决策（工具+参数）
-    private final Map<String, Boolean> toolOnlyPermissionMemory = new ConcurrentHashMap<>(); // 工具级别权限记忆（仅工具名）
+    // 记住的权限决策（工具+参数 / 仅工具名），容量和有效期见 PermissionConfig.DefaultSettings
+    private final PermissionDecisionCache permissionMemory = PermissionDecisionCache.withDefaults();
+    private final Gson gson = new Gson();
     private Consumer<PermissionRequest> onPermissionRequestedCallback;
 
     /**
@@ -35,23 +37,16 @@ public class PermissionManager {
      * @return 权限请求对象
      */
     public PermissionRequest createRequest(String channelId, String toolName, Map<String, Object> inputs, JsonObject suggestions, Project project) {
-        // 首先检查工具级别的权限记忆（总是允许）
-        if (toolOnlyPermissionMemory.containsKey(toolName)) {
-            PermissionRequest request = new PermissionRequest(channelId, toolName, inputs, suggestions, project);
-            if (toolOnlyPermissionMemory.get(toolName)) {
-                request.accept();
-            } else {
-                request.reject("Previously denied by user", true);
-            }
-            return request;
+        // 检查是否有记忆的权限决策（先工具+参数，再工具级别）
+        long now = System.currentTimeMillis();
+        Boolean remembered = permissionMemory.get(memoryKey(toolName, inputs), now);
+        if (remembered == null) {
+            remembered = permissionMemory.get(PermissionDecisionCache.toolKey(toolName), now);
         }
-
-        // 检查是否有记忆的权限决策（工具+参数）
-        String memoryKey = toolName + ":" + generateInputHash(inputs);
-        if (toolPermissionMemory.containsKey(memoryKey)) {
+        if (remembered != null) {
             // 自动处理基于记忆的决策
             PermissionRequest request = new PermissionRequest(channelId, toolName, inputs, suggestions, project);
-            if (toolPermissionMemory.get(memoryKey)) {
+            if (remembered) {
                 request.accept();
             } else {
                 request.reject("Previously denied by user", true);
@@ -103,8 +98,7 @@ public class PermissionManager {
 
         // 如果选择记住决策，保存到记忆中
         if (rememberDecision) {
-            String memoryKey = request.getToolName() + ":" + generateInputHash(request.getInputs());
-            toolPermissionMemory.put(memoryKey, allow);
+            permissionMemory.put(memoryKey(request.getToolName(), request.getInputs()), allow, System.currentTimeMillis());
         }
 
         if (allow) {
@@ -124,7 +118,7 @@ public class PermissionManager {
         }
 
         // 保存工具级别的权限记忆
-        toolOnlyPermissionMemory.put(request.getToolName(), allow);
+        permissionMemory.put(PermissionDecisionCache.toolKey(request.getToolName()), allow, System.currentTimeMillis());
 
         if (allow) {
             request.accept();
@@ -158,25 +152,22 @@ public class PermissionManager {
      * 清除权限记忆
      */
     public void clearPermissionMemory() {
-        toolPermissionMemory.clear();
+        permissionMemory.clear();
     }
 
     /**
      * 清除特定工具的权限记忆
      */
     public void clearToolPermissionMemory(String toolName) {
-        toolPermissionMemory.entrySet().removeIf(entry -> entry.getKey().startsWith(toolName + ":"));
+        permissionMemory.removeTool(toolName);
     }
 
     /**
-     * 生成输入参数的哈希值用于记忆
+     * 生成记忆键（与 PermissionService 使用相同的键规则）
      */
-    private String generateInputHash(Map<String, Object> inputs) {
-        if (inputs == null || inputs.isEmpty()) {
-            return "empty";
-        }
-        // 简单的哈希实现，实际可以更复杂
-        return String.valueOf(inputs.toString().hashCode());
+    private String memoryKey(String toolName, Map<String, Object> inputs) {
+        JsonObject json = inputs != null ? gson.toJsonTree(inputs).getAsJsonObject() : new JsonObject();
+        return PermissionDecisionCache.keyFor(toolName, json);
     }
 
     /**
@@ -0,0 +1,304 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 权限请求的耗时和结果统计（IDE 进程内全局，所有项目共用）
+ *
+ * 每个请求记录五个时间点：Node 创建、Java 收到、弹窗显示、用户决定、Node 恢复执行，
+ * 相邻时间点之差按阶段计入固定分桶的直方图；结果计入 允许 / 拒绝 / 超时 / 规则或记忆自动判定 四类计数。
+ * 最近的请求保留明细，便于导出 JSON 附到问题反馈中
+ */
+public class PermissionMetrics {
+
+    /**
+     * 请求结果
+     */
+    public enum Outcome {
+        ALLOWED,
+        DENIED,
+        TIMED_OUT,
+        AUTO_RESOLVED
+    }
+
+    /**
+     * 计时阶段
+     */
+    public enum Phase {
+        // Node 创建请求 -> Java 收到
+        PICKUP,
+        // Java 收到 -> 弹窗显示
+        DIALOG,
+        // 弹窗显示 -> 用户决定
+        DECISION,
+        // 决定 -> Node 恢复执行
+        RESUME,
+        // Node 创建请求 -> Node 恢复执行（Node 端等待权限的全部时间）
+        TOTAL
+    }
+
+    // 直方图分桶上界（毫秒），最后一个桶收纳超出部分
+    private static final long[] BUCKET_BOUNDS_MS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000, 60_000
+    };
+    // 保留明细的最近请求数
+    private static final int MAX_RECENT = 500;
+
+    private static final PermissionMetrics INSTANCE = new PermissionMetrics();
+
+    private final Map<Phase, Histogram> histograms = new EnumMap<>(Phase.class);
+    private final Map<Outcome, Long> outcomes = new EnumMap<>(Outcome.class);
+    private final LinkedHashMap<String, Record> recent = new LinkedHashMap<>(64, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Record> eldest) {
+            return size() > MAX_RECENT;
+        }
+    };
+    private long startedAt = System.currentTimeMillis();
+
+    private static final class Histogram {
+        final long[] counts = new long[BUCKET_BOUNDS_MS.length + 1];
+        long count;
+        long sum;
+        long max;
+
+        void add(long millis) {
+            long value = Math.max(0, millis);
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS_MS.length && value > BUCKET_BOUNDS_MS[bucket]) {
+                bucket++;
+            }
+            counts[bucket]++;
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+
+        /**
+         * 分位数（取所在分桶的上界，超出最后一个分桶时取最大值）
+         */
+        long percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(p * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < BUCKET_BOUNDS_MS.length ? Math.min(BUCKET_BOUNDS_MS[i], max) : max;
+                }
+            }
+            return max;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("count", count);
+            json.addProperty("sumMs", sum);
+            json.addProperty("maxMs", max);
+            json.addProperty("p50Ms", percentile(0.5));
+            json.addProperty("p90Ms", percentile(0.9));
+            json.addProperty("p99Ms", percentile(0.99));
+            JsonArray buckets = new JsonArray();
+            for (int i = 0; i < counts.length; i++) {
+                JsonObject bucket = new JsonObject();
+                if (i < BUCKET_BOUNDS_MS.length) {
+                    bucket.addProperty("leMs", BUCKET_BOUNDS_MS[i]);
+                }
+                bucket.addProperty("count", counts[i]);
+                buckets.add(bucket);
+            }
+            json.add("buckets", buckets);
+            return json;
+        }
+    }
+
+    private static final class Record {
+        final String requestId;
+        final String toolName;
+        final String channel;
+        // 各时间点（毫秒时间戳），0 表示尚未发生
+        long createdAt;
+        long seenAt;
+        long dialogShownAt;
+        long decidedAt;
+        long resumedAt;
+        Outcome outcome;
+        boolean allow;
+
+        Record(String requestId, String toolName, String channel) {
+            this.requestId = requestId;
+            this.toolName = toolName;
+            this.channel = channel;
+        }
+
+        JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("requestId", requestId);
+            json.addProperty("toolName", toolName);
+            json.addProperty("channel", channel);
+            addTime(json, "createdAt", createdAt);
+            addTime(json, "seenAt", seenAt);
+            addTime(json, "dialogShownAt", dialogShownAt);
+            addTime(json, "decidedAt", decidedAt);
+            addTime(json, "resumedAt", resumedAt);
+            if (outcome != null) {
+                json.addProperty("outcome", outcome.name());
+                json.addProperty("allow", allow);
+            }
+            return json;
+        }
+
+        private static void addTime(JsonObject json, String name, long value) {
+            if (value > 0) {
+                json.addProperty(name, value);
+            }
+        }
+    }
+
+    private PermissionMetrics() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new Histogram());
+        }
+    }
+
+    public static PermissionMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Java 收到请求
+     *
+     * @param channel 请求来源通道（inband / socket / file）
+     */
+    public synchronized void requestSeen(JsonObject request, String channel, long seenAt) {
+        String requestId = request.get("requestId").getAsString();
+        String toolName = request.has("toolName") ? request.get("toolName").getAsString() : null;
+        Record record = new Record(requestId, toolName, channel);
+        record.seenAt = seenAt;
+        if (request.has("sentAt") && !request.get("sentAt").isJsonNull()) {
+            record.createdAt = request.get("sentAt").getAsLong();
+            histograms.get(Phase.PICKUP).add(seenAt - record.createdAt);
+        }
+        recent.put(requestId, record);
+    }
+
+    /**
+     * 弹窗已交给前端（或系统弹窗）显示
+     */
+    public synchronized void dialogShown(String requestId, long shownAt) {
+        Record record = recent.get(requestId);
+        if (record == null) {
+            return;
+        }
+        record.dialogShownAt = shownAt;
+        histograms.get(Phase.DIALOG).add(shownAt - record.seenAt);
+    }
+
+    /**
+     * 得出决定
+     */
+    public synchronized void decided(String requestId, Outcome outcome, boolean allow, long decidedAt) {
+        outcomes.merge(outcome, 1L, Long::sum);
+        Record record = recent.get(requestId);
+        if (record == null) {
+            return;
+        }
+        record.decidedAt = decidedAt;
+        record.outcome = outcome;
+        record.allow = allow;
+        if (record.dialogShownAt > 0) {
+            histograms.get(Phase.DECISION).add(decidedAt - record.dialogShownAt);
+        }
+    }
+
+    /**
+     * Node 端收到决定并恢复执行
+     *
+     * @param timedOut Node 端等待超时（此时 Java 端可能还没有决定）
+     */
+    public synchronized void resumed(String requestId, long resumedAt, boolean timedOut) {
+        Record record = recent.get(requestId);
+        if (record == null || record.resumedAt > 0) {
+            return;
+        }
+        record.resumedAt = resumedAt;
+        if (timedOut && record.outcome != Outcome.TIMED_OUT) {
+            if (record.outcome != null) {
+                outcomes.merge(record.outcome, -1L, Long::sum);
+            }
+            outcomes.merge(Outcome.TIMED_OUT, 1L, Long::sum);
+            record.outcome = Outcome.TIMED_OUT;
+            record.allow = false;
+        }
+        if (record.decidedAt > 0) {
+            histograms.get(Phase.RESUME).add(resumedAt - record.decidedAt);
+        }
+        if (record.createdAt > 0) {
+            histograms.get(Phase.TOTAL).add(resumedAt - record.createdAt);
+        }
+    }
+
+    /**
+     * 处理 Node 端回报的恢复时间 {requestId, resumedAt, timedOut?}
+     */
+    public void resumed(JsonObject ack) {
+        if (ack == null || !ack.has("requestId") || !ack.has("resumedAt")) {
+            return;
+        }
+        boolean timedOut = ack.has("timedOut") && ack.get("timedOut").getAsBoolean();
+        resumed(ack.get("requestId").getAsString(), ack.get("resumedAt").getAsLong(), timedOut);
+    }
+
+    public synchronized void reset() {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new Histogram());
+        }
+        outcomes.clear();
+        recent.clear();
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * 全部统计数据（诊断面板和导出共用）
+     */
+    public synchronized JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("since", startedAt);
+        json.addProperty("generatedAt", System.currentTimeMillis());
+
+        JsonObject outcomeJson = new JsonObject();
+        long total = 0;
+        for (Outcome outcome : Outcome.values()) {
+            long count = outcomes.getOrDefault(outcome, 0L);
+            outcomeJson.addProperty(outcome.name(), count);
+            total += count;
+        }
+        json.addProperty("requests", total);
+        json.add("outcomes", outcomeJson);
+        // Node 端等待权限的总时长，对照会话耗时可以看出有多少时间花在审批上
+        json.addProperty("totalWaitMs", histograms.get(Phase.TOTAL).sum);
+
+        JsonObject phases = new JsonObject();
+        for (Phase phase : Phase.values()) {
+            phases.add(phase.name(), histograms.get(phase).toJson());
+        }
+        json.add("phases", phases);
+
+        List<Record> records = new ArrayList<>(recent.values());
+        JsonArray recentJson = new JsonArray();
+        for (int i = records.size() - 1; i >= 0; i--) {
+            recentJson.add(records.get(i).toJson());
+        }
+        json.add("recent", recentJson);
+        return json;
+    }
+}
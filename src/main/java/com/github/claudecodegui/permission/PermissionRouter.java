@@ -0,0 +1,384 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 权限请求路由
+ * 整个 IDE 进程共用一套通道（一个套接字服务 + 一个目录监控线程），按请求中的路由键分发到所属项目的 PermissionService，
+ * 打开多少个项目都不会增加线程或扫描开销，分发只是一次 Map 查找
+ *
+ * 没有路由键的请求（旧版本 Node 端）按 cwd 匹配项目根目录，仍无法确定时退回到系统弹窗。
+ * 所有 IDE 进程共用同一个请求目录，路由键不属于本进程的请求文件原样保留，由其所属的 IDE 处理
+ */
+class PermissionRouter {
+
+    private static final String LOG_TAG = "[PermissionRouter]";
+
+    // 原生文件通知可用时的兜底扫描间隔（防止丢事件）
+    private static final long FALLBACK_SCAN_INTERVAL_MS = 2000;
+    // 无原生通知（macOS 上 JDK 的 WatchService 本身就是轮询实现）或注册失败时的扫描间隔
+    private static final long POLL_SCAN_INTERVAL_MS = 250;
+
+    private static final PermissionRouter INSTANCE = new PermissionRouter();
+
+    private final Path permissionDir;
+    private final Gson gson = new Gson();
+    private final Map<String, PermissionService> routes = new ConcurrentHashMap<>();
+    // 记录正在处理的请求文件，避免重复处理
+    private final Set<String> processingRequests = ConcurrentHashMap.newKeySet();
+    // 属于其他 IDE 进程的请求文件，不再重复读取（只在监控线程上访问）
+    private final Set<String> foreignRequests = new HashSet<>();
+
+    private volatile WatchService watchService;
+    private volatile PermissionSocketServer socketServer;
+    private Thread watchThread;
+    private volatile boolean running = false;
+
+    private PermissionRouter() {
+        // 使用临时目录进行通信
+        this.permissionDir = Paths.get(System.getProperty("java.io.tmpdir"), "claude-permission");
+        try {
+            Files.createDirectories(permissionDir);
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to create permission dir: " + e.getMessage());
+        }
+    }
+
+    static PermissionRouter getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 注册项目的权限服务，第一个项目注册时启动通道
+     */
+    synchronized void register(PermissionService service) {
+        routes.put(service.getRoutingKey(), service);
+        System.out.println(LOG_TAG + " Registered route " + service.getRoutingKey() + " (" + routes.size() + " project(s))");
+        if (!running) {
+            startChannels();
+        }
+    }
+
+    /**
+     * 注销项目的权限服务，最后一个项目注销时关闭通道
+     */
+    synchronized void unregister(PermissionService service) {
+        routes.remove(service.getRoutingKey(), service);
+        System.out.println(LOG_TAG + " Unregistered route " + service.getRoutingKey() + " (" + routes.size() + " project(s))");
+        if (routes.isEmpty() && running) {
+            stopChannels();
+        }
+    }
+
+    /**
+     * 当前套接字通道的连接信息，通道未启动时返回 null
+     */
+    PermissionService.ChannelInfo getChannelInfo() {
+        PermissionSocketServer server = socketServer;
+        if (server == null || !server.isRunning()) {
+            return null;
+        }
+        Path socketPath = server.getSocketPath();
+        return new PermissionService.ChannelInfo(
+            socketPath != null ? socketPath.toString() : null, server.getPort(), server.getToken());
+    }
+
+    private void startChannels() {
+        running = true;
+
+        // 套接字通道：请求和决定直接经由连接传递；启动失败时 Node 端继续使用下面的文件通道
+        PermissionSocketServer server = new PermissionSocketServer(permissionDir,
+            (request, reply) -> dispatch(request, "socket", reply));
+        if (server.start()) {
+            socketServer = server;
+        }
+
+        watchThread = new Thread(this::watchLoop, "PermissionWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+
+        System.out.println(LOG_TAG + " Started watching: " + permissionDir);
+    }
+
+    private void stopChannels() {
+        running = false;
+        PermissionSocketServer server = socketServer;
+        if (server != null) {
+            server.stop();
+            socketServer = null;
+        }
+        WatchService ws = watchService;
+        if (ws != null) {
+            // 关闭后阻塞中的 poll 立即返回，监控线程随之退出
+            try {
+                ws.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            watchService = null;
+        }
+        if (watchThread != null) {
+            try {
+                watchThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            watchThread = null;
+        }
+        System.out.println(LOG_TAG + " Stopped");
+    }
+
+    /**
+     * 把请求交给所属项目处理
+     *
+     * @return 是否异步处理（此时 reply 稍后才会被调用）
+     */
+    boolean dispatch(JsonObject request, String channel, Consumer<Boolean> reply) {
+        PermissionService target = resolveTarget(request);
+        if (target != null) {
+            return target.handleRoutedRequest(request, channel, reply, true);
+        }
+        // 找不到所属项目时不在任意窗口里弹出，改用系统弹窗
+        PermissionService any = routes.values().stream().findFirst().orElse(null);
+        if (any == null) {
+            System.err.println(LOG_TAG + " No project registered, denying request");
+            reply.accept(false);
+            return false;
+        }
+        System.err.println(LOG_TAG + " Request has no known route, using system dialog");
+        return any.handleRoutedRequest(request, channel, reply, false);
+    }
+
+    /**
+     * @return 请求的所属项目；带有未知路由键的请求返回 null（不按 cwd 或唯一项目猜测）
+     */
+    private PermissionService resolveTarget(JsonObject request) {
+        String route = routeOf(request);
+        if (route != null) {
+            return routes.get(route);
+        }
+        if (request.has("cwd") && !request.get("cwd").isJsonNull()) {
+            String cwd = request.get("cwd").getAsString();
+            PermissionService best = null;
+            int bestLength = -1;
+            for (PermissionService service : routes.values()) {
+                int length = service.matchPath(cwd);
+                if (length > bestLength) {
+                    best = service;
+                    bestLength = length;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+        }
+        return routes.size() == 1 ? routes.values().iterator().next() : null;
+    }
+
+    private static String routeOf(JsonObject request) {
+        if (!request.has("route") || request.get("route").isJsonNull()) {
+            return null;
+        }
+        String route = request.get("route").getAsString();
+        return route.isEmpty() ? null : route;
+    }
+
+    /**
+     * 监控请求文件
+     * 优先使用文件系统通知（Linux inotify / Windows），请求文件一出现就处理；
+     * 同时保留低频目录扫描作为兜底，通知不可用时退化为轮询
+     */
+    private void watchLoop() {
+        long scanInterval = POLL_SCAN_INTERVAL_MS;
+        try {
+            Files.createDirectories(permissionDir);
+            WatchService ws = permissionDir.getFileSystem().newWatchService();
+            permissionDir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = ws;
+            if (!ws.getClass().getName().contains("Polling")) {
+                scanInterval = FALLBACK_SCAN_INTERVAL_MS;
+            }
+            System.out.println(LOG_TAG + " Watch service registered (" + ws.getClass().getSimpleName()
+                + "), fallback scan every " + scanInterval + "ms");
+        } catch (Exception e) {
+            System.out.println(LOG_TAG + " Watch service unavailable, polling every " + scanInterval + "ms: " + e.getMessage());
+        }
+
+        while (running) {
+            try {
+                scanRequests();
+
+                WatchService ws = watchService;
+                if (ws == null) {
+                    Thread.sleep(scanInterval);
+                    continue;
+                }
+                WatchKey key = ws.poll(scanInterval, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    // 事件只作为唤醒信号，具体文件统一由 scanRequests 处理
+                    key.pollEvents();
+                    if (!key.reset()) {
+                        System.out.println(LOG_TAG + " Watch key invalid (directory removed?), re-registering");
+                        Files.createDirectories(permissionDir);
+                        permissionDir.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (Exception e) {
+                System.err.println(LOG_TAG + " Error in watch loop: " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    Thread.sleep(1000); // 出错后稍作等待
+                } catch (InterruptedException ex) {
+                    break;
+                }
+            }
+        }
+        System.out.println(LOG_TAG + " Watch loop ended");
+    }
+
+    /**
+     * 扫描目录中的请求文件（Node 端先写临时文件再重命名，这里只会看到完整的请求）
+     */
+    private void scanRequests() {
+        File dir = permissionDir.toFile();
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        File[] files = dir.listFiles((d, name) ->
+            (name.startsWith("request-") || name.startsWith("resumed-")) && name.endsWith(".json"));
+        if (files == null) {
+            return;
+        }
+        if (!foreignRequests.isEmpty()) {
+            // 已被所属 IDE 处理（或 Node 端超时后删除）的文件不再记录
+            Set<String> present = new HashSet<>();
+            for (File file : files) {
+                present.add(file.getName());
+            }
+            foreignRequests.retainAll(present);
+        }
+        for (File file : files) {
+            if (foreignRequests.contains(file.getName())) {
+                continue;
+            }
+            if (file.getName().startsWith("resumed-")) {
+                handleResumedFile(file.toPath());
+                continue;
+            }
+            // 简单防重：检查文件是否还存在（可能被其他线程处理了）
+            if (file.exists()) {
+                handleRequestFile(file.toPath());
+            }
+        }
+    }
+
+    /**
+     * 处理文件通道的权限请求
+     */
+    private void handleRequestFile(Path requestFile) {
+        String fileName = requestFile.getFileName().toString();
+
+        // 检查是否正在处理该请求
+        if (!processingRequests.add(fileName)) {
+            return;
+        }
+
+        boolean async = false;
+        try {
+            String content = Files.readString(requestFile);
+
+            JsonObject request;
+            try {
+                request = gson.fromJson(content, JsonObject.class);
+            } catch (JsonSyntaxException e) {
+                request = null;
+            }
+            if (request == null || !request.has("requestId")) {
+                // 旧版本 Node 端直接写目标文件，可能读到半截内容，留给下一次通知或扫描
+                System.out.println(LOG_TAG + " Request file not complete yet, will retry: " + fileName);
+                return;
+            }
+            String route = routeOf(request);
+            if (route != null && !routes.containsKey(route)) {
+                // 其他 IDE 进程的项目发出的请求，留给它处理
+                foreignRequests.add(fileName);
+                return;
+            }
+
+            // 立即删除请求文件，避免重复处理
+            try {
+                Files.deleteIfExists(requestFile);
+            } catch (Exception e) {
+                System.err.println(LOG_TAG + " Failed to delete request file: " + e.getMessage());
+            }
+
+            String requestId = request.get("requestId").getAsString();
+            async = dispatch(request, "file", allow -> {
+                try {
+                    writeResponse(requestId, allow);
+                } finally {
+                    processingRequests.remove(fileName);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println(LOG_TAG + " Error handling request file " + fileName + ": " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (!async) {
+                processingRequests.remove(fileName);
+            }
+        }
+    }
+
+    /**
+     * Node 端读到响应后写入的恢复时间（仅用于统计）
+     */
+    private void handleResumedFile(Path resumedFile) {
+        try {
+            String content = Files.readString(resumedFile);
+            Files.deleteIfExists(resumedFile);
+            PermissionMetrics.getInstance().resumed(gson.fromJson(content, JsonObject.class));
+        } catch (IOException | RuntimeException e) {
+            // 统计数据缺失不影响权限流程
+            System.err.println(LOG_TAG + " Failed to read " + resumedFile.getFileName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * 写入响应文件
+     */
+    private void writeResponse(String requestId, boolean allow) {
+        try {
+            JsonObject response = new JsonObject();
+            response.addProperty("allow", allow);
+
+            Path responseFile = permissionDir.resolve("response-" + requestId + ".json");
+            // 先写临时文件再原子重命名，Node 端收到通知时读到的一定是完整内容
+            Path tempFile = permissionDir.resolve(".response-" + requestId + ".json.tmp");
+            Files.writeString(tempFile, gson.toJson(response));
+            try {
+                Files.move(tempFile, responseFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, responseFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to write response file for " + requestId + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.claudecodegui.permission;
+
+/**
+ * 权限规则
+ * 按工具名匹配，可选再限定路径 glob（文件类工具）或命令前缀（Bash）
+ *
+ * pathGlob 支持 ${projectRoot}、*、**、?，相对路径按项目根目录解析；
+ * commandPrefix 按词匹配（"gradle test" 匹配 "gradle test --info"，不匹配 "gradle testAll"）
+ */
+public class PermissionRule {
+
+    public enum Action {
+        ALLOW,
+        DENY
+    }
+
+    // 工具名，"*" 表示任意工具
+    public String tool;
+    public String pathGlob;
+    public String commandPrefix;
+    public Action action;
+
+    public PermissionRule() {
+    }
+
+    public PermissionRule(String tool, String pathGlob, String commandPrefix, Action action) {
+        this.tool = tool;
+        this.pathGlob = pathGlob;
+        this.commandPrefix = commandPrefix;
+        this.action = action;
+    }
+
+    public static PermissionRule allowTool(String tool) {
+        return new PermissionRule(tool, null, null, Action.ALLOW);
+    }
+
+    public static PermissionRule allowPath(String tool, String pathGlob) {
+        return new PermissionRule(tool, pathGlob, null, Action.ALLOW);
+    }
+
+    public static PermissionRule allowCommand(String commandPrefix) {
+        return new PermissionRule("Bash", null, commandPrefix, Action.ALLOW);
+    }
+
+    public static PermissionRule denyCommand(String commandPrefix) {
+        return new PermissionRule("Bash", null, commandPrefix, Action.DENY);
+    }
+
+    @Override
+    public String toString() {
+        return action + " " + tool
+            + (pathGlob != null ? " path=" + pathGlob : "")
+            + (commandPrefix != null ? " command=" + commandPrefix : "");
+    }
+}
@@ -0,0 +1,297 @@
+package com.github.claudecodegui.permission;
+
+import com.github.claudecodegui.util.PlatformUtils;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 权限规则引擎
+ * 规则在构造时编译：按工具名分组，路径 glob 编译为正则，命令前缀预先规范化，
+ * 单次判定只遍历该工具的少量规则，不做任何 IO
+ *
+ * 命中 DENY 规则优先于 ALLOW 规则；没有规则命中时返回 null，交给记忆或用户决定
+ */
+public class PermissionRuleEngine {
+
+    private static final String PROJECT_ROOT_VAR = "${projectRoot}";
+    private static final String ANY_TOOL = "*";
+
+    // 命令中出现这些字符时可能串联了其他命令，ALLOW 前缀规则不放行
+    private static final Pattern COMMAND_CHAINING = Pattern.compile("[;&|`<>\\n]|\\$\\(");
+    // DENY 规则按串联后的每一段分别检查
+    private static final Pattern COMMAND_SEPARATOR = Pattern.compile("[;&|\\n]+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    // shell 去掉的引号和转义，检查参数前先去掉（"--out\put" 在 shell 中就是 --output）
+    private static final Pattern SHELL_QUOTING = Pattern.compile("[\"'\\\\]");
+
+    /**
+     * git 命令的 ALLOW 前缀规则不放行带有这些选项的命令：
+     * --output 写任意文件，--ext-diff / --textconv 执行配置的外部程序，-c 覆盖配置。
+     * git 接受长选项的无歧义缩写（--out=...），缩写同样拦截
+     */
+    private static final String[] UNSAFE_GIT_OPTIONS = {"--output", "--ext-diff", "--textconv"};
+    private static final String UNSAFE_GIT_SHORT_OPTION = "-c";
+
+    /**
+     * 内置规则：项目内只读操作和只读 git 命令直接放行
+     */
+    public static final List<PermissionRule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+        PermissionRule.allowPath("Read", PROJECT_ROOT_VAR + "/**"),
+        PermissionRule.allowPath("LS", PROJECT_ROOT_VAR + "/**"),
+        PermissionRule.allowPath("NotebookRead", PROJECT_ROOT_VAR + "/**"),
+        PermissionRule.allowTool("Glob"),
+        PermissionRule.allowTool("Grep"),
+        PermissionRule.allowCommand("git status"),
+        PermissionRule.allowCommand("git diff"),
+        PermissionRule.allowCommand("git log"),
+        PermissionRule.allowCommand("git show"),
+        PermissionRule.allowCommand("pwd"),
+        PermissionRule.allowCommand("ls")
+    ));
+
+    private final String projectRoot;
+    private final Map<String, CompiledRule[]> rulesByTool = new HashMap<>();
+    private final CompiledRule[] anyToolRules;
+
+    private static final class CompiledRule {
+        final Pattern pathPattern;
+        final String commandPrefix;
+        final boolean allow;
+
+        CompiledRule(PermissionRule source, Pattern pathPattern, String commandPrefix) {
+            this.pathPattern = pathPattern;
+            this.commandPrefix = commandPrefix;
+            this.allow = source.action != PermissionRule.Action.DENY;
+        }
+    }
+
+    /**
+     * @param rules       规则列表（无效规则会被忽略）
+     * @param projectRoot 项目根目录，用于 ${projectRoot} 和相对路径，可为 null
+     */
+    public PermissionRuleEngine(List<PermissionRule> rules, String projectRoot) {
+        this.projectRoot = projectRoot != null ? normalizePath(projectRoot, null) : null;
+        Map<String, List<CompiledRule>> grouped = new HashMap<>();
+        List<CompiledRule> anyTool = new ArrayList<>();
+        for (PermissionRule rule : rules) {
+            CompiledRule compiled = compile(rule);
+            if (compiled == null) {
+                continue;
+            }
+            if (ANY_TOOL.equals(rule.tool)) {
+                anyTool.add(compiled);
+            } else {
+                grouped.computeIfAbsent(rule.tool, k -> new ArrayList<>()).add(compiled);
+            }
+        }
+        grouped.forEach((tool, list) -> rulesByTool.put(tool, list.toArray(new CompiledRule[0])));
+        this.anyToolRules = anyTool.toArray(new CompiledRule[0]);
+    }
+
+    private CompiledRule compile(PermissionRule rule) {
+        if (rule == null || rule.tool == null || rule.tool.isEmpty() || rule.action == null) {
+            return null;
+        }
+        Pattern pathPattern = null;
+        if (rule.pathGlob != null && !rule.pathGlob.isEmpty()) {
+            String glob = rule.pathGlob;
+            if (glob.contains(PROJECT_ROOT_VAR)) {
+                if (projectRoot == null) {
+                    // 没有项目根目录时，依赖它的规则不生效
+                    return null;
+                }
+                glob = glob.replace(PROJECT_ROOT_VAR, projectRoot);
+            }
+            pathPattern = globToPattern(glob.replace('\\', '/'));
+        }
+        String commandPrefix = rule.commandPrefix != null && !rule.commandPrefix.isBlank()
+            ? normalizeCommand(rule.commandPrefix)
+            : null;
+        return new CompiledRule(rule, pathPattern, commandPrefix);
+    }
+
+    /**
+     * 判定一次工具调用
+     *
+     * @return true 允许，false 拒绝，null 没有规则命中
+     */
+    public Boolean evaluate(String toolName, JsonObject inputs) {
+        CompiledRule[] toolRules = rulesByTool.get(toolName);
+        if (toolRules == null && anyToolRules.length == 0) {
+            return null;
+        }
+        String path = null;
+        String command = null;
+        boolean pathResolved = false;
+        boolean commandResolved = false;
+        Boolean result = null;
+
+        for (int pass = 0; pass < 2; pass++) {
+            CompiledRule[] rules = pass == 0 ? toolRules : anyToolRules;
+            if (rules == null) {
+                continue;
+            }
+            for (CompiledRule rule : rules) {
+                if (rule.pathPattern != null) {
+                    if (!pathResolved) {
+                        path = extractPath(inputs);
+                        path = path != null ? normalizePath(path, projectRoot) : null;
+                        pathResolved = true;
+                    }
+                    if (path == null || !rule.pathPattern.matcher(path).matches()) {
+                        continue;
+                    }
+                }
+                if (rule.commandPrefix != null) {
+                    if (!commandResolved) {
+                        command = extractCommand(inputs);
+                        commandResolved = true;
+                    }
+                    if (command == null || !matchesCommand(rule, command)) {
+                        continue;
+                    }
+                }
+                if (!rule.allow) {
+                    return false;
+                }
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    private static boolean matchesCommand(CompiledRule rule, String command) {
+        if (rule.allow) {
+            if (COMMAND_CHAINING.matcher(command).find()) {
+                return false;
+            }
+            String normalized = normalizeCommand(command);
+            if (!hasPrefix(normalized, rule.commandPrefix)) {
+                return false;
+            }
+            return !rule.commandPrefix.startsWith("git ") || !hasUnsafeGitOption(normalized);
+        }
+        for (String segment : COMMAND_SEPARATOR.split(command)) {
+            if (hasPrefix(normalizeCommand(segment), rule.commandPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 命令参数中是否有 UNSAFE_GIT_OPTIONS 中的选项（含缩写和 --option=value 形式）或 -c
+     */
+    static boolean hasUnsafeGitOption(String command) {
+        for (String argument : WHITESPACE.split(SHELL_QUOTING.matcher(command).replaceAll(""))) {
+            if (argument.equals(UNSAFE_GIT_SHORT_OPTION)) {
+                return true;
+            }
+            if (!argument.startsWith("--") || argument.length() <= 2) {
+                continue;
+            }
+            int equals = argument.indexOf('=');
+            String name = equals >= 0 ? argument.substring(0, equals) : argument;
+            for (String option : UNSAFE_GIT_OPTIONS) {
+                if (option.startsWith(name) && name.length() > 2) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasPrefix(String command, String prefix) {
+        return command.equals(prefix)
+            || (command.length() > prefix.length() && command.startsWith(prefix) && command.charAt(prefix.length()) == ' ');
+    }
+
+    /**
+     * 取文件类工具的目标路径
+     */
+    static String extractPath(JsonObject inputs) {
+        if (inputs == null) {
+            return null;
+        }
+        for (String key : new String[]{"file_path", "notebook_path", "path"}) {
+            JsonElement value = inputs.get(key);
+            if (value != null && value.isJsonPrimitive() && !value.getAsString().isEmpty()) {
+                return value.getAsString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 取 Bash 命令
+     */
+    static String extractCommand(JsonObject inputs) {
+        if (inputs == null) {
+            return null;
+        }
+        JsonElement value = inputs.get("command");
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+
+    /**
+     * 合并空白，便于前缀比较和作为记忆键
+     */
+    static String normalizeCommand(String command) {
+        return WHITESPACE.matcher(command.trim()).replaceAll(" ");
+    }
+
+    /**
+     * 解析相对路径并消除 ..，统一使用 / 分隔，避免用 ../ 跳出项目目录绕过规则
+     */
+    static String normalizePath(String path, String base) {
+        try {
+            Path p = Paths.get(path);
+            if (!p.isAbsolute() && base != null) {
+                p = Paths.get(base).resolve(p);
+            }
+            return p.normalize().toString().replace('\\', '/');
+        } catch (InvalidPathException e) {
+            return path.replace('\\', '/');
+        }
+    }
+
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 16);
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    if (i + 2 < glob.length() && glob.charAt(i + 2) == '/') {
+                        regex.append("(?:.*/)?");
+                        i += 2;
+                    } else {
+                        regex.append(".*");
+                        i++;
+                    }
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return PlatformUtils.isWindows()
+            ? Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE)
+            : Pattern.compile(regex.toString());
+    }
+}
@@ -5,30 +5,24 @@ import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
 
 import javax.swing.*;
-import java.io.*;
-import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 /**
  * 权限服务 - 处理Node.js的权限请求
+ * 每个项目一个实例，持有本项目的弹窗显示器和路由键；通道（套接字、目录监控）由 PermissionRouter 全进程共用
  */
 public class PermissionService {
 
     private static final String LOG_TAG = "[PermissionService]";
 
-    private static PermissionService instance;
+    private static final Map<Project, PermissionService> instances = new ConcurrentHashMap<>();
     private final Project project;
-    private final Path permissionDir;
+    private final String routingKey;
     private final Gson gson = new Gson();
-    private WatchService watchService;
-    private Thread watchThread;
-    private boolean running = false;
-
-    // 记忆用户选择（工具+参数级别）
-    private final Map<String, Integer> permissionMemory = new ConcurrentHashMap<>();
-    // 工具级别权限记忆（仅工具名 -> 是否总是允许）
-    private final Map<String, Boolean> toolOnlyPermissionMemory = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+
     private volatile PermissionDecisionListener decisionListener;
 
     // 调试日志辅助方法
@@ -45,7 +39,9 @@ public class PermissionService {
     public enum PermissionResponse {
         ALLOW(1, "允许"),
         ALLOW_ALWAYS(2, "允许且不再询问"),
-        DENY(3, "拒绝");
+        DENY(3, "拒绝"),
+        // 弹窗超时未决定，按拒绝处理
+        TIMEOUT(4, "超时");
 
         private final int value;
         private final String description;
@@ -126,24 +122,19 @@ public class PermissionService {
 
     private PermissionService(Project project) {
         this.project = project;
-        // 使用临时目录进行通信
-        this.permissionDir = Paths.get(System.getProperty("java.io.tmpdir"), "claude-permission");
-        debugLog("INIT", "Permission dir: " + permissionDir);
-        debugLog("INIT", "java.io.tmpdir: " + System.getProperty("java.io.tmpdir"));
-        try {
-            Files.createDirectories(permissionDir);
-            debugLog("INIT", "Permission directory created/verified: " + permissionDir);
-        } catch (IOException e) {
-            debugLog("INIT_ERROR", "Failed to create permission dir: " + e.getMessage());
-            e.printStackTrace();
-        }
+        this.routingKey = UUID.randomUUID().toString();
+        debugLog("INIT", "Routing key for project " + project.getName() + ": " + routingKey);
     }
 
-    public static synchronized PermissionService getInstance(Project project) {
-        if (instance == null) {
-            instance = new PermissionService(project);
-        }
-        return instance;
+    public static PermissionService getInstance(Project project) {
+        return instances.computeIfAbsent(project, PermissionService::new);
+    }
+
+    /**
+     * 路由键，由 bridge 通过 CLAUDE_PERMISSION_ROUTE 传给 Node 端，随每个请求带回
+     */
+    public String getRoutingKey() {
+        return routingKey;
     }
 
     public void setDecisionListener(PermissionDecisionListener listener) {
@@ -160,260 +151,269 @@ public class PermissionService {
     }
 
     /**
-     * 启动权限服务
+     * 启动权限服务（向共用路由注册本项目）
      */
-    public void start() {
+    public synchronized void start() {
         if (running) {
             debugLog("START", "Already running, skipping start");
             return;
         }
-
         running = true;
-
-        watchThread = new Thread(this::watchLoop, "PermissionWatcher");
-        watchThread.setDaemon(true);
-        watchThread.start();
-
-        debugLog("START", "Started polling on: " + permissionDir);
+        PermissionRouter.getInstance().register(this);
+        debugLog("START", "Registered project " + project.getName());
     }
 
     /**
-     * 监控文件变化
-     * 改为轮询模式，以提高在 macOS /tmp 目录下的可靠性
+     * 当前套接字通道的连接信息，通道未启动时返回 null
      */
-    private void watchLoop() {
-        debugLog("WATCH_LOOP", "Starting polling loop on: " + permissionDir);
-        int pollCount = 0;
-        while (running) {
-            try {
-                pollCount++;
-                File dir = permissionDir.toFile();
-                if (!dir.exists()) {
-                    dir.mkdirs();
-                }
+    public static ChannelInfo getChannelInfo() {
+        return PermissionRouter.getInstance().getChannelInfo();
+    }
 
-                File[] files = dir.listFiles((d, name) -> name.startsWith("request-") && name.endsWith(".json"));
+    /**
+     * 套接字通道连接信息（AF_UNIX 路径或 TCP 端口二选一）
+     */
+    public static class ChannelInfo {
+        private final String socketPath;
+        private final int port;
+        private final String token;
+
+        ChannelInfo(String socketPath, int port, String token) {
+            this.socketPath = socketPath;
+            this.port = port;
+            this.token = token;
+        }
 
-                // 每20次轮询（约10秒）输出一次状态
-                // 降低日志频率：每100次轮询（约50秒）记录一次状态
-                if (pollCount % 100 == 0) {
-                    int fileCount = files != null ? files.length : 0;
-                    debugLog("POLL_STATUS", String.format("Poll #%d, found %d request files", pollCount, fileCount));
-                }
+        public String getSocketPath() {
+            return socketPath;
+        }
 
-                if (files != null && files.length > 0) {
-                    for (File file : files) {
-                        // 简单防重：检查文件是否还存在（可能被其他线程处理了）
-                        if (file.exists()) {
-                            debugLog("REQUEST_FOUND", "Found request file: " + file.getName());
-                            handlePermissionRequest(file.toPath());
-                        }
-                    }
-                }
+        public int getPort() {
+            return port;
+        }
 
-                // 轮询间隔 500ms
-                Thread.sleep(500);
-            } catch (Exception e) {
-                debugLog("POLL_ERROR", "Error in poll loop: " + e.getMessage());
-                e.printStackTrace();
-                try {
-                    Thread.sleep(1000); // 出错后稍作等待
-                } catch (InterruptedException ex) {
-                    break;
-                }
-            }
+        public String getToken() {
+            return token;
         }
-        debugLog("WATCH_LOOP", "Polling loop ended");
     }
 
-    // 记录正在处理的请求文件，避免重复处理
-    private final Set<String> processingRequests = ConcurrentHashMap.newKeySet();
-
     /**
-     * 处理权限请求
+     * 路径位于本项目内时返回项目根目录的长度（嵌套项目取最长的），否则返回 -1
+     * 用于没有路由键的旧版本请求
      */
-    private void handlePermissionRequest(Path requestFile) {
-        String fileName = requestFile.getFileName().toString();
-        long startTime = System.currentTimeMillis();
-        debugLog("HANDLE_REQUEST", "Processing request file: " + fileName);
-
-        // 检查是否正在处理该请求
-        if (!processingRequests.add(fileName)) {
-            debugLog("SKIP_DUPLICATE", "Request already being processed, skipping: " + fileName);
-            return;
+    int matchPath(String path) {
+        String basePath = project.getBasePath();
+        if (basePath == null || path == null || path.isEmpty()) {
+            return -1;
         }
+        String root = PermissionRuleEngine.normalizePath(basePath, null);
+        String target = PermissionRuleEngine.normalizePath(path, null);
+        return target.equals(root) || target.startsWith(root + "/") ? root.length() : -1;
+    }
 
+    /**
+     * 处理路由到本项目的请求（套接字和文件通道）
+     *
+     * @param channel   请求来源通道（socket / file）
+     * @param useDialog 为 false 时不使用本项目窗口的弹窗，改用系统弹窗
+     * @return 是否异步处理（此时 reply 稍后才会被调用）
+     */
+    boolean handleRoutedRequest(JsonObject request, String channel, Consumer<Boolean> reply, boolean useDialog) {
         try {
-            Thread.sleep(100); // 等待文件写入完成
-
-            String content = Files.readString(requestFile);
-            debugLog("FILE_READ", "Read request content: " + content.substring(0, Math.min(200, content.length())) + "...");
+            return processRequest(request, channel, useDialog ? dialogShower : null, reply);
+        } catch (Exception e) {
+            debugLog("HANDLE_ERROR", "Error handling routed request: " + e.getMessage());
+            e.printStackTrace();
+            reply.accept(false);
+            return false;
+        }
+    }
 
-            JsonObject request = gson.fromJson(content, JsonObject.class);
+    /**
+     * 处理带内通道（bridge 的 stdout/stdin）的权限请求
+     * 弹窗由发起请求的窗口显示，记忆的选择仍然共用
+     *
+     * @param shower 所属窗口的弹窗显示器
+     * @param reply  得出决定后调用一次
+     */
+    public void handleInBandRequest(JsonObject request, PermissionDialogShower shower, Consumer<Boolean> reply) {
+        try {
+            processRequest(request, "inband", shower, reply);
+        } catch (Exception e) {
+            debugLog("HANDLE_ERROR", "Error handling in-band request: " + e.getMessage());
+            e.printStackTrace();
+            reply.accept(false);
+        }
+    }
 
-            String requestId = request.get("requestId").getAsString();
-            String toolName = request.get("toolName").getAsString();
-            JsonObject inputs = request.get("inputs").getAsJsonObject();
+    /**
+     * 处理一次权限请求（各通道共用）
+     * reply 在得出决定后调用一次
+     *
+     * @param channel 请求来源通道，用于统计
+     * @param shower  前端弹窗显示器，为 null 时使用系统弹窗
+     * @return 是否交给前端弹窗异步处理（此时 reply 稍后才会被调用）
+     */
+    private boolean processRequest(JsonObject request, String channel, PermissionDialogShower shower,
+                                   Consumer<Boolean> reply) throws Exception {
+        long startTime = System.currentTimeMillis();
+        String requestId = request.get("requestId").getAsString();
+        String toolName = request.get("toolName").getAsString();
+        JsonObject inputs = request.get("inputs").getAsJsonObject();
+        PermissionMetrics metrics = PermissionMetrics.getInstance();
+        metrics.requestSeen(request, channel, startTime);
+
+        debugLog("REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
+        if (request.has("sentAt")) {
+            debugLog("REQUEST_LATENCY", "Picked up " + (startTime - request.get("sentAt").getAsLong())
+                + "ms after it was sent");
+        }
 
-            debugLog("REQUEST_PARSED", String.format("requestId=%s, toolName=%s", requestId, toolName));
+        // 规则和记住的决定（按项目存储，请求中带有项目根目录，旧版本 Node 端退回到服务所属项目）
+        String projectRoot = request.has("cwd") && !request.get("cwd").getAsString().isEmpty()
+            ? request.get("cwd").getAsString()
+            : project.getBasePath();
+        PermissionDecisionStore store = PermissionDecisionStore.forProject(projectRoot);
+        Boolean resolved = store.resolve(toolName, inputs);
+        if (resolved != null) {
+            debugLog("MEMORY_HIT", "Resolved by rule or memory for " + toolName + " -> " + (resolved ? "ALLOW" : "DENY")
+                + " in " + (System.currentTimeMillis() - startTime) + "ms");
+            metrics.decided(requestId, PermissionMetrics.Outcome.AUTO_RESOLVED, resolved, System.currentTimeMillis());
+            reply.accept(resolved);
+            notifyDecision(toolName, inputs, resolved ? PermissionResponse.ALLOW_ALWAYS : PermissionResponse.DENY);
+            return false;
+        }
 
-            // 首先检查工具级别的权限记忆（总是允许）
-            if (toolOnlyPermissionMemory.containsKey(toolName)) {
-                boolean allow = toolOnlyPermissionMemory.get(toolName);
-                debugLog("MEMORY_HIT", "Using tool-level memory for " + toolName + " -> " + (allow ? "ALLOW" : "DENY"));
-                writeResponse(requestId, allow);
-                notifyDecision(toolName, inputs, allow ? PermissionResponse.ALLOW_ALWAYS : PermissionResponse.DENY);
-                Files.deleteIfExists(requestFile);
-                processingRequests.remove(fileName);
-                return;
-            }
+        // 如果有前端弹窗显示器，使用异步方式
+        if (shower != null) {
+            debugLog("DIALOG_SHOWER", "Using frontend dialog for: " + toolName);
 
-            // 生成内存键（工具+参数）
-            String memoryKey = toolName + ":" + inputs.toString().hashCode();
-            debugLog("MEMORY_KEY", "Generated memory key: " + memoryKey);
-
-            // 检查是否有记忆的选择（工具+参数级别）
-            if (permissionMemory.containsKey(memoryKey)) {
-                int memorized = permissionMemory.get(memoryKey);
-                PermissionResponse rememberedResponse = PermissionResponse.fromValue(memorized);
-                boolean allow = rememberedResponse != PermissionResponse.DENY;
-                debugLog("PARAM_MEMORY_HIT", "Using param-level memory: " + memoryKey + " -> " + (allow ? "ALLOW" : "DENY"));
-                writeResponse(requestId, allow);
-                notifyDecision(toolName, inputs, rememberedResponse);
-                Files.deleteIfExists(requestFile);
-                processingRequests.remove(fileName);
-                return;
-            }
+            final String tool = toolName;
+            final long dialogStartTime = System.currentTimeMillis();
 
-            // 如果有前端弹窗显示器，使用异步方式
-            if (dialogShower != null) {
-                debugLog("DIALOG_SHOWER", "Using frontend dialog for: " + toolName);
+            // 异步调用前端弹窗
+            debugLog("DIALOG_SHOW", "Calling dialogShower.showPermissionDialog for: " + toolName);
+            CompletableFuture<Integer> future = shower.showPermissionDialog(toolName, inputs);
+            metrics.dialogShown(requestId, System.currentTimeMillis());
 
-                // 立即删除请求文件，避免重复处理
+            // 异步处理结果
+            future.thenAccept(response -> {
+                long dialogElapsed = System.currentTimeMillis() - dialogStartTime;
+                debugLog("DIALOG_RESPONSE", String.format("Got response %d after %dms for %s", response, dialogElapsed, tool));
                 try {
-                    Files.deleteIfExists(requestFile);
-                    debugLog("FILE_DELETE", "Deleted request file: " + fileName);
-                } catch (Exception e) {
-                    debugLog("FILE_DELETE_ERROR", "Failed to delete request file: " + e.getMessage());
-                }
-
-                final String memKey = memoryKey;
-                final String tool = toolName;
-                final long dialogStartTime = System.currentTimeMillis();
-
-                // 异步调用前端弹窗
-                debugLog("DIALOG_SHOW", "Calling dialogShower.showPermissionDialog for: " + toolName);
-                CompletableFuture<Integer> future = dialogShower.showPermissionDialog(toolName, inputs);
-
-                // 异步处理结果
-                future.thenAccept(response -> {
-                    long dialogElapsed = System.currentTimeMillis() - dialogStartTime;
-                    debugLog("DIALOG_RESPONSE", String.format("Got response %d after %dms for %s", response, dialogElapsed, tool));
-                    try {
-                        PermissionResponse decision = PermissionResponse.fromValue(response);
-                        if (decision == null) {
-                            debugLog("RESPONSE_NULL", "Response value " + response + " mapped to null, defaulting to DENY");
-                            decision = PermissionResponse.DENY;
-                        }
-
-                        boolean allow;
-                        switch (decision) {
-                            case ALLOW:
-                                allow = true;
-                                debugLog("DECISION", "ALLOW (single) for " + tool);
-                                break;
-                            case ALLOW_ALWAYS:
-                                allow = true;
-                                // 保存到工具级别权限记忆（按工具类型，不是按参数）
-                                toolOnlyPermissionMemory.put(tool, true);
-                                debugLog("DECISION", "ALLOW_ALWAYS for " + tool + ", saved to memory");
-                                break;
-                            case DENY:
-                            default:
-                                allow = false;
-                                debugLog("DECISION", "DENY for " + tool);
-                                break;
-                        }
-
-                        notifyDecision(toolName, inputs, decision);
-                        debugLog("WRITE_RESPONSE", String.format("Writing response for %s: allow=%s", requestId, allow));
-                        writeResponse(requestId, allow);
-
-                        debugLog("DIALOG_COMPLETE", "Frontend dialog processing complete: allow=" + allow);
-                    } catch (Exception e) {
-                        debugLog("DIALOG_ERROR", "Error processing dialog result: " + e.getMessage());
-                        e.printStackTrace();
-                    } finally {
-                        processingRequests.remove(fileName);
+                    PermissionResponse decision = PermissionResponse.fromValue(response);
+                    if (decision == null) {
+                        debugLog("RESPONSE_NULL", "Response value " + response + " mapped to null, defaulting to DENY");
+                        decision = PermissionResponse.DENY;
                     }
-                }).exceptionally(ex -> {
-                    debugLog("DIALOG_EXCEPTION", "Frontend dialog exception: " + ex.getMessage());
-                    try {
-                        writeResponse(requestId, false);
-                    } catch (Exception e) {
-                        e.printStackTrace();
+
+                    boolean allow;
+                    switch (decision) {
+                        case ALLOW:
+                            allow = true;
+                            debugLog("DECISION", "ALLOW (single) for " + tool);
+                            break;
+                        case ALLOW_ALWAYS:
+                            allow = true;
+                            // 只记住这次调用（命令 / 路径 / 参数），不放行整个工具
+                            store.remember(tool, inputs, true);
+                            debugLog("DECISION", "ALLOW_ALWAYS for " + tool + ", saved param-level memory");
+                            break;
+                        case DENY:
+                        default:
+                            allow = false;
+                            debugLog("DECISION", decision + " for " + tool);
+                            break;
                     }
-                    notifyDecision(toolName, inputs, PermissionResponse.DENY);
-                    processingRequests.remove(fileName);
-                    return null;
-                });
+                    metrics.decided(requestId, outcomeOf(decision), allow, System.currentTimeMillis());
 
-                // 异步处理，直接返回，不阻塞
-                return;
-            }
+                    notifyDecision(toolName, inputs, decision);
+                    debugLog("WRITE_RESPONSE", String.format("Sending decision for %s: allow=%s", requestId, allow));
+                    reply.accept(allow);
 
-            // 降级方案：使用系统弹窗（同步阻塞）
-            debugLog("FALLBACK_DIALOG", "Using system dialog (JOptionPane) for: " + toolName);
-            CompletableFuture<Integer> future = new CompletableFuture<>();
-            SwingUtilities.invokeLater(() -> {
-                int response = showSystemPermissionDialog(toolName, inputs);
-                future.complete(response);
+                    debugLog("DIALOG_COMPLETE", "Frontend dialog processing complete: allow=" + allow);
+                } catch (Exception e) {
+                    debugLog("DIALOG_ERROR", "Error processing dialog result: " + e.getMessage());
+                    e.printStackTrace();
+                }
+            }).exceptionally(ex -> {
+                debugLog("DIALOG_EXCEPTION", "Frontend dialog exception: " + ex.getMessage());
+                metrics.decided(requestId, PermissionMetrics.Outcome.DENIED, false, System.currentTimeMillis());
+                try {
+                    reply.accept(false);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                notifyDecision(toolName, inputs, PermissionResponse.DENY);
+                return null;
             });
 
-            debugLog("DIALOG_WAIT", "Waiting for system dialog response (timeout: 30s)");
-            int response = future.get(30, TimeUnit.SECONDS);
-            debugLog("DIALOG_RESPONSE", "Got system dialog response: " + response);
+            // 异步处理，直接返回，不阻塞
+            return true;
+        }
 
-            PermissionResponse decision = PermissionResponse.fromValue(response);
-            if (decision == null) {
-                debugLog("RESPONSE_NULL", "Response mapped to null, defaulting to DENY");
-                decision = PermissionResponse.DENY;
-            }
+        // 降级方案：使用系统弹窗（同步阻塞）
+        debugLog("FALLBACK_DIALOG", "Using system dialog (JOptionPane) for: " + toolName);
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        SwingUtilities.invokeLater(() -> {
+            metrics.dialogShown(requestId, System.currentTimeMillis());
+            int response = showSystemPermissionDialog(toolName, inputs);
+            future.complete(response);
+        });
+
+        debugLog("DIALOG_WAIT", "Waiting for system dialog response (timeout: 30s)");
+        int response;
+        try {
+            response = future.get(30, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            debugLog("DIALOG_TIMEOUT", "System dialog timed out, denying");
+            response = PermissionResponse.TIMEOUT.getValue();
+        }
+        debugLog("DIALOG_RESPONSE", "Got system dialog response: " + response);
 
-            boolean allow;
-            switch (decision) {
-                case ALLOW:
-                    allow = true;
-                    break;
-                case ALLOW_ALWAYS:
-                    allow = true;
-                    permissionMemory.put(memoryKey, PermissionResponse.ALLOW_ALWAYS.value);
-                    debugLog("MEMORY_SAVE", "Saved param-level memory: " + memoryKey);
-                    break;
-                case DENY:
-                default:
-                    allow = false;
-                    break;
-            }
+        PermissionResponse decision = PermissionResponse.fromValue(response);
+        if (decision == null) {
+            debugLog("RESPONSE_NULL", "Response mapped to null, defaulting to DENY");
+            decision = PermissionResponse.DENY;
+        }
 
-            notifyDecision(toolName, inputs, decision);
+        boolean allow;
+        switch (decision) {
+            case ALLOW:
+                allow = true;
+                break;
+            case ALLOW_ALWAYS:
+                allow = true;
+                store.remember(toolName, inputs, true);
+                debugLog("MEMORY_SAVE", "Saved param-level memory for " + toolName);
+                break;
+            case DENY:
+            default:
+                allow = false;
+                break;
+        }
+        metrics.decided(requestId, outcomeOf(decision), allow, System.currentTimeMillis());
 
-            // 写入响应
-            debugLog("WRITE_RESPONSE", String.format("Writing response for %s: allow=%s", requestId, allow));
-            writeResponse(requestId, allow);
+        notifyDecision(toolName, inputs, decision);
 
-            // 删除请求文件
-            Files.delete(requestFile);
-            debugLog("FILE_DELETE", "Deleted request file after processing: " + fileName);
+        debugLog("WRITE_RESPONSE", String.format("Sending decision for %s: allow=%s", requestId, allow));
+        reply.accept(allow);
 
-            long elapsed = System.currentTimeMillis() - startTime;
-            debugLog("REQUEST_COMPLETE", String.format("Request %s completed in %dms", requestId, elapsed));
+        long elapsed = System.currentTimeMillis() - startTime;
+        debugLog("REQUEST_COMPLETE", String.format("Request %s completed in %dms", requestId, elapsed));
+        return false;
+    }
 
-        } catch (Exception e) {
-            debugLog("HANDLE_ERROR", "Error handling request: " + e.getMessage());
-            e.printStackTrace();
-        } finally {
-            processingRequests.remove(fileName);
+    private static PermissionMetrics.Outcome outcomeOf(PermissionResponse response) {
+        switch (response) {
+            case ALLOW:
+            case ALLOW_ALWAYS:
+                return PermissionMetrics.Outcome.ALLOWED;
+            case TIMEOUT:
+                return PermissionMetrics.Outcome.TIMED_OUT;
+            case DENY:
+            default:
+                return PermissionMetrics.Outcome.DENIED;
         }
     }
 
@@ -461,52 +461,25 @@ public class PermissionService {
     }
 
     /**
-     * 写入响应文件
+     * 停止权限服务（从共用路由注销本项目）
      */
-    private void writeResponse(String requestId, boolean allow) {
-        debugLog("WRITE_RESPONSE_START", String.format("Writing response for requestId=%s, allow=%s", requestId, allow));
-        try {
-            JsonObject response = new JsonObject();
-            response.addProperty("allow", allow);
-
-            Path responseFile = permissionDir.resolve("response-" + requestId + ".json");
-            String responseContent = gson.toJson(response);
-            debugLog("RESPONSE_CONTENT", "Response JSON: " + responseContent);
-            debugLog("RESPONSE_FILE", "Target file: " + responseFile);
-
-            Files.writeString(responseFile, responseContent);
-
-            // 验证文件是否写入成功
-            if (Files.exists(responseFile)) {
-                long fileSize = Files.size(responseFile);
-                debugLog("WRITE_SUCCESS", String.format("Response file written successfully, size=%d bytes", fileSize));
-            } else {
-                debugLog("WRITE_VERIFY_FAIL", "Response file does NOT exist after write!");
-            }
-        } catch (IOException e) {
-            debugLog("WRITE_ERROR", "Failed to write response file: " + e.getMessage());
-            e.printStackTrace();
+    public synchronized void stop() {
+        if (!running) {
+            return;
         }
+        running = false;
+        PermissionRouter.getInstance().unregister(this);
+        instances.remove(project, this);
+        debugLog("STOP", "Unregistered project " + project.getName());
     }
 
     /**
-     * 停止权限服务
+     * 窗口释放时调用：只有弹窗显示器仍是该窗口的才停止
+     * （同一项目重建窗口时，新窗口先完成注册，旧窗口随后才被释放）
      */
-    public void stop() {
-        running = false;
-        if (watchThread != null) {
-            try {
-                watchThread.join(1000);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
-        if (watchService != null) {
-            try {
-                watchService.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    public void detach(PermissionDialogShower shower) {
+        if (dialogShower == shower) {
+            stop();
         }
     }
 
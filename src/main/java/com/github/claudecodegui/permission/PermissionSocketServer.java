@@ -0,0 +1,306 @@
+package com.github.claudecodegui.permission;
+
+import com.github.claudecodegui.util.PlatformUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 权限请求套接字服务
+ * 每个 IDE 进程监听一个 AF_UNIX 套接字（Windows 或 UDS 不可用时改为 127.0.0.1 随机端口），
+ * Node 端每个请求建立一个连接：发送一行请求 JSON，等待一行 {"requestId","allow"} 响应，
+ * 收到后回一行 {"requestId","resumedAt"} 再关闭连接（用于统计，旧版本 Node 端直接关闭）
+ *
+ * reply 可能在 UI / JCEF 线程上被调用（用户点击后完成决定），因此写响应和等待回执都交给连接线程，
+ * 回执超过 ACK_TIMEOUT_MS 未到时直接关闭连接，卡住的 Node 进程不会拖住调用方
+ *
+ * 每行请求都必须携带启动时生成的随机 token，防止同机其他进程伪造请求
+ */
+class PermissionSocketServer {
+
+    private static final String LOG_TAG = "[PermissionSocket]";
+    // 等待 Node 端恢复回执的最长时间
+    private static final long ACK_TIMEOUT_MS = 5_000;
+
+    /**
+     * 请求处理器，reply 在得出决定后调用一次
+     */
+    interface RequestHandler {
+        void handle(JsonObject request, Consumer<Boolean> reply);
+    }
+
+    private final Path socketDir;
+    private final RequestHandler handler;
+    private final Gson gson = new Gson();
+    private final String token;
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "PermissionSocket-Connection");
+        t.setDaemon(true);
+        return t;
+    });
+    // 回执超时后关闭连接，使阻塞在 readLine 上的连接线程退出
+    private final ScheduledExecutorService ackTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "PermissionSocket-AckTimer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile ServerSocketChannel serverChannel;
+    private volatile Path socketPath;
+    private volatile int port = -1;
+    private volatile boolean running = false;
+
+    PermissionSocketServer(Path socketDir, RequestHandler handler) {
+        this.socketDir = socketDir;
+        this.handler = handler;
+        byte[] bytes = new byte[24];
+        new SecureRandom().nextBytes(bytes);
+        this.token = HexFormat.of().formatHex(bytes);
+    }
+
+    /**
+     * 启动监听，失败返回 false（调用方继续使用文件通道）
+     */
+    boolean start() {
+        if (running) {
+            return true;
+        }
+        try {
+            ServerSocketChannel channel = null;
+            // Node 在 Windows 上把路径当作命名管道处理，无法连接 AF_UNIX，直接使用 TCP
+            if (!PlatformUtils.isWindows()) {
+                channel = openUnixChannel();
+            }
+            if (channel == null) {
+                channel = ServerSocketChannel.open();
+                channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                port = ((InetSocketAddress) channel.getLocalAddress()).getPort();
+                System.out.println(LOG_TAG + " Listening on 127.0.0.1:" + port);
+            }
+            serverChannel = channel;
+            running = true;
+
+            Thread acceptThread = new Thread(this::acceptLoop, "PermissionSocket-Accept");
+            acceptThread.setDaemon(true);
+            acceptThread.start();
+            return true;
+        } catch (IOException e) {
+            System.err.println(LOG_TAG + " Failed to start: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private ServerSocketChannel openUnixChannel() {
+        try {
+            Files.createDirectories(socketDir);
+            // 套接字路径长度有限（macOS 104 字节），用 PID 命名保持简短且每个 IDE 唯一
+            Path path = socketDir.resolve("ide-" + ProcessHandle.current().pid() + ".sock");
+            deleteStaleSockets();
+            Files.deleteIfExists(path);
+            ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.bind(UnixDomainSocketAddress.of(path));
+            try {
+                Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException | IOException ignored) {
+                // 权限设置失败时仍有 token 校验
+            }
+            socketPath = path;
+            System.out.println(LOG_TAG + " Listening on " + path);
+            return channel;
+        } catch (UnsupportedOperationException | IOException e) {
+            System.err.println(LOG_TAG + " Unix domain socket unavailable, using loopback TCP: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 清理已退出的 IDE 进程遗留的套接字文件（异常退出时不会执行 stop）
+     */
+    private void deleteStaleSockets() {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(socketDir, "ide-*.sock")) {
+            for (Path stale : stream) {
+                String name = stale.getFileName().toString();
+                try {
+                    long pid = Long.parseLong(name.substring("ide-".length(), name.length() - ".sock".length()));
+                    if (ProcessHandle.of(pid).isEmpty()) {
+                        Files.deleteIfExists(stale);
+                    }
+                } catch (NumberFormatException | IOException ignored) {
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel connection = serverChannel.accept();
+                connectionExecutor.execute(() -> handleConnection(connection));
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println(LOG_TAG + " Accept failed: " + e.getMessage());
+                }
+                // 通道已关闭，退出
+                if (!serverChannel.isOpen()) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void handleConnection(SocketChannel connection) {
+        try {
+            BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Channels.newInputStream(connection), StandardCharsets.UTF_8));
+            String line = reader.readLine();
+            if (line == null || line.isBlank()) {
+                closeQuietly(connection);
+                return;
+            }
+            JsonObject request = gson.fromJson(line, JsonObject.class);
+            if (request == null || !isTokenValid(request) || !request.has("requestId")) {
+                System.err.println(LOG_TAG + " Rejected request with missing or invalid token");
+                closeQuietly(connection);
+                return;
+            }
+            request.remove("token");
+            String requestId = request.get("requestId").getAsString();
+            handler.handle(request, allow -> reply(connection, reader, requestId, allow));
+        } catch (Exception e) {
+            System.err.println(LOG_TAG + " Failed to handle connection: " + e.getMessage());
+            closeQuietly(connection);
+        }
+    }
+
+    private boolean isTokenValid(JsonObject request) {
+        if (!request.has("token") || request.get("token").isJsonNull()) {
+            return false;
+        }
+        byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+        byte[] actual = request.get("token").getAsString().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * 得出决定后调用（可能在任意线程上），立即返回，实际发送在连接线程上进行
+     */
+    private void reply(SocketChannel connection, BufferedReader reader, String requestId, boolean allow) {
+        try {
+            connectionExecutor.execute(() -> sendDecision(connection, reader, requestId, allow));
+        } catch (RejectedExecutionException e) {
+            // 服务已停止
+            closeQuietly(connection);
+        }
+    }
+
+    private void sendDecision(SocketChannel connection, BufferedReader reader, String requestId, boolean allow) {
+        JsonObject response = new JsonObject();
+        response.addProperty("requestId", requestId);
+        response.addProperty("allow", allow);
+        try {
+            OutputStream out = Channels.newOutputStream(connection);
+            out.write((gson.toJson(response) + "\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException | RuntimeException e) {
+            // Node 端已超时或退出
+            System.err.println(LOG_TAG + " Failed to send decision for " + requestId + ": " + e.getMessage());
+            closeQuietly(connection);
+            return;
+        }
+        ScheduledFuture<?> deadline;
+        try {
+            deadline = ackTimer.schedule(() -> closeQuietly(connection), ACK_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            closeQuietly(connection);
+            return;
+        }
+        try {
+            String ack = reader.readLine();
+            if (ack != null && !ack.isBlank()) {
+                PermissionMetrics.getInstance().resumed(gson.fromJson(ack, JsonObject.class));
+            }
+        } catch (IOException | RuntimeException e) {
+            // 回执只用于统计：超时、旧版本 Node 端或连接已断开时忽略
+            System.out.println(LOG_TAG + " No resume ack for " + requestId + ": " + e.getMessage());
+        } finally {
+            deadline.cancel(false);
+            closeQuietly(connection);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    void stop() {
+        running = false;
+        ServerSocketChannel channel = serverChannel;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        Path path = socketPath;
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+            }
+        }
+        connectionExecutor.shutdownNow();
+        ackTimer.shutdownNow();
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * AF_UNIX 套接字路径，使用 TCP 时为 null
+     */
+    Path getSocketPath() {
+        return socketPath;
+    }
+
+    /**
+     * TCP 端口，使用 AF_UNIX 时为 -1
+     */
+    int getPort() {
+        return port;
+    }
+
+    String getToken() {
+        return token;
+    }
+}
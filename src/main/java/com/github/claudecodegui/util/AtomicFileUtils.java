@@ -0,0 +1,39 @@
+package com.github.claudecodegui.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 原子文件写入工具类
+ * 先写临时文件再重命名，IDE 异常退出时不会留下写了一半的索引或存储文件
+ */
+public final class AtomicFileUtils {
+
+    private AtomicFileUtils() {
+    }
+
+    /**
+     * 原子写入文本文件（UTF-8）
+     */
+    public static void write(Path target, String content) throws IOException {
+        write(target, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 原子写入二进制文件，文件系统不支持原子重命名时退回普通替换
+     */
+    public static void write(Path target, byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, content);
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
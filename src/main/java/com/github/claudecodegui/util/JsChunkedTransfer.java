@@ -0,0 +1,82 @@
+package com.github.claudecodegui.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大数据分块传输工具
+ * 把大 JSON 拆成固定大小的块，每块单独执行一次 JavaScript（window.__receiveChunk），
+ * 前端按传输 ID 重组、解析后再调用目标函数，避免一次性注入几十 MB 的字符串字面量阻塞 EDT 和渲染进程
+ *
+ * 小数据同样走这条通道（只有一块），前端按传输 ID 丢弃晚于新数据完成解析的旧数据，保证投递顺序
+ */
+public final class JsChunkedTransfer {
+
+    // 每块字符数（转义前）
+    public static final int CHUNK_SIZE = 256 * 1024;
+
+    private static final AtomicLong NEXT_TRANSFER_ID = new AtomicLong(1);
+
+    private JsChunkedTransfer() {
+    }
+
+    /**
+     * 执行一段 JavaScript（由调用方决定线程和浏览器实例）
+     */
+    @FunctionalInterface
+    public interface ScriptSink {
+        void execute(String jsCode);
+    }
+
+    /**
+     * 发送数据，每块调用一次 sink
+     *
+     * @param targetFunction 前端接收函数（如 "window.setHistoryData"）
+     * @param json           要传输的 JSON 字符串
+     */
+    public static void send(ScriptSink sink, String targetFunction, String json) {
+        for (String script : buildScripts(targetFunction, json)) {
+            sink.execute(script);
+        }
+    }
+
+    /**
+     * 生成传输脚本
+     */
+    public static List<String> buildScripts(String targetFunction, String json) {
+        List<String> chunks = split(json != null ? json : "");
+        long transferId = NEXT_TRANSFER_ID.getAndIncrement();
+        String target = JsUtils.escapeJs(targetFunction.startsWith("window.")
+            ? targetFunction.substring("window.".length())
+            : targetFunction);
+        List<String> scripts = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            scripts.add("if (window.__receiveChunk) { window.__receiveChunk("
+                + transferId + ", " + i + ", " + chunks.size() + ", '" + target + "', '"
+                + JsUtils.escapeJs(chunks.get(i)) + "'); }");
+        }
+        return scripts;
+    }
+
+    /**
+     * 按 CHUNK_SIZE 切分，不拆开代理对
+     */
+    static List<String> split(String data) {
+        List<String> chunks = new ArrayList<>(data.length() / CHUNK_SIZE + 1);
+        if (data.isEmpty()) {
+            chunks.add(data);
+            return chunks;
+        }
+        int start = 0;
+        while (start < data.length()) {
+            int end = Math.min(data.length(), start + CHUNK_SIZE);
+            if (end < data.length() && Character.isHighSurrogate(data.charAt(end - 1))) {
+                end--;
+            }
+            chunks.add(data.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.claudecodegui.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 目录列表缓存测试：并发读取共享、过期后先返回旧结果再后台刷新、失效所在目录及其下所有目录
+ */
+class DirectoryListingCacheTest {
+
+    // 后台任务排队，由测试决定何时执行
+    private final Queue<Runnable> background = new ArrayDeque<>();
+    private final Executor executor = background::add;
+
+    private final Map<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final Function<String, String> loader = directory ->
+        directory + "#" + loads.computeIfAbsent(directory, k -> new AtomicInteger()).incrementAndGet();
+
+    @Test
+    void concurrentRequestsShareOneLoad() throws Exception {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(16, 60_000, executor);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, String> slowLoader = directory -> {
+            calls.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return "listing";
+        };
+
+        AtomicReference<String> first = new AtomicReference<>();
+        Thread owner = new Thread(() -> first.set(cache.get("/p/src", slowLoader)));
+        owner.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<String> second = new AtomicReference<>();
+        Thread waiter = new Thread(() -> second.set(cache.get("/p/src/", slowLoader)));
+        waiter.start();
+        // 等待者在读取完成前拿不到结果
+        waiter.join(100);
+        assertTrue(waiter.isAlive());
+
+        release.countDown();
+        owner.join();
+        waiter.join();
+        assertEquals(1, calls.get());
+        assertSame(first.get(), second.get());
+    }
+
+    @Test
+    void prefetchedListingIsReused() {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(16, 60_000, executor);
+        cache.prefetch("/p/src", loader);
+        cache.prefetch("/p/src", loader);
+        assertEquals(1, background.size());
+        runBackground();
+        assertEquals("/p/src#1", cache.get("/p/src", loader));
+        assertEquals(1, loads.get("/p/src").get());
+    }
+
+    @Test
+    void staleListingIsServedWhileRefreshing() throws Exception {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(16, 0, executor);
+        assertEquals("/p#1", cache.get("/p", loader));
+        Thread.sleep(5);
+
+        // 过期：仍返回旧结果，只安排一次后台刷新
+        assertEquals("/p#1", cache.get("/p", loader));
+        assertEquals("/p#1", cache.get("/p", loader));
+        assertEquals(1, background.size());
+        assertEquals(1, loads.get("/p").get());
+
+        runBackground();
+        assertEquals("/p#2", cache.get("/p", loader));
+    }
+
+    @Test
+    void invalidationDuringRefreshDiscardsRefreshResult() throws Exception {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(16, 0, executor);
+        cache.get("/p", loader);
+        Thread.sleep(5);
+        cache.get("/p", loader);
+        cache.invalidate("/p/new-file.txt");
+        runBackground();
+        assertEquals(0, cache.size());
+        assertEquals("/p#3", cache.get("/p", loader));
+    }
+
+    @Test
+    void invalidateDropsParentAndDescendants() {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(16, 60_000, executor);
+        for (String directory : new String[]{"/p", "/p/a", "/p/a/b", "/p/a/b/c", "/p/ab", "/q"}) {
+            cache.get(directory, loader);
+        }
+
+        // 目录 /p/a 被移动：其所在目录 /p、它本身和其下所有目录失效，名字相近的 /p/ab 不受影响
+        cache.invalidate("/p/a");
+        assertEquals(2, cache.size());
+        for (String directory : new String[]{"/p", "/p/a", "/p/a/b", "/p/a/b/c"}) {
+            assertEquals(directory + "#2", cache.get(directory, loader));
+        }
+        assertEquals("/p/ab#1", cache.get("/p/ab", loader));
+        assertEquals("/q#1", cache.get("/q", loader));
+
+        // Windows 分隔符与结尾斜杠
+        cache.invalidate("\\p\\a\\b\\");
+        assertEquals("/p/a#3", cache.get("/p/a", loader));
+        assertEquals("/p/a/b#3", cache.get("/p/a/b", loader));
+        assertEquals("/p#2", cache.get("/p", loader));
+    }
+
+    @Test
+    void failedAndMissingListingsAreNotCached() {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(16, 60_000, executor);
+        assertNull(cache.get("/missing", directory -> null));
+        assertEquals(0, cache.size());
+
+        AtomicInteger attempts = new AtomicInteger();
+        Function<String, String> failing = directory -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("io error");
+            }
+            return "ok";
+        };
+        assertThrows(IllegalStateException.class, () -> cache.get("/flaky", failing));
+        assertEquals(0, cache.size());
+        assertEquals("ok", cache.get("/flaky", failing));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedDirectories() {
+        DirectoryListingCache<String> cache = new DirectoryListingCache<>(2, 60_000, executor);
+        cache.get("/a", loader);
+        cache.get("/b", loader);
+        cache.get("/a", loader);
+        cache.get("/c", loader);
+        assertEquals(2, cache.size());
+        assertEquals("/a#1", cache.get("/a", loader));
+        assertEquals("/b#2", cache.get("/b", loader));
+    }
+
+    private void runBackground() {
+        Runnable task;
+        while ((task = background.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.claudecodegui.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 模糊匹配排名测试
+ * 同一查询下各路径按得分从高到低的顺序必须符合预期；得分上界不能低于实际得分（否则剪枝会漏掉结果）
+ */
+class FuzzyPathMatcherTest {
+
+    @Test
+    void exactNameBeatsPrefixBeatsFuzzyBeatsPathOnly() {
+        assertRanking("config",
+            "config",
+            "configuration.yml",
+            "src/CoreOnFig.java",
+            "conf/ig/readme.md");
+    }
+
+    @Test
+    void wordBoundariesBeatScatteredLetters() {
+        // 都落在词首时，文件名短的在前
+        assertRanking("fpm",
+            "file-path-map.ts",
+            "FuzzyPathMatcher.java",
+            "fooprompt.txt");
+    }
+
+    @Test
+    void shallowerAndShorterPathsWinTies() {
+        assertRanking("util",
+            "util",
+            "a/util",
+            "a/b/c/util",
+            "utils.java");
+    }
+
+    @Test
+    void directorySegmentsMustMatchInOrder() {
+        assertRanking("file/fuzzy",
+            "src/file/Fuzzy.java",
+            "src/files-old/lib/FuzzyFinder.java",
+            "src/main/java/file/FuzzyPathMatcher.java");
+        assertNoMatch("file/fuzzy", "src/other/FuzzyPathMatcher.java");
+        assertNoMatch("fuzzy/file", "src/file/FuzzyPathMatcher.java");
+        // 有目录段时文件名必须匹配，不退回整个路径上的匹配
+        assertNoMatch("src/fzz", "src/fuzzy/Matcher.java");
+    }
+
+    @Test
+    void caseInsensitiveAndRequiresAllCharacters() {
+        assertTrue(score("README", "docs/readme.md") != FuzzyPathMatcher.NO_MATCH);
+        assertNoMatch("xyz", "src/Main.java");
+        assertNoMatch("mainn", "src/Main.java");
+    }
+
+    @Test
+    void upperBoundNeverUnderestimates() {
+        List<String> paths = List.of("FuzzyPathMatcher.java", "src/file/Fuzzy.java", "fooprompt.txt", "a/b/c/util",
+            "configuration.yml", "src/CoreOnFig.java", "conf/ig/readme.md", "util", "x/y/z/file-path-map.ts");
+        for (String query : List.of("f", "fu", "fpm", "util", "config", "file/fuzzy", "rdm", "z/f")) {
+            FuzzyPathMatcher matcher = new FuzzyPathMatcher(query);
+            for (String path : paths) {
+                int score = score(matcher, path);
+                if (score != FuzzyPathMatcher.NO_MATCH) {
+                    int bound = matcher.upperBound(path, 0, path.lastIndexOf('/') + 1, depth(path));
+                    assertTrue(bound >= score, () -> query + " on " + path + ": bound " + bound + " < " + score);
+                }
+            }
+        }
+    }
+
+    @Test
+    void minScoreOnlyDropsResultsBelowIt() {
+        FuzzyPathMatcher matcher = new FuzzyPathMatcher("fpm");
+        String path = "FuzzyPathMatcher.java";
+        int score = score(matcher, path);
+        String lower = path.toLowerCase();
+        assertEquals(score, matcher.score(path, lower, 0, 0, 0, 0, score));
+        int pruned = matcher.score("fooprompt.txt", "fooprompt.txt", 0, 0, 0, 0, score);
+        assertTrue(pruned == FuzzyPathMatcher.NO_MATCH || pruned < score);
+    }
+
+    /**
+     * paths 按给出的顺序排名（得分严格递减）
+     */
+    private static void assertRanking(String query, String... paths) {
+        FuzzyPathMatcher matcher = new FuzzyPathMatcher(query);
+        for (String path : paths) {
+            assertTrue(score(matcher, path) != FuzzyPathMatcher.NO_MATCH, () -> query + " should match " + path);
+        }
+        List<String> ranked = Arrays.stream(paths)
+            .sorted(Comparator.comparingInt((String path) -> -score(matcher, path)))
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList(paths), ranked);
+        for (int i = 1; i < paths.length; i++) {
+            int previous = score(matcher, paths[i - 1]);
+            int current = score(matcher, paths[i]);
+            assertTrue(previous > current, () -> query + ": " + String.join(", ", paths) + " should score strictly lower in order");
+        }
+    }
+
+    private static void assertNoMatch(String query, String path) {
+        assertEquals(FuzzyPathMatcher.NO_MATCH, score(query, path), query + " should not match " + path);
+    }
+
+    private static int score(String query, String path) {
+        return score(new FuzzyPathMatcher(query), path);
+    }
+
+    private static int score(FuzzyPathMatcher matcher, String path) {
+        return matcher.score(path, path.toLowerCase(), 0, 0, path.lastIndexOf('/') + 1, depth(path), FuzzyPathMatcher.NO_MATCH);
+    }
+
+    private static int depth(String path) {
+        return (int) path.chars().filter(c -> c == '/').count();
+    }
+}
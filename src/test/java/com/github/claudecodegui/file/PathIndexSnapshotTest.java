@@ -0,0 +1,133 @@
+package com.github.claudecodegui.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路径索引快照搜索测试
+ * 查询逐字符变长时，在上一次候选项中细化得到的结果必须与完整搜索完全一致（包括多分片并行搜索的情况）
+ */
+class PathIndexSnapshotTest {
+
+    private static final String[] WORDS = {"src", "main", "java", "test", "util", "file", "path", "index", "search",
+        "handler", "config", "model", "view", "component", "service", "history", "session", "permission"};
+    private static final String[] EXTENSIONS = {".java", ".ts", ".tsx", ".md", ".json"};
+
+    @Test
+    void refinedSearchMatchesFullSearch() {
+        // 超过两个分片，触发分片并行评分
+        PathIndexSnapshot snapshot = PathIndexSnapshot.of(generatePaths(40_000, 42));
+        Map<String, Integer> recent = Map.of("src/main/java/SearchHandler.java", 0);
+        for (String[] queries : new String[][]{
+            {"s", "se", "sea", "sear", "search", "searchh", "searchha"},
+            {"c", "co", "com", "comp", "compo", "component/", "component/v", "component/vi"},
+            {"u", "ut", "uti", "util/f", "util/fi"}}) {
+            PathIndexSnapshot.Result previous = null;
+            for (String query : queries) {
+                PathIndexSnapshot.Result refined = snapshot.search("", query, 50, recent, previous, () -> false);
+                PathIndexSnapshot.Result full = snapshot.search("", query, 50, recent, null, () -> false);
+                assertEquals(paths(full), paths(refined), query);
+                if (previous != null) {
+                    assertTrue(refined.candidateCount() <= previous.candidateCount(), query + " candidates should shrink");
+                }
+                previous = refined;
+            }
+        }
+    }
+
+    @Test
+    void refinesOnlyExtensionsOfTheSameSearch() {
+        PathIndexSnapshot snapshot = PathIndexSnapshot.of(generatePaths(1_000, 7));
+        PathIndexSnapshot.Result result = snapshot.search("src/", "ma", 20, Map.of(), null, () -> false);
+        assertTrue(result.canRefine(snapshot, "src/", "mai"));
+        assertFalse(result.canRefine(snapshot, "src/", "m"));
+        assertFalse(result.canRefine(snapshot, "src/", "xa"));
+        assertFalse(result.canRefine(snapshot, "", "mai"));
+        assertFalse(result.canRefine(PathIndexSnapshot.of(generatePaths(1_000, 7)), "src/", "mai"));
+        assertFalse(snapshot.search("src/", "", 20, Map.of(), null, () -> false).canRefine(snapshot, "src/", "m"));
+    }
+
+    @Test
+    void prefixRestrictsAndRelativizesResults() {
+        PathIndexSnapshot snapshot = PathIndexSnapshot.of(entries(
+            "src/main/Config.java", "src/test/ConfigTest.java", "docs/config.md", "/outside/root/config.json"));
+        List<String> found = paths(snapshot.search("src/", "config", 10, Map.of(), null, () -> false));
+        assertEquals(List.of("main/Config.java", "test/ConfigTest.java"), found);
+        assertEquals(4, snapshot.search("", "config", 10, Map.of(), null, () -> false).getMatches().size());
+    }
+
+    @Test
+    void recentFilesRankHigher() {
+        PathIndexSnapshot snapshot = PathIndexSnapshot.of(entries("a/Handler.java", "b/Handler.java", "c/Handler.java"));
+        assertEquals("a/Handler.java", paths(snapshot.search("", "handler", 3, Map.of(), null, () -> false)).get(0));
+        Map<String, Integer> recent = Map.of("c/Handler.java", 0, "b/Handler.java", 1);
+        assertEquals(List.of("c/Handler.java", "b/Handler.java", "a/Handler.java"),
+            paths(snapshot.search("", "handler", 3, recent, null, () -> false)));
+    }
+
+    @Test
+    void limitKeepsBestMatches() {
+        PathIndexSnapshot snapshot = PathIndexSnapshot.of(generatePaths(40_000, 3));
+        List<String> top = paths(snapshot.search("", "index", 500, Map.of(), null, () -> false));
+        List<String> top10 = paths(snapshot.search("", "index", 10, Map.of(), null, () -> false));
+        assertEquals(top.subList(0, 10), top10);
+    }
+
+    @Test
+    void cancelledSearchReturnsNull() {
+        PathIndexSnapshot snapshot = PathIndexSnapshot.of(generatePaths(40_000, 5));
+        AtomicInteger checks = new AtomicInteger();
+        assertNull(snapshot.search("", "s", 50, Map.of(), null, () -> checks.incrementAndGet() > 2));
+        assertNotNull(snapshot.search("", "s", 50, Map.of(), null, () -> false));
+    }
+
+    private static List<String> paths(PathIndexSnapshot.Result result) {
+        return result.getMatches().stream().map(FileMatch::getPath).collect(Collectors.toList());
+    }
+
+    private static List<PathEntry> entries(String... paths) {
+        List<PathEntry> entries = new ArrayList<>();
+        for (String path : paths) {
+            entries.add(new PathEntry(path, false));
+        }
+        return entries;
+    }
+
+    /**
+     * 随机生成目录和文件（目录项也加入索引，与 ProjectFileIndex 遍历的结果一致）
+     */
+    private static List<PathEntry> generatePaths(int count, long seed) {
+        Random random = new Random(seed);
+        Map<String, PathEntry> entries = new LinkedHashMap<>();
+        while (entries.size() < count) {
+            StringBuilder path = new StringBuilder();
+            int depth = 1 + random.nextInt(5);
+            for (int i = 0; i < depth; i++) {
+                path.append(WORDS[random.nextInt(WORDS.length)]);
+                entries.putIfAbsent(path.toString(), new PathEntry(path.toString(), true));
+                path.append('/');
+            }
+            String first = WORDS[random.nextInt(WORDS.length)];
+            String second = WORDS[random.nextInt(WORDS.length)];
+            path.append(Character.toUpperCase(first.charAt(0))).append(first.substring(1))
+                .append(Character.toUpperCase(second.charAt(0))).append(second.substring(1))
+                .append(random.nextInt(100))
+                .append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+            entries.putIfAbsent(path.toString(), new PathEntry(path.toString(), false));
+        }
+        return new ArrayList<>(entries.values());
+    }
+}
@@ -0,0 +1,142 @@
+package com.github.claudecodegui.file;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 路径索引构建状态测试（ProjectPathIndex 的重建与失败恢复逻辑）
+ * 文件变化用 "+路径" 表示新增文件、"-路径" 表示删除
+ */
+class PathIndexStateTest {
+
+    private final PathIndexState<String> state = new PathIndexState<>(PathIndexStateTest::apply);
+
+    @Test
+    void changesDuringBuildAreReplayedOnInstall() {
+        // 第一次构建完成前没有可用的索引，变化直接忽略
+        state.onChanges(List.of("+early.txt"));
+        assertNull(state.getSnapshot());
+
+        int build = state.startBuild();
+        state.onChanges(List.of("+new.txt", "-src/old.txt"));
+        assertTrue(state.isBuilding());
+        assertNull(state.getSnapshot());
+
+        assertTrue(state.install(build, entries("src", "src/old.txt", "README.md")));
+        assertFalse(state.isBuilding());
+        assertIndexed(state.getSnapshot(), "src", "README.md", "new.txt");
+    }
+
+    @Test
+    void failedRebuildReplaysQueuedChangesOntoPreviousIndex() {
+        state.install(state.startBuild(), entries("src", "src/A.java"));
+        PathIndexSnapshot installed = state.getSnapshot();
+
+        int rebuild = state.startBuild();
+        state.onChanges(List.of("+src/B.java"));
+        assertSame(installed, state.getSnapshot());
+
+        assertEquals(1, state.buildFailed(rebuild));
+        assertFalse(state.isBuilding());
+        assertIndexed(state.getSnapshot(), "src", "src/A.java", "src/B.java");
+
+        // 失败后不再停留在构建状态，之后的变化直接生效而不是一直排队
+        state.onChanges(List.of("-src/A.java"));
+        assertIndexed(state.getSnapshot(), "src", "src/B.java");
+    }
+
+    @Test
+    void failedFirstBuildDropsChangesUntilRetrySucceeds() {
+        int build = state.startBuild();
+        state.onChanges(List.of("+lost.txt"));
+        assertEquals(1, state.buildFailed(build));
+        assertNull(state.getSnapshot());
+        state.onChanges(List.of("+ignored.txt"));
+        assertNull(state.getSnapshot());
+
+        // 连续失败次数递增，成功后清零
+        assertEquals(2, state.buildFailed(state.startBuild()));
+        assertEquals(3, state.buildFailed(state.startBuild()));
+        assertTrue(state.install(state.startBuild(), entries("a.txt")));
+        assertIndexed(state.getSnapshot(), "a.txt");
+        assertEquals(1, state.buildFailed(state.startBuild()));
+    }
+
+    @Test
+    void supersededBuildResultsAreIgnored() {
+        int first = state.startBuild();
+        int second = state.startBuild();
+        state.onChanges(List.of("+queued.txt"));
+
+        assertFalse(state.install(first, entries("stale.txt")));
+        assertEquals(0, state.buildFailed(first));
+        // 过期的失败不能结束新构建的构建状态，也不能丢掉它排队的变化
+        assertTrue(state.isBuilding());
+
+        assertTrue(state.install(second, entries("fresh.txt")));
+        assertIndexed(state.getSnapshot(), "fresh.txt", "queued.txt");
+    }
+
+    @Test
+    void unchangedIndexKeepsSnapshot() {
+        state.install(state.startBuild(), entries("a.txt"));
+        PathIndexSnapshot installed = state.getSnapshot();
+        state.onChanges(List.of("-missing.txt"));
+        assertSame(installed, state.getSnapshot());
+        state.onChanges(List.of("+b.txt"));
+        assertNotSame(installed, state.getSnapshot());
+    }
+
+    @Test
+    void removeSubtreeDropsDirectoryChildrenOnly() {
+        Map<String, PathEntry> entries = new HashMap<>();
+        for (String path : List.of("src", "src/a", "src/a/A.java", "src2", "src2/B.java")) {
+            entries.put(path, new PathEntry(path, !path.endsWith(".java")));
+        }
+        assertTrue(PathIndexState.removeSubtree(entries, "src"));
+        assertEquals(Set.of("src2", "src2/B.java"), entries.keySet());
+        assertFalse(PathIndexState.removeSubtree(entries, "missing"));
+        assertFalse(PathIndexState.removeSubtree(entries, null));
+    }
+
+    private static boolean apply(Map<String, PathEntry> entries, List<String> changes) {
+        boolean changed = false;
+        for (String change : changes) {
+            String path = change.substring(1);
+            if (change.charAt(0) == '-') {
+                changed |= PathIndexState.removeSubtree(entries, path);
+            } else {
+                changed |= entries.put(path, new PathEntry(path, false)) == null;
+            }
+        }
+        return changed;
+    }
+
+    private static List<PathEntry> entries(String... paths) {
+        return Arrays.stream(paths).map(path -> new PathEntry(path, !path.contains("."))).collect(Collectors.toList());
+    }
+
+    /**
+     * 快照恰好包含这些路径：项数一致，且每个路径都能按完整路径搜到
+     */
+    private static void assertIndexed(PathIndexSnapshot snapshot, String... paths) {
+        assertEquals(paths.length, snapshot.size());
+        for (String path : paths) {
+            List<FileMatch> matches = snapshot.search("", path, 10, Map.of(), null, () -> false).getMatches();
+            assertTrue(matches.stream().anyMatch(match -> match.getPath().equals(path)), () -> "Missing " + path);
+        }
+    }
+}
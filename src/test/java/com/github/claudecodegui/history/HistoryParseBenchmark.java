@@ -0,0 +1,217 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 历史解析性能基准
+ * 生成一个指定大小（默认 200 MB）的模拟会话文件，对比逐行顺序解析与 JsonlChunkParser 并行解析的耗时
+ *
+ * 用法：./gradlew historyParseBenchmark --args="[大小MB] [文件路径]"
+ *
+ * 另外可以统计真实会话目录上逐行映射为 ConversationMessage 与 SessionLineScanner 流式扫描的内存分配量：
+ * ./gradlew historyParseBenchmark --args="alloc [会话目录...]"（默认 ~/.claude/projects 下的全部目录）
+ */
+public class HistoryParseBenchmark {
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "alloc".equals(args[0])) {
+            measureAllocation(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        long targetMb = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        Path file = args.length > 1 ? Path.of(args[1]) : Files.createTempFile("claude-transcript-", ".jsonl");
+
+        try {
+            if (!Files.exists(file) || Files.size(file) < targetMb * 1024 * 1024) {
+                long start = System.nanoTime();
+                generateTranscript(file, targetMb * 1024 * 1024);
+                System.out.printf("[Benchmark] Generated %s (%d MB) in %d ms%n",
+                    file, Files.size(file) / (1024 * 1024), (System.nanoTime() - start) / 1_000_000);
+            }
+
+            JsonlChunkParser parser = new JsonlChunkParser();
+            for (int round = 1; round <= ROUNDS; round++) {
+                long start = System.nanoTime();
+                int sequentialCount = parseSequential(file).size();
+                long sequentialMs = (System.nanoTime() - start) / 1_000_000;
+
+                start = System.nanoTime();
+                int parallelCount = parser.parse(file, line -> JsonParser.parseString(line).getAsJsonObject()).items.size();
+                long parallelMs = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf("[Benchmark] Round %d: sequential %d lines in %d ms, parallel %d lines in %d ms (%.2fx)%n",
+                    round, sequentialCount, sequentialMs, parallelCount, parallelMs,
+                    parallelMs > 0 ? (double) sequentialMs / parallelMs : 0);
+
+                if (sequentialCount != parallelCount) {
+                    throw new IllegalStateException("Line count mismatch: " + sequentialCount + " vs " + parallelCount);
+                }
+            }
+        } finally {
+            if (args.length < 2) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * 对比两种元数据提取方式在当前线程上的分配字节数
+     */
+    private static void measureAllocation(String[] dirs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<Path> roots = new ArrayList<>();
+        if (dirs.length == 0) {
+            roots.add(Path.of(System.getProperty("user.home"), ".claude", "projects"));
+        } else {
+            for (String dir : dirs) {
+                roots.add(Path.of(dir));
+            }
+        }
+        for (Path root : roots) {
+            try (Stream<Path> walk = Files.walk(root)) {
+                walk.filter(p -> p.toString().endsWith(".jsonl")).forEach(files::add);
+            }
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Gson gson = new Gson();
+        long totalBytes = 0;
+        long lines = 0;
+        long mappedAlloc = 0;
+        long scannedAlloc = 0;
+
+        for (int round = 0; round < 2; round++) {
+            // 第一轮仅用于预热
+            mappedAlloc = 0;
+            scannedAlloc = 0;
+            totalBytes = 0;
+            lines = 0;
+            for (Path file : files) {
+                totalBytes += Files.size(file);
+                List<String> content = Files.readAllLines(file);
+                lines += content.size();
+
+                long before = threads.getCurrentThreadAllocatedBytes();
+                for (String line : content) {
+                    try {
+                        ClaudeHistoryReader.ConversationMessage msg = gson.fromJson(line, ClaudeHistoryReader.ConversationMessage.class);
+                        // 原实现对 summary 行和带 usage 的助手行会再用 Map 解析一次
+                        if (msg != null && ("summary".equals(msg.type)
+                            || ("assistant".equals(msg.type) && msg.message != null && msg.message.usage != null))) {
+                            gson.fromJson(line, Map.class);
+                        }
+                    } catch (Exception e) {
+                        // 跳过解析失败的行
+                    }
+                }
+                mappedAlloc += threads.getCurrentThreadAllocatedBytes() - before;
+
+                before = threads.getCurrentThreadAllocatedBytes();
+                for (String line : content) {
+                    try {
+                        SessionLineScanner.scan(line);
+                    } catch (Exception e) {
+                        // 跳过解析失败的行
+                    }
+                }
+                scannedAlloc += threads.getCurrentThreadAllocatedBytes() - before;
+            }
+        }
+
+        System.out.printf("[Benchmark] %d files, %d lines, %d KB on disk%n", files.size(), lines, totalBytes / 1024);
+        System.out.printf("[Benchmark] ConversationMessage mapping: %d KB allocated%n", mappedAlloc / 1024);
+        System.out.printf("[Benchmark] SessionLineScanner:          %d KB allocated (%.1f%% less)%n",
+            scannedAlloc / 1024, mappedAlloc > 0 ? 100.0 * (mappedAlloc - scannedAlloc) / mappedAlloc : 0);
+    }
+
+    /**
+     * 原先 ClaudeHistoryReader 使用的逐行顺序解析方式
+     */
+    private static List<JsonObject> parseSequential(Path file) throws IOException {
+        List<JsonObject> result = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                try {
+                    result.add(JsonParser.parseString(line).getAsJsonObject());
+                } catch (Exception e) {
+                    // 跳过解析失败的行
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 生成模拟会话：用户消息、带 usage 的助手消息，以及体积较大的 tool_result
+     */
+    private static void generateTranscript(Path file, long targetBytes) throws IOException {
+        Gson gson = new Gson();
+        String bigPayload = "x".repeat(48 * 1024);
+        long written = 0;
+        long index = 0;
+        Instant time = Instant.parse("2025-01-01T00:00:00Z");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            while (written < targetBytes) {
+                JsonObject line = new JsonObject();
+                line.addProperty("uuid", "uuid-" + index);
+                line.addProperty("sessionId", "benchmark");
+                line.addProperty("timestamp", time.plusSeconds(index).toString());
+
+                JsonObject message = new JsonObject();
+                switch ((int) (index % 3)) {
+                    case 0:
+                        line.addProperty("type", "user");
+                        message.addProperty("role", "user");
+                        message.addProperty("content", "Please refactor module " + index);
+                        break;
+                    case 1:
+                        line.addProperty("type", "assistant");
+                        message.addProperty("role", "assistant");
+                        message.addProperty("model", "claude-sonnet-4-5");
+                        message.addProperty("content", "Working on it, step " + index);
+                        JsonObject usage = new JsonObject();
+                        usage.addProperty("input_tokens", 1200);
+                        usage.addProperty("output_tokens", 300);
+                        usage.addProperty("cache_read_input_tokens", 5000);
+                        message.add("usage", usage);
+                        break;
+                    default:
+                        line.addProperty("type", "user");
+                        message.addProperty("role", "user");
+                        message.addProperty("content", "[tool_result] " + bigPayload);
+                        break;
+                }
+                line.add("message", message);
+
+                String json = gson.toJson(line);
+                writer.write(json);
+                writer.write('\n');
+                written += json.length() + 1;
+                index++;
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.util.PathUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 增量尾部解析一致性测试
+ * 模拟 CLI 不断向会话文件追加内容（包括写到一半的行），每次追加后分别用增量方式和完整重新解析的方式
+ * 读取会话列表、使用统计（含预聚合的日/模型汇总）和会话消息，结果必须完全一致；最后再模拟文件被截断和被同长度重写
+ *
+ * ClaudeHistoryReader 从 user.home 定位 ~/.claude，build.gradle 把测试 JVM 的 user.home 指向 build/test-home，
+ * 测试只在其中创建并清理自己的项目目录
+ */
+class IncrementalParseTest {
+
+    private static final String SESSION_FILE = "8f0c2a7e-check.jsonl";
+    private static final int STEPS = 120;
+
+    private static final Gson gson = new Gson();
+
+    private final String run = "run-" + System.nanoTime();
+    private final Path projectsDir = Paths.get(System.getProperty("user.home"), ".claude", "projects");
+    private final List<Path> createdDirs = new ArrayList<>();
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        for (Path dir : createdDirs) {
+            deleteRecursively(dir);
+        }
+        // 会话索引和使用统计汇总按项目保存在 ~/.codemoss/history-index 下
+        Path indexDir = Paths.get(System.getProperty("user.home"), ".codemoss", "history-index");
+        if (Files.isDirectory(indexDir)) {
+            try (Stream<Path> files = Files.list(indexDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().contains(run)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void incrementalParseMatchesFullReparse() throws IOException {
+        checkAppends(42L);
+    }
+
+    @Test
+    void incrementalParseMatchesFullReparseWithOtherSplits() throws IOException {
+        checkAppends(7L);
+    }
+
+    private void checkAppends(long seed) throws IOException {
+        ClaudeHistoryReader reader = new ClaudeHistoryReader();
+        String incrementalProject = "/check/" + run + "/incremental";
+        Path incrementalFile = projectDir(incrementalProject).resolve(SESSION_FILE);
+        Files.createFile(incrementalFile);
+
+        byte[] transcript = generateTranscript(STEPS * 2, seed);
+        Random random = new Random(seed);
+        int written = 0;
+        long mtime = System.currentTimeMillis() - 3_600_000L;
+
+        for (int step = 0; written < transcript.length; step++) {
+            // 随机长度的追加，经常会把一行切成两半
+            int chunk = Math.min(transcript.length - written, 1 + random.nextInt(transcript.length / STEPS * 2 + 1));
+            append(incrementalFile, transcript, written, chunk);
+            written += chunk;
+            // 显式推进修改时间，避免同一毫秒内的两次写入被当作未变化
+            Files.setLastModifiedTime(incrementalFile, FileTime.fromMillis(mtime += 1000));
+
+            compare(reader, incrementalProject, incrementalFile, "step-" + step);
+        }
+
+        // 截断：文件变小
+        Files.write(incrementalFile, Arrays.copyOf(transcript, transcript.length / 2));
+        Files.setLastModifiedTime(incrementalFile, FileTime.fromMillis(mtime += 1000));
+        compare(reader, incrementalProject, incrementalFile, "truncate");
+
+        // 同长度重写：大小不变但头部内容变化
+        byte[] rewritten = generateTranscript(STEPS * 2, seed + 1);
+        rewritten = Arrays.copyOf(rewritten, Math.min(rewritten.length, transcript.length / 2));
+        Files.write(incrementalFile, rewritten);
+        Files.setLastModifiedTime(incrementalFile, FileTime.fromMillis(mtime += 1000));
+        compare(reader, incrementalProject, incrementalFile, "rewrite");
+    }
+
+    /**
+     * 将当前文件复制到一个全新的项目目录（必然完整解析），与增量结果逐项比较
+     */
+    private void compare(ClaudeHistoryReader reader, String incrementalProject, Path incrementalFile,
+                         String label) throws IOException {
+        String fullProject = "/check/" + run + "/full-" + label;
+        Path fullFile = projectDir(fullProject).resolve(SESSION_FILE);
+        Files.copy(incrementalFile, fullFile);
+        Files.setLastModifiedTime(fullFile, Files.getLastModifiedTime(incrementalFile));
+
+        assertEquals(gson.toJson(reader.readProjectSessions(fullProject)),
+            gson.toJson(reader.readProjectSessions(incrementalProject)), label + " sessions");
+        assertEquals(statisticsJson(reader.getProjectStatistics(fullProject)),
+            statisticsJson(reader.getProjectStatistics(incrementalProject)), label + " statistics");
+
+        String sessionId = SESSION_FILE.substring(0, SESSION_FILE.length() - ".jsonl".length());
+        List<JsonObject> fullMessages = new JsonlChunkParser().parse(fullFile,
+            line -> JsonParser.parseString(line).getAsJsonObject()).items;
+        assertEquals(gson.toJson(fullMessages),
+            gson.toJson(reader.readSessionMessages(incrementalProject, sessionId)), label + " messages");
+    }
+
+    private Path projectDir(String projectPath) throws IOException {
+        Path dir = projectsDir.resolve(PathUtils.sanitizePath(projectPath));
+        Files.createDirectories(dir);
+        createdDirs.add(dir);
+        return dir;
+    }
+
+    /**
+     * 去掉项目路径和生成时间后的统计结果（包含日汇总、模型汇总和会话列表）
+     */
+    private static String statisticsJson(ClaudeHistoryReader.ProjectStatistics stats) {
+        stats.projectPath = null;
+        stats.projectName = null;
+        stats.lastUpdated = 0;
+        return gson.toJson(stats);
+    }
+
+    private static void append(Path file, byte[] data, int offset, int length) throws IOException {
+        try (var out = Files.newOutputStream(file, StandardOpenOption.APPEND)) {
+            out.write(data, offset, length);
+        }
+    }
+
+    /**
+     * 生成包含用户消息、带 usage 的助手消息（部分重复）、summary 行的模拟会话
+     */
+    private static byte[] generateTranscript(int lines, long seed) {
+        Random random = new Random(seed);
+        String[] models = {"claude-sonnet-4-5", "claude-opus-4-1", "claude-haiku-4-5"};
+        Instant time = Instant.parse("2025-06-01T08:00:00Z");
+        StringBuilder sb = new StringBuilder();
+        int lastAssistant = -1;
+
+        for (int i = 0; i < lines; i++) {
+            JsonObject line = new JsonObject();
+            line.addProperty("uuid", "uuid-" + seed + "-" + i);
+            line.addProperty("sessionId", "check");
+            line.addProperty("timestamp", time.plusSeconds(i * 7L + random.nextInt(5)).toString());
+
+            JsonObject message = new JsonObject();
+            int kind = random.nextInt(10);
+            if (kind < 4) {
+                line.addProperty("type", "user");
+                if (random.nextInt(6) == 0) {
+                    line.addProperty("isMeta", true);
+                }
+                message.addProperty("role", "user");
+                message.addProperty("content", "请修改模块 " + i + "，顺便检查一下边界条件 " + "细节".repeat(random.nextInt(40)));
+            } else if (kind < 9) {
+                line.addProperty("type", "assistant");
+                // 约三分之一的助手行重复上一条消息的 id/requestId（模拟流式分块），用于校验去重
+                int messageIndex = lastAssistant >= 0 && random.nextInt(3) == 0 ? lastAssistant : i;
+                lastAssistant = messageIndex;
+                if (random.nextInt(10) > 0) {
+                    line.addProperty("requestId", "req_" + seed + "_" + messageIndex);
+                }
+                message.addProperty("id", "msg_" + seed + "_" + messageIndex);
+                message.addProperty("role", "assistant");
+                message.addProperty("model", models[random.nextInt(models.length)]);
+                message.addProperty("content", "处理中 " + i);
+                JsonObject usage = new JsonObject();
+                usage.addProperty("input_tokens", random.nextInt(3000));
+                usage.addProperty("output_tokens", random.nextInt(800));
+                usage.addProperty("cache_creation_input_tokens", random.nextInt(2) * random.nextInt(5000));
+                usage.addProperty("cache_read_input_tokens", random.nextInt(20000));
+                message.add("usage", usage);
+            } else {
+                line.addProperty("type", "summary");
+                line.addProperty("summary", "阶段总结 " + i);
+                message.addProperty("content", "summary");
+            }
+            line.add("message", message);
+            sb.append(gson.toJson(line)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> paths = new ArrayList<>();
+            walk.forEach(paths::add);
+            paths.sort(Comparator.reverseOrder());
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.claudecodegui.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LongHashSet 测试：扩容前后与 HashSet 行为一致，0 的映射，副本相互独立
+ */
+class LongHashSetTest {
+
+    @Test
+    void matchesHashSetAcrossResizes() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            // 取值范围较小，保证有大量重复元素
+            long value = random.nextInt(20_000) * 0x9E3779B97F4A7C15L;
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value : expected) {
+            assertTrue(set.contains(value));
+        }
+        assertFalse(set.contains(12345L));
+    }
+
+    @Test
+    void zeroSharesSlotWithOne() {
+        LongHashSet set = new LongHashSet();
+        assertTrue(set.add(0));
+        assertTrue(set.contains(1));
+        assertFalse(set.add(1));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void copyIsIndependent() {
+        LongHashSet set = new LongHashSet(4);
+        set.add(7);
+        LongHashSet copy = set.copy();
+        for (long i = 100; i < 200; i++) {
+            copy.add(i);
+        }
+        assertTrue(copy.contains(7));
+        assertFalse(set.contains(150));
+        assertEquals(1, set.size());
+        assertEquals(101, copy.size());
+    }
+}
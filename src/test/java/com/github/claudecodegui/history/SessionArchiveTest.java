@@ -0,0 +1,155 @@
+package com.github.claudecodegui.history;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 冷会话归档测试
+ * 重写月份文件（回收已删除会话的数据）的同时不断读取仍在归档中的会话，读到的内容必须始终与原文件一致；
+ * 索引写入失败时归档必须整体回滚
+ *
+ * 归档目录位于 user.home 下（build.gradle 指向 build/test-home），测试结束后删除
+ */
+class SessionArchiveTest {
+
+    private static final long OLD_MILLIS = LocalDateTime.of(2024, 1, 15, 12, 0)
+        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @TempDir
+    Path tempDir;
+
+    private Path projectDir;
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        if (projectDir != null) {
+            deleteRecursively(HistoryStorage.archiveDirFor(projectDir));
+        }
+    }
+
+    @Test
+    void readsStayConsistentWhileCompacting() throws Exception {
+        projectDir = Files.createDirectories(tempDir.resolve("archive-" + System.nanoTime()));
+        Random random = new Random(42);
+        byte[] keep = writeSession("keep.jsonl", 64 * 1024, random);
+        writeSession("drop-1.jsonl", 800 * 1024, random);
+        writeSession("drop-2.jsonl", 800 * 1024, random);
+
+        SessionArchive archive = SessionArchive.forProjectDir(projectDir);
+        long cutoff = System.currentTimeMillis();
+        assertEquals(3, archive.archive(projectDir, cutoff).archived);
+        assertFalse(Files.exists(projectDir.resolve("keep.jsonl")));
+        assertEquals(2, archive.removeIf(name -> name.startsWith("drop-")));
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger reads = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (!done.get() || reads.get() == 0) {
+                    assertArrayEquals(keep, readAll(archive, "keep.jsonl"));
+                    reads.incrementAndGet();
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+
+        // 同一月份再归档一个会话，触发该月份文件的重写
+        byte[] late = writeSession("late.jsonl", 16 * 1024, random);
+        assertEquals(1, archive.archive(projectDir, cutoff).archived);
+        done.set(true);
+        reader.join();
+
+        assertNull(failure.get(), () -> "Read during compaction failed: " + failure.get());
+        Path monthFile = HistoryStorage.archiveDirFor(projectDir).resolve("2024-01.jsonl.gz");
+        assertTrue(Files.size(monthFile) < 200 * 1024, "Dead members should have been reclaimed");
+        assertArrayEquals(keep, readAll(archive, "keep.jsonl"));
+        assertArrayEquals(late, readAll(archive, "late.jsonl"));
+
+        assertTrue(archive.restore(projectDir, "keep.jsonl"));
+        Path restored = projectDir.resolve("keep.jsonl");
+        assertArrayEquals(keep, Files.readAllBytes(restored));
+        assertEquals(OLD_MILLIS, Files.getLastModifiedTime(restored).toMillis());
+    }
+
+    @Test
+    void failedIndexWriteRollsBackArchive() throws Exception {
+        projectDir = Files.createDirectories(tempDir.resolve("archive-" + System.nanoTime()));
+        Random random = new Random(7);
+        byte[] first = writeSession("first.jsonl", 32 * 1024, random);
+
+        SessionArchive archive = SessionArchive.forProjectDir(projectDir);
+        long cutoff = System.currentTimeMillis();
+        assertEquals(1, archive.archive(projectDir, cutoff).archived);
+        Path archiveDir = HistoryStorage.archiveDirFor(projectDir);
+        Path monthFile = archiveDir.resolve("2024-01.jsonl.gz");
+        long monthSize = Files.size(monthFile);
+
+        // 临时文件位置被非空目录占用，索引无法写入
+        Path blocker = Files.createDirectories(archiveDir.resolve(SessionArchive.INDEX_FILE_NAME + ".tmp"));
+        Files.write(blocker.resolve("lock"), new byte[]{1});
+        byte[] second = writeSession("second.jsonl", 32 * 1024, random);
+        assertEquals(0, archive.archive(projectDir, cutoff).archived);
+
+        assertTrue(Files.exists(projectDir.resolve("second.jsonl")));
+        assertFalse(archive.contains("second.jsonl"));
+        assertEquals(monthSize, Files.size(monthFile));
+        assertArrayEquals(first, readAll(archive, "first.jsonl"));
+
+        deleteRecursively(blocker);
+        assertEquals(1, archive.archive(projectDir, cutoff).archived);
+        assertFalse(Files.exists(projectDir.resolve("second.jsonl")));
+        assertArrayEquals(first, readAll(archive, "first.jsonl"));
+        assertArrayEquals(second, readAll(archive, "second.jsonl"));
+    }
+
+    private byte[] writeSession(String fileName, int size, Random random) throws IOException {
+        // 随机字节几乎不可压缩，压缩后的大小与原文件接近，便于控制失效数据的多少
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        Path file = projectDir.resolve(fileName);
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(OLD_MILLIS));
+        return content;
+    }
+
+    private static byte[] readAll(SessionArchive archive, String fileName) throws IOException {
+        try (InputStream in = archive.open(fileName)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
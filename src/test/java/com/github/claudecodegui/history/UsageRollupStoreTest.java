@@ -0,0 +1,256 @@
+package com.github.claudecodegui.history;
+
+import com.github.claudecodegui.ClaudeHistoryReader;
+import com.github.claudecodegui.util.PathUtils;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 使用量预聚合测试
+ * 按 (日期, 模型) 汇总、按 message.id + requestId 去重、重启后（去重集合不持久化）继续追加不重复计数，以及按日期范围查询
+ *
+ * 与 IncrementalParseTest 一样在 user.home（build/test-home）下创建并清理自己的项目目录
+ */
+class UsageRollupStoreTest {
+
+    private static final Gson gson = new Gson();
+
+    private final String run = "usage-" + System.nanoTime();
+    private final Path projectsDir = Paths.get(System.getProperty("user.home"), ".claude", "projects");
+    private final List<Path> createdDirs = new ArrayList<>();
+    private final ClaudeHistoryReader reader = new ClaudeHistoryReader();
+
+    @AfterEach
+    void cleanUp() throws IOException {
+        for (Path dir : createdDirs) {
+            UsageRollupStore.unload(dir);
+            deleteRecursively(dir);
+        }
+        Path indexDir = HistoryStorage.getIndexRoot();
+        if (Files.isDirectory(indexDir)) {
+            try (Stream<Path> files = Files.list(indexDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.getFileName().toString().contains(run)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void rollsUpByDayAndModel() throws IOException {
+        String project = "/check/" + run + "/rollup";
+        Path dir = projectDir(project);
+        String day1 = "2025-06-01T12:00:00Z";
+        String day2 = "2025-06-03T12:00:00Z";
+        writeSession(dir, "a.jsonl",
+            assistant(day1, "msg_a1", "req_a1", "claude-sonnet-4-5", 100, 10, 0, 1000),
+            assistant(day1, "msg_a2", "req_a2", "claude-sonnet-4-5", 200, 20, 0, 0));
+        writeSession(dir, "b.jsonl",
+            assistant(day1, "msg_b1", "req_b1", "claude-opus-4-1", 50, 5, 500, 0));
+        writeSession(dir, "c.jsonl",
+            assistant(day2, "msg_c1", "req_c1", "claude-sonnet-4-5", 7, 3, 0, 0));
+
+        reader.getProjectStatistics(project);
+        Map<String, UsageRollupStore.Bucket> buckets = buckets(dir, null, null);
+
+        assertEquals(3, buckets.size());
+        UsageRollupStore.Bucket sonnet = buckets.get(dayOf(day1) + "|claude-sonnet-4-5");
+        assertEquals(1, sonnet.sessions);
+        assertEquals(300, sonnet.inputTokens);
+        assertEquals(30, sonnet.outputTokens);
+        assertEquals(1000, sonnet.cacheReadTokens);
+        UsageRollupStore.Bucket opus = buckets.get(dayOf(day1) + "|claude-opus-4-1");
+        assertEquals(1, opus.sessions);
+        assertEquals(555, opus.totalTokens());
+        assertEquals(1, buckets.get(dayOf(day2) + "|claude-sonnet-4-5").sessions);
+        assertEquals(10, buckets.get(dayOf(day2) + "|claude-sonnet-4-5").totalTokens());
+        assertTrue(sonnet.cost > 0 && opus.cost > 0);
+
+        // 删除会话后，其贡献从汇总中减去
+        Files.delete(dir.resolve("b.jsonl"));
+        reader.getProjectStatistics(project);
+        buckets = buckets(dir, null, null);
+        assertEquals(2, buckets.size());
+        assertFalse(buckets.containsKey(dayOf(day1) + "|claude-opus-4-1"));
+    }
+
+    @Test
+    void deduplicatesByMessageIdAndRequestId() throws IOException {
+        String project = "/check/" + run + "/dedup";
+        Path dir = projectDir(project);
+        String time = "2025-06-01T12:00:00Z";
+        writeSession(dir, "s.jsonl",
+            assistant(time, "msg_1", "req_1", "claude-sonnet-4-5", 100, 10, 0, 0),
+            // 流式分块重复写入的同一条 usage
+            assistant(time, "msg_1", "req_1", "claude-sonnet-4-5", 100, 10, 0, 0),
+            // 同一 message.id 的不同请求分别计数
+            assistant(time, "msg_1", "req_2", "claude-sonnet-4-5", 1, 1, 0, 0),
+            // 缺少 requestId 时不去重
+            assistant(time, "msg_2", null, "claude-sonnet-4-5", 5, 5, 0, 0),
+            assistant(time, "msg_2", null, "claude-sonnet-4-5", 5, 5, 0, 0));
+
+        ClaudeHistoryReader.ProjectStatistics stats = reader.getProjectStatistics(project);
+        assertEquals(1, stats.totalSessions);
+        assertEquals(111, stats.totalUsage.inputTokens);
+        assertEquals(21, stats.totalUsage.outputTokens);
+    }
+
+    @Test
+    void appendAfterRestartDoesNotDoubleCount() throws IOException {
+        String project = "/check/" + run + "/restart";
+        Path dir = projectDir(project);
+        String time = "2025-06-01T12:00:00Z";
+        Path file = writeSession(dir, "s.jsonl",
+            assistant(time, "msg_1", "req_1", "claude-sonnet-4-5", 100, 10, 0, 0));
+        // 最近修改的会话保留去重集合
+        long mtime = System.currentTimeMillis() - 3_600_000L;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime));
+
+        assertEquals(110, reader.getProjectStatistics(project).totalUsage.totalTokens);
+        assertTrue(UsageRollupStore.forProjectDir(dir).get("s.jsonl").canExtend());
+
+        // 模拟 IDE 重启：存储从磁盘重新加载，去重集合丢失
+        UsageRollupStore.unload(dir);
+        assertFalse(UsageRollupStore.forProjectDir(dir).get("s.jsonl").canExtend());
+
+        // 追加一条已计入消息的重复分块和一条新消息
+        append(file,
+            assistant(time, "msg_1", "req_1", "claude-sonnet-4-5", 100, 10, 0, 0),
+            assistant(time, "msg_2", "req_2", "claude-sonnet-4-5", 20, 2, 0, 0));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime + 1000));
+
+        ClaudeHistoryReader.ProjectStatistics stats = reader.getProjectStatistics(project);
+        assertEquals(1, stats.totalSessions);
+        assertEquals(120, stats.totalUsage.inputTokens);
+        assertEquals(12, stats.totalUsage.outputTokens);
+        // 完整重新解析后恢复了去重集合，之后的追加可以继续增量累加
+        assertTrue(UsageRollupStore.forProjectDir(dir).get("s.jsonl").canExtend());
+
+        // 再重启一次，总计仍与磁盘上的汇总一致
+        UsageRollupStore.unload(dir);
+        assertEquals(132, reader.getProjectStatistics(project).totalUsage.totalTokens);
+    }
+
+    @Test
+    void projectStatisticsHonorDateRange() throws IOException {
+        String project = "/check/" + run + "/range";
+        Path dir = projectDir(project);
+        String first = "2025-06-01T12:00:00Z";
+        String middle = "2025-06-03T12:00:00Z";
+        String last = "2025-06-05T12:00:00Z";
+        writeSession(dir, "first.jsonl", assistant(first, "msg_1", "req_1", "claude-sonnet-4-5", 1000, 0, 0, 0));
+        writeSession(dir, "middle.jsonl", assistant(middle, "msg_2", "req_2", "claude-opus-4-1", 30, 3, 0, 0));
+        writeSession(dir, "last.jsonl", assistant(last, "msg_3", "req_3", "claude-sonnet-4-5", 5000, 0, 0, 0));
+
+        LocalDate middleDay = LocalDate.parse(dayOf(middle));
+        ClaudeHistoryReader.ProjectStatistics stats =
+            reader.getProjectStatistics(project, middleDay.minusDays(1), middleDay.plusDays(1));
+        assertEquals(1, stats.totalSessions);
+        assertEquals(33, stats.totalUsage.totalTokens);
+        assertEquals(1, stats.dailyUsage.size());
+        assertEquals(dayOf(middle), stats.dailyUsage.get(0).date);
+        assertEquals(1, stats.byModel.size());
+        assertEquals("claude-opus-4-1", stats.byModel.get(0).model);
+        assertEquals(1, stats.sessions.size());
+        assertEquals("middle", stats.sessions.get(0).sessionId);
+
+        // 只有起始日期
+        assertEquals(2, reader.getProjectStatistics(project, middleDay, null).totalSessions);
+        // 起始晚于结束
+        assertEquals(0, reader.getProjectStatistics(project, middleDay.plusDays(1), middleDay).totalSessions);
+        // 不限范围
+        assertEquals(6033, reader.getProjectStatistics(project).totalUsage.totalTokens);
+    }
+
+    private Map<String, UsageRollupStore.Bucket> buckets(Path dir, String fromDay, String toDay) {
+        Map<String, UsageRollupStore.Bucket> result = new HashMap<>();
+        UsageRollupStore.forProjectDir(dir).visit(fromDay, toDay, (day, model, bucket) -> result.put(day + "|" + model, bucket));
+        return result;
+    }
+
+    /**
+     * 会话按第一条消息的本地日期计入汇总
+     */
+    private static String dayOf(String timestamp) {
+        return String.format("%tF", new Date(Instant.parse(timestamp).toEpochMilli()));
+    }
+
+    private static String assistant(String timestamp, String messageId, String requestId, String model,
+                                    int input, int output, int cacheWrite, int cacheRead) {
+        JsonObject line = new JsonObject();
+        line.addProperty("type", "assistant");
+        line.addProperty("timestamp", timestamp);
+        if (requestId != null) {
+            line.addProperty("requestId", requestId);
+        }
+        JsonObject message = new JsonObject();
+        message.addProperty("id", messageId);
+        message.addProperty("role", "assistant");
+        message.addProperty("model", model);
+        message.addProperty("content", "ok");
+        JsonObject usage = new JsonObject();
+        usage.addProperty("input_tokens", input);
+        usage.addProperty("output_tokens", output);
+        usage.addProperty("cache_creation_input_tokens", cacheWrite);
+        usage.addProperty("cache_read_input_tokens", cacheRead);
+        message.add("usage", usage);
+        line.add("message", message);
+        return gson.toJson(line);
+    }
+
+    private Path projectDir(String projectPath) throws IOException {
+        Path dir = projectsDir.resolve(PathUtils.sanitizePath(projectPath));
+        Files.createDirectories(dir);
+        createdDirs.add(dir);
+        return dir;
+    }
+
+    private static Path writeSession(Path dir, String fileName, String... lines) throws IOException {
+        Path file = dir.resolve(fileName);
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static void append(Path file, String... lines) throws IOException {
+        Files.write(file, (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> paths = new ArrayList<>();
+            walk.forEach(paths::add);
+            paths.sort(Comparator.reverseOrder());
+            for (Path path : paths) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
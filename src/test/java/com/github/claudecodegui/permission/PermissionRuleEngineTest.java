@@ -0,0 +1,124 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermissionRuleEngineTest {
+
+    private static final String PROJECT_ROOT = "/work/project";
+
+    private static PermissionRuleEngine defaults() {
+        return new PermissionRuleEngine(PermissionRuleEngine.DEFAULT_RULES, PROJECT_ROOT);
+    }
+
+    private static JsonObject command(String command) {
+        JsonObject inputs = new JsonObject();
+        inputs.addProperty("command", command);
+        return inputs;
+    }
+
+    private static JsonObject filePath(String path) {
+        JsonObject inputs = new JsonObject();
+        inputs.addProperty("file_path", path);
+        return inputs;
+    }
+
+    @Test
+    void allowsReadOnlyGitCommands() {
+        PermissionRuleEngine engine = defaults();
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git status")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git diff")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git diff --stat HEAD~1")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git log --oneline -5")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git show HEAD:README.md")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git diff --no-ext-diff --no-textconv")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("git diff --output-indicator-new=+")));
+    }
+
+    @Test
+    void doesNotApproveGitOutputToFile() {
+        PermissionRuleEngine engine = defaults();
+        assertNull(engine.evaluate("Bash", command("git diff --output=/home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("git diff --output /home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("git log -p --output=/tmp/x")));
+        assertNull(engine.evaluate("Bash", command("git show HEAD --output=/tmp/x")));
+    }
+
+    @Test
+    void doesNotApproveAbbreviatedOrQuotedOptions() {
+        PermissionRuleEngine engine = defaults();
+        assertNull(engine.evaluate("Bash", command("git diff --out=/home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("git diff --outp /home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("git diff \"--output=/home/u/.bashrc\"")));
+        assertNull(engine.evaluate("Bash", command("git diff '--output'=/home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("git diff --out\\put=/home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("git diff --ext")));
+    }
+
+    @Test
+    void doesNotApproveExternalProgramsOrConfigOverrides() {
+        PermissionRuleEngine engine = defaults();
+        assertNull(engine.evaluate("Bash", command("git diff --ext-diff")));
+        assertNull(engine.evaluate("Bash", command("git log -p --ext-diff")));
+        assertNull(engine.evaluate("Bash", command("git show --textconv HEAD")));
+        assertNull(engine.evaluate("Bash", command("git diff --textconv=true")));
+        assertNull(engine.evaluate("Bash", command("git diff -c")));
+        assertNull(engine.evaluate("Bash", command("git -c core.pager=evil diff")));
+    }
+
+    @Test
+    void doesNotApproveChainedCommands() {
+        PermissionRuleEngine engine = defaults();
+        assertNull(engine.evaluate("Bash", command("git status; rm -rf ~")));
+        assertNull(engine.evaluate("Bash", command("git log && curl example.com")));
+        assertNull(engine.evaluate("Bash", command("git diff > /home/u/.bashrc")));
+        assertNull(engine.evaluate("Bash", command("ls $(rm -rf ~)")));
+        assertNull(engine.evaluate("Bash", command("ls `rm -rf ~`")));
+    }
+
+    @Test
+    void matchesCommandPrefixByWord() {
+        PermissionRuleEngine engine = defaults();
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("  ls   -la  ")));
+        assertNull(engine.evaluate("Bash", command("lsof -i")));
+        assertNull(engine.evaluate("Bash", command("git statusx")));
+    }
+
+    @Test
+    void denyRuleWinsOverAllowAndChecksEverySegment() {
+        List<PermissionRule> rules = new ArrayList<>(PermissionRuleEngine.DEFAULT_RULES);
+        rules.add(PermissionRule.denyCommand("rm"));
+        PermissionRuleEngine engine = new PermissionRuleEngine(rules, PROJECT_ROOT);
+        assertEquals(Boolean.FALSE, engine.evaluate("Bash", command("rm -rf build")));
+        assertEquals(Boolean.FALSE, engine.evaluate("Bash", command("ls && rm -rf build")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Bash", command("ls")));
+    }
+
+    @Test
+    void allowsReadsOnlyInsideProject() {
+        PermissionRuleEngine engine = defaults();
+        assertEquals(Boolean.TRUE, engine.evaluate("Read", filePath(PROJECT_ROOT + "/src/Main.java")));
+        assertEquals(Boolean.TRUE, engine.evaluate("Read", filePath("src/Main.java")));
+        assertNull(engine.evaluate("Read", filePath("/etc/passwd")));
+        assertNull(engine.evaluate("Read", filePath(PROJECT_ROOT + "/../other/secret.txt")));
+        assertNull(engine.evaluate("Write", filePath(PROJECT_ROOT + "/src/Main.java")));
+    }
+
+    @Test
+    void unsafeGitOptionDetection() {
+        assertTrue(PermissionRuleEngine.hasUnsafeGitOption("git diff --output=x"));
+        assertTrue(PermissionRuleEngine.hasUnsafeGitOption("git diff --ou x"));
+        assertTrue(PermissionRuleEngine.hasUnsafeGitOption("git diff -c"));
+        assertFalse(PermissionRuleEngine.hasUnsafeGitOption("git diff --oneline"));
+        assertFalse(PermissionRuleEngine.hasUnsafeGitOption("git diff -C"));
+        assertFalse(PermissionRuleEngine.hasUnsafeGitOption("git diff --"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.claudecodegui.permission;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermissionSocketServerTest {
+
+    private static final Gson gson = new Gson();
+
+    @TempDir
+    Path socketDir;
+
+    private static SocketChannel connect(PermissionSocketServer server) throws IOException {
+        if (server.getSocketPath() != null) {
+            return SocketChannel.open(UnixDomainSocketAddress.of(server.getSocketPath()));
+        }
+        return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    private static void sendRequest(SocketChannel channel, PermissionSocketServer server, String requestId) throws IOException {
+        JsonObject request = new JsonObject();
+        request.addProperty("requestId", requestId);
+        request.addProperty("token", server.getToken());
+        request.addProperty("toolName", "Bash");
+        OutputStream out = Channels.newOutputStream(channel);
+        out.write((gson.toJson(request) + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static BufferedReader readerOf(SocketChannel channel) {
+        return new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void replyReturnsWithoutWaitingForResumeAck() throws Exception {
+        // 两个连接在不同线程上处理，请求到达处理器的顺序不固定，按 requestId 取回复
+        Map<String, Consumer<Boolean>> replies = new ConcurrentHashMap<>();
+        PermissionSocketServer server = new PermissionSocketServer(socketDir,
+            (request, reply) -> replies.put(request.get("requestId").getAsString(), reply));
+        assertTrue(server.start());
+        try (SocketChannel first = connect(server); SocketChannel second = connect(server)) {
+            sendRequest(first, server, "first");
+            sendRequest(second, server, "second");
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (replies.size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Consumer<Boolean> firstReply = replies.get("first");
+            Consumer<Boolean> secondReply = replies.get("second");
+            assertNotNull(firstReply);
+            assertNotNull(secondReply);
+
+            // 两个 Node 端都不发送回执：依次回复不能被前一个连接拖住
+            CompletableFuture.runAsync(() -> {
+                firstReply.accept(true);
+                secondReply.accept(false);
+            }).get(1, TimeUnit.SECONDS);
+
+            JsonObject firstDecision = gson.fromJson(readerOf(first).readLine(), JsonObject.class);
+            JsonObject secondDecision = gson.fromJson(readerOf(second).readLine(), JsonObject.class);
+            assertEquals(Boolean.TRUE, firstDecision.get("allow").getAsBoolean());
+            assertEquals(Boolean.FALSE, secondDecision.get("allow").getAsBoolean());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void closesConnectionWhenRequestHasWrongToken() throws Exception {
+        PermissionSocketServer server = new PermissionSocketServer(socketDir, (request, reply) -> reply.accept(true));
+        assertTrue(server.start());
+        try (SocketChannel channel = connect(server)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write("{\"requestId\":\"x\",\"token\":\"wrong\"}\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            assertEquals(null, readerOf(channel).readLine());
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import HistoryView from './components/history/HistoryView';
 import SettingsView from './components/settings';
 import ConfirmDialog from './components/ConfirmDialog';
 import PermissionDialog, { type PermissionRequest } from './components/PermissionDialog';
+import PermissionBatchDialog, { type PermissionBatchDecision } from './components/PermissionBatchDialog';
 import { ChatInputBox } from './components/ChatInputBox';
 import { CLAUDE_MODELS, CODEX_MODELS } from './components/ChatInputBox/types';
 import type { Attachment, PermissionMode } from './components/ChatInputBox/types';
@@ -26,10 +27,13 @@ import type {
   ClaudeMessage,
   ClaudeRawMessage,
   HistoryData,
+  HistorySessionSummary,
+  HistoryUpdate,
   TodoItem,
   ToolResultBlock,
 } from './types';
 import type { ProviderConfig } from './types/provider';
+import { parseTransferPayload } from './utils/chunkedTransfer';
 
 type ViewMode = 'chat' | 'history' | 'settings';
 
@@ -75,8 +79,8 @@ const App = () => {
   const [toasts, setToasts] = useState<ToastMessage[]>([]);
 
   // 权限弹窗状态
-  const [permissionDialogOpen, setPermissionDialogOpen] = useState(false);
-  const [currentPermissionRequest, setCurrentPermissionRequest] = useState<PermissionRequest | null>(null);
+  // 待处理的权限请求：单个时显示普通弹窗，多个时显示批量弹窗
+  const [permissionQueue, setPermissionQueue] = useState<PermissionRequest[]>([]);
 
   // ChatInputBox 相关状态
   const [currentProvider, setCurrentProvider] = useState('claude');
@@ -228,7 +232,7 @@ const App = () => {
   useEffect(() => {
     window.updateMessages = (json) => {
       try {
-        const parsed = JSON.parse(json) as ClaudeMessage[];
+        const parsed = parseTransferPayload<ClaudeMessage[]>(json);
         setMessages(parsed);
       } catch (error) {
         console.error('[Frontend] Failed to parse messages:', error);
@@ -251,7 +255,34 @@ const App = () => {
       }
     };
     window.showThinkingStatus = (value) => setIsThinking(isTruthy(value));
-    window.setHistoryData = (data) => setHistoryData(data);
+    window.setHistoryData = (data) => {
+      try {
+        setHistoryData(parseTransferPayload<HistoryData>(data));
+      } catch (error) {
+        console.error('[Frontend] Failed to parse history data:', error);
+        setHistoryData({ success: false, error: String(error) });
+      }
+    };
+    window.applyHistoryUpdate = (payload) => {
+      const update = parseTransferPayload<HistoryUpdate>(payload);
+      setHistoryData((prev) => {
+        // 尚未加载过历史列表时忽略增量，打开历史视图时会全量加载
+        if (!prev || !prev.success) {
+          return prev;
+        }
+        const byId = new Map<string, HistorySessionSummary>();
+        if (!update.full) {
+          (prev.sessions ?? []).forEach((s) => byId.set(s.sessionId, s));
+        }
+        update.removed.forEach((id) => byId.delete(id));
+        update.upserted.forEach((s) => byId.set(s.sessionId, s));
+        const sessions = Array.from(byId.values()).sort(
+          (a, b) => Number(b.lastTimestamp ?? 0) - Number(a.lastTimestamp ?? 0),
+        );
+        const total = sessions.reduce((sum, s) => sum + (s.messageCount || 0), 0);
+        return { ...prev, sessions, total };
+      });
+    };
     window.clearMessages = () => setMessages([]);
     window.addErrorMessage = (message) =>
       setMessages((prev) => [...prev, { type: 'error', content: message }]);
@@ -324,14 +355,34 @@ const App = () => {
         console.log('[PERM_DEBUG][FRONTEND] Parsed request:', request);
         console.log('[PERM_DEBUG][FRONTEND] channelId:', request.channelId);
         console.log('[PERM_DEBUG][FRONTEND] toolName:', request.toolName);
-        setCurrentPermissionRequest(request);
-        setPermissionDialogOpen(true);
+        enqueuePermissionRequests([request]);
         console.log('[PERM_DEBUG][FRONTEND] Dialog state set to open');
       } catch (error) {
         console.error('[PERM_DEBUG][FRONTEND] ERROR: Failed to parse permission request:', error);
       }
     };
 
+    // 同一时间窗口内的多个权限请求
+    window.showPermissionBatch = (json) => {
+      try {
+        const batch = JSON.parse(json) as { requests: PermissionRequest[] };
+        console.log('[PERM_DEBUG][FRONTEND] showPermissionBatch called, size:', batch.requests.length);
+        enqueuePermissionRequests(batch.requests);
+      } catch (error) {
+        console.error('[PERM_DEBUG][FRONTEND] ERROR: Failed to parse permission batch:', error);
+      }
+    };
+
+    // 后端已超时处理的请求，从弹窗中移除
+    window.dismissPermissionRequests = (json) => {
+      try {
+        const channelIds = JSON.parse(json) as string[];
+        removePermissionRequests(channelIds);
+      } catch (error) {
+        console.error('[PERM_DEBUG][FRONTEND] ERROR: Failed to parse dismissed permission requests:', error);
+      }
+    };
+
     // 选中代码发送到终端回调
     window.addSelectionInfo = (selectionInfo) => {
       console.log('[Frontend] addSelectionInfo called:', selectionInfo);
@@ -633,6 +684,18 @@ const App = () => {
     setShowInterruptConfirm(false);
   };
 
+  const enqueuePermissionRequests = (requests: PermissionRequest[]) => {
+    setPermissionQueue((prev) => {
+      const known = new Set(prev.map((request) => request.channelId));
+      return [...prev, ...requests.filter((request) => !known.has(request.channelId))];
+    });
+  };
+
+  const removePermissionRequests = (channelIds: string[]) => {
+    const removed = new Set(channelIds);
+    setPermissionQueue((prev) => prev.filter((request) => !removed.has(request.channelId)));
+  };
+
   /**
    * 处理权限批准（允许一次）
    */
@@ -648,8 +711,7 @@ const App = () => {
     console.log('[PERM_DEBUG][FRONTEND] Sending decision payload:', payload);
     sendBridgeMessage('permission_decision', payload);
     console.log('[PERM_DEBUG][FRONTEND] Decision sent, closing dialog');
-    setPermissionDialogOpen(false);
-    setCurrentPermissionRequest(null);
+    removePermissionRequests([channelId]);
   };
 
   /**
@@ -667,8 +729,7 @@ const App = () => {
     console.log('[PERM_DEBUG][FRONTEND] Sending decision payload:', payload);
     sendBridgeMessage('permission_decision', payload);
     console.log('[PERM_DEBUG][FRONTEND] Decision sent, closing dialog');
-    setPermissionDialogOpen(false);
-    setCurrentPermissionRequest(null);
+    removePermissionRequests([channelId]);
   };
 
   /**
@@ -686,8 +747,24 @@ const App = () => {
     console.log('[PERM_DEBUG][FRONTEND] Sending decision payload:', payload);
     sendBridgeMessage('permission_decision', payload);
     console.log('[PERM_DEBUG][FRONTEND] Decision sent, closing dialog');
-    setPermissionDialogOpen(false);
-    setCurrentPermissionRequest(null);
+    removePermissionRequests([channelId]);
+  };
+
+  /**
+   * 批量提交权限决定（一次消息，后端同时放行所有等待中的请求）
+   */
+  const handlePermissionBatchSubmit = (decisions: PermissionBatchDecision[]) => {
+    console.log('[PERM_DEBUG][FRONTEND] handlePermissionBatchSubmit called, size:', decisions.length);
+    const payload = JSON.stringify({
+      decisions: decisions.map((decision) => ({
+        channelId: decision.channelId,
+        allow: decision.allow,
+        remember: false,
+        rejectMessage: decision.allow ? null : 'User denied the permission request',
+      })),
+    });
+    sendBridgeMessage('permission_batch_decision', payload);
+    removePermissionRequests(decisions.map((decision) => decision.channelId));
   };
 
   const toggleThinking = (messageIndex: number, blockIndex: number) => {
@@ -1298,12 +1375,17 @@ const App = () => {
       />
 
       <PermissionDialog
-        isOpen={permissionDialogOpen}
-        request={currentPermissionRequest}
+        isOpen={permissionQueue.length === 1}
+        request={permissionQueue.length === 1 ? permissionQueue[0] : null}
         onApprove={handlePermissionApprove}
         onSkip={handlePermissionSkip}
         onApproveAlways={handlePermissionApproveAlways}
       />
+
+      <PermissionBatchDialog
+        requests={permissionQueue.length > 1 ? permissionQueue : []}
+        onSubmit={handlePermissionBatchSubmit}
+      />
     </>
   );
 };
@@ -8,6 +8,7 @@ import { useTriggerDetection, useCompletionDropdown } from './hooks';
 import {
   fileReferenceProvider,
   fileToDropdownItem,
+  prefetchFileItem,
   slashCommandProvider,
   commandToDropdownItem,
 } from './providers';
@@ -63,6 +64,8 @@ export const ChatInputBox = ({
     trigger: '@',
     provider: fileReferenceProvider,
     toDropdownItem: fileToDropdownItem,
+    // 高亮目录时预取其子项，进入目录时无需等待磁盘
+    onActiveChange: prefetchFileItem,
     onSelect: (file, query) => {
       if (!editableRef.current || !query) return;
 
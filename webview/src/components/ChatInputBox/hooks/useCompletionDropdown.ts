@@ -10,6 +10,8 @@ interface CompletionDropdownOptions<T> {
   toDropdownItem: (item: T) => DropdownItemData;
   /** 选择回调 */
   onSelect: (item: T, query: TriggerQuery | null) => void;
+  /** 高亮项变化回调（如预取） */
+  onActiveChange?: (item: T) => void;
   /** 防抖延迟 (ms) */
   debounceMs?: number;
   /** 最小查询长度 */
@@ -36,6 +38,7 @@ export function useCompletionDropdown<T>({
   provider,
   toDropdownItem,
   onSelect,
+  onActiveChange,
   debounceMs = 200,
   minQueryLength = 0,
 }: CompletionDropdownOptions<T>) {
@@ -64,6 +67,15 @@ export function useCompletionDropdown<T>({
     stateRef.current = state;
   }, [state]);
 
+  // 高亮项变化时通知调用方
+  useEffect(() => {
+    if (!onActiveChange || !state.isOpen) return;
+    const item = state.rawItems[state.activeIndex];
+    if (item !== undefined) {
+      onActiveChange(item as T);
+    }
+  }, [onActiveChange, state.isOpen, state.activeIndex, state.rawItems]);
+
   /**
    * 打开下拉
    */
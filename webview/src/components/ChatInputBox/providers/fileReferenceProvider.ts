@@ -5,6 +5,11 @@ import { getFileIcon, getFolderIcon } from '../../../utils/fileIcons';
 let pendingResolve: ((files: FileItem[]) => void) | null = null;
 let pendingReject: ((error: Error) => void) | null = null;
 let lastQuery: string = '';
+// 请求编号：Java 端会原样带回，只接受最新一次请求的结果
+let requestSeq = 0;
+let pendingRequestId: string | null = null;
+// 最近一次预取的目录，连续高亮同一目录时不重复发送
+let lastPrefetchPath: string | null = null;
 
 /**
  * 注册 Java 回调
@@ -14,6 +19,10 @@ function setupFileListCallback() {
     window.onFileListResult = (json: string) => {
       try {
         const data = JSON.parse(json);
+        // 过期请求的结果（已被更新的请求取代），直接丢弃
+        if (data && data.requestId !== undefined && data.requestId !== pendingRequestId) {
+          return;
+        }
         let files: FileItem[] = data.files || data || [];
 
         // 过滤掉应该隐藏的文件
@@ -24,10 +33,10 @@ function setupFileListCallback() {
       } catch (error) {
         console.error('[fileReferenceProvider] Parse error:', error);
         pendingReject?.(error as Error);
-      } finally {
-        pendingResolve = null;
-        pendingReject = null;
       }
+      pendingResolve = null;
+      pendingReject = null;
+      pendingRequestId = null;
     };
   }
 }
@@ -142,14 +151,21 @@ export async function fileReferenceProvider(
     const { currentPath, searchQuery } = parseQuery(query);
 
     // 保存回调
+    const requestId = String(++requestSeq);
     pendingResolve = resolve;
     pendingReject = reject;
+    pendingRequestId = requestId;
     lastQuery = query;
+    // 新的列表可能来自更新后的目录，允许再次预取
+    lastPrefetchPath = null;
 
     // 监听取消信号
     signal.addEventListener('abort', () => {
-      pendingResolve = null;
-      pendingReject = null;
+      if (pendingRequestId === requestId) {
+        pendingResolve = null;
+        pendingReject = null;
+        pendingRequestId = null;
+      }
       reject(new DOMException('Aborted', 'AbortError'));
     });
 
@@ -167,6 +183,7 @@ export async function fileReferenceProvider(
     sendToJava('list_files', {
       query: searchQuery,        // 搜索关键词
       currentPath: currentPath,  // 当前路径
+      requestId,                 // 请求编号
     });
 
     // 超时处理（3秒），超时后使用默认文件列表
@@ -174,6 +191,7 @@ export async function fileReferenceProvider(
       if (pendingResolve === resolve) {
         pendingResolve = null;
         pendingReject = null;
+        pendingRequestId = null;
         // 超时时返回过滤后的默认文件列表
         resolve(filterFiles(DEFAULT_FILES, searchQuery));
       }
@@ -181,6 +199,21 @@ export async function fileReferenceProvider(
   });
 }
 
+/**
+ * 预取高亮目录的子项：Java 端后台读取并缓存，进入该目录时直接返回
+ */
+export function prefetchFileItem(file: FileItem): void {
+  if (file.type !== 'directory' || !window.sendToJava) {
+    return;
+  }
+  const currentPath = `${file.path}/`;
+  if (currentPath === lastPrefetchPath) {
+    return;
+  }
+  lastPrefetchPath = currentPath;
+  sendToJava('prefetch_files', { currentPath });
+}
+
 /**
  * 将 FileItem 转换为 DropdownItemData
  */
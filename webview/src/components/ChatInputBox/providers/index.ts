@@ -1,6 +1,7 @@
 export {
   fileReferenceProvider,
   fileToDropdownItem,
+  prefetchFileItem,
 } from './fileReferenceProvider';
 
 export {
@@ -0,0 +1,125 @@
+import { useEffect, useState } from 'react';
+import { useTranslation } from 'react-i18next';
+import type { PermissionRequest } from './PermissionDialog';
+
+export interface PermissionBatchDecision {
+  channelId: string;
+  allow: boolean;
+}
+
+interface PermissionBatchDialogProps {
+  requests: PermissionRequest[];
+  onSubmit: (decisions: PermissionBatchDecision[]) => void;
+}
+
+// 每个请求一行的简短摘要
+const summarize = (request: PermissionRequest): string => {
+  const inputs = request.inputs || {};
+  const value = inputs.command ?? inputs.file_path ?? inputs.notebook_path ?? inputs.path ?? inputs.pattern ?? inputs.url;
+  if (typeof value === 'string') {
+    return value;
+  }
+  return JSON.stringify(inputs);
+};
+
+/**
+ * 批量权限弹窗
+ * 并行工具调用几乎同时发起的请求合并展示，可逐项选择，也可一键全部允许 / 拒绝，
+ * 决定通过一条消息提交
+ */
+const PermissionBatchDialog = ({ requests, onSubmit }: PermissionBatchDialogProps) => {
+  const { t } = useTranslation();
+  // 逐项决定，默认允许
+  const [denied, setDenied] = useState<Record<string, boolean>>({});
+  const isOpen = requests.length > 0;
+
+  const submit = (allowOverride?: boolean) => {
+    onSubmit(requests.map((request) => ({
+      channelId: request.channelId,
+      allow: allowOverride ?? !denied[request.channelId],
+    })));
+    setDenied({});
+  };
+
+  useEffect(() => {
+    if (!isOpen) {
+      return;
+    }
+    const handleKeyDown = (e: KeyboardEvent) => {
+      if (e.key === '1') {
+        submit(true);
+      } else if (e.key === '3') {
+        submit(false);
+      } else if (e.key === 'Enter') {
+        e.preventDefault();
+        submit();
+      }
+    };
+    window.addEventListener('keydown', handleKeyDown);
+    return () => window.removeEventListener('keydown', handleKeyDown);
+  }, [isOpen, requests, denied]);
+
+  if (!isOpen) {
+    return null;
+  }
+
+  const toggle = (channelId: string, allow: boolean) => {
+    setDenied((prev) => ({ ...prev, [channelId]: !allow }));
+  };
+
+  return (
+    <div className="permission-dialog-overlay">
+      <div className="permission-dialog-v3 permission-batch-dialog">
+        <h3 className="permission-dialog-v3-title">{t('permission.batch.title', { count: requests.length })}</h3>
+        <p className="permission-dialog-v3-subtitle">{t('permission.batch.subtitle')}</p>
+
+        <div className="permission-batch-list">
+          {requests.map((request) => {
+            const allow = !denied[request.channelId];
+            return (
+              <div key={request.channelId} className="permission-batch-item">
+                <div className="permission-batch-item-info">
+                  <span className="permission-batch-item-tool">{request.toolName}</span>
+                  <span className="permission-batch-item-summary" title={summarize(request)}>
+                    {summarize(request)}
+                  </span>
+                </div>
+                <div className="permission-batch-item-actions">
+                  <button
+                    className={`permission-batch-toggle ${allow ? 'active allow' : ''}`}
+                    onClick={() => toggle(request.channelId, true)}
+                  >
+                    {t('permission.batch.allow')}
+                  </button>
+                  <button
+                    className={`permission-batch-toggle ${!allow ? 'active deny' : ''}`}
+                    onClick={() => toggle(request.channelId, false)}
+                  >
+                    {t('permission.batch.deny')}
+                  </button>
+                </div>
+              </div>
+            );
+          })}
+        </div>
+
+        <div className="permission-dialog-v3-options">
+          <button className="permission-dialog-v3-option selected" onClick={() => submit()}>
+            <span className="option-text">{t('permission.batch.submit')}</span>
+            <span className="option-key">Enter</span>
+          </button>
+          <button className="permission-dialog-v3-option" onClick={() => submit(true)}>
+            <span className="option-text">{t('permission.batch.approveAll')}</span>
+            <span className="option-key">1</span>
+          </button>
+          <button className="permission-dialog-v3-option" onClick={() => submit(false)}>
+            <span className="option-text">{t('permission.batch.denyAll')}</span>
+            <span className="option-key">3</span>
+          </button>
+        </div>
+      </div>
+    </div>
+  );
+};
+
+export default PermissionBatchDialog;
@@ -1,6 +1,7 @@
 import { useEffect, useState } from 'react';
 import { useTranslation } from 'react-i18next';
 import type { ProjectStatistics, DailyUsage } from '../types/usage';
+import { parseTransferPayload } from '../utils/chunkedTransfer';
 
 type TabType = 'overview' | 'models' | 'sessions' | 'timeline';
 type ScopeType = 'current' | 'all';
@@ -37,9 +38,9 @@ const UsageStatisticsSection = () => {
 
   useEffect(() => {
     // 设置全局回调
-    window.updateUsageStatistics = (jsonStr: string) => {
+    window.updateUsageStatistics = (json) => {
       try {
-        const data: ProjectStatistics = JSON.parse(jsonStr);
+        const data = parseTransferPayload<ProjectStatistics>(json);
         setStatistics(data);
         setLoading(false);
       } catch (error) {
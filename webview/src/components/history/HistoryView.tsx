@@ -1,15 +1,25 @@
-import { useEffect, useMemo, useState } from 'react';
+import { useEffect, useMemo, useRef, useState } from 'react';
 import { useTranslation } from 'react-i18next';
-import type { HistoryData, HistorySessionSummary } from '../../types';
+import type {
+  HistoryData,
+  HistorySearchResponse,
+  HistorySearchResult,
+  HistorySessionSummary,
+} from '../../types';
+import { sendToJava } from '../../utils/bridge';
+import { parseTransferPayload } from '../../utils/chunkedTransfer';
 import VirtualList from './VirtualList';
 
+// 输入停止后多久发起搜索
+const SEARCH_DEBOUNCE_MS = 200;
+
 interface HistoryViewProps {
   historyData: HistoryData | null;
   onLoadSession: (sessionId: string) => void;
   onDeleteSession: (sessionId: string) => void; // 添加删除回调
 }
 
-const formatTimeAgo = (timestamp: string | undefined, t: (key: string) => string) => {
+const formatTimeAgo = (timestamp: string | number | undefined, t: (key: string) => string) => {
   if (!timestamp) {
     return '';
   }
@@ -31,10 +41,61 @@ const formatTimeAgo = (timestamp: string | undefined, t: (key: string) => string
   return `${Math.max(seconds, 1)} ${t('history.timeAgo.secondsAgo')}`;
 };
 
+// 按后端给出的区间高亮摘要
+const renderSnippet = (snippet: string, highlights: [number, number][]) => {
+  const parts: React.ReactNode[] = [];
+  let cursor = 0;
+  highlights.forEach(([start, end], index) => {
+    if (start > cursor) {
+      parts.push(snippet.slice(cursor, start));
+    }
+    parts.push(<mark key={index}>{snippet.slice(start, end)}</mark>);
+    cursor = end;
+  });
+  if (cursor < snippet.length) {
+    parts.push(snippet.slice(cursor));
+  }
+  return parts;
+};
+
 const HistoryView = ({ historyData, onLoadSession, onDeleteSession }: HistoryViewProps) => {
   const { t } = useTranslation();
   const [viewportHeight, setViewportHeight] = useState(() => window.innerHeight || 600);
   const [deletingSessionId, setDeletingSessionId] = useState<string | null>(null); // 记录待删除的会话ID
+  const [searchQuery, setSearchQuery] = useState('');
+  const [searchResults, setSearchResults] = useState<HistorySearchResult[]>([]);
+  const [searchDone, setSearchDone] = useState(true);
+  const [searchElapsed, setSearchElapsed] = useState(0);
+  const latestQueryRef = useRef('');
+
+  // 后端按得分顺序分批推送结果，忽略已过期查询的结果
+  useEffect(() => {
+    window.onHistorySearchResults = (payload) => {
+      const response = parseTransferPayload<HistorySearchResponse>(payload);
+      if (response.query !== latestQueryRef.current) {
+        return;
+      }
+      setSearchResults((prev) => (response.append ? [...prev, ...response.results] : response.results));
+      setSearchDone(response.done);
+      setSearchElapsed(response.elapsedMs);
+    };
+    return () => {
+      window.onHistorySearchResults = undefined;
+    };
+  }, []);
+
+  useEffect(() => {
+    const query = searchQuery.trim();
+    latestQueryRef.current = query;
+    if (!query) {
+      setSearchResults([]);
+      setSearchDone(true);
+      return;
+    }
+    setSearchDone(false);
+    const timer = setTimeout(() => sendToJava('search_history', { query }), SEARCH_DEBOUNCE_MS);
+    return () => clearTimeout(timer);
+  }, [searchQuery]);
 
   useEffect(() => {
     const handleResize = () => setViewportHeight(window.innerHeight || 600);
@@ -130,22 +191,70 @@ const HistoryView = ({ historyData, onLoadSession, onDeleteSession }: HistoryVie
     </div>
   );
 
-  const listHeight = Math.max(240, viewportHeight - 118);
+  const renderSearchResult = (result: HistorySearchResult, index: number) => {
+    // 只有当前项目的会话可以直接打开
+    const canOpen = result.currentProject && !!result.sessionId;
+    const kindLabel =
+      result.kind === 'user'
+        ? t('history.kindUser')
+        : result.kind === 'assistant'
+          ? t('history.kindAssistant')
+          : t('history.kindHistory');
+    return (
+      <div
+        key={`${result.sessionId ?? ''}-${index}`}
+        className={`history-item history-search-result${canOpen ? '' : ' disabled'}`}
+        onClick={() => canOpen && onLoadSession(result.sessionId!)}
+      >
+        <div className="history-search-snippet">{renderSnippet(result.snippet, result.highlights)}</div>
+        <div className="history-item-meta">
+          <span>
+            {kindLabel}
+            {!result.currentProject && ` · ${result.project ?? t('history.otherProject')}`}
+          </span>
+          <span>{formatTimeAgo(result.timestamp || undefined, t)}</span>
+        </div>
+      </div>
+    );
+  };
+
+  const isSearching = searchQuery.trim().length > 0;
+  const searchInfo = !searchDone && searchResults.length === 0
+    ? t('history.searching')
+    : t('history.searchResultCount', { count: searchResults.length, ms: searchElapsed });
+
+  const listHeight = Math.max(240, viewportHeight - 150);
 
   return (
     <div style={{ height: '100%', display: 'flex', flexDirection: 'column' }}>
       <div style={{ padding: '16px 24px', borderBottom: '1px solid #3e3e42', flexShrink: 0 }}>
-        <div style={{ fontSize: '12px', color: '#858585' }}>{infoBar}</div>
+        <input
+          className="history-search-input"
+          type="text"
+          value={searchQuery}
+          placeholder={t('history.searchPlaceholder')}
+          onChange={(e) => setSearchQuery(e.target.value)}
+        />
+        <div style={{ fontSize: '12px', color: '#858585' }}>{isSearching ? searchInfo : infoBar}</div>
       </div>
       <div style={{ flex: 1, overflow: 'hidden' }}>
-        <VirtualList
-          items={sessions}
-          itemHeight={78}
-          height={listHeight}
-          renderItem={renderHistoryItem}
-          getItemKey={(session) => session.sessionId}
-          className="messages-container"
-        />
+        {isSearching ? (
+          <div className="messages-container" style={{ height: listHeight, overflowY: 'auto' }}>
+            {searchResults.map(renderSearchResult)}
+            {searchDone && searchResults.length === 0 && (
+              <div style={{ textAlign: 'center', color: '#858585', padding: '24px' }}>{t('history.noSearchResults')}</div>
+            )}
+          </div>
+        ) : (
+          <VirtualList
+            items={sessions}
+            itemHeight={78}
+            height={listHeight}
+            renderItem={renderHistoryItem}
+            getItemKey={(session) => session.sessionId}
+            className="messages-container"
+          />
+        )}
       </div>
 
       {/* 删除确认对话框 */}
@@ -21,6 +21,11 @@ const MoonIcon = () => (
   </svg>
 );
 
+export interface HistoryArchiveConfig {
+  enabled: boolean;
+  olderThanDays: number;
+}
+
 interface BasicConfigSectionProps {
   theme: 'light' | 'dark';
   onThemeChange: (theme: 'light' | 'dark') => void;
@@ -28,6 +33,9 @@ interface BasicConfigSectionProps {
   onNodePathChange: (path: string) => void;
   onSaveNodePath: () => void;
   savingNodePath: boolean;
+  historyArchive: HistoryArchiveConfig;
+  onHistoryArchiveChange: (config: HistoryArchiveConfig) => void;
+  onSaveHistoryArchive: () => void;
 }
 
 const BasicConfigSection = ({
@@ -37,6 +45,9 @@ const BasicConfigSection = ({
   onNodePathChange,
   onSaveNodePath,
   savingNodePath,
+  historyArchive,
+  onHistoryArchiveChange,
+  onSaveHistoryArchive,
 }: BasicConfigSectionProps) => {
   const { t, i18n } = useTranslation();
 
@@ -166,6 +177,43 @@ const BasicConfigSection = ({
           </span>
         </small>
       </div>
+
+      {/* 冷会话归档 */}
+      <div className={styles.archiveSection}>
+        <div className={styles.fieldHeader}>
+          <span className="codicon codicon-archive" />
+          <span className={styles.fieldLabel}>{t('settings.basic.historyArchive.label')}</span>
+        </div>
+        <label className={styles.archiveToggle}>
+          <input
+            type="checkbox"
+            checked={historyArchive.enabled}
+            onChange={(e) => onHistoryArchiveChange({ ...historyArchive, enabled: e.target.checked })}
+          />
+          {t('settings.basic.historyArchive.enable')}
+        </label>
+        <div className={styles.nodePathInputWrapper}>
+          <span className={styles.archiveDaysLabel}>{t('settings.basic.historyArchive.olderThanDays')}</span>
+          <input
+            type="number"
+            min={1}
+            className={styles.archiveDaysInput}
+            value={historyArchive.olderThanDays}
+            disabled={!historyArchive.enabled}
+            onChange={(e) => onHistoryArchiveChange({
+              ...historyArchive,
+              olderThanDays: Math.max(1, parseInt(e.target.value, 10) || 1),
+            })}
+          />
+          <button className={styles.saveBtn} onClick={onSaveHistoryArchive}>
+            {t('common.save')}
+          </button>
+        </div>
+        <small className={styles.formHint}>
+          <span className="codicon codicon-info" />
+          <span>{t('settings.basic.historyArchive.hint')}</span>
+        </small>
+      </div>
     </div>
   );
 };
@@ -0,0 +1,213 @@
+import { useEffect, useState } from 'react';
+import { useTranslation } from 'react-i18next';
+import { parseTransferPayload } from '../../../utils/chunkedTransfer';
+import styles from './style.module.less';
+
+type Outcome = 'ALLOWED' | 'DENIED' | 'TIMED_OUT' | 'AUTO_RESOLVED';
+type Phase = 'PICKUP' | 'DIALOG' | 'DECISION' | 'RESUME' | 'TOTAL';
+
+interface PhaseHistogram {
+  count: number;
+  sumMs: number;
+  maxMs: number;
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  buckets: { leMs?: number; count: number }[];
+}
+
+interface PermissionRecord {
+  requestId: string;
+  toolName?: string;
+  channel: string;
+  createdAt?: number;
+  seenAt?: number;
+  dialogShownAt?: number;
+  decidedAt?: number;
+  resumedAt?: number;
+  outcome?: Outcome;
+  allow?: boolean;
+}
+
+interface PermissionMetricsData {
+  since: number;
+  generatedAt: number;
+  requests: number;
+  totalWaitMs: number;
+  outcomes: Record<Outcome, number>;
+  phases: Record<Phase, PhaseHistogram>;
+  recent: PermissionRecord[];
+}
+
+const OUTCOMES: Outcome[] = ['ALLOWED', 'DENIED', 'TIMED_OUT', 'AUTO_RESOLVED'];
+const PHASES: Phase[] = ['PICKUP', 'DIALOG', 'DECISION', 'RESUME', 'TOTAL'];
+// 面板打开期间的自动刷新间隔
+const REFRESH_INTERVAL_MS = 5000;
+const RECENT_LIMIT = 20;
+
+const sendToJava = (message: string, payload: any = {}) => {
+  if (window.sendToJava) {
+    const payloadStr = typeof payload === 'string' ? payload : JSON.stringify(payload);
+    window.sendToJava(`${message}:${payloadStr}`);
+  }
+};
+
+const formatMs = (ms: number): string => {
+  if (ms >= 60_000) return `${(ms / 60_000).toFixed(1)}m`;
+  if (ms >= 1_000) return `${(ms / 1_000).toFixed(1)}s`;
+  return `${Math.round(ms)}ms`;
+};
+
+const bucketLabel = (leMs?: number): string => (leMs === undefined ? '>60s' : `≤${formatMs(leMs)}`);
+
+/**
+ * 权限诊断面板：各阶段耗时直方图、结果计数和最近请求明细
+ */
+const PermissionDiagnosticsSection = () => {
+  const { t } = useTranslation();
+  const [metrics, setMetrics] = useState<PermissionMetricsData | null>(null);
+  const [selectedPhase, setSelectedPhase] = useState<Phase>('TOTAL');
+
+  useEffect(() => {
+    window.updatePermissionMetrics = (json) => {
+      try {
+        setMetrics(parseTransferPayload<PermissionMetricsData>(json));
+      } catch (error) {
+        console.error('[PermissionDiagnostics] Failed to parse metrics:', error);
+      }
+    };
+    sendToJava('get_permission_metrics');
+    const timer = window.setInterval(() => sendToJava('get_permission_metrics'), REFRESH_INTERVAL_MS);
+
+    return () => {
+      window.clearInterval(timer);
+      window.updatePermissionMetrics = undefined;
+    };
+  }, []);
+
+  const histogram = metrics?.phases[selectedPhase];
+  const maxBucket = histogram ? Math.max(1, ...histogram.buckets.map((bucket) => bucket.count)) : 1;
+
+  return (
+    <div className={styles.configSection}>
+      <h3 className={styles.sectionTitle}>{t('settings.permissions')}</h3>
+      <p className={styles.sectionDesc}>{t('permissionMetrics.desc')}</p>
+
+      <div className={styles.toolbar}>
+        <button className={styles.toolbarButton} onClick={() => sendToJava('get_permission_metrics')}>
+          <span className="codicon codicon-refresh" /> {t('permissionMetrics.refresh')}
+        </button>
+        <button className={styles.toolbarButton} onClick={() => sendToJava('export_permission_metrics')}>
+          <span className="codicon codicon-export" /> {t('permissionMetrics.export')}
+        </button>
+        <button className={styles.toolbarButton} onClick={() => sendToJava('reset_permission_metrics')}>
+          <span className="codicon codicon-clear-all" /> {t('permissionMetrics.reset')}
+        </button>
+      </div>
+
+      {!metrics ? (
+        <div className={styles.empty}>{t('permissionMetrics.loading')}</div>
+      ) : (
+        <>
+          <div className={styles.cards}>
+            <div className={styles.card}>
+              <div className={styles.cardValue}>{metrics.requests}</div>
+              <div className={styles.cardLabel}>{t('permissionMetrics.requests')}</div>
+            </div>
+            {OUTCOMES.map((outcome) => (
+              <div key={outcome} className={styles.card}>
+                <div className={styles.cardValue}>{metrics.outcomes[outcome] ?? 0}</div>
+                <div className={styles.cardLabel}>{t(`permissionMetrics.outcome.${outcome}`)}</div>
+              </div>
+            ))}
+            <div className={styles.card}>
+              <div className={styles.cardValue}>{formatMs(metrics.totalWaitMs)}</div>
+              <div className={styles.cardLabel}>{t('permissionMetrics.totalWait')}</div>
+            </div>
+          </div>
+
+          <table className={styles.table}>
+            <thead>
+              <tr>
+                <th>{t('permissionMetrics.phase')}</th>
+                <th>{t('permissionMetrics.count')}</th>
+                <th>p50</th>
+                <th>p90</th>
+                <th>p99</th>
+                <th>max</th>
+              </tr>
+            </thead>
+            <tbody>
+              {PHASES.map((phase) => {
+                const data = metrics.phases[phase];
+                return (
+                  <tr
+                    key={phase}
+                    className={phase === selectedPhase ? styles.selectedRow : ''}
+                    onClick={() => setSelectedPhase(phase)}
+                  >
+                    <td title={t(`permissionMetrics.phaseDesc.${phase}`)}>{t(`permissionMetrics.phaseName.${phase}`)}</td>
+                    <td>{data.count}</td>
+                    <td>{formatMs(data.p50Ms)}</td>
+                    <td>{formatMs(data.p90Ms)}</td>
+                    <td>{formatMs(data.p99Ms)}</td>
+                    <td>{formatMs(data.maxMs)}</td>
+                  </tr>
+                );
+              })}
+            </tbody>
+          </table>
+
+          {histogram && (
+            <div className={styles.histogram}>
+              <div className={styles.histogramTitle}>
+                {t(`permissionMetrics.phaseName.${selectedPhase}`)} · {t(`permissionMetrics.phaseDesc.${selectedPhase}`)}
+              </div>
+              {histogram.buckets.map((bucket, index) => (
+                <div key={index} className={styles.histogramRow}>
+                  <span className={styles.histogramLabel}>{bucketLabel(bucket.leMs)}</span>
+                  <span className={styles.histogramBarTrack}>
+                    <span className={styles.histogramBar} style={{ width: `${(bucket.count / maxBucket) * 100}%` }} />
+                  </span>
+                  <span className={styles.histogramCount}>{bucket.count}</span>
+                </div>
+              ))}
+            </div>
+          )}
+
+          <h4 className={styles.subTitle}>{t('permissionMetrics.recent')}</h4>
+          {metrics.recent.length === 0 ? (
+            <div className={styles.empty}>{t('permissionMetrics.noRequests')}</div>
+          ) : (
+            <table className={styles.table}>
+              <thead>
+                <tr>
+                  <th>{t('permissionMetrics.tool')}</th>
+                  <th>{t('permissionMetrics.channel')}</th>
+                  <th>{t('permissionMetrics.result')}</th>
+                  <th>{t('permissionMetrics.waited')}</th>
+                </tr>
+              </thead>
+              <tbody>
+                {metrics.recent.slice(0, RECENT_LIMIT).map((record) => {
+                  const end = record.resumedAt ?? record.decidedAt;
+                  const start = record.createdAt ?? record.seenAt;
+                  return (
+                    <tr key={record.requestId}>
+                      <td>{record.toolName ?? '-'}</td>
+                      <td>{record.channel}</td>
+                      <td>{record.outcome ? t(`permissionMetrics.outcome.${record.outcome}`) : t('permissionMetrics.pending')}</td>
+                      <td>{end && start ? formatMs(end - start) : '-'}</td>
+                    </tr>
+                  );
+                })}
+              </tbody>
+            </table>
+          )}
+        </>
+      )}
+    </div>
+  );
+};
+
+export default PermissionDiagnosticsSection;
@@ -11,9 +11,10 @@ import ProviderDialog from '../ProviderDialog';
 // 导入拆分后的组件
 import SettingsHeader from './SettingsHeader';
 import SettingsSidebar, { type SettingsTab } from './SettingsSidebar';
-import BasicConfigSection from './BasicConfigSection';
+import BasicConfigSection, { type HistoryArchiveConfig } from './BasicConfigSection';
 import ProviderManageSection from './ProviderManageSection';
 import UsageSection from './UsageSection';
+import PermissionDiagnosticsSection from './PermissionDiagnosticsSection';
 import PlaceholderSection from './PlaceholderSection';
 import CommunitySection from './CommunitySection';
 import { SkillsSettingsSection } from '../skills';
@@ -85,6 +86,9 @@ const SettingsView = ({ onClose }: SettingsViewProps) => {
   const [nodePath, setNodePath] = useState('');
   const [savingNodePath, setSavingNodePath] = useState(false);
 
+  // 冷会话归档（默认关闭）
+  const [historyArchive, setHistoryArchive] = useState<HistoryArchiveConfig>({ enabled: false, olderThanDays: 90 });
+
   // Toast 状态管理
   const [toasts, setToasts] = useState<ToastMessage[]>([]);
 
@@ -209,6 +213,15 @@ const SettingsView = ({ onClose }: SettingsViewProps) => {
     // 加载 Node.js 路径
     sendToJava('get_node_path:');
 
+    window.updateHistoryArchive = (json: string) => {
+      try {
+        setHistoryArchive(JSON.parse(json) as HistoryArchiveConfig);
+      } catch (error) {
+        console.error('[SettingsView] Failed to parse history archive config:', error);
+      }
+    };
+    sendToJava('get_history_archive:');
+
     return () => {
       window.updateProviders = undefined;
       window.updateActiveProvider = undefined;
@@ -216,6 +229,7 @@ const SettingsView = ({ onClose }: SettingsViewProps) => {
       window.showError = undefined;
       window.showSwitchSuccess = undefined;
       window.updateNodePath = undefined;
+      window.updateHistoryArchive = undefined;
     };
   }, []);
 
@@ -273,6 +287,11 @@ const SettingsView = ({ onClose }: SettingsViewProps) => {
     sendToJava(`set_node_path:${JSON.stringify(payload)}`);
   };
 
+  const handleSaveHistoryArchive = () => {
+    sendToJava(`set_history_archive:${JSON.stringify(historyArchive)}`);
+    addToast(t('settings.basic.historyArchive.saved'), 'success');
+  };
+
   const handleEditProvider = (provider: ProviderConfig) => {
     setProviderDialog({ isOpen: true, provider });
   };
@@ -418,6 +437,9 @@ const SettingsView = ({ onClose }: SettingsViewProps) => {
               onNodePathChange={setNodePath}
               onSaveNodePath={handleSaveNodePath}
               savingNodePath={savingNodePath}
+              historyArchive={historyArchive}
+              onHistoryArchiveChange={setHistoryArchive}
+              onSaveHistoryArchive={handleSaveHistoryArchive}
             />
           )}
 
@@ -442,8 +464,8 @@ const SettingsView = ({ onClose }: SettingsViewProps) => {
           {/* MCP服务器 */}
           {currentTab === 'mcp' && <PlaceholderSection type="mcp" />}
 
-          {/* 权限配置 */}
-          {currentTab === 'permissions' && <PlaceholderSection type="permissions" />}
+          {/* 权限诊断 */}
+          {currentTab === 'permissions' && <PermissionDiagnosticsSection />}
 
           {/* Agents */}
           {currentTab === 'agents' && <PlaceholderSection type="agents" />}
@@ -20,7 +20,7 @@ interface Window {
   /**
    * Update messages from backend
    */
-  updateMessages?: (json: string) => void;
+  updateMessages?: (json: string | unknown) => void;
 
   /**
    * Update status message
@@ -42,6 +42,21 @@ interface Window {
    */
   setHistoryData?: (data: any) => void;
 
+  /**
+   * Apply incremental history session changes
+   */
+  applyHistoryUpdate?: (update: any) => void;
+
+  /**
+   * Receive a batch of full-text history search results
+   */
+  onHistorySearchResults?: (response: any) => void;
+
+  /**
+   * Receive one chunk of a large payload pushed from Java (see utils/chunkedTransfer)
+   */
+  __receiveChunk?: (id: number, index: number, total: number, target: string, chunk: string) => void;
+
   /**
    * Clear all messages
    */
@@ -79,6 +94,16 @@ interface Window {
    */
   showPermissionDialog?: (json: string) => void;
 
+  /**
+   * Show several permission requests that arrived together in one dialog
+   */
+  showPermissionBatch?: (json: string) => void;
+
+  /**
+   * Remove permission requests the backend has already resolved (e.g. timed out)
+   */
+  dismissPermissionRequests?: (json: string) => void;
+
   /**
    * Add selection info (file and line numbers)
    */
@@ -134,6 +159,11 @@ interface Window {
    */
   updateNodePath?: (path: string) => void;
 
+  /**
+   * Update cold session archive settings
+   */
+  updateHistoryArchive?: (json: string) => void;
+
   /**
    * Update skills list
    */
@@ -157,5 +187,10 @@ interface Window {
   /**
    * Update usage statistics
    */
-  updateUsageStatistics?: (json: string) => void;
+  updateUsageStatistics?: (json: string | unknown) => void;
+
+  /**
+   * Update permission latency and outcome metrics
+   */
+  updatePermissionMetrics?: (json: string | unknown) => void;
 }
@@ -3,6 +3,9 @@ import App from './App';
 import './codicon.css';
 import './styles/app.less';
 import './i18n/config'; // 导入 i18n 配置
+import { installChunkReceiver } from './utils/chunkedTransfer';
+
+installChunkReceiver();
 
 ReactDOM.createRoot(document.getElementById('app') as HTMLElement).render(
   <App />,
@@ -52,3 +52,38 @@ export interface HistoryData {
   sessions?: HistorySessionSummary[];
   total?: number;
 }
+
+/**
+ * 全文搜索结果（snippet 中 highlights 为需要高亮的 [start, end) 区间）
+ */
+export interface HistorySearchResult {
+  kind: 'user' | 'assistant' | 'history';
+  sessionId?: string;
+  project?: string;
+  currentProject: boolean;
+  timestamp: number;
+  score: number;
+  snippet: string;
+  highlights: [number, number][];
+}
+
+/**
+ * 后端分批推送的搜索结果（append 为 false 时替换已有结果）
+ */
+export interface HistorySearchResponse {
+  query: string;
+  results: HistorySearchResult[];
+  append: boolean;
+  done: boolean;
+  elapsedMs: number;
+  error?: string;
+}
+
+/**
+ * 会话目录变化时后端推送的增量（full 为 true 时 upserted 是完整列表）
+ */
+export interface HistoryUpdate {
+  full?: boolean;
+  upserted: HistorySessionSummary[];
+  removed: string[];
+}
@@ -0,0 +1,166 @@
+/**
+ * 分块传输接收端
+ * Java 端把大 JSON 拆成固定大小的块，逐块调用 window.__receiveChunk(id, index, total, target, chunk)，
+ * 这里按传输 ID 重组，解析后调用 window[target]（超过阈值时在 Web Worker 中解析，不阻塞界面）
+ */
+
+interface PendingTransfer {
+  target: string;
+  chunks: string[];
+  received: number;
+  startedAt: number;
+}
+
+// 超过该长度的数据交给 Worker 解析
+const WORKER_PARSE_THRESHOLD = 1024 * 1024;
+// 长时间未收齐的传输（页面重载、后端中断）直接丢弃
+const STALE_TRANSFER_MS = 60_000;
+
+const pending = new Map<number, PendingTransfer>();
+// 每个目标最近一次已投递的传输 ID，较早的传输晚于较新的完成时直接丢弃
+const lastDelivered = new Map<string, number>();
+// 增量数据（会话增量、分批搜索结果）不能丢弃，按收齐的顺序依次投递
+const ORDERED_TARGETS = new Set(['applyHistoryUpdate', 'onHistorySearchResults']);
+const orderedQueues = new Map<string, Promise<void>>();
+
+let parseWorker: Worker | null = null;
+let workerUnavailable = false;
+let nextParseId = 1;
+const parseCallbacks = new Map<number, { resolve: (value: unknown) => void; reject: (error: Error) => void }>();
+
+const WORKER_SOURCE = `
+self.onmessage = function (event) {
+  var id = event.data.id;
+  try {
+    self.postMessage({ id: id, value: JSON.parse(event.data.text) });
+  } catch (error) {
+    self.postMessage({ id: id, error: String(error && error.message || error) });
+  }
+};
+`;
+
+const getWorker = (): Worker | null => {
+  if (parseWorker || workerUnavailable) {
+    return parseWorker;
+  }
+  try {
+    const url = URL.createObjectURL(new Blob([WORKER_SOURCE], { type: 'application/javascript' }));
+    parseWorker = new Worker(url);
+    parseWorker.onmessage = (event: MessageEvent<{ id: number; value?: unknown; error?: string }>) => {
+      const callback = parseCallbacks.get(event.data.id);
+      parseCallbacks.delete(event.data.id);
+      if (!callback) {
+        return;
+      }
+      if (event.data.error !== undefined) {
+        callback.reject(new Error(event.data.error));
+      } else {
+        callback.resolve(event.data.value);
+      }
+    };
+    parseWorker.onerror = (event) => {
+      // Worker 本身不可用（如被 CSP 拦截），已提交的任务改在主线程解析
+      console.warn('[ChunkedTransfer] Parse worker failed, falling back to main thread:', event.message);
+      workerUnavailable = true;
+      parseWorker?.terminate();
+      parseWorker = null;
+      parseCallbacks.forEach((callback) => callback.reject(new Error('worker unavailable')));
+      parseCallbacks.clear();
+    };
+  } catch (error) {
+    console.warn('[ChunkedTransfer] Web Worker not available:', error);
+    workerUnavailable = true;
+  }
+  return parseWorker;
+};
+
+const parseJson = (text: string): Promise<unknown> => {
+  const worker = text.length >= WORKER_PARSE_THRESHOLD ? getWorker() : null;
+  if (!worker) {
+    return Promise.resolve().then(() => JSON.parse(text));
+  }
+  return new Promise<unknown>((resolve, reject) => {
+    const id = nextParseId++;
+    parseCallbacks.set(id, { resolve, reject });
+    worker.postMessage({ id, text });
+  }).catch((error: Error) => {
+    if (error.message === 'worker unavailable') {
+      return JSON.parse(text);
+    }
+    throw error;
+  });
+};
+
+const invokeTarget = (target: string, value: unknown) => {
+  const fn = (window as unknown as Record<string, unknown>)[target];
+  if (typeof fn === 'function') {
+    fn(value);
+  } else {
+    console.warn('[ChunkedTransfer] Target not available:', target);
+  }
+};
+
+const reportParseFailure = (id: number, target: string, error: unknown) => {
+  console.error('[ChunkedTransfer] Failed to parse transfer', id, 'for', target, error);
+  if (target === 'setHistoryData') {
+    window.setHistoryData?.({ success: false, error: String(error) });
+  }
+};
+
+const deliver = (id: number, target: string, text: string) => {
+  const parsed = parseJson(text);
+  if (ORDERED_TARGETS.has(target)) {
+    // 解析可以并行（大数据在 Worker 中），调用必须等前一次投递完成
+    const previous = orderedQueues.get(target) ?? Promise.resolve();
+    const next = previous
+      .then(() => parsed)
+      .then((value) => invokeTarget(target, value))
+      .catch((error) => reportParseFailure(id, target, error));
+    orderedQueues.set(target, next);
+    return;
+  }
+  parsed
+    .then((value) => {
+      if ((lastDelivered.get(target) ?? 0) > id) {
+        return;
+      }
+      lastDelivered.set(target, id);
+      invokeTarget(target, value);
+    })
+    .catch((error) => reportParseFailure(id, target, error));
+};
+
+const receiveChunk = (id: number, index: number, total: number, target: string, chunk: string) => {
+  const now = Date.now();
+  pending.forEach((transfer, key) => {
+    if (now - transfer.startedAt > STALE_TRANSFER_MS) {
+      pending.delete(key);
+    }
+  });
+
+  let transfer = pending.get(id);
+  if (!transfer) {
+    transfer = { target, chunks: new Array<string>(total), received: 0, startedAt: now };
+    pending.set(id, transfer);
+  }
+  if (transfer.chunks[index] === undefined) {
+    transfer.chunks[index] = chunk;
+    transfer.received++;
+  }
+  if (transfer.received < total) {
+    return;
+  }
+
+  pending.delete(id);
+  deliver(id, transfer.target, transfer.chunks.join(''));
+};
+
+/**
+ * 分块传输投递的是已解析的对象，同时兼容直接以 JSON 字符串调用接收函数
+ */
+export const parseTransferPayload = <T>(payload: unknown): T =>
+  (typeof payload === 'string' ? JSON.parse(payload) : payload) as T;
+
+export const installChunkReceiver = () => {
+  window.__receiveChunk = receiveChunk;
+};